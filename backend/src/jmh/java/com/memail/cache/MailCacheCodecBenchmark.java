@@ -0,0 +1,160 @@
+package com.memail.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.memail.dto.AttachmentDTO;
+import com.memail.dto.EmailDetailDTO;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.dto.EmailListResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The binary codec against the JSON serializer it replaces, on what the shared tier holds
+ *
+ * inbox is a folder's pages entry with one 50-message list page; details is a detail with a
+ * newsletter-sized HTML body and two attachments. Encoded sizes are printed at setup, times
+ * are per operation.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="MailCacheCodecBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MailCacheCodecBenchmark {
+
+    @Param({"inbox", "details"})
+    public String payload;
+
+    private RedisSerializer<Object> json;
+    private RedisSerializer<Object> binary;
+
+    private Object value;
+    private byte[] jsonBytes;
+    private byte[] binaryBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Same mapper as CacheConfig
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+            ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        json = new GenericJackson2JsonRedisSerializer(objectMapper);
+        binary = new MailCacheCodec(json, 2048);
+
+        value = "inbox".equals(payload) ? inboxPage() : detail();
+        jsonBytes = json.serialize(value);
+        binaryBytes = binary.serialize(value);
+        System.out.printf("%n%s: json %d bytes, binary %d bytes (%.1f%%)%n", payload, jsonBytes.length,
+            binaryBytes.length, 100.0 * binaryBytes.length / jsonBytes.length);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() {
+        return json.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return binary.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserializeJson() {
+        return json.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public Object deserializeBinary() {
+        return binary.deserialize(binaryBytes);
+    }
+
+    private static final String[] SENDERS = {
+        "GitHub <notifications@github.com>", "Alice Martin <alice.martin@example.com>",
+        "Jira <jira@tracker.example.org>", "Bob Chen <bob@partner.example.net>",
+        "Newsletter <news@weekly.example.com>"
+    };
+
+    private static final String[] SUBJECTS = {
+        "Re: [memail] Fix folder sync when UIDVALIDITY changes (#412)",
+        "Quarterly planning - draft agenda for Thursday",
+        "[JIRA] (OPS-1833) Disk usage alert on mail-02",
+        "Invoice 2024-0317 for March services",
+        "This week: 12 things worth reading about distributed systems"
+    };
+
+    private static MailCache.FolderPages inboxPage() {
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.of(2024, 3, 18, 10, 0);
+        List<EmailHeaderDTO> emails = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            long uid = 18_000 - i;
+            EmailHeaderDTO header = new EmailHeaderDTO("<" + Long.toHexString(random.nextLong()) + "@mail.example.com>",
+                SENDERS[random.nextInt(SENDERS.length)], SUBJECTS[random.nextInt(SUBJECTS.length)],
+                now.minusMinutes(37L * i), random.nextInt(4) == 0);
+            header.setUid(uid);
+            header.setFolder("INBOX");
+            header.setThreadId(Long.toHexString(random.nextLong()));
+            header.setPreview("Hi all, following up on yesterday's discussion: the remaining items are the "
+                + "migration plan, the on-call rota and the budget numbers for the next quarter.");
+            header.setHasAttachments(random.nextInt(5) == 0);
+            header.setAttachmentCount(header.isHasAttachments() ? 1 : 0);
+            emails.add(header);
+        }
+        EmailListResponse page = new EmailListResponse(emails, 4_812, 0, 50);
+        page.setNextCursor(String.valueOf(emails.get(emails.size() - 1).getUid()));
+        return new MailCache.FolderPages("1710000000.98231.18000.4812", Map.of("page:0:50", page));
+    }
+
+    private static EmailDetailDTO detail() {
+        EmailDetailDTO detail = new EmailDetailDTO();
+        detail.setUid(17_991);
+        detail.setMessageId("<3f1c9a7e5b2d4e60@weekly.example.com>");
+        detail.setFrom(SENDERS[4]);
+        detail.setTo("user@example.com");
+        detail.setSubject(SUBJECTS[4]);
+        detail.setDate(LocalDateTime.of(2024, 3, 18, 6, 15));
+        detail.setFolder("INBOX");
+        StringBuilder html = new StringBuilder("<html><body><table width=\"100%\" cellpadding=\"0\">");
+        for (int i = 0; i < 12; i++) {
+            html.append("<tr><td style=\"padding:16px;font-family:Helvetica,Arial,sans-serif;color:#333\">")
+                .append("<h2 style=\"font-size:18px;margin:0 0 8px\">").append(i + 1).append(". ")
+                .append(SUBJECTS[i % SUBJECTS.length]).append("</h2><p style=\"line-height:1.5\">")
+                .append("A longer summary of the article with a few sentences about consensus, replication ")
+                .append("lag, and what happens to clients when a leader steps down in the middle of a write. ")
+                .append("</p><a href=\"https://weekly.example.com/r/").append(Integer.toHexString(i * 7919))
+                .append("?utm_source=newsletter&utm_medium=email\">Read more</a></td></tr>");
+        }
+        html.append("</table></body></html>");
+        detail.setHtmlContent(html.toString());
+        detail.setTextContent(html.toString().replaceAll("<[^>]+>", " "));
+        detail.setAttachments(List.of(new AttachmentDTO("2", "slides.pdf", "application/pdf", 1_204_311),
+            new AttachmentDTO("3", "chart.png", "image/png", 88_120)));
+        detail.setHasAttachments(true);
+        detail.setAttachmentCount(2);
+        return detail;
+    }
+}
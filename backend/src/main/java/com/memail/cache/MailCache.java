@@ -0,0 +1,325 @@
+package com.memail.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.memail.cluster.ClusterMembership;
+import com.memail.dto.EmailDetailDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Cached list pages, message details and unread counts, and their invalidation
+ *
+ * Message details never change for a UID within one UIDVALIDITY, so they are keyed by
+ * (user, folder, UIDVALIDITY, UID) and only dropped when the message leaves the folder.
+ * List pages are stored per folder under the folder's version (UIDVALIDITY, HIGHESTMODSEQ,
+ * last UID and message count) and dropped as a whole when the index of the folder changes,
+ * whether through a sync (also the ones IDLE triggers) or an action taken through the API.
+ * In a cluster every eviction is broadcast so the other nodes drop their local copies.
+ */
+@Component
+public class MailCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailCache.class);
+
+    public static final String HEADERS = "emailHeaders";
+    public static final String DETAILS = "emailDetails";
+    public static final String CONVERSATIONS = "conversations";
+    public static final String FOLDER_COUNTS = "folderCounts";
+
+    private static final String CHANNEL = "memail:cache-invalidation";
+
+    // Pages kept per folder and view; older ones make room for new ones
+    private static final int MAX_PAGES_PER_FOLDER = 20;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    @PostConstruct
+    public void init() {
+        if (!clusterMembership.isClustered()) {
+            return;
+        }
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * One page of a folder view from the cache, loaded and stored on a miss
+     * A cached page only counts when it was stored under the same folder version
+     */
+    public <T> T folderPage(String cacheName, String userEmail, String folder, String version,
+                            String pageKey, Class<T> type, Supplier<T> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        String key = folderKey(userEmail, folder);
+        FolderPages cached = cache.get(key, FolderPages.class);
+        boolean current = cached != null && version.equals(cached.getVersion());
+        if (current) {
+            Object page = cached.getPages().get(pageKey);
+            if (type.isInstance(page)) {
+                return type.cast(page);
+            }
+        }
+
+        T loaded = loader.get();
+        // Entries are shared with readers, so changes go to a copy
+        FolderPages updated = new FolderPages(version, current ? cached.getPages() : Collections.emptyMap());
+        updated.getPages().put(pageKey, loaded);
+        Iterator<String> oldest = updated.getPages().keySet().iterator();
+        while (updated.getPages().size() > MAX_PAGES_PER_FOLDER) {
+            oldest.next();
+            oldest.remove();
+        }
+        cache.put(key, updated);
+        return loaded;
+    }
+
+    /**
+     * Cached details of the given messages; UIDs not cached are absent
+     */
+    public Map<Long, EmailDetailDTO> getDetails(String userEmail, String folder, long uidValidity, Collection<Long> uids) {
+        Cache cache = cacheManager.getCache(DETAILS);
+        Map<Long, EmailDetailDTO> details = new HashMap<>();
+        for (Long uid : uids) {
+            EmailDetailDTO detail = cache.get(detailKey(userEmail, folder, uidValidity, uid), EmailDetailDTO.class);
+            if (detail != null) {
+                details.put(uid, detail);
+            }
+        }
+        return details;
+    }
+
+    /**
+     * Store message details; each must have its UID set
+     */
+    public void putDetails(String userEmail, String folder, long uidValidity, Collection<EmailDetailDTO> details) {
+        Cache cache = cacheManager.getCache(DETAILS);
+        for (EmailDetailDTO detail : details) {
+            cache.put(detailKey(userEmail, folder, uidValidity, detail.getUid()), detail);
+        }
+    }
+
+    /**
+     * Unread counts of the user's indexed folders, loaded on a miss
+     * The loader also serves refresh-ahead, so it may run on another thread
+     */
+    public Map<String, Long> unreadCounts(String userEmail, Supplier<Map<String, Long>> loader) {
+        Cache cache = cacheManager.getCache(FOLDER_COUNTS);
+        UnreadCounts counts = cache.get(userEmail, () -> new UnreadCounts(loader.get()));
+        return new HashMap<>(counts.getCounts());
+    }
+
+    /**
+     * The index of a folder changed: drop its list pages and the user's counts everywhere
+     */
+    public void folderChanged(String userEmail, String folder) {
+        Invalidation invalidation = new Invalidation(userEmail, folder, 0, new ArrayList<>());
+        evict(invalidation, false);
+        publish(invalidation);
+    }
+
+    /**
+     * Messages left a folder: drop their details as well as the folder's pages
+     */
+    public void messagesRemoved(String userEmail, String folder, long uidValidity, Collection<Long> uids) {
+        Invalidation invalidation = new Invalidation(userEmail, folder, uidValidity, new ArrayList<>(uids));
+        evict(invalidation, false);
+        publish(invalidation);
+    }
+
+    private void evict(Invalidation invalidation, boolean localOnly) {
+        evict(HEADERS, folderKey(invalidation.getUserEmail(), invalidation.getFolder()), localOnly);
+        evict(CONVERSATIONS, folderKey(invalidation.getUserEmail(), invalidation.getFolder()), localOnly);
+        evict(FOLDER_COUNTS, invalidation.getUserEmail(), localOnly);
+        for (Long uid : invalidation.getUids()) {
+            evict(DETAILS, detailKey(invalidation.getUserEmail(), invalidation.getFolder(),
+                invalidation.getUidValidity(), uid), localOnly);
+        }
+    }
+
+    private void evict(String cacheName, String key, boolean localOnly) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (localOnly && cache instanceof TieredCache) {
+            ((TieredCache) cache).evictLocal(key);
+        } else {
+            cache.evict(key);
+        }
+    }
+
+    private void publish(Invalidation invalidation) {
+        if (!clusterMembership.isClustered()) {
+            return;
+        }
+        try {
+            invalidation.setNodeId(clusterMembership.getNodeId());
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(invalidation));
+        } catch (Exception e) {
+            logger.warn("Failed to broadcast cache invalidation for {}: {}", invalidation.getUserEmail(), e.getMessage());
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        try {
+            Invalidation invalidation = objectMapper.readValue(
+                new String(message.getBody(), StandardCharsets.UTF_8), Invalidation.class);
+            if (!clusterMembership.getNodeId().equals(invalidation.getNodeId())) {
+                // The sender already evicted the shared tier
+                evict(invalidation, true);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to apply cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    private static String folderKey(String userEmail, String folder) {
+        return userEmail + "|" + folder.toUpperCase();
+    }
+
+    private static String detailKey(String userEmail, String folder, long uidValidity, long uid) {
+        return userEmail + "|" + folder.toUpperCase() + "|" + uidValidity + "|" + uid;
+    }
+
+    /**
+     * The cached pages of one folder view and the folder version they were read at
+     */
+    public static class FolderPages {
+        private String version;
+        private LinkedHashMap<String, Object> pages = new LinkedHashMap<>();
+
+        public FolderPages() {}
+
+        public FolderPages(String version, Map<String, Object> pages) {
+            this.version = version;
+            this.pages = new LinkedHashMap<>(pages);
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+
+        public LinkedHashMap<String, Object> getPages() {
+            return pages;
+        }
+
+        public void setPages(LinkedHashMap<String, Object> pages) {
+            this.pages = pages;
+        }
+    }
+
+    public static class UnreadCounts {
+        private Map<String, Long> counts = new HashMap<>();
+
+        public UnreadCounts() {}
+
+        public UnreadCounts(Map<String, Long> counts) {
+            this.counts = new HashMap<>(counts);
+        }
+
+        public Map<String, Long> getCounts() {
+            return counts;
+        }
+
+        public void setCounts(Map<String, Long> counts) {
+            this.counts = counts;
+        }
+    }
+
+    public static class Invalidation {
+        private String nodeId;
+        private String userEmail;
+        private String folder;
+        private long uidValidity;
+        private List<Long> uids = new ArrayList<>();
+
+        public Invalidation() {}
+
+        public Invalidation(String userEmail, String folder, long uidValidity, List<Long> uids) {
+            this.userEmail = userEmail;
+            this.folder = folder;
+            this.uidValidity = uidValidity;
+            this.uids = uids;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(String nodeId) {
+            this.nodeId = nodeId;
+        }
+
+        public String getUserEmail() {
+            return userEmail;
+        }
+
+        public void setUserEmail(String userEmail) {
+            this.userEmail = userEmail;
+        }
+
+        public String getFolder() {
+            return folder;
+        }
+
+        public void setFolder(String folder) {
+            this.folder = folder;
+        }
+
+        public long getUidValidity() {
+            return uidValidity;
+        }
+
+        public void setUidValidity(long uidValidity) {
+            this.uidValidity = uidValidity;
+        }
+
+        public List<Long> getUids() {
+            return uids;
+        }
+
+        public void setUids(List<Long> uids) {
+            this.uids = uids;
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package com.memail.cache;
+
+import com.memail.dto.AttachmentDTO;
+import com.memail.dto.ConversationDTO;
+import com.memail.dto.ConversationListResponse;
+import com.memail.dto.EmailDetailDTO;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.dto.EmailListResponse;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the cached mail objects for the shared Redis tier
+ *
+ * Every value starts with a magic byte, the schema version and the compression used; the
+ * fields follow in a fixed order with variable-length integers, so no class or property
+ * names are stored. Values at or above the compression threshold, typically details with
+ * an HTML body, are LZ4 compressed when that makes them smaller. Types the codec does not
+ * know are written by the fallback serializer inside a binary envelope, and entries without
+ * the magic byte, written before the codec was enabled, are read by the fallback as well.
+ *
+ * The field order is the schema: any change to it must bump SCHEMA_VERSION. Entries of
+ * another version are read as misses and reloaded.
+ */
+public class MailCacheCodec implements RedisSerializer<Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailCacheCodec.class);
+
+    // Neither '{', '[' nor '"', which begin the JSON entries of the fallback
+    static final byte MAGIC = (byte) 0xCE;
+    static final byte SCHEMA_VERSION = 1;
+
+    private static final byte COMPRESSION_NONE = 0;
+    private static final byte COMPRESSION_LZ4 = 1;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALLBACK = 1;
+    private static final byte TAG_HEADER = 2;
+    private static final byte TAG_DETAIL = 3;
+    private static final byte TAG_EMAIL_LIST = 4;
+    private static final byte TAG_CONVERSATION = 5;
+    private static final byte TAG_CONVERSATION_LIST = 6;
+    private static final byte TAG_FOLDER_PAGES = 7;
+    private static final byte TAG_UNREAD_COUNTS = 8;
+
+    private static final int UNREAD = 1;
+    private static final int HAS_ATTACHMENTS = 1 << 1;
+    private static final int CONTENT_TRUNCATED = 1 << 2;
+    private static final int HAS_MORE = 1 << 3;
+
+    private final RedisSerializer<Object> fallback;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    /**
+     * compressionThreshold is the encoded size in bytes from which values are compressed;
+     * zero or less disables compression
+     */
+    public MailCacheCodec(RedisSerializer<Object> fallback, int compressionThreshold) {
+        this.fallback = fallback;
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory factory = LZ4Factory.fastestJavaInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        Output out = new Output(256);
+        out.skip(HEADER_LENGTH);
+        writeValue(out, value);
+
+        int rawLength = out.length - HEADER_LENGTH;
+        if (compressionThreshold > 0 && rawLength >= compressionThreshold) {
+            byte[] compressed = compress(out.buffer, rawLength);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        out.buffer[0] = MAGIC;
+        out.buffer[1] = SCHEMA_VERSION;
+        out.buffer[2] = COMPRESSION_NONE;
+        return Arrays.copyOf(out.buffer, out.length);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[1] != SCHEMA_VERSION) {
+            logger.debug("Ignoring cached value of schema version {}", bytes.length > 1 ? bytes[1] : -1);
+            return null;
+        }
+        try {
+            Input in = new Input(bytes, HEADER_LENGTH, bytes.length);
+            if (bytes[2] == COMPRESSION_LZ4) {
+                int rawLength = in.readVarInt();
+                byte[] raw = new byte[rawLength];
+                int length = decompressor.decompress(bytes, in.position, bytes.length - in.position, raw, 0, rawLength);
+                if (length != rawLength) {
+                    throw new SerializationException("Truncated cache value");
+                }
+                in = new Input(raw, 0, rawLength);
+            } else if (bytes[2] != COMPRESSION_NONE) {
+                throw new SerializationException("Unknown cache value compression " + bytes[2]);
+            }
+            return readValue(in);
+        } catch (SerializationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new SerializationException("Cannot read cached value: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The header followed by the compressed body, or null when compression does not pay off
+     */
+    private byte[] compress(byte[] buffer, int rawLength) {
+        Output out = new Output(HEADER_LENGTH + 5 + compressor.maxCompressedLength(rawLength));
+        out.writeByte(MAGIC);
+        out.writeByte(SCHEMA_VERSION);
+        out.writeByte(COMPRESSION_LZ4);
+        out.writeVarInt(rawLength);
+        int length = compressor.compress(buffer, HEADER_LENGTH, rawLength, out.buffer, out.length,
+            out.buffer.length - out.length);
+        out.length += length;
+        if (out.length >= HEADER_LENGTH + rawLength) {
+            return null;
+        }
+        return Arrays.copyOf(out.buffer, out.length);
+    }
+
+    // Encoding
+
+    private void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value.getClass() == EmailHeaderDTO.class) {
+            out.writeByte(TAG_HEADER);
+            writeHeader(out, (EmailHeaderDTO) value, 0);
+        } else if (value.getClass() == EmailDetailDTO.class) {
+            out.writeByte(TAG_DETAIL);
+            writeDetail(out, (EmailDetailDTO) value);
+        } else if (value.getClass() == EmailListResponse.class) {
+            out.writeByte(TAG_EMAIL_LIST);
+            writeEmailList(out, (EmailListResponse) value);
+        } else if (value.getClass() == ConversationDTO.class) {
+            out.writeByte(TAG_CONVERSATION);
+            writeConversation(out, (ConversationDTO) value);
+        } else if (value.getClass() == ConversationListResponse.class) {
+            out.writeByte(TAG_CONVERSATION_LIST);
+            writeConversationList(out, (ConversationListResponse) value);
+        } else if (value.getClass() == MailCache.FolderPages.class) {
+            out.writeByte(TAG_FOLDER_PAGES);
+            writeFolderPages(out, (MailCache.FolderPages) value);
+        } else if (value.getClass() == MailCache.UnreadCounts.class) {
+            out.writeByte(TAG_UNREAD_COUNTS);
+            writeUnreadCounts(out, (MailCache.UnreadCounts) value);
+        } else {
+            out.writeByte(TAG_FALLBACK);
+            out.writeBytes(fallback.serialize(value));
+        }
+    }
+
+    private void writeHeader(Output out, EmailHeaderDTO header, int extraFlags) {
+        int flags = extraFlags;
+        if (header.isUnread()) {
+            flags |= UNREAD;
+        }
+        if (header.isHasAttachments()) {
+            flags |= HAS_ATTACHMENTS;
+        }
+        out.writeVarInt(flags);
+        out.writeVarLong(header.getUid());
+        out.writeString(header.getMessageId());
+        out.writeString(header.getFrom());
+        out.writeString(header.getSubject());
+        out.writeDate(header.getDate());
+        out.writeString(header.getPreview());
+        out.writeString(header.getThreadId());
+        out.writeString(header.getInReplyTo());
+        out.writeString(header.getReferences());
+        out.writeString(header.getFolder());
+        out.writeVarInt(header.getAttachmentCount());
+    }
+
+    private void writeDetail(Output out, EmailDetailDTO detail) {
+        writeHeader(out, detail, detail.isContentTruncated() ? CONTENT_TRUNCATED : 0);
+        out.writeString(detail.getTo());
+        out.writeString(detail.getCc());
+        out.writeString(detail.getBcc());
+        out.writeString(detail.getTextContent());
+        out.writeString(detail.getHtmlContent());
+        List<AttachmentDTO> attachments = detail.getAttachments();
+        out.writeSize(attachments);
+        if (attachments != null) {
+            for (AttachmentDTO attachment : attachments) {
+                out.writeString(attachment.getPartId());
+                out.writeString(attachment.getFileName());
+                out.writeString(attachment.getContentType());
+                out.writeVarLong(attachment.getSize());
+            }
+        }
+    }
+
+    private void writeEmailList(Output out, EmailListResponse list) {
+        out.writeVarInt(list.isHasMore() ? HAS_MORE : 0);
+        out.writeVarInt(list.getTotalCount());
+        out.writeVarInt(list.getPage());
+        out.writeVarInt(list.getSize());
+        out.writeString(list.getNextCursor());
+        out.writeStrings(list.getIncompleteFolders());
+        writeList(out, list.getEmails());
+    }
+
+    private void writeConversation(Output out, ConversationDTO conversation) {
+        int flags = 0;
+        if (conversation.isHasUnread()) {
+            flags |= UNREAD;
+        }
+        if (conversation.isHasAttachments()) {
+            flags |= HAS_ATTACHMENTS;
+        }
+        out.writeVarInt(flags);
+        out.writeString(conversation.getThreadId());
+        out.writeString(conversation.getSubject());
+        out.writeStrings(conversation.getParticipants());
+        out.writeVarInt(conversation.getMessageCount());
+        out.writeDate(conversation.getLastMessageDate());
+        out.writeString(conversation.getPreview());
+        writeList(out, conversation.getMessages());
+    }
+
+    private void writeConversationList(Output out, ConversationListResponse list) {
+        out.writeVarInt(list.isHasMore() ? HAS_MORE : 0);
+        out.writeVarInt(list.getTotalCount());
+        out.writeVarInt(list.getPage());
+        out.writeVarInt(list.getSize());
+        writeList(out, list.getConversations());
+    }
+
+    private void writeFolderPages(Output out, MailCache.FolderPages folderPages) {
+        out.writeString(folderPages.getVersion());
+        out.writeSize(folderPages.getPages());
+        if (folderPages.getPages() != null) {
+            for (Map.Entry<String, Object> page : folderPages.getPages().entrySet()) {
+                out.writeString(page.getKey());
+                writeValue(out, page.getValue());
+            }
+        }
+    }
+
+    private void writeUnreadCounts(Output out, MailCache.UnreadCounts unreadCounts) {
+        out.writeSize(unreadCounts.getCounts());
+        if (unreadCounts.getCounts() != null) {
+            for (Map.Entry<String, Long> count : unreadCounts.getCounts().entrySet()) {
+                out.writeString(count.getKey());
+                out.writeVarLong(count.getValue() != null ? count.getValue() : 0);
+            }
+        }
+    }
+
+    private void writeList(Output out, List<?> values) {
+        out.writeSize(values);
+        if (values != null) {
+            for (Object value : values) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    // Decoding, in the same order
+
+    private Object readValue(Input in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALLBACK:
+                return fallback.deserialize(in.readBytes());
+            case TAG_HEADER:
+                EmailHeaderDTO header = new EmailHeaderDTO();
+                readHeader(in, header);
+                return header;
+            case TAG_DETAIL:
+                return readDetail(in);
+            case TAG_EMAIL_LIST:
+                return readEmailList(in);
+            case TAG_CONVERSATION:
+                return readConversation(in);
+            case TAG_CONVERSATION_LIST:
+                return readConversationList(in);
+            case TAG_FOLDER_PAGES:
+                return readFolderPages(in);
+            case TAG_UNREAD_COUNTS:
+                return readUnreadCounts(in);
+            default:
+                throw new SerializationException("Unknown cache value type " + tag);
+        }
+    }
+
+    private int readHeader(Input in, EmailHeaderDTO header) {
+        int flags = in.readVarInt();
+        header.setUnread((flags & UNREAD) != 0);
+        header.setHasAttachments((flags & HAS_ATTACHMENTS) != 0);
+        header.setUid(in.readVarLong());
+        header.setMessageId(in.readString());
+        header.setFrom(in.readString());
+        header.setSubject(in.readString());
+        header.setDate(in.readDate());
+        header.setPreview(in.readString());
+        header.setThreadId(in.readString());
+        header.setInReplyTo(in.readString());
+        header.setReferences(in.readString());
+        header.setFolder(in.readString());
+        header.setAttachmentCount(in.readVarInt());
+        return flags;
+    }
+
+    private EmailDetailDTO readDetail(Input in) {
+        EmailDetailDTO detail = new EmailDetailDTO();
+        int flags = readHeader(in, detail);
+        detail.setContentTruncated((flags & CONTENT_TRUNCATED) != 0);
+        detail.setTo(in.readString());
+        detail.setCc(in.readString());
+        detail.setBcc(in.readString());
+        detail.setTextContent(in.readString());
+        detail.setHtmlContent(in.readString());
+        int count = in.readSize();
+        if (count >= 0) {
+            List<AttachmentDTO> attachments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                AttachmentDTO attachment = new AttachmentDTO();
+                attachment.setPartId(in.readString());
+                attachment.setFileName(in.readString());
+                attachment.setContentType(in.readString());
+                attachment.setSize(in.readVarLong());
+                attachments.add(attachment);
+            }
+            detail.setAttachments(attachments);
+        } else {
+            detail.setAttachments(null);
+        }
+        return detail;
+    }
+
+    private EmailListResponse readEmailList(Input in) {
+        EmailListResponse list = new EmailListResponse();
+        list.setHasMore((in.readVarInt() & HAS_MORE) != 0);
+        list.setTotalCount(in.readVarInt());
+        list.setPage(in.readVarInt());
+        list.setSize(in.readVarInt());
+        list.setNextCursor(in.readString());
+        list.setIncompleteFolders(in.readStrings());
+        list.setEmails(readList(in, EmailHeaderDTO.class));
+        return list;
+    }
+
+    private ConversationDTO readConversation(Input in) {
+        ConversationDTO conversation = new ConversationDTO();
+        int flags = in.readVarInt();
+        conversation.setHasUnread((flags & UNREAD) != 0);
+        conversation.setHasAttachments((flags & HAS_ATTACHMENTS) != 0);
+        conversation.setThreadId(in.readString());
+        conversation.setSubject(in.readString());
+        conversation.setParticipants(in.readStrings());
+        conversation.setMessageCount(in.readVarInt());
+        conversation.setLastMessageDate(in.readDate());
+        conversation.setPreview(in.readString());
+        conversation.setMessages(readList(in, EmailDetailDTO.class));
+        return conversation;
+    }
+
+    private ConversationListResponse readConversationList(Input in) {
+        ConversationListResponse list = new ConversationListResponse();
+        list.setHasMore((in.readVarInt() & HAS_MORE) != 0);
+        list.setTotalCount(in.readVarInt());
+        list.setPage(in.readVarInt());
+        list.setSize(in.readVarInt());
+        list.setConversations(readList(in, ConversationDTO.class));
+        return list;
+    }
+
+    private MailCache.FolderPages readFolderPages(Input in) {
+        MailCache.FolderPages folderPages = new MailCache.FolderPages();
+        folderPages.setVersion(in.readString());
+        int count = in.readSize();
+        LinkedHashMap<String, Object> pages = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            pages.put(key, readValue(in));
+        }
+        folderPages.setPages(pages);
+        return folderPages;
+    }
+
+    private MailCache.UnreadCounts readUnreadCounts(Input in) {
+        int count = in.readSize();
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String folder = in.readString();
+            counts.put(folder, in.readVarLong());
+        }
+        return new MailCache.UnreadCounts(counts);
+    }
+
+    private <T> List<T> readList(Input in, Class<T> type) {
+        int count = in.readSize();
+        if (count < 0) {
+            return null;
+        }
+        List<T> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Object value = readValue(in);
+            if (value != null && !type.isInstance(value)) {
+                throw new SerializationException("Expected " + type.getSimpleName() + " but read "
+                    + value.getClass().getSimpleName());
+            }
+            values.add(type.cast(value));
+        }
+        return values;
+    }
+
+    /**
+     * Growable byte buffer with the primitive encodings
+     * Sizes and string lengths are stored plus one, so that zero stands for null
+     */
+    private static final class Output {
+        byte[] buffer;
+        int length;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        void skip(int count) {
+            ensure(count);
+            length += count;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writeStrings(List<String> values) {
+            writeSize(values);
+            if (values != null) {
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+        }
+
+        void writeSize(Object collection) {
+            int size = collection instanceof List ? ((List<?>) collection).size()
+                : collection instanceof Map ? ((Map<?, ?>) collection).size() : -1;
+            writeVarInt(size + 1);
+        }
+
+        // Dates are wall-clock times, so the offset only fixes an epoch to count from
+        void writeDate(LocalDateTime date) {
+            if (date == null) {
+                writeByte(0);
+                return;
+            }
+            writeVarInt(date.getNano() + 1);
+            long seconds = date.toEpochSecond(ZoneOffset.UTC);
+            writeVarLong((seconds << 1) ^ (seconds >> 63));
+        }
+    }
+
+    private static final class Input {
+        final byte[] buffer;
+        final int limit;
+        int position;
+
+        Input(byte[] buffer, int offset, int limit) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = limit;
+        }
+
+        byte readByte() {
+            if (position >= limit) {
+                throw new SerializationException("Truncated cache value");
+            }
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed number in cache value");
+        }
+
+        byte[] readBytes() {
+            int length = readVarInt();
+            checkAvailable(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            checkAvailable(length);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        List<String> readStrings() {
+            int count = readSize();
+            if (count < 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        int readSize() {
+            int size = readVarInt() - 1;
+            // Each element takes at least a byte, which bounds what a corrupt size can allocate
+            if (size > limit - position) {
+                throw new SerializationException("Malformed size in cache value");
+            }
+            return size;
+        }
+
+        LocalDateTime readDate() {
+            int nano = readVarInt() - 1;
+            if (nano < 0) {
+                return null;
+            }
+            long zigzag = readVarLong();
+            long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+            return LocalDateTime.ofEpochSecond(seconds, nano, ZoneOffset.UTC);
+        }
+
+        private void checkAvailable(int length) {
+            if (length < 0 || length > limit - position) {
+                throw new SerializationException("Truncated cache value");
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.memail.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache policies: defaults under memail.cache.local and memail.cache.remote, overridden per
+ * cache under memail.cache.caches.[name], for example
+ *
+ *   memail.cache.caches.emailDetails.local.maximum-weight=64MB
+ *   memail.cache.caches.folderCounts.local.refresh-after-write=30s
+ *   memail.cache.caches.userPreferences.remote.ttl=1h
+ *
+ * A cache bounded by weight is measured in approximate bytes by MailObjectWeigher and
+ * ignores the entry count bound.
+ */
+@ConfigurationProperties(prefix = "memail.cache")
+public class MailCacheProperties {
+
+    private Local local = new Local(10_000L, null, Duration.ofMinutes(2), null);
+    private Remote remote = new Remote(Duration.ofMinutes(5));
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    /**
+     * The local tier policy of a cache, its own settings over the defaults
+     */
+    public Local localPolicy(String cacheName) {
+        Local own = spec(cacheName).getLocal();
+        boolean weighted = own.getMaximumWeight() != null;
+        return new Local(
+            weighted ? null : first(own.getMaximumSize(), local.getMaximumSize()),
+            own.getMaximumWeight(),
+            first(own.getTtl(), local.getTtl()),
+            first(own.getRefreshAfterWrite(), local.getRefreshAfterWrite()));
+    }
+
+    /**
+     * The shared tier policy of a cache, its own settings over the defaults
+     */
+    public Remote remotePolicy(String cacheName) {
+        return new Remote(first(spec(cacheName).getRemote().getTtl(), remote.getTtl()));
+    }
+
+    private Spec spec(String cacheName) {
+        Spec spec = caches.get(cacheName);
+        if (spec == null) {
+            // Keys bound from environment variables come back lower-cased
+            spec = caches.get(cacheName.toLowerCase());
+        }
+        return spec != null ? spec : new Spec();
+    }
+
+    private static <T> T first(T value, T fallback) {
+        return value != null ? value : fallback;
+    }
+
+    public Local getLocal() {
+        return local;
+    }
+
+    public void setLocal(Local local) {
+        this.local = local;
+    }
+
+    public Remote getRemote() {
+        return remote;
+    }
+
+    public void setRemote(Remote remote) {
+        this.remote = remote;
+    }
+
+    public Map<String, Spec> getCaches() {
+        return caches;
+    }
+
+    public void setCaches(Map<String, Spec> caches) {
+        this.caches = caches;
+    }
+
+    /**
+     * Caffeine tier on each node; unset values fall back to the defaults
+     */
+    public static class Local {
+        private Long maximumSize;
+        private DataSize maximumWeight;
+        private Duration ttl;
+        // Entries older than this are reloaded in the background on their next read
+        private Duration refreshAfterWrite;
+
+        public Local() {}
+
+        public Local(Long maximumSize, DataSize maximumWeight, Duration ttl, Duration refreshAfterWrite) {
+            this.maximumSize = maximumSize;
+            this.maximumWeight = maximumWeight;
+            this.ttl = ttl;
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        public Long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(Long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public DataSize getMaximumWeight() {
+            return maximumWeight;
+        }
+
+        public void setMaximumWeight(DataSize maximumWeight) {
+            this.maximumWeight = maximumWeight;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+    }
+
+    /**
+     * Redis tier shared by the nodes; the value encoding can only be set for all caches
+     */
+    public static class Remote {
+        private Duration ttl;
+        // binary (MailCacheCodec) or json
+        private String codec = "binary";
+        // Binary values from this size on are compressed
+        private DataSize compressionThreshold = DataSize.ofKilobytes(2);
+
+        public Remote() {}
+
+        public Remote(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public String getCodec() {
+            return codec;
+        }
+
+        public void setCodec(String codec) {
+            this.codec = codec;
+        }
+
+        public DataSize getCompressionThreshold() {
+            return compressionThreshold;
+        }
+
+        public void setCompressionThreshold(DataSize compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+    }
+
+    public static class Spec {
+        private Local local = new Local();
+        private Remote remote = new Remote();
+
+        public Local getLocal() {
+            return local;
+        }
+
+        public void setLocal(Local local) {
+            this.local = local;
+        }
+
+        public Remote getRemote() {
+            return remote;
+        }
+
+        public void setRemote(Remote remote) {
+            this.remote = remote;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.memail.cache;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.memail.dto.AttachmentDTO;
+import com.memail.dto.ConversationDTO;
+import com.memail.dto.ConversationListResponse;
+import com.memail.dto.EmailDetailDTO;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.dto.EmailListResponse;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Approximate heap bytes of a cached value, so that a 2 MB HTML detail and a short header
+ * do not count the same against a cache's bound
+ *
+ * Strings dominate, and are counted at their length plus the object overhead; the fixed
+ * costs of the DTOs are rough 64-bit figures. Values of other types weigh a kilobyte.
+ */
+public class MailObjectWeigher implements Weigher<Object, Object> {
+
+    private static final int STRING_OVERHEAD = 40;
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int REFERENCE = 4;
+    private static final int DATE = 48;
+    private static final int UNKNOWN = 1024;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, weigh(key) + weigh(value));
+    }
+
+    static long weigh(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return STRING_OVERHEAD + ((String) value).length();
+        }
+        if (value instanceof EmailDetailDTO) {
+            EmailDetailDTO detail = (EmailDetailDTO) value;
+            return header(detail) + 7 * REFERENCE
+                + weigh(detail.getHtmlContent()) + weigh(detail.getTextContent())
+                + weigh(detail.getTo()) + weigh(detail.getCc()) + weigh(detail.getBcc())
+                + weigh(detail.getAttachments());
+        }
+        if (value instanceof EmailHeaderDTO) {
+            return header((EmailHeaderDTO) value);
+        }
+        if (value instanceof AttachmentDTO) {
+            AttachmentDTO attachment = (AttachmentDTO) value;
+            return OBJECT_OVERHEAD + 3 * REFERENCE + 8 + weigh(attachment.getPartId())
+                + weigh(attachment.getFileName()) + weigh(attachment.getContentType());
+        }
+        if (value instanceof EmailListResponse) {
+            EmailListResponse list = (EmailListResponse) value;
+            return OBJECT_OVERHEAD + 16 + weigh(list.getEmails()) + weigh(list.getNextCursor())
+                + weigh(list.getIncompleteFolders());
+        }
+        if (value instanceof ConversationDTO) {
+            ConversationDTO conversation = (ConversationDTO) value;
+            return OBJECT_OVERHEAD + 16 + DATE + weigh(conversation.getThreadId())
+                + weigh(conversation.getSubject()) + weigh(conversation.getPreview())
+                + weigh(conversation.getParticipants()) + weigh(conversation.getMessages());
+        }
+        if (value instanceof ConversationListResponse) {
+            return OBJECT_OVERHEAD + 16 + weigh(((ConversationListResponse) value).getConversations());
+        }
+        if (value instanceof MailCache.FolderPages) {
+            MailCache.FolderPages folderPages = (MailCache.FolderPages) value;
+            return OBJECT_OVERHEAD + weigh(folderPages.getVersion()) + weigh(folderPages.getPages());
+        }
+        if (value instanceof MailCache.UnreadCounts) {
+            return OBJECT_OVERHEAD + weigh(((MailCache.UnreadCounts) value).getCounts());
+        }
+        if (value instanceof Collection) {
+            long weight = OBJECT_OVERHEAD + 16;
+            for (Object element : (Collection<?>) value) {
+                weight += REFERENCE + weigh(element);
+            }
+            return weight;
+        }
+        if (value instanceof Map) {
+            long weight = OBJECT_OVERHEAD + 32;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                weight += 32 + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return OBJECT_OVERHEAD + 8;
+        }
+        return UNKNOWN;
+    }
+
+    private static long header(EmailHeaderDTO header) {
+        return OBJECT_OVERHEAD + 9 * REFERENCE + 16 + DATE
+            + weigh(header.getMessageId()) + weigh(header.getFrom()) + weigh(header.getSubject())
+            + weigh(header.getPreview()) + weigh(header.getThreadId()) + weigh(header.getInReplyTo())
+            + weigh(header.getReferences()) + weigh(header.getFolder());
+    }
+}
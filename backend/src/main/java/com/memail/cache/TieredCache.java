@@ -0,0 +1,226 @@
+package com.memail.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Caffeine near-cache on this node in front of a shared Redis cache
+ *
+ * Reads try the local tier, then the shared one, and copy shared hits into the local tier.
+ * Writes and evictions go to both. The shared tier is best effort: when Redis fails, the
+ * cache behaves as a miss instead of failing the request. Other nodes' local copies are
+ * dropped by MailCache, which broadcasts evictions.
+ *
+ * With refresh-ahead, a read through get(key, loader) that finds a local entry older than the
+ * refresh interval still returns it, and reloads it in the background with the same loader.
+ * The reloaded value only replaces the entry if nothing evicted or overwrote it meanwhile.
+ */
+public class TieredCache extends AbstractValueAdaptingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredCache.class);
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> local;
+    private final Cache remote;
+    private final Duration refreshAfterWrite;
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter refreshes;
+
+    /**
+     * remote may be null for a node-local cache
+     */
+    public TieredCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> local, Cache remote,
+                       MeterRegistry meterRegistry) {
+        this(name, local, remote, null, meterRegistry);
+    }
+
+    /**
+     * refreshAfterWrite may be null to never refresh; it needs a local tier that expires after write
+     */
+    public TieredCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> local, Cache remote,
+                       Duration refreshAfterWrite, MeterRegistry meterRegistry) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.refreshAfterWrite = refreshAfterWrite;
+
+        localHits = counter(meterRegistry, "local", "hit");
+        localMisses = counter(meterRegistry, "local", "miss");
+        remoteHits = counter(meterRegistry, "remote", "hit");
+        remoteMisses = counter(meterRegistry, "remote", "miss");
+        refreshes = Counter.builder("memail.cache.refreshes")
+            .tag("cache", name)
+            .description("Entries reloaded ahead of expiry")
+            .register(meterRegistry);
+        Gauge.builder("memail.cache.hit.ratio", this, TieredCache::hitRatio)
+            .tag("cache", name)
+            .description("Share of lookups answered by either tier")
+            .register(meterRegistry);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("memail.cache.gets")
+            .tag("cache", name)
+            .tag("tier", tier)
+            .tag("result", result)
+            .description("Cache lookups per tier")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        localMisses.increment();
+
+        if (remote == null) {
+            return null;
+        }
+        try {
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                remoteHits.increment();
+                local.put(key, wrapper.get());
+                return wrapper.get();
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Shared cache {} read failed: {}", name, e.getMessage());
+        }
+        remoteMisses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            refreshIfDue(key, value, valueLoader);
+            return (T) value;
+        }
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    private void refreshIfDue(Object key, Object served, Callable<?> valueLoader) {
+        if (refreshAfterWrite == null) {
+            return;
+        }
+        Optional<Duration> age = local.policy().expireAfterWrite().flatMap(expiry -> expiry.ageOf(key));
+        if (age.isEmpty() || age.get().compareTo(refreshAfterWrite) < 0 || !refreshing.add(key)) {
+            return;
+        }
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }).whenComplete((loaded, error) -> {
+            refreshing.remove(key);
+            if (error != null) {
+                logger.debug("Refresh of {} in cache {} failed: {}", key, name, error.getMessage());
+                return;
+            }
+            // An eviction while reloading means the loaded value may already be stale
+            if (loaded != null && local.asMap().replace(key, served, loaded)) {
+                refreshes.increment();
+                putRemote(key, loaded);
+            }
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        local.put(key, value);
+        putRemote(key, value);
+    }
+
+    private void putRemote(Object key, Object value) {
+        if (remote != null) {
+            try {
+                remote.put(key, value);
+            } catch (RuntimeException e) {
+                logger.debug("Shared cache {} write failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.invalidate(key);
+        if (remote != null) {
+            try {
+                remote.evict(key);
+            } catch (RuntimeException e) {
+                logger.warn("Shared cache {} eviction failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drop only this node's copy, after another node changed the shared entry
+     */
+    public void evictLocal(Object key) {
+        local.invalidate(key);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        if (remote != null) {
+            try {
+                remote.clear();
+            } catch (RuntimeException e) {
+                logger.warn("Shared cache {} clear failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private double hitRatio() {
+        double hits = localHits.count() + remoteHits.count();
+        double lookups = localHits.count() + localMisses.count();
+        return lookups == 0 ? 0 : hits / lookups;
+    }
+}
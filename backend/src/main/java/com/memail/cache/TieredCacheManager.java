@@ -0,0 +1,98 @@
+package com.memail.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a TieredCache for every cache name, with a shared tier when a remote manager is given
+ *
+ * Each local tier gets its cache's policy: an entry count or a weight in approximate bytes,
+ * an expiry, and optionally refresh-ahead. The local tier expires sooner than the shared one,
+ * which bounds how long a node can serve an entry whose eviction broadcast it missed.
+ */
+public class TieredCacheManager extends AbstractCacheManager {
+
+    private final Collection<String> cacheNames;
+    private final MailCacheProperties properties;
+    private final CacheManager remote;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * remote may be null to keep every cache on this node
+     */
+    public TieredCacheManager(Collection<String> cacheNames, MailCacheProperties properties,
+                              CacheManager remote, MeterRegistry meterRegistry) {
+        this.cacheNames = cacheNames;
+        this.properties = properties;
+        this.remote = remote;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>(cacheNames.size());
+        for (String name : cacheNames) {
+            caches.add(createCache(name));
+        }
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name);
+    }
+
+    private TieredCache createCache(String name) {
+        MailCacheProperties.Local policy = properties.localPolicy(name);
+        Map<RemovalCause, Counter> removals = removalCounters(name);
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .expireAfterWrite(policy.getTtl())
+            .removalListener((key, value, cause) -> removals.get(cause).increment())
+            .recordStats();
+        if (policy.getMaximumWeight() != null) {
+            builder.maximumWeight(policy.getMaximumWeight().toBytes()).weigher(new MailObjectWeigher());
+        } else {
+            builder.maximumSize(policy.getMaximumSize());
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> local = builder.build();
+
+        // Size, evictions and local hit/miss from Caffeine's own statistics
+        CaffeineCacheMetrics.monitor(meterRegistry, local, name);
+        if (policy.getMaximumWeight() != null) {
+            Gauge.builder("memail.cache.local.weight", local,
+                    cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .tag("cache", name)
+                .baseUnit("bytes")
+                .description("Approximate bytes held by the local tier")
+                .register(meterRegistry);
+        }
+        return new TieredCache(name, local, remote != null ? remote.getCache(name) : null,
+            policy.getRefreshAfterWrite(), meterRegistry);
+    }
+
+    private Map<RemovalCause, Counter> removalCounters(String name) {
+        Map<RemovalCause, Counter> counters = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            counters.put(cause, Counter.builder("memail.cache.removals")
+                .tag("cache", name)
+                .tag("cause", cause.name().toLowerCase())
+                .description("Local tier removals by cause: explicit, replaced, expired, size or collected")
+                .register(meterRegistry));
+        }
+        return counters;
+    }
+}
@@ -0,0 +1,70 @@
+package com.memail.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Which backend node is responsible for background IMAP work of a user
+ *
+ * Nodes are listed statically in memail.cluster.nodes; users are assigned to them by
+ * consistent hash so each mailbox is polled or watched by exactly one node. With no
+ * node list the instance runs standalone and owns every user.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    @Value("${memail.cluster.node-id:${HOSTNAME:local}}")
+    private String nodeId;
+
+    @Value("${memail.cluster.nodes:}")
+    private List<String> nodes;
+
+    @Value("${memail.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    private ConsistentHashRing ring;
+
+    @PostConstruct
+    public void init() {
+        List<String> members = new ArrayList<>();
+        for (String node : nodes) {
+            if (!node.isBlank()) {
+                members.add(node.trim());
+            }
+        }
+        if (!members.isEmpty() && !members.contains(nodeId)) {
+            logger.warn("Node {} is not listed in memail.cluster.nodes {}, adding it to the ring", nodeId, members);
+            members.add(nodeId);
+        }
+        ring = new ConsistentHashRing(members, virtualNodes);
+        if (isClustered()) {
+            logger.info("Node {} sharing IMAP background work with {}", nodeId, members);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Whether other nodes take part, so presence and notifications must cross nodes
+     */
+    public boolean isClustered() {
+        return !ring.isEmpty();
+    }
+
+    /**
+     * Whether this node polls, watches and syncs the given user's mailbox
+     */
+    public boolean owns(String userEmail) {
+        return !isClustered() || nodeId.equals(ring.nodeFor(userEmail));
+    }
+}
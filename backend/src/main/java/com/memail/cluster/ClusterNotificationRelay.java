@@ -0,0 +1,118 @@
+package com.memail.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.memail.config.WebSocketConfig;
+import com.memail.dto.EmailNotificationDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Delivers notifications to users whose WebSocket session lives on another node
+ *
+ * The node that detects new mail is the mailbox owner, not necessarily the node holding
+ * the session, so notifications for non-local users are published on a Redis channel and
+ * every node forwards the ones addressed to its own sessions.
+ */
+@Component
+public class ClusterNotificationRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterNotificationRelay.class);
+
+    private static final String CHANNEL = "memail:notifications";
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private WebSocketConfig webSocketConfig;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    @PostConstruct
+    public void init() {
+        if (!clusterMembership.isClustered()) {
+            return;
+        }
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.addMessageListener(this::onMessage, new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    /**
+     * Whether a notification for this user has to go through the relay
+     */
+    public boolean shouldRelay(String userEmail) {
+        return clusterMembership.isClustered() && !webSocketConfig.getActiveUsers().contains(userEmail);
+    }
+
+    public void publish(String userEmail, EmailNotificationDTO notification) {
+        try {
+            RelayedNotification relayed = new RelayedNotification();
+            relayed.setUserEmail(userEmail);
+            relayed.setNotification(notification);
+            redisTemplate.convertAndSend(CHANNEL, objectMapper.writeValueAsString(relayed));
+        } catch (Exception e) {
+            logger.warn("Failed to relay notification for {}: {}", userEmail, e.getMessage());
+        }
+    }
+
+    private void onMessage(Message message, byte[] pattern) {
+        try {
+            RelayedNotification relayed = objectMapper.readValue(
+                new String(message.getBody(), StandardCharsets.UTF_8), RelayedNotification.class);
+            if (webSocketConfig.getActiveUsers().contains(relayed.getUserEmail())) {
+                messagingTemplate.convertAndSendToUser(
+                    relayed.getUserEmail(),
+                    "/queue/notifications",
+                    relayed.getNotification()
+                );
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to deliver relayed notification: {}", e.getMessage());
+        }
+    }
+
+    public static class RelayedNotification {
+        private String userEmail;
+        private EmailNotificationDTO notification;
+
+        public String getUserEmail() { return userEmail; }
+        public void setUserEmail(String userEmail) { this.userEmail = userEmail; }
+
+        public EmailNotificationDTO getNotification() { return notification; }
+        public void setNotification(EmailNotificationDTO notification) { this.notification = notification; }
+    }
+}
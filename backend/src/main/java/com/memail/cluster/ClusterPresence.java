@@ -0,0 +1,88 @@
+package com.memail.cluster;
+
+import com.memail.config.WebSocketConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Users with an open WebSocket session anywhere in the cluster
+ *
+ * Each node heartbeats its local sessions into a Redis sorted set scored by time, so the
+ * owner of a mailbox can poll it even when the session lives on another node. Entries not
+ * refreshed within the TTL are ignored. Standalone nodes just use their local sessions.
+ */
+@Component
+public class ClusterPresence {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterPresence.class);
+
+    private static final String PRESENCE_KEY = "memail:presence";
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private WebSocketConfig webSocketConfig;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Value("${memail.cluster.presence-ttl:45s}")
+    private Duration presenceTtl;
+
+    @Scheduled(fixedDelayString = "${memail.cluster.presence-interval:15000}")
+    public void heartbeat() {
+        if (!clusterMembership.isClustered()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            for (String userEmail : webSocketConfig.getActiveUsers()) {
+                redisTemplate.opsForZSet().add(PRESENCE_KEY, userEmail, now);
+            }
+            redisTemplate.opsForZSet().removeRangeByScore(PRESENCE_KEY, 0, now - presenceTtl.toMillis());
+        } catch (Exception e) {
+            logger.warn("Failed to publish presence: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Active users this node is responsible for
+     * If Redis is unreachable every node falls back to its own sessions, so no user goes unpolled
+     */
+    public Set<String> ownedActiveUsers() {
+        Set<String> localUsers = new HashSet<>(webSocketConfig.getActiveUsers());
+        if (!clusterMembership.isClustered()) {
+            return localUsers;
+        }
+        Set<String> remoteUsers = readPresence();
+        if (remoteUsers == null) {
+            return localUsers;
+        }
+        localUsers.addAll(remoteUsers);
+        return localUsers.stream()
+            .filter(clusterMembership::owns)
+            .collect(Collectors.toSet());
+    }
+
+    private Set<String> readPresence() {
+        try {
+            long since = System.currentTimeMillis() - presenceTtl.toMillis();
+            Set<String> users = redisTemplate.opsForZSet().rangeByScore(PRESENCE_KEY, since, Double.MAX_VALUE);
+            return users != null ? users : Set.of();
+        } catch (Exception e) {
+            logger.warn("Failed to read cluster presence, using local sessions: {}", e.getMessage());
+            return null;
+        }
+    }
+}
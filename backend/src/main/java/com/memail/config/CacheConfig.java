@@ -1,83 +1,111 @@
 package com.memail.config;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.memail.cache.MailCacheCodec;
+import com.memail.cache.MailCacheProperties;
+import com.memail.cache.TieredCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Cache Configuration
- * Uses Redis for distributed caching across multiple instances
- * Falls back to Caffeine for local-only deployment
+ * Every cache is a Caffeine near-cache on this node in front of Redis, which is shared
+ * across instances; with CACHE_TYPE=caffeine, or without Redis, only the local tier is used.
+ * Sizes, expiry and refresh are set per cache, see MailCacheProperties
  */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(MailCacheProperties.class)
 public class CacheConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(CacheConfig.class);
 
+    private static final List<String> CACHE_NAMES = List.of(
+        "emailHeaders",      // Cache for email list pages
+        "emailDetails",      // Cache for full email details
+        "conversations",     // Cache for conversation list pages
+        "folderCounts",      // Cache for folder unread counts
+        "userPreferences",   // Cache for user preferences
+        "labels"             // Cache for labels
+    );
+
+    @Value("${spring.cache.type:redis}")
+    private String cacheType;
+
+    @Autowired
+    private MailCacheProperties cacheProperties;
+
+    @Bean
+    public CacheManager cacheManager(ObjectProvider<RedisConnectionFactory> connectionFactory,
+                                     MeterRegistry meterRegistry) {
+        RedisConnectionFactory factory = "redis".equalsIgnoreCase(cacheType) ? connectionFactory.getIfAvailable() : null;
+        RedisCacheManager remote = null;
+        if (factory != null) {
+            logger.info("Using Caffeine near-caches in front of the Redis cache");
+            remote = redisCacheManager(factory);
+        } else {
+            logger.warn("Redis not available - using Caffeine in-memory cache (not distributed)");
+        }
+        return new TieredCacheManager(CACHE_NAMES, cacheProperties, remote, meterRegistry);
+    }
+
     /**
-     * Redis-based distributed cache manager (PRIMARY - for production)
-     * Enables cache sharing across multiple application instances
-     * Only created if RedisConnectionFactory is available
+     * Shared tier; mail objects use the compact binary codec unless the codec is set to json,
+     * everything else is JSON with its Java type, dates as ISO strings
      */
-    @Bean
-    @Primary
-    @ConditionalOnBean(RedisConnectionFactory.class)
-    public CacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
-        logger.info("Using Redis-based distributed cache manager");
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+            ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer(objectMapper);
+        MailCacheProperties.Remote remote = cacheProperties.getRemote();
+        RedisSerializer<Object> values = "json".equalsIgnoreCase(remote.getCodec())
+            ? json
+            : new MailCacheCodec(json, (int) remote.getCompressionThreshold().toBytes());
+
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-            .entryTtl(Duration.ofMinutes(5))  // 5 minute TTL
+            .entryTtl(remote.getTtl())
             .disableCachingNullValues()
-            .serializeValuesWith(
-                RedisSerializationContext.SerializationPair.fromSerializer(
-                    new GenericJackson2JsonRedisSerializer()
-                )
-            );
+            .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(values));
+        Map<String, RedisCacheConfiguration> configs = new HashMap<>();
+        for (String name : CACHE_NAMES) {
+            configs.put(name, config.entryTtl(cacheProperties.remotePolicy(name).getTtl()));
+        }
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
             .cacheDefaults(config)
+            .withInitialCacheConfigurations(configs)
             .transactionAware()
             .build();
-    }
-
-    /**
-     * Caffeine-based local cache manager (FALLBACK - for development)
-     * Used when Redis is not available
-     */
-    @Bean
-    @ConditionalOnMissingBean(RedisConnectionFactory.class)
-    public CacheManager caffeineCacheManager() {
-        logger.warn("Redis not available - using Caffeine in-memory cache (not distributed)");
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager(
-            "emailHeaders",      // Cache for email list headers
-            "emailDetails",      // Cache for full email details
-            "conversations",     // Cache for conversation threads
-            "folderCounts",      // Cache for folder message counts
-            "userPreferences",   // Cache for user preferences
-            "labels"             // Cache for labels
-        );
-
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-            .maximumSize(1000)                    // Max 1000 entries per cache
-            .expireAfterWrite(5, TimeUnit.MINUTES) // Expire after 5 minutes
-            .recordStats());                       // Enable statistics
-
+        cacheManager.initializeCaches();
         return cacheManager;
     }
 }
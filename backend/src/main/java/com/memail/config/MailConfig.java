@@ -1,11 +1,14 @@
 package com.memail.config;
 
+import com.memail.smtp.PooledJavaMailSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import java.time.Duration;
 import java.util.Properties;
 
 /**
@@ -15,6 +18,9 @@ import java.util.Properties;
  * to send emails on behalf of all users. The application authenticates with
  * SMTP using its own credentials (from application.properties), eliminating
  * the need to store or transmit individual user passwords.
+ *
+ * Because every send uses the same credentials, authenticated SMTP connections are
+ * pooled and shared by all users' sends.
  */
 @Configuration
 public class MailConfig {
@@ -49,6 +55,33 @@ public class MailConfig {
     @Value("${spring.mail.properties.mail.smtp.writetimeout:5000}")
     private int writeTimeout;
 
+    @Value("${mail.smtp.pool.max-total:8}")
+    private int poolMaxTotal;
+
+    @Value("${mail.smtp.pool.max-idle:4}")
+    private int poolMaxIdle;
+
+    @Value("${mail.smtp.pool.max-wait:10s}")
+    private Duration poolMaxWait;
+
+    // Servers drop idle sessions (James after 5 minutes), so idle connections are closed first
+    @Value("${mail.smtp.pool.min-evictable-idle:60s}")
+    private Duration poolMinEvictableIdle;
+
+    @Value("${mail.smtp.pool.eviction-interval:30s}")
+    private Duration poolEvictionInterval;
+
+    // Connections idle for less than this are reused without a NOOP
+    @Value("${mail.smtp.pool.validation-interval:10s}")
+    private Duration poolValidationInterval;
+
+    // Many servers limit the messages per session
+    @Value("${mail.smtp.pool.max-sends-per-connection:100}")
+    private int poolMaxSendsPerConnection;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * Configure JavaMailSender with application's SMTP credentials
      *
@@ -56,9 +89,16 @@ public class MailConfig {
      * configured in application.properties. User passwords are never used
      * for SMTP authentication, improving security significantly.
      */
-    @Bean
+    @Bean(destroyMethod = "close")
     public JavaMailSender javaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(new PooledJavaMailSender.Settings()
+            .maxTotal(poolMaxTotal)
+            .maxIdle(poolMaxIdle)
+            .maxWait(poolMaxWait)
+            .minEvictableIdle(poolMinEvictableIdle)
+            .evictionInterval(poolEvictionInterval)
+            .validationInterval(poolValidationInterval)
+            .maxSendsPerConnection(poolMaxSendsPerConnection), meterRegistry);
 
         // Basic SMTP configuration
         mailSender.setHost(host);
@@ -82,6 +122,9 @@ public class MailConfig {
         props.put("mail.smtp.auth.plain.disable", "false");
         props.put("mail.smtp.auth.login.disable", "false");
 
+        // Pooled connections are closed in the background; don't wait for the QUIT reply
+        props.put("mail.smtp.quitwait", "false");
+
         // Enable debug mode for troubleshooting (can be disabled in production)
         props.put("mail.debug", "true");
 
@@ -91,6 +134,7 @@ public class MailConfig {
         System.out.println("STARTTLS Enabled: " + starttlsEnable);
         System.out.println("Authentication Required: " + auth);
 
+        mailSender.start();
         return mailSender;
     }
 }
\ No newline at end of file
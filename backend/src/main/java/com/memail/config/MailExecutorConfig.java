@@ -0,0 +1,38 @@
+package com.memail.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for request-time IMAP fan-out
+ *
+ * Work that touches several folders for one request (opening a conversation, searching
+ * across folders) runs one task per folder here, each on its own pooled connection.
+ * Per-user concurrency is still capped by the IMAP connection pool.
+ */
+@Configuration
+public class MailExecutorConfig {
+
+    @Value("${memail.fetch.threads:16}")
+    private int threads;
+
+    @Bean(name = "mailFetchExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService mailFetchExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "mail-fetch-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -8,17 +8,33 @@ import com.memail.dto.ConversationDTO;
 import com.memail.dto.EmailActionRequest;
 import com.ashulabs.memail.dto.DraftEmailDTO;
 import com.ashulabs.memail.dto.ReplyRequestDTO;
+import com.memail.model.OutboundMessage;
+import com.memail.service.AttachmentService;
+import com.memail.service.AttachmentUploadService;
 import com.memail.service.MailService;
+import com.memail.service.OutboundMailService;
 import com.memail.service.ContactService;
+import com.memail.service.SearchIndexService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/emails")
@@ -31,20 +47,37 @@ public class EmailController {
     @Autowired
     private ContactService contactService;
 
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private AttachmentUploadService attachmentUploadService;
+
+    @Autowired
+    private OutboundMailService outboundMailService;
+
     /**
      * Get emails from specified folder with pagination
+     * Pass the nextCursor of the previous response to get a stable next page
      */
     @GetMapping
     public ResponseEntity<?> getEmails(
             @RequestParam(defaultValue = "INBOX") String folder,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int size,
             Authentication authentication) {
 
         try {
             String email = (String) authentication.getPrincipal();
-            EmailListResponse emails = mailService.getEmails(email, folder, page, size);
+            EmailListResponse emails = mailService.getEmails(email, folder, cursor, page, size);
             return ResponseEntity.ok(emails);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400)
+                .body(Map.of(
+                    "error", "Bad request",
+                    "message", e.getMessage()
+                ));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                 .body(Map.of(
@@ -86,6 +119,23 @@ public class EmailController {
         }
     }
 
+    /**
+     * Get unread message counts per folder
+     */
+    @GetMapping("/folders/counts")
+    public ResponseEntity<?> getUnreadCounts(Authentication authentication) {
+        try {
+            String email = (String) authentication.getPrincipal();
+            return ResponseEntity.ok(Map.of("unread", mailService.getUnreadCounts(email)));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                .body(Map.of(
+                    "error", "Server error",
+                    "message", "Unable to fetch unread counts: " + e.getMessage()
+                ));
+        }
+    }
+
     /**
      * Health check endpoint for testing
      */
@@ -124,19 +174,22 @@ public class EmailController {
 
     /**
      * Search emails endpoint
-     * GET /api/emails/search?q=from:user@example.com subject:report
+     * GET /api/emails/search?q=from:user@example.com subject:report&sort=relevance
+     * folder=ALL (or in:anywhere in the query) searches every folder
      */
     @GetMapping("/search")
     public ResponseEntity<?> searchEmails(
             @RequestParam(value = "q", required = false, defaultValue = "") String query,
             @RequestParam(value = "folder", required = false, defaultValue = "INBOX") String folder,
+            @RequestParam(value = "sort", required = false, defaultValue = "date") String sort,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "50") int size,
             Authentication authentication) {
 
         try {
             String email = (String) authentication.getPrincipal();
-            EmailListResponse emails = mailService.searchEmails(email, query, folder, page, size);
+            EmailListResponse emails = mailService.searchEmails(email, query, folder,
+                SearchIndexService.Sort.parse(sort), page, size);
             return ResponseEntity.ok(emails);
         } catch (Exception e) {
             return ResponseEntity.status(500)
@@ -149,6 +202,8 @@ public class EmailController {
 
     /**
      * Send email endpoint
+     * Answers 202 once the message is queued; delivery is reported over the WebSocket
+     * (EMAIL_SENT / EMAIL_SEND_FAILED) and by GET /emails/outbox/{id}
      */
     @PostMapping("/send")
     public ResponseEntity<?> sendEmail(
@@ -158,6 +213,7 @@ public class EmailController {
             @RequestParam("subject") String subject,
             @RequestParam("htmlContent") String htmlContent,
             @RequestParam(value = "attachments", required = false) MultipartFile[] attachments,
+            @RequestParam(value = "attachmentIds", required = false) List<String> attachmentIds,
             Authentication authentication) {
 
         try {
@@ -171,25 +227,13 @@ public class EmailController {
             sendRequest.setSubject(subject);
             sendRequest.setHtmlContent(htmlContent);
 
-            // Process attachments if present
-            if (attachments != null && attachments.length > 0) {
-                List<FileAttachmentDTO> attachmentList = new ArrayList<>();
-                for (MultipartFile file : attachments) {
-                    if (!file.isEmpty()) {
-                        FileAttachmentDTO attachment = new FileAttachmentDTO();
-                        attachment.setFileName(file.getOriginalFilename());
-                        attachment.setContentType(file.getContentType());
-                        attachment.setContent(file.getBytes());
-                        attachmentList.add(attachment);
-                    }
-                }
-                sendRequest.setAttachments(attachmentList);
-            }
+            // Attachments are spooled to disk and referenced by upload handle
+            sendRequest.setAttachments(collectAttachments(username, attachments, attachmentIds));
 
             // Send the email using the application's secure SMTP credentials
             // The user's email is used as the "From" address, but authentication
             // is handled by the application's centralized credentials
-            mailService.sendEmail(username, sendRequest);
+            OutboundMessage queued = mailService.sendEmail(username, sendRequest);
 
             // Record contact interactions for autocomplete suggestions
             try {
@@ -199,12 +243,21 @@ public class EmailController {
                 System.err.println("Failed to record contact interactions: " + contactException.getMessage());
             }
 
-            return ResponseEntity.ok(Map.of(
-                "message", "Email sent successfully",
+            return ResponseEntity.accepted().body(Map.of(
+                "message", "Email queued for delivery",
+                "id", queued.getId(),
+                "messageId", queued.getMessageId() != null ? queued.getMessageId() : "",
+                "status", queued.getStatus().name(),
                 "to", to,
                 "subject", subject
             ));
 
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(400)
+                .body(Map.of(
+                    "error", "Invalid attachment",
+                    "message", e.getMessage()
+                ));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                 .body(Map.of(
@@ -214,6 +267,36 @@ public class EmailController {
         }
     }
 
+    /**
+     * Delivery status of a queued email
+     */
+    @GetMapping("/outbox/{id}")
+    public ResponseEntity<?> getOutboundStatus(
+            @PathVariable Long id,
+            Authentication authentication) {
+
+        String email = (String) authentication.getPrincipal();
+        Optional<OutboundMessage> queued = outboundMailService.getStatus(email, id);
+        if (queued.isEmpty()) {
+            return ResponseEntity.status(404)
+                .body(Map.of(
+                    "error", "Not found",
+                    "message", "Queued email " + id + " not found"
+                ));
+        }
+        OutboundMessage message = queued.get();
+        Map<String, Object> status = new HashMap<>();
+        status.put("id", message.getId());
+        status.put("messageId", message.getMessageId());
+        status.put("subject", message.getSubject());
+        status.put("status", message.getStatus().name());
+        status.put("attempts", message.getAttempts());
+        status.put("nextAttemptAt", message.getNextAttemptAt());
+        status.put("sentAt", message.getSentAt());
+        status.put("lastError", message.getLastError());
+        return ResponseEntity.ok(status);
+    }
+
     /**
      * Get conversations from specified folder with pagination
      */
@@ -258,6 +341,164 @@ public class EmailController {
         }
     }
 
+    /**
+     * Download one attachment, streamed from IMAP
+     * GET /api/emails/messages/INBOX/1234/attachments/2
+     * Supports a single Range (bytes=start-end) for resumable downloads
+     */
+    @GetMapping("/messages/{folder}/{uid}/attachments/{partId}")
+    public ResponseEntity<?> downloadAttachment(
+            @PathVariable String folder,
+            @PathVariable long uid,
+            @PathVariable String partId,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            Authentication authentication,
+            HttpServletResponse response) {
+
+        try {
+            String email = (String) authentication.getPrincipal();
+            attachmentService.download(email, folder, uid, partId,
+                attachment -> writeAttachment(attachment, range, response));
+            // The body has been written to the response
+            return null;
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404)
+                .body(Map.of(
+                    "error", "Not found",
+                    "message", e.getMessage()
+                ));
+        } catch (Exception e) {
+            if (response.isCommitted()) {
+                // Client went away or IMAP failed mid-transfer; nothing more can be sent
+                return null;
+            }
+            response.reset();
+            return ResponseEntity.status(500)
+                .body(Map.of(
+                    "error", "Server error",
+                    "message", "Unable to download attachment: " + e.getMessage()
+                ));
+        }
+    }
+
+    private void writeAttachment(AttachmentService.Attachment attachment, String range,
+                                 HttpServletResponse response) throws IOException {
+        long size = attachment.getSize();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+
+        // Ranges are honoured only when the decoded size is known; otherwise the whole part is sent
+        if (range != null && attachment.isSeekable()) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                    partial = true;
+                } catch (IllegalArgumentException e) {
+                    response.setStatus(416);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    return;
+                }
+            }
+        }
+
+        response.setStatus(partial ? 206 : 200);
+        response.setContentType(attachment.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+        if (attachment.isSeekable()) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setContentLengthLong(end - start + 1);
+        }
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+
+        long remaining = attachment.isSeekable() ? end - start + 1 : Long.MAX_VALUE;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = attachment.open(start)) {
+            OutputStream out = response.getOutputStream();
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Upload attachments for a later send or draft
+     * POST /api/emails/attachments (multipart "files")
+     * Returns one handle per file; pass the uploadIds as attachmentIds to /send or /draft
+     */
+    @PostMapping("/attachments")
+    public ResponseEntity<?> uploadAttachments(
+            @RequestParam("files") MultipartFile[] files,
+            Authentication authentication) {
+
+        try {
+            String email = (String) authentication.getPrincipal();
+            List<FileAttachmentDTO> handles = new ArrayList<>();
+            for (MultipartFile file : files) {
+                if (!file.isEmpty()) {
+                    handles.add(attachmentUploadService.store(email, file));
+                }
+            }
+            return ResponseEntity.ok(Map.of("attachments", handles));
+        } catch (Exception e) {
+            return ResponseEntity.status(500)
+                .body(Map.of(
+                    "error", "Failed to upload attachments",
+                    "message", e.getMessage()
+                ));
+        }
+    }
+
+    /**
+     * Discard an uploaded attachment that will not be sent
+     */
+    @DeleteMapping("/attachments/{uploadId}")
+    public ResponseEntity<?> deleteUploadedAttachment(
+            @PathVariable String uploadId,
+            Authentication authentication) {
+
+        String email = (String) authentication.getPrincipal();
+        attachmentUploadService.release(email, uploadId);
+        return ResponseEntity.ok(Map.of(
+            "message", "Attachment removed",
+            "uploadId", uploadId
+        ));
+    }
+
+    /**
+     * Handles for the files of a multipart send plus previously uploaded ones; null if there are none
+     */
+    private List<FileAttachmentDTO> collectAttachments(String email, MultipartFile[] files,
+                                                       List<String> uploadIds) throws IOException {
+        List<FileAttachmentDTO> attachmentList = new ArrayList<>();
+        if (uploadIds != null) {
+            for (String uploadId : uploadIds) {
+                attachmentList.add(attachmentUploadService.get(email, uploadId));
+            }
+        }
+        if (files != null) {
+            for (MultipartFile file : files) {
+                if (!file.isEmpty()) {
+                    attachmentList.add(attachmentUploadService.store(email, file));
+                }
+            }
+        }
+        return attachmentList.isEmpty() ? null : attachmentList;
+    }
+
     /**
      * Save draft email endpoint
      */
@@ -269,6 +510,7 @@ public class EmailController {
             @RequestParam("subject") String subject,
             @RequestParam("htmlContent") String htmlContent,
             @RequestParam(value = "attachments", required = false) MultipartFile[] attachments,
+            @RequestParam(value = "attachmentIds", required = false) List<String> attachmentIds,
             Authentication authentication) {
 
         try {
@@ -282,20 +524,8 @@ public class EmailController {
             draftRequest.setSubject(subject);
             draftRequest.setHtmlContent(htmlContent);
 
-            // Process attachments if present
-            if (attachments != null && attachments.length > 0) {
-                List<FileAttachmentDTO> attachmentList = new ArrayList<>();
-                for (MultipartFile file : attachments) {
-                    if (!file.isEmpty()) {
-                        FileAttachmentDTO attachment = new FileAttachmentDTO();
-                        attachment.setFileName(file.getOriginalFilename());
-                        attachment.setContentType(file.getContentType());
-                        attachment.setContent(file.getBytes());
-                        attachmentList.add(attachment);
-                    }
-                }
-                draftRequest.setAttachments(attachmentList);
-            }
+            // Attachments are spooled to disk and referenced by upload handle
+            draftRequest.setAttachments(collectAttachments(username, attachments, attachmentIds));
 
             // Save the draft and get the message ID
             String messageId = mailService.saveDraft(username, draftRequest);
@@ -307,6 +537,12 @@ public class EmailController {
                 "subject", subject
             ));
 
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(400)
+                .body(Map.of(
+                    "error", "Invalid attachment",
+                    "message", e.getMessage()
+                ));
         } catch (Exception e) {
             return ResponseEntity.status(500)
                 .body(Map.of(
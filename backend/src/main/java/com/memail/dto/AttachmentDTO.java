@@ -0,0 +1,55 @@
+package com.memail.dto;
+
+/**
+ * Metadata of one attachment, taken from BODYSTRUCTURE without downloading it
+ */
+public class AttachmentDTO {
+
+    private String partId;
+    private String fileName;
+    private String contentType;
+    private long size;
+
+    // Constructors
+    public AttachmentDTO() {}
+
+    public AttachmentDTO(String partId, String fileName, String contentType, long size) {
+        this.partId = partId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public String getPartId() {
+        return partId;
+    }
+
+    public void setPartId(String partId) {
+        this.partId = partId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -1,5 +1,8 @@
 package com.memail.dto;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class EmailDetailDTO extends EmailHeaderDTO {
     private String htmlContent;
     private String textContent;
@@ -8,12 +11,27 @@ public class EmailDetailDTO extends EmailHeaderDTO {
     private String bcc;
     private String inReplyTo;
     private String references;
+    private boolean contentTruncated;
+    private List<AttachmentDTO> attachments;
 
     // Constructors
     public EmailDetailDTO() {
         super();
     }
 
+    public EmailDetailDTO(EmailDetailDTO other) {
+        super(other);
+        this.htmlContent = other.htmlContent;
+        this.textContent = other.textContent;
+        this.to = other.to;
+        this.cc = other.cc;
+        this.bcc = other.bcc;
+        this.inReplyTo = other.inReplyTo;
+        this.references = other.references;
+        this.contentTruncated = other.contentTruncated;
+        this.attachments = other.attachments != null ? new ArrayList<>(other.attachments) : null;
+    }
+
     // Getters and Setters
     public String getHtmlContent() {
         return htmlContent;
@@ -70,4 +88,20 @@ public class EmailDetailDTO extends EmailHeaderDTO {
     public void setReferences(String references) {
         this.references = references;
     }
-}
\ No newline at end of file
+
+    public boolean isContentTruncated() {
+        return contentTruncated;
+    }
+
+    public void setContentTruncated(boolean contentTruncated) {
+        this.contentTruncated = contentTruncated;
+    }
+
+    public List<AttachmentDTO> getAttachments() {
+        return attachments;
+    }
+
+    public void setAttachments(List<AttachmentDTO> attachments) {
+        this.attachments = attachments;
+    }
+}
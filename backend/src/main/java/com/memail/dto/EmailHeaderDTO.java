@@ -5,6 +5,7 @@ import java.time.LocalDateTime;
 public class EmailHeaderDTO {
 
     private String messageId;
+    private long uid;
     private String from;
     private String subject;
     private LocalDateTime date;
@@ -14,6 +15,8 @@ public class EmailHeaderDTO {
     private String threadId;
     private String inReplyTo;
     private String references;
+    private String folder;
+    private int attachmentCount;
 
     // Constructors
     public EmailHeaderDTO() {}
@@ -26,6 +29,22 @@ public class EmailHeaderDTO {
         this.unread = unread;
     }
 
+    public EmailHeaderDTO(EmailHeaderDTO other) {
+        this.messageId = other.messageId;
+        this.uid = other.uid;
+        this.from = other.from;
+        this.subject = other.subject;
+        this.date = other.date;
+        this.unread = other.unread;
+        this.hasAttachments = other.hasAttachments;
+        this.preview = other.preview;
+        this.threadId = other.threadId;
+        this.inReplyTo = other.inReplyTo;
+        this.references = other.references;
+        this.folder = other.folder;
+        this.attachmentCount = other.attachmentCount;
+    }
+
     // Getters and Setters
     public String getMessageId() {
         return messageId;
@@ -35,6 +54,14 @@ public class EmailHeaderDTO {
         this.messageId = messageId;
     }
 
+    public long getUid() {
+        return uid;
+    }
+
+    public void setUid(long uid) {
+        this.uid = uid;
+    }
+
     public String getFrom() {
         return from;
     }
@@ -106,4 +133,20 @@ public class EmailHeaderDTO {
     public void setReferences(String references) {
         this.references = references;
     }
-}
\ No newline at end of file
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public int getAttachmentCount() {
+        return attachmentCount;
+    }
+
+    public void setAttachmentCount(int attachmentCount) {
+        this.attachmentCount = attachmentCount;
+    }
+}
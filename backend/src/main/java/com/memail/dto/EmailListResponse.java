@@ -9,6 +9,8 @@ public class EmailListResponse {
     private int page;
     private int size;
     private boolean hasMore;
+    private String nextCursor;
+    private List<String> incompleteFolders;
 
     // Constructors
     public EmailListResponse() {}
@@ -61,4 +63,20 @@ public class EmailListResponse {
     public void setHasMore(boolean hasMore) {
         this.hasMore = hasMore;
     }
-}
\ No newline at end of file
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public List<String> getIncompleteFolders() {
+        return incompleteFolders;
+    }
+
+    public void setIncompleteFolders(List<String> incompleteFolders) {
+        this.incompleteFolders = incompleteFolders;
+    }
+}
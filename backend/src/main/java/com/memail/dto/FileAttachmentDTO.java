@@ -6,6 +6,8 @@ public class FileAttachmentDTO {
     private String contentType;
     private byte[] content;
     private long size;
+    // Handle of a spooled upload; set instead of content
+    private String uploadId;
 
     // Constructors
     public FileAttachmentDTO() {}
@@ -50,4 +52,12 @@ public class FileAttachmentDTO {
     public void setSize(long size) {
         this.size = size;
     }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.memail.imap;
+
+import com.memail.dto.AttachmentDTO;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimePart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lists the attachments of a message from its MIME structure
+ *
+ * On an IMAP message fetched with BODYSTRUCTURE (FetchProfile.Item.CONTENT_INFO) every
+ * value read here comes from that structure, so no part is downloaded. Part ids are IMAP
+ * section numbers (1, 2.1, ...) usable with BODY[section]. Inline parts referenced by
+ * Content-ID, such as images embedded in HTML, are not attachments.
+ */
+public class AttachmentScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentScanner.class);
+
+    private static final int MAX_DEPTH = 10;
+
+    private AttachmentScanner() {}
+
+    /**
+     * Attachments of a message in MIME order; empty if the structure cannot be read
+     */
+    public static List<AttachmentDTO> scan(Part message) {
+        List<AttachmentDTO> attachments = new ArrayList<>();
+        try {
+            if (message.isMimeType("multipart/*")) {
+                scanMultipart((Multipart) message.getContent(), "", attachments, 0);
+            } else if (isAttachment(message)) {
+                // A single-part message whose body is the attachment
+                attachments.add(toAttachment(message, "1"));
+            }
+        } catch (MessagingException | IOException | ClassCastException e) {
+            logger.debug("Unable to read message structure: {}", e.getMessage());
+            return Collections.emptyList();
+        }
+        return attachments;
+    }
+
+    private static void scanMultipart(Multipart multipart, String prefix, List<AttachmentDTO> attachments,
+                                      int depth) throws MessagingException, IOException {
+        if (depth > MAX_DEPTH) {
+            return;
+        }
+        for (int i = 0; i < multipart.getCount(); i++) {
+            Part part = multipart.getBodyPart(i);
+            String partId = prefix + (i + 1);
+            if (part.isMimeType("multipart/*")) {
+                scanMultipart((Multipart) part.getContent(), partId + ".", attachments, depth + 1);
+            } else if (isAttachment(part)) {
+                attachments.add(toAttachment(part, partId));
+            }
+        }
+    }
+
+    private static boolean isAttachment(Part part) throws MessagingException {
+        if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
+            return true;
+        }
+        if (part.isMimeType("message/rfc822")) {
+            return true;
+        }
+        if (part.getFileName() == null) {
+            return false;
+        }
+        // Named inline parts with a Content-ID are embedded in the HTML body
+        return !(part instanceof MimePart && ((MimePart) part).getContentID() != null
+            && !Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()));
+    }
+
+    private static AttachmentDTO toAttachment(Part part, String partId) throws MessagingException {
+        String fileName = part.getFileName();
+        if (fileName == null) {
+            fileName = part.isMimeType("message/rfc822") ? "message.eml" : "attachment";
+        }
+        return new AttachmentDTO(partId, fileName, baseType(part.getContentType()), decodedSize(part));
+    }
+
+    private static String baseType(String contentType) {
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        try {
+            return new ContentType(contentType).getBaseType().toLowerCase();
+        } catch (Exception e) {
+            int semicolon = contentType.indexOf(';');
+            return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+        }
+    }
+
+    /**
+     * Size of the part after transfer decoding, estimated from the encoded size
+     */
+    private static long decodedSize(Part part) throws MessagingException {
+        long size = Math.max(0, part.getSize());
+        String encoding = part instanceof MimePart ? ((MimePart) part).getEncoding() : null;
+        return "base64".equalsIgnoreCase(encoding) ? size * 3 / 4 : size;
+    }
+}
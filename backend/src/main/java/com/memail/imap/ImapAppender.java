@@ -0,0 +1,253 @@
+package com.memail.imap;
+
+import jakarta.mail.Flags;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.Literal;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.BASE64MailboxEncoder;
+import org.eclipse.angus.mail.imap.protocol.IMAPProtocol;
+import org.eclipse.angus.mail.imap.protocol.INTERNALDATE;
+import org.eclipse.angus.mail.imap.protocol.UIDSet;
+import org.eclipse.angus.mail.util.CRLFOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * APPEND of several messages in as few commands as the server allows
+ *
+ * With MULTIAPPEND (RFC 3502) a batch is one command carrying every message as a literal,
+ * so the batch costs one round trip plus one continuation per literal, none with LITERAL+.
+ * Without it each message is its own APPEND. The folder does not need to be selected.
+ * With UIDPLUS the APPENDUID response code gives the UID of every appended message, so
+ * callers can index them without fetching the folder again. Messages are streamed twice,
+ * once to measure the literal and once to send it, and never buffered whole.
+ */
+public final class ImapAppender {
+
+    // Messages per MULTIAPPEND command
+    private static final int MAX_BATCH = 50;
+
+    private static final Pattern APPENDUID = Pattern.compile(
+        "\\[APPENDUID\\s+(\\d+)\\s+([0-9:,]+)\\]", Pattern.CASE_INSENSITIVE);
+
+    private ImapAppender() {
+    }
+
+    /**
+     * One appended message; uid is -1 when the server did not report it
+     */
+    public static final class Appended {
+        private final Message message;
+        private final Date internalDate;
+        private final int size;
+        private long uid = -1;
+        private long uidValidity = -1;
+
+        Appended(Message message, Date internalDate, int size) {
+            this.message = message;
+            this.internalDate = internalDate;
+            this.size = size;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        public Date getInternalDate() {
+            return internalDate;
+        }
+
+        /**
+         * Size in bytes as stored by the server (RFC822.SIZE)
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public long getUid() {
+            return uid;
+        }
+
+        public long getUidValidity() {
+            return uidValidity;
+        }
+    }
+
+    /**
+     * Append messages with the given flags, in order
+     */
+    public static List<Appended> append(IMAPFolder folder, List<? extends Message> messages, Flags flags)
+            throws MessagingException {
+        IMAPStore store = (IMAPStore) folder.getStore();
+        boolean multiAppend = store.hasCapability("MULTIAPPEND");
+        int batchSize = multiAppend ? MAX_BATCH : 1;
+
+        List<Appended> appended = new ArrayList<>(messages.size());
+        for (int from = 0; from < messages.size(); from += batchSize) {
+            List<? extends Message> batch = messages.subList(from, Math.min(from + batchSize, messages.size()));
+            appended.addAll(appendBatch(folder, batch, flags));
+        }
+        return appended;
+    }
+
+    private static List<Appended> appendBatch(IMAPFolder folder, List<? extends Message> batch, Flags flags)
+            throws MessagingException {
+        List<Appended> appended = new ArrayList<>(batch.size());
+        List<MessageLiteral> literals = new ArrayList<>(batch.size());
+        for (Message message : batch) {
+            Date date = message.getReceivedDate() != null ? message.getReceivedDate() : message.getSentDate();
+            if (date == null) {
+                date = new Date();
+            }
+            MessageLiteral literal = new MessageLiteral(message);
+            literals.add(literal);
+            appended.add(new Appended(message, date, literal.size()));
+        }
+
+        String flagList = flagList(flags);
+        Response result = (Response) folder.doCommand(protocol -> {
+            Argument args = new Argument();
+            writeMailbox(args, protocol, folder.getFullName());
+            for (int i = 0; i < appended.size(); i++) {
+                if (flagList != null) {
+                    args.writeAtom(flagList);
+                }
+                args.writeString(INTERNALDATE.format(appended.get(i).internalDate));
+                args.writeBytes(literals.get(i));
+            }
+            Response[] responses = protocol.command("APPEND", args);
+            protocol.notifyResponseHandlers(responses);
+            Response last = responses[responses.length - 1];
+            protocol.handleResult(last);
+            return last;
+        });
+
+        assignUids(result, appended);
+        return appended;
+    }
+
+    /**
+     * Fill in UIDs from an APPENDUID response code, if the server sent a usable one
+     */
+    static void assignUids(Response result, List<Appended> appended) {
+        if (result == null) {
+            return;
+        }
+        Matcher matcher = APPENDUID.matcher(result.toString());
+        if (!matcher.find()) {
+            return;
+        }
+        long uidValidity = Long.parseLong(matcher.group(1));
+        long[] uids = UIDSet.toArray(UIDSet.parseUIDSets(matcher.group(2)));
+        if (uids == null || uids.length != appended.size()) {
+            return;
+        }
+        for (int i = 0; i < uids.length; i++) {
+            appended.get(i).uid = uids[i];
+            appended.get(i).uidValidity = uidValidity;
+        }
+    }
+
+    private static void writeMailbox(Argument args, IMAPProtocol protocol, String fullName) {
+        if (protocol.supportsUtf8()) {
+            args.writeString(fullName, StandardCharsets.UTF_8);
+        } else {
+            args.writeString(BASE64MailboxEncoder.encode(fullName));
+        }
+    }
+
+    /**
+     * Parenthesized flag list for APPEND, or null for none
+     */
+    static String flagList(Flags flags) {
+        if (flags == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        for (Flags.Flag flag : flags.getSystemFlags()) {
+            if (flag == Flags.Flag.SEEN) {
+                names.add("\\Seen");
+            } else if (flag == Flags.Flag.ANSWERED) {
+                names.add("\\Answered");
+            } else if (flag == Flags.Flag.FLAGGED) {
+                names.add("\\Flagged");
+            } else if (flag == Flags.Flag.DRAFT) {
+                names.add("\\Draft");
+            } else if (flag == Flags.Flag.DELETED) {
+                names.add("\\Deleted");
+            }
+            // \Recent cannot be set by a client
+        }
+        for (String keyword : flags.getUserFlags()) {
+            names.add(keyword);
+        }
+        return names.isEmpty() ? null : "(" + String.join(" ", names) + ")";
+    }
+
+    /**
+     * A message as an IMAP literal with CRLF line endings, measured before it is sent
+     */
+    static final class MessageLiteral implements Literal {
+        private final Message message;
+        private final int size;
+
+        MessageLiteral(Message message) throws MessagingException {
+            this.message = message;
+            CountingOutputStream counter = new CountingOutputStream();
+            try {
+                write(counter);
+            } catch (IOException e) {
+                throw new MessagingException("Unable to measure message: " + e.getMessage(), e);
+            }
+            if (counter.count > Integer.MAX_VALUE) {
+                throw new MessagingException("Message too large to append");
+            }
+            this.size = (int) counter.count;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            write(out);
+        }
+
+        private void write(OutputStream out) throws IOException {
+            OutputStream crlf = new CRLFOutputStream(out);
+            try {
+                message.writeTo(crlf);
+            } catch (MessagingException e) {
+                throw new IOException("Unable to write message: " + e.getMessage(), e);
+            }
+            crlf.flush();
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.memail.imap;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.event.ConnectionAdapter;
+import jakarta.mail.event.ConnectionEvent;
+
+import java.util.Set;
+
+/**
+ * A connected IMAP store leased from {@link ImapConnectionManager}
+ * Must be closed (try-with-resources) so the store goes back to the user's pool
+ */
+public class ImapConnection implements AutoCloseable {
+
+    private final String userEmail;
+    private final Store store;
+    private final long createdAt;
+    private final ImapFolderCache folderCache;
+
+    private ImapConnectionManager owner;
+    private volatile boolean broken;
+
+    ImapConnection(String userEmail, Store store, Set<String> hotFolders) {
+        this.userEmail = userEmail;
+        this.store = store;
+        this.createdAt = System.currentTimeMillis();
+        this.folderCache = new ImapFolderCache(store, hotFolders);
+
+        // James dropping the socket (BYE, timeout) marks the store so it is not leased again
+        store.addConnectionListener(new ConnectionAdapter() {
+            @Override
+            public void disconnected(ConnectionEvent e) {
+                broken = true;
+            }
+
+            @Override
+            public void closed(ConnectionEvent e) {
+                broken = true;
+            }
+        });
+    }
+
+    public String getUserEmail() {
+        return userEmail;
+    }
+
+    public Store getStore() {
+        return store;
+    }
+
+    /**
+     * Folder handles that survive across leases of this connection
+     */
+    public ImapFolderCache getFolderCache() {
+        return folderCache;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Mark this connection as unusable so it is destroyed instead of returned to the pool
+     */
+    public void markBroken() {
+        this.broken = true;
+    }
+
+    void lease(ImapConnectionManager owner) {
+        this.owner = owner;
+    }
+
+    void disconnect() {
+        folderCache.closeAll();
+        try {
+            store.close();
+        } catch (MessagingException e) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    /**
+     * Return the connection to its pool
+     */
+    @Override
+    public void close() {
+        ImapConnectionManager manager = owner;
+        owner = null;
+        if (manager != null) {
+            manager.release(this);
+        }
+    }
+}
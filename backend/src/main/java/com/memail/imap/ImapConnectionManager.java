@@ -0,0 +1,350 @@
+package com.memail.imap;
+
+import com.memail.model.UserCredentials;
+import com.memail.repository.UserCredentialsRepository;
+import com.memail.util.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-user pools of connected IMAP stores
+ *
+ * Replaces the single shared Store per user. Every request leases its own connected
+ * store, so concurrent requests from one user no longer serialize on one connection,
+ * and the global cap keeps the number of sockets open against James bounded.
+ * Reconnects are single-flight per user and back off after a failed attempt.
+ *
+ * The limits are socket budgets: a pooled connection holds the store socket, one
+ * kept-open hot folder and the folder of the request that leased it, so the pool
+ * admits budget / 3 connections (budget / 2 with no hot folders configured).
+ */
+@Component
+public class ImapConnectionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapConnectionManager.class);
+
+    @Autowired
+    private ImapStoreFactory imapStoreFactory;
+
+    @Autowired
+    private UserCredentialsRepository userCredentialsRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Sockets, not connections; see socketsPerConnection()
+    @Value("${mail.imap.pool.max-sockets-per-user:9}")
+    private int maxSocketsPerUser;
+
+    @Value("${mail.imap.pool.max-idle-per-user:2}")
+    private int maxIdlePerUser;
+
+    @Value("${mail.imap.pool.max-sockets-total:1500}")
+    private int maxSocketsTotal;
+
+    @Value("${mail.imap.pool.max-wait:10s}")
+    private Duration maxWait;
+
+    @Value("${mail.imap.pool.min-evictable-idle:5m}")
+    private Duration minEvictableIdle;
+
+    @Value("${mail.imap.pool.eviction-interval:1m}")
+    private Duration evictionInterval;
+
+    @Value("${mail.imap.pool.validation-interval:30s}")
+    private Duration validationInterval;
+
+    @Value("${mail.imap.pool.reconnect-backoff:5s}")
+    private Duration reconnectBackoff;
+
+    @Value("${mail.imap.folder-cache.hot-folders:INBOX,SENT}")
+    private Set<String> hotFolders;
+
+    private GenericKeyedObjectPool<String, ImapConnection> pool;
+    private int maxPerUser;
+
+    // Stores authenticated during login, handed to the pool instead of logging in twice
+    private final Map<String, Store> seededStores = new ConcurrentHashMap<>();
+
+    // Single-flight reconnect state per user
+    private final Map<String, ReentrantLock> connectLocks = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastConnectFailure = new ConcurrentHashMap<>();
+
+    // Connections created before this timestamp are discarded (logout, password change)
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter connectFailureCounter;
+    private Timer waitTimer;
+
+    @PostConstruct
+    public void init() {
+        hotFolders = hotFolders.stream().map(String::toUpperCase).collect(Collectors.toUnmodifiableSet());
+        int socketsPerConnection = socketsPerConnection(hotFolders);
+        maxPerUser = Math.max(1, maxSocketsPerUser / socketsPerConnection);
+        int maxTotal = Math.max(maxPerUser, maxSocketsTotal / socketsPerConnection);
+
+        GenericKeyedObjectPoolConfig<ImapConnection> config = new GenericKeyedObjectPoolConfig<>();
+        config.setMaxTotalPerKey(maxPerUser);
+        config.setMaxIdlePerKey(Math.min(maxIdlePerUser, maxPerUser));
+        config.setMinIdlePerKey(0);
+        config.setMaxTotal(maxTotal);
+        config.setMaxWait(maxWait);
+        config.setBlockWhenExhausted(true);
+        config.setTestOnBorrow(true);
+        config.setTestWhileIdle(true);
+        config.setMinEvictableIdleDuration(minEvictableIdle);
+        config.setTimeBetweenEvictionRuns(evictionInterval);
+        config.setNumTestsPerEvictionRun(Integer.MAX_VALUE);
+        config.setJmxEnabled(false);
+
+        pool = new GenericKeyedObjectPool<>(new ImapConnectionFactory(), config);
+
+        hitCounter = Counter.builder("memail.imap.pool.borrows")
+            .tag("result", "hit")
+            .description("IMAP connections served from an idle pooled store")
+            .register(meterRegistry);
+        missCounter = Counter.builder("memail.imap.pool.borrows")
+            .tag("result", "miss")
+            .description("IMAP connections that required a new login")
+            .register(meterRegistry);
+        connectFailureCounter = Counter.builder("memail.imap.pool.connect.failures")
+            .description("Failed IMAP logins while growing a user pool")
+            .register(meterRegistry);
+        waitTimer = Timer.builder("memail.imap.pool.wait")
+            .description("Time spent waiting to lease an IMAP connection")
+            .register(meterRegistry);
+        Gauge.builder("memail.imap.pool.active", pool, GenericKeyedObjectPool::getNumActive)
+            .description("IMAP connections currently leased")
+            .register(meterRegistry);
+        Gauge.builder("memail.imap.pool.idle", pool, GenericKeyedObjectPool::getNumIdle)
+            .description("IMAP connections idle in the pool")
+            .register(meterRegistry);
+        Gauge.builder("memail.imap.pool.waiters", pool, GenericKeyedObjectPool::getNumWaiters)
+            .description("Requests blocked waiting for an IMAP connection")
+            .register(meterRegistry);
+
+        logger.info("IMAP connection pool initialized: maxPerUser={} ({} sockets), maxTotal={} ({} sockets), "
+                + "maxWait={}, hotFolders={}", maxPerUser, maxPerUser * socketsPerConnection, maxTotal,
+            maxTotal * socketsPerConnection, maxWait, hotFolders);
+    }
+
+    /**
+     * Sockets one pooled connection can hold: the store, the folder of the current
+     * request and, when hot folders are configured, the one kept open between leases
+     */
+    static int socketsPerConnection(Set<String> hotFolders) {
+        return hotFolders.isEmpty() ? 2 : 3;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Lease a connected store for the user
+     * Throws RuntimeException when the user has no stored credentials or James is unreachable
+     */
+    public ImapConnection borrow(String email) {
+        long start = System.nanoTime();
+        try {
+            ImapConnection connection = pool.borrowObject(email);
+            connection.lease(this);
+            return connection;
+        } catch (Exception e) {
+            throw new RuntimeException("User not authenticated or connection lost", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Verify credentials against James and keep the authenticated store warm in the user's pool
+     */
+    public boolean authenticate(String email, String password) throws MessagingException {
+        Store store = imapStoreFactory.connect(email, password);
+        if (!store.isConnected()) {
+            return false;
+        }
+
+        lastConnectFailure.remove(email);
+        seededStores.put(email, store);
+        try {
+            pool.addObject(email);
+        } catch (Exception e) {
+            // Pool is full - the store is not needed to complete the login
+            Store unused = seededStores.remove(email);
+            if (unused != null) {
+                unused.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Close all of the user's connections
+     * Idle stores are closed now, leased ones are destroyed when they are returned
+     */
+    public void invalidate(String email) {
+        invalidatedAt.put(email, System.currentTimeMillis());
+        pool.clear(email);
+    }
+
+    void release(ImapConnection connection) {
+        String email = connection.getUserEmail();
+        try {
+            if (connection.isBroken() || isStale(connection)) {
+                pool.invalidateObject(email, connection);
+            } else {
+                pool.returnObject(email, connection);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to return IMAP connection for {}: {}", email, e.getMessage());
+        }
+    }
+
+    private boolean isStale(ImapConnection connection) {
+        Long cutoff = invalidatedAt.get(connection.getUserEmail());
+        return cutoff != null && connection.getCreatedAt() < cutoff;
+    }
+
+    /**
+     * Log in with the user's stored credentials
+     * Only one login per user runs at a time, and a failed login suppresses retries
+     * for the backoff window so a burst of requests does not hammer James
+     */
+    private Store connectWithStoredCredentials(String email) throws Exception {
+        Store seeded = seededStores.remove(email);
+        if (seeded != null) {
+            return seeded;
+        }
+
+        ReentrantLock lock = connectLocks.computeIfAbsent(email, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Long failedAt = lastConnectFailure.get(email);
+            if (failedAt != null && System.currentTimeMillis() - failedAt < reconnectBackoff.toMillis()) {
+                throw new MessagingException("IMAP reconnect suppressed after recent failure for " + email);
+            }
+
+            UserCredentials credentials = loadCredentials(email);
+            String password = encryptionUtil.decrypt(credentials.getEncryptedPassword());
+
+            try {
+                Store store = imapStoreFactory.connect(email, password);
+                lastConnectFailure.remove(email);
+
+                credentials.setLastConnectionAt(LocalDateTime.now());
+                userCredentialsRepository.save(credentials);
+
+                return store;
+            } catch (MessagingException e) {
+                lastConnectFailure.put(email, System.currentTimeMillis());
+                connectFailureCounter.increment();
+                logger.warn("IMAP reconnect failed for {}: {}", email, e.getMessage());
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Connect a store outside the pool, e.g. a long-lived IDLE connection
+     * The caller owns the store and must close it
+     */
+    public Store connectDedicated(String email, Properties overrides) throws MessagingException {
+        UserCredentials credentials = loadCredentials(email);
+        String password;
+        try {
+            password = encryptionUtil.decrypt(credentials.getEncryptedPassword());
+        } catch (Exception e) {
+            throw new MessagingException("Failed to decrypt stored credentials for user: " + email, e);
+        }
+        return imapStoreFactory.connect(email, password, overrides);
+    }
+
+    private UserCredentials loadCredentials(String email) throws MessagingException {
+        Optional<UserCredentials> credentialsOpt = userCredentialsRepository.findByEmail(email);
+        if (credentialsOpt.isEmpty()) {
+            throw new MessagingException("No stored credentials found for user: " + email);
+        }
+        return credentialsOpt.get();
+    }
+
+    private class ImapConnectionFactory extends BaseKeyedPooledObjectFactory<String, ImapConnection> {
+
+        @Override
+        public ImapConnection create(String email) throws Exception {
+            return new ImapConnection(email, connectWithStoredCredentials(email), hotFolders);
+        }
+
+        @Override
+        public PooledObject<ImapConnection> wrap(ImapConnection connection) {
+            return new DefaultPooledObject<>(connection);
+        }
+
+        @Override
+        public void activateObject(String email, PooledObject<ImapConnection> p) {
+            // borrowedCount is incremented before activation, so 1 means a fresh login
+            if (p.getBorrowedCount() > 1) {
+                hitCounter.increment();
+            } else {
+                missCounter.increment();
+            }
+        }
+
+        @Override
+        public boolean validateObject(String email, PooledObject<ImapConnection> p) {
+            ImapConnection connection = p.getObject();
+            if (connection.isBroken() || isStale(connection)) {
+                return false;
+            }
+            // Store.isConnected() issues a NOOP, so skip it for recently used stores
+            long idleMillis = System.currentTimeMillis() - p.getLastReturnTime();
+            if (p.getBorrowedCount() > 0 && idleMillis < validationInterval.toMillis()) {
+                return true;
+            }
+            return connection.getStore().isConnected();
+        }
+
+        @Override
+        public void destroyObject(String email, PooledObject<ImapConnection> p) {
+            p.getObject().disconnect();
+        }
+    }
+}
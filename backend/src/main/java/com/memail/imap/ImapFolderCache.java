@@ -0,0 +1,230 @@
+package com.memail.imap;
+
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MailEvent;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.ResyncData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Folder handles scoped to one pooled IMAP store
+ *
+ * Resolved folder names are remembered so the LIST/exists() probes run once per
+ * connection, and one hot folder (INBOX or SENT by default, whichever was used last)
+ * stays selected between leases. Every open folder holds its own socket, so keeping
+ * a single one open bounds a connection at the store socket, the hot folder and the
+ * folder of the current request.
+ * A hot folder is only re-selected when the server closed it; a UIDVALIDITY change
+ * seen on re-select is recorded so callers holding UID cursors can detect it.
+ * Not thread-safe: a connection is only ever used by the request that leased it.
+ */
+public class ImapFolderCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapFolderCache.class);
+
+    /**
+     * Resolves a logical folder name (INBOX, SENT, ...) to a folder on the store
+     */
+    @FunctionalInterface
+    public interface FolderLookup {
+        Folder find(Store store, String folderName) throws MessagingException;
+    }
+
+    private final Store store;
+    private final Set<String> hotFolders;
+
+    private final Map<String, Folder> resolvedFolders = new HashMap<>();
+    private final Map<String, Long> uidValidities = new HashMap<>();
+
+    // Folders opened during the current lease and not yet released
+    private final Set<Folder> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+    // The one hot folder left open between leases
+    private Folder keptOpen;
+
+    ImapFolderCache(Store store, Set<String> hotFolders) {
+        this.store = store;
+        this.hotFolders = hotFolders;
+    }
+
+    /**
+     * Resolve a folder by logical name, reusing the handle from earlier leases
+     * Returns null when the lookup cannot find or create the folder
+     */
+    public Folder resolve(String folderName, FolderLookup lookup) throws MessagingException {
+        String key = folderName.toUpperCase();
+        Folder folder = resolvedFolders.get(key);
+        if (folder == null) {
+            folder = lookup.find(store, folderName);
+            if (folder != null) {
+                resolvedFolders.put(key, folder);
+            }
+        }
+        return folder;
+    }
+
+    /**
+     * Resolve and open a folder in at least the requested mode
+     * Hot folders that are already open are returned without a SELECT/EXAMINE round-trip
+     */
+    public Folder open(String folderName, int mode, FolderLookup lookup) throws MessagingException {
+        Folder folder = resolve(folderName, lookup);
+        if (folder == null) {
+            return null;
+        }
+
+        if (folder.isOpen()) {
+            if (mode == Folder.READ_WRITE && folder.getMode() == Folder.READ_ONLY) {
+                // Upgrade EXAMINE to SELECT; the folder stays read-write afterwards
+                folder.close(false);
+            } else {
+                leased.add(folder);
+                return folder;
+            }
+        }
+
+        folder.open(mode);
+        recordUidValidity(folderName, folder);
+        leased.add(folder);
+        return folder;
+    }
+
+    /**
+     * Open a closed folder with QRESYNC, returning the VANISHED and flag-change events
+     * the server reported since the given state; returns null if the folder is already
+     * open on this connection and cannot be re-selected with resync parameters
+     */
+    public List<MailEvent> openForResync(String folderName, int mode, FolderLookup lookup,
+                                         ResyncData resyncData) throws MessagingException {
+        Folder folder = resolve(folderName, lookup);
+        if (folder == null || folder.isOpen()) {
+            return null;
+        }
+
+        List<MailEvent> events = ((IMAPFolder) folder).open(mode, resyncData);
+        recordUidValidity(folderName, folder);
+        leased.add(folder);
+        return events != null ? events : Collections.emptyList();
+    }
+
+    /**
+     * Hand a folder back after use
+     * A hot folder stays open for the next lease, other folders are closed
+     */
+    public void release(Folder folder) {
+        release(folder, false);
+    }
+
+    /**
+     * Hand a folder back after use, permanently removing messages flagged DELETED
+     */
+    public void release(Folder folder, boolean expunge) {
+        if (folder != null) {
+            leased.remove(folder);
+        }
+        if (folder == null || !folder.isOpen()) {
+            return;
+        }
+        try {
+            if (isHot(folder) && keepOpen(folder)) {
+                if (expunge && folder.getMode() == Folder.READ_WRITE) {
+                    folder.expunge();
+                }
+            } else {
+                folder.close(expunge);
+            }
+        } catch (MessagingException e) {
+            logger.debug("Failed to release folder {}: {}", folder.getFullName(), e.getMessage());
+            closeQuietly(folder);
+        }
+    }
+
+    /**
+     * UIDVALIDITY recorded when the folder was last selected on this connection, or -1
+     */
+    public long getUidValidity(String folderName) {
+        return uidValidities.getOrDefault(folderName.toUpperCase(), -1L);
+    }
+
+    /**
+     * Forget a folder handle, e.g. after it was deleted or renamed
+     */
+    public void evict(String folderName) {
+        Folder folder = resolvedFolders.remove(folderName.toUpperCase());
+        uidValidities.remove(folderName.toUpperCase());
+        if (folder != null) {
+            leased.remove(folder);
+            if (folder == keptOpen) {
+                keptOpen = null;
+            }
+            closeQuietly(folder);
+        }
+    }
+
+    void closeAll() {
+        for (Folder folder : resolvedFolders.values()) {
+            closeQuietly(folder);
+        }
+        resolvedFolders.clear();
+        uidValidities.clear();
+        leased.clear();
+        keptOpen = null;
+    }
+
+    /**
+     * Claim the single kept-open slot for a released hot folder
+     * The previous holder is closed, unless the current request still has it open,
+     * in which case the released folder is closed instead
+     */
+    private boolean keepOpen(Folder folder) {
+        if (keptOpen != null && keptOpen != folder && keptOpen.isOpen()) {
+            if (leased.contains(keptOpen)) {
+                return false;
+            }
+            closeQuietly(keptOpen);
+        }
+        keptOpen = folder;
+        return true;
+    }
+
+    private boolean isHot(Folder folder) {
+        for (Map.Entry<String, Folder> entry : resolvedFolders.entrySet()) {
+            if (entry.getValue() == folder) {
+                return hotFolders.contains(entry.getKey());
+            }
+        }
+        return false;
+    }
+
+    private void recordUidValidity(String folderName, Folder folder) throws MessagingException {
+        if (!(folder instanceof UIDFolder)) {
+            return;
+        }
+        // Served from the SELECT response, no extra round-trip
+        long uidValidity = ((UIDFolder) folder).getUIDValidity();
+        Long previous = uidValidities.put(folderName.toUpperCase(), uidValidity);
+        if (previous != null && previous != uidValidity) {
+            logger.info("UIDVALIDITY of {} changed from {} to {}", folder.getFullName(), previous, uidValidity);
+        }
+    }
+
+    private void closeQuietly(Folder folder) {
+        try {
+            if (folder.isOpen()) {
+                folder.close(false);
+            }
+        } catch (Exception e) {
+            // Folder is being discarded anyway
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.memail.imap;
+
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps the logical folder names used by the API (INBOX, SENT, ...) to folders on James
+ * Shared by MailService and the header index sync so both resolve names the same way
+ */
+@Component
+public class ImapFolderResolver implements ImapFolderCache.FolderLookup {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapFolderResolver.class);
+
+    /**
+     * Get folder by name with fallback to alternative names
+     * Standard folders that do not exist yet are created
+     */
+    @Override
+    public Folder find(Store store, String folderName) throws MessagingException {
+        // First try the exact folder name
+        Folder folder = store.getFolder(folderName);
+        if (folder.exists()) {
+            return folder;
+        }
+
+        // If not found, try alternative names based on common IMAP folder conventions
+        String[] alternatives = getAlternativeFolderNames(folderName);
+        for (String alternative : alternatives) {
+            folder = store.getFolder(alternative);
+            if (folder.exists()) {
+                logger.debug("Found folder '{}' as '{}'", folderName, alternative);
+                return folder;
+            }
+        }
+
+        // Try to create standard folders if they don't exist
+        if (isStandardFolder(folderName)) {
+            try {
+                logger.info("Creating missing standard folder: {}", folderName);
+                Folder newFolder = store.getFolder(folderName);
+                if (newFolder.create(Folder.HOLDS_MESSAGES)) {
+                    logger.info("Successfully created folder: {}", folderName);
+                    return newFolder;
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to create folder '{}': {}", folderName, e.getMessage());
+            }
+        }
+
+        logger.warn("Folder '{}' not found", folderName);
+
+        return null; // Folder not found
+    }
+
+    /**
+     * Check if a folder is a standard IMAP folder that should be auto-created
+     */
+    private boolean isStandardFolder(String folderName) {
+        return folderName != null && (
+            folderName.equalsIgnoreCase("DRAFTS") ||
+            folderName.equalsIgnoreCase("SENT") ||
+            folderName.equalsIgnoreCase("TRASH") ||
+            folderName.equalsIgnoreCase("STARRED") ||
+            folderName.equalsIgnoreCase("IMPORTANT") ||
+            folderName.equalsIgnoreCase("SPAM")
+        );
+    }
+
+    /**
+     * Get alternative folder names for common IMAP folder types
+     */
+    private String[] getAlternativeFolderNames(String folderName) {
+        switch (folderName.toUpperCase()) {
+            case "SENT":
+                return new String[]{"Sent", "Sent Items", "Sent Messages", "SENT"};
+            case "DRAFTS":
+                return new String[]{"Drafts", "Draft", "DRAFTS"};
+            case "TRASH":
+                return new String[]{"Trash", "Deleted", "Deleted Items", "TRASH"};
+            case "INBOX":
+                return new String[]{"INBOX", "Inbox"};
+            case "STARRED":
+                return new String[]{"Starred", "STARRED", "Star"};
+            case "IMPORTANT":
+                return new String[]{"Important", "IMPORTANT"};
+            case "SPAM":
+                return new String[]{"Spam", "SPAM", "Junk", "Junk Email"};
+            default:
+                return new String[]{folderName};
+        }
+    }
+}
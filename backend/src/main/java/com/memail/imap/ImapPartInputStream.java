@@ -0,0 +1,101 @@
+package com.memail.imap;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.iap.ByteArray;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.BODY;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Raw (still transfer-encoded) bytes of one body section, read with partial FETCH
+ *
+ * Each refill issues BODY.PEEK[section]&lt;offset.length&gt; into one reused buffer, so memory
+ * stays at one chunk whatever the part size, reading can start at any offset, and the
+ * message is not marked as seen.
+ */
+public class ImapPartInputStream extends InputStream {
+
+    private final IMAPFolder folder;
+    private final Message message;
+    private final String section;
+    private final long end;
+    private final ByteArray buffer;
+
+    private long position;
+    private byte[] chunk;
+    private int bufferPosition;
+    private int bufferLimit;
+    private boolean exhausted;
+
+    /**
+     * Stream bytes [start, end) of the section
+     */
+    public ImapPartInputStream(IMAPFolder folder, Message message, String section, long start, long end, int chunkSize) {
+        this.folder = folder;
+        this.message = message;
+        this.section = section;
+        this.position = start;
+        this.end = end;
+        this.buffer = new ByteArray(chunkSize);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[bufferPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, bufferLimit - bufferPosition);
+        System.arraycopy(chunk, bufferPosition, target, offset, count);
+        bufferPosition += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return chunk == null ? 0 : bufferLimit - bufferPosition;
+    }
+
+    private boolean fill() throws IOException {
+        if (bufferPosition < bufferLimit) {
+            return true;
+        }
+        if (exhausted || position >= end) {
+            return false;
+        }
+        int length = (int) Math.min(buffer.getBytes().length, end - position);
+        int start = (int) position;
+        try {
+            BODY body = (BODY) folder.doCommand(protocol ->
+                protocol.peekBody(message.getMessageNumber(), section, start, length, buffer));
+            ByteArray bytes = body != null ? body.getByteArray() : null;
+            if (bytes == null || bytes.getCount() == 0) {
+                // The server has nothing past this offset
+                exhausted = true;
+                return false;
+            }
+            // Usually the reused buffer; a longer literal than requested is cut at the range end
+            int count = (int) Math.min(bytes.getCount(), end - position);
+            chunk = bytes.getBytes();
+            bufferPosition = bytes.getStart();
+            bufferLimit = bufferPosition + count;
+            position += count;
+            return true;
+        } catch (MessagingException e) {
+            throw new IOException("Unable to read body section " + section + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.memail.imap;
+
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.eclipse.angus.mail.imap.protocol.UIDSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Orders a set of UIDs newest first by date
+ *
+ * With the SORT extension (RFC 5256) this is one UID SORT command restricted to the UIDs,
+ * and nothing about the messages is fetched. Without it the messages must have their
+ * envelopes fetched first, in one batch, and are ordered locally. Both use the RFC 5256
+ * DATE key: the Date header, or the internal date when it is missing.
+ */
+public final class ImapSorter {
+
+    private ImapSorter() {
+    }
+
+    /**
+     * Whether the folder's server can sort
+     */
+    public static boolean supportsSort(Folder folder) throws MessagingException {
+        Store store = folder.getStore();
+        return store instanceof IMAPStore && ((IMAPStore) store).hasCapability("SORT");
+    }
+
+    /**
+     * UIDs newest first, sorted by the server; the folder must be open
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Long> sortByDate(IMAPFolder folder, Collection<Long> uids) throws MessagingException {
+        if (uids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long[] sorted = uids.stream().mapToLong(Long::longValue).sorted().toArray();
+        String uidSet = UIDSet.toString(UIDSet.createUIDSets(sorted));
+
+        return (List<Long>) folder.doCommand(protocol -> {
+            Argument args = new Argument();
+            args.writeAtom("(REVERSE DATE)");
+            args.writeAtom("UTF-8");
+            args.writeAtom("UID");
+            args.writeAtom(uidSet);
+            Response[] responses = protocol.command("UID SORT", args);
+            List<Long> result = readSort(responses);
+            protocol.notifyResponseHandlers(responses);
+            protocol.handleResult(responses[responses.length - 1]);
+            return result;
+        });
+    }
+
+    /**
+     * Messages newest first, sorted locally; envelopes should already be fetched
+     */
+    public static Message[] sortByDate(Message[] messages, UIDFolder folder) throws MessagingException {
+        Date[] dates = new Date[messages.length];
+        long[] uids = new long[messages.length];
+        Integer[] order = new Integer[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            Date sent = messages[i].getSentDate();
+            dates[i] = sent != null ? sent : messages[i].getReceivedDate();
+            uids[i] = folder.getUID(messages[i]);
+            order[i] = i;
+        }
+
+        // Keys are read once above, so the comparator never goes to the server
+        Arrays.sort(order, Comparator.<Integer, Date>comparing(i -> dates[i], Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(i -> uids[i])
+            .reversed());
+
+        Message[] sorted = new Message[messages.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = messages[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * UIDs from the untagged SORT responses, in server order
+     * Consumed responses are cleared so they are not passed on to the folder's handlers
+     */
+    static List<Long> readSort(Response[] responses) {
+        List<Long> uids = new ArrayList<>();
+        for (int i = 0; i < responses.length; i++) {
+            if (!(responses[i] instanceof IMAPResponse)) {
+                continue;
+            }
+            IMAPResponse response = (IMAPResponse) responses[i];
+            if (response.isUnTagged() && response.keyEquals("SORT")) {
+                long uid;
+                while ((uid = response.readLong()) != -1) {
+                    uids.add(uid);
+                }
+                responses[i] = null;
+            }
+        }
+        return uids;
+    }
+}
@@ -0,0 +1,101 @@
+package com.memail.imap;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+/**
+ * Creates connected IMAP stores against Apache James
+ * Holds the session properties that used to live in MailService.connectToImapServer
+ */
+@Component
+public class ImapStoreFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapStoreFactory.class);
+
+    @Value("${mail.imap.host}")
+    private String imapHost;
+
+    @Value("${mail.imap.port}")
+    private int imapPort;
+
+    @Value("${mail.imap.ssl.enable}")
+    private boolean imapSslEnable;
+
+    @Value("${mail.imap.starttls.enable}")
+    private boolean imapStartTlsEnable;
+
+    // Body sections are read in chunks of this size, so a capped read stops early
+    @Value("${mail.imap.partialfetch:true}")
+    private boolean partialFetch;
+
+    @Value("${mail.imap.fetchsize:16384}")
+    private int fetchSize;
+
+    /**
+     * Connect a new IMAP store for the given user
+     */
+    public Store connect(String email, String password) throws MessagingException {
+        return connect(email, password, new Properties());
+    }
+
+    /**
+     * Connect a new IMAP store, applying extra session properties on top of the defaults
+     */
+    public Store connect(String email, String password, Properties overrides) throws MessagingException {
+        Properties props = buildSessionProperties();
+        props.putAll(overrides);
+
+        logger.debug("Connecting to IMAP server {}:{} for user {}", imapHost, imapPort, email);
+
+        Session session = Session.getInstance(props);
+        Store store = session.getStore("imap");
+        store.connect(imapHost, imapPort, email, password);
+
+        logger.debug("Connected to IMAP server for user {}", email);
+        return store;
+    }
+
+    /**
+     * Session properties shared by every IMAP connection
+     */
+    Properties buildSessionProperties() {
+        Properties props = new Properties();
+        props.setProperty("mail.store.protocol", "imap");
+        props.setProperty("mail.imap.host", imapHost);
+        props.setProperty("mail.imap.port", String.valueOf(imapPort));
+        props.setProperty("mail.imap.ssl.enable", String.valueOf(imapSslEnable));
+        props.setProperty("mail.imap.starttls.enable", String.valueOf(imapStartTlsEnable));
+
+        // Additional properties for Apache James Docker compatibility
+        // Closed folders hand their socket back to the store, which keeps this many idle;
+        // one keeps a connection within the socket budget of ImapConnectionManager
+        props.setProperty("mail.imap.connectionpoolsize", "1");
+        props.setProperty("mail.imap.connectionpooltimeout", "300000");
+        props.setProperty("mail.imap.timeout", "30000");
+        props.setProperty("mail.imap.connectiontimeout", "30000");
+        props.setProperty("mail.imap.partialfetch", String.valueOf(partialFetch));
+        props.setProperty("mail.imap.fetchsize", String.valueOf(fetchSize));
+
+        // Enhanced SSL/TLS configuration for Docker James
+        if (imapStartTlsEnable || imapSslEnable) {
+            // Trust all certificates for development (James Docker uses self-signed)
+            props.setProperty("mail.imap.ssl.trust", "*");
+            props.setProperty("mail.imap.starttls.required", "false");
+            props.setProperty("mail.imap.ssl.checkserveridentity", "false");
+            props.setProperty("mail.imap.ssl.protocols", "TLSv1.2 TLSv1.3");
+        }
+
+        // Allow plain authentication for development
+        props.setProperty("mail.imap.auth.plain.disable", "false");
+        props.setProperty("mail.imap.auth.login.disable", "false");
+
+        return props;
+    }
+}
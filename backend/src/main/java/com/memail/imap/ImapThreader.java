@@ -0,0 +1,97 @@
+package com.memail.imap;
+
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import org.eclipse.angus.mail.iap.Argument;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Threads a whole folder on the server with THREAD=REFERENCES (RFC 5256)
+ *
+ * The server groups by Message-ID, In-Reply-To and References, so the client only fetches
+ * envelopes for the conversations it shows. Each conversation comes back as its UIDs in
+ * tree order, parents before replies; a thread whose root message is missing still comes
+ * back as one conversation.
+ */
+public final class ImapThreader {
+
+    private ImapThreader() {
+    }
+
+    /**
+     * Whether the folder's server threads by references
+     */
+    public static boolean supportsReferences(Folder folder) throws MessagingException {
+        Store store = folder.getStore();
+        return store instanceof IMAPStore && ((IMAPStore) store).hasCapability("THREAD=REFERENCES");
+    }
+
+    /**
+     * Conversations of the open folder, each as its UIDs in tree order
+     */
+    @SuppressWarnings("unchecked")
+    public static List<List<Long>> threadByReferences(IMAPFolder folder) throws MessagingException {
+        return (List<List<Long>>) folder.doCommand(protocol -> {
+            Argument args = new Argument();
+            args.writeAtom("REFERENCES");
+            args.writeAtom("UTF-8");
+            args.writeAtom("ALL");
+            Response[] responses = protocol.command("UID THREAD", args);
+            List<List<Long>> threads = new ArrayList<>();
+            for (int i = 0; i < responses.length; i++) {
+                if (responses[i] instanceof IMAPResponse
+                        && responses[i].isUnTagged() && ((IMAPResponse) responses[i]).keyEquals("THREAD")) {
+                    threads.addAll(parseThreads(responses[i].getRest()));
+                    responses[i] = null;
+                }
+            }
+            protocol.notifyResponseHandlers(responses);
+            protocol.handleResult(responses[responses.length - 1]);
+            return threads;
+        });
+    }
+
+    /**
+     * The conversations of a THREAD response body such as "(2)(3 6 (4 23)(44 7 96))"
+     * Every top-level parenthesized group is one conversation, nested branches included
+     */
+    static List<List<Long>> parseThreads(String body) {
+        List<List<Long>> threads = new ArrayList<>();
+        List<Long> current = null;
+        int depth = 0;
+        long number = -1;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number * 10) + (c - '0');
+                continue;
+            }
+            if (number >= 0) {
+                if (current != null) {
+                    current.add(number);
+                }
+                number = -1;
+            }
+            if (c == '(') {
+                if (depth++ == 0) {
+                    current = new ArrayList<>();
+                }
+            } else if (c == ')' && depth > 0) {
+                if (--depth == 0) {
+                    if (!current.isEmpty()) {
+                        threads.add(current);
+                    }
+                    current = null;
+                }
+            }
+        }
+        return threads;
+    }
+}
@@ -0,0 +1,145 @@
+package com.memail.imap;
+
+import jakarta.mail.BodyPart;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeUtility;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the displayable text of a message in one pass over its MIME tree
+ *
+ * On an IMAP message fetched with BODYSTRUCTURE the tree is walked without downloading
+ * anything; only the chosen text/plain and text/html sections are read, as BODY[section]
+ * in fetch-size chunks, and reading stops at the text cap. Attachments and other non-text
+ * parts are never opened.
+ */
+@Component
+public class MessageBodyReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBodyReader.class);
+
+    private static final int MAX_DEPTH = 10;
+
+    // Decoded characters read per text part; the rest is dropped
+    @Value("${memail.message.max-text-chars:262144}")
+    private int maxTextChars;
+
+    /**
+     * Decoded text and HTML of a message; either may be null
+     */
+    public static class Body {
+        private String text;
+        private String html;
+        private boolean truncated;
+
+        public String getText() {
+            return text;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * Read the first text/plain and first text/html body of a message or part
+     */
+    public Body read(Part message) {
+        Body body = new Body();
+        Part[] chosen = new Part[2];
+        walk(message, chosen, 0);
+        if (chosen[0] != null) {
+            body.text = readText(chosen[0], body);
+        }
+        if (chosen[1] != null) {
+            body.html = readText(chosen[1], body);
+        }
+        return body;
+    }
+
+    /**
+     * Pick the text/plain (chosen[0]) and text/html (chosen[1]) parts from the structure alone
+     */
+    private void walk(Part part, Part[] chosen, int depth) {
+        if (depth > MAX_DEPTH || (chosen[0] != null && chosen[1] != null)) {
+            return;
+        }
+        try {
+            if (isAttachment(part)) {
+                return;
+            }
+            if (part.isMimeType("text/plain")) {
+                if (chosen[0] == null) {
+                    chosen[0] = part;
+                }
+            } else if (part.isMimeType("text/html")) {
+                if (chosen[1] == null) {
+                    chosen[1] = part;
+                }
+            } else if (part.isMimeType("multipart/*")) {
+                // Built from BODYSTRUCTURE on IMAP messages; no part content is fetched here
+                Multipart multipart = (Multipart) part.getContent();
+                for (int i = 0; i < multipart.getCount(); i++) {
+                    BodyPart child = multipart.getBodyPart(i);
+                    walk(child, chosen, depth + 1);
+                }
+            }
+        } catch (MessagingException | IOException | ClassCastException e) {
+            logger.debug("Skipping unreadable part: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isAttachment(Part part) throws MessagingException {
+        return Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()) || part.getFileName() != null;
+    }
+
+    private String readText(Part part, Body body) {
+        try (InputStream in = part.getInputStream();
+             Reader reader = new InputStreamReader(in, charsetOf(part))) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while (text.length() < maxTextChars
+                    && (read = reader.read(buffer, 0, Math.min(buffer.length, maxTextChars - text.length()))) != -1) {
+                text.append(buffer, 0, read);
+            }
+            // Not peeking past the cap, which could fetch another chunk
+            if (text.length() >= maxTextChars) {
+                body.truncated = true;
+            }
+            return text.toString();
+        } catch (MessagingException | IOException e) {
+            logger.debug("Unable to read text part: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Charset charsetOf(Part part) {
+        try {
+            String charset = new ContentType(part.getContentType()).getParameter("charset");
+            if (charset != null) {
+                return Charset.forName(MimeUtility.javaCharset(charset));
+            }
+        } catch (Exception e) {
+            // Unknown or malformed charset; fall back below
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,71 @@
+package com.memail.imap;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque position in a folder listing, keyed by IMAP UID instead of sequence number
+ *
+ * Encodes the folder's UIDVALIDITY together with the oldest UID already returned, so
+ * the next page starts right below it no matter how many messages arrived or were
+ * expunged in between. A cursor whose UIDVALIDITY no longer matches the folder is stale.
+ */
+public final class UidCursor {
+
+    private static final String VERSION = "v1";
+
+    private final long uidValidity;
+    private final long lastUid;
+
+    public UidCursor(long uidValidity, long lastUid) {
+        this.uidValidity = uidValidity;
+        this.lastUid = lastUid;
+    }
+
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    public long getLastUid() {
+        return lastUid;
+    }
+
+    /**
+     * Whether this cursor was issued for the folder's current UID space
+     */
+    public boolean matches(long folderUidValidity) {
+        return uidValidity == folderUidValidity;
+    }
+
+    public String encode() {
+        String raw = VERSION + ":" + uidValidity + ":" + lastUid;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Parse a cursor produced by {@link #encode()}
+     * Throws IllegalArgumentException for anything that is not a valid cursor
+     */
+    public static UidCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("Unsupported cursor format");
+            }
+            long uidValidity = Long.parseLong(parts[1]);
+            long lastUid = Long.parseLong(parts[2]);
+            if (lastUid < 1) {
+                throw new IllegalArgumentException("Cursor UID out of range");
+            }
+            return new UidCursor(uidValidity, lastUid);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UidCursor{uidValidity=" + uidValidity + ", lastUid=" + lastUid + "}";
+    }
+}
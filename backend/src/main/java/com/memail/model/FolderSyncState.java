@@ -0,0 +1,124 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * How far the header index of one folder has been synced from IMAP
+ */
+@Entity
+@Table(name = "folder_sync_state", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "folder"})
+})
+public class FolderSyncState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "uid_validity", nullable = false)
+    private long uidValidity;
+
+    @Column(name = "last_uid", nullable = false)
+    private long lastUid;
+
+    @Column(name = "highest_mod_seq", nullable = false)
+    private long highestModSeq;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "last_synced_at")
+    private LocalDateTime lastSyncedAt;
+
+    // Progress is saved per batch during the first sync; this is only set once it finished
+    @Column(name = "initial_sync_complete", nullable = false)
+    private boolean initialSyncComplete;
+
+    public FolderSyncState() {}
+
+    public FolderSyncState(String userId, String folder, long uidValidity) {
+        this.userId = userId;
+        this.folder = folder;
+        this.uidValidity = uidValidity;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public long getUidValidity() {
+        return uidValidity;
+    }
+
+    public void setUidValidity(long uidValidity) {
+        this.uidValidity = uidValidity;
+    }
+
+    public long getLastUid() {
+        return lastUid;
+    }
+
+    public void setLastUid(long lastUid) {
+        this.lastUid = lastUid;
+    }
+
+    public long getHighestModSeq() {
+        return highestModSeq;
+    }
+
+    public void setHighestModSeq(long highestModSeq) {
+        this.highestModSeq = highestModSeq;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public LocalDateTime getLastSyncedAt() {
+        return lastSyncedAt;
+    }
+
+    public void setLastSyncedAt(LocalDateTime lastSyncedAt) {
+        this.lastSyncedAt = lastSyncedAt;
+    }
+
+    public boolean isInitialSyncComplete() {
+        return initialSyncComplete;
+    }
+
+    public void setInitialSyncComplete(boolean initialSyncComplete) {
+        this.initialSyncComplete = initialSyncComplete;
+    }
+}
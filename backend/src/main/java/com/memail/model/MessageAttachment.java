@@ -0,0 +1,91 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Attachment metadata of an indexed message, from its BODYSTRUCTURE
+ * Rows are written with their message_headers row and removed with it by cascade
+ */
+@Entity
+@Table(name = "message_attachments")
+public class MessageAttachment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "header_id", nullable = false)
+    private Long headerId;
+
+    // IMAP section number of the part, e.g. 2 or 1.3
+    @Column(name = "part_id", nullable = false, length = 64)
+    private String partId;
+
+    @Column(name = "file_name", columnDefinition = "TEXT")
+    private String fileName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long size;
+
+    public MessageAttachment() {}
+
+    public MessageAttachment(Long headerId, String partId, String fileName, String contentType, long size) {
+        this.headerId = headerId;
+        this.partId = partId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getHeaderId() {
+        return headerId;
+    }
+
+    public void setHeaderId(Long headerId) {
+        this.headerId = headerId;
+    }
+
+    public String getPartId() {
+        return partId;
+    }
+
+    public void setPartId(String partId) {
+        this.partId = partId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,289 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Indexed envelope and flags of one IMAP message
+ * Keyed by user, logical folder name and UID; rows are owned by HeaderIndexService
+ */
+@Entity
+@Table(name = "message_headers", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "folder", "uid"})
+})
+public class MessageHeader {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "uid", nullable = false)
+    private long uid;
+
+    @Column(name = "message_id", length = 998)
+    private String messageId;
+
+    @Column(name = "in_reply_to", length = 998)
+    private String inReplyTo;
+
+    @Column(name = "references_header", columnDefinition = "TEXT")
+    private String references;
+
+    // Conversation assigned by ThreadIndexService; null until the row has been threaded
+    @Column(name = "thread_id", length = 32)
+    private String threadId;
+
+    @Column(name = "subject", columnDefinition = "TEXT")
+    private String subject;
+
+    @Column(name = "from_address", columnDefinition = "TEXT")
+    private String fromAddress;
+
+    @Column(name = "to_addresses", columnDefinition = "TEXT")
+    private String toAddresses;
+
+    @Column(name = "cc_addresses", columnDefinition = "TEXT")
+    private String ccAddresses;
+
+    @Column(name = "sent_date")
+    private LocalDateTime sentDate;
+
+    @Column(name = "received_date")
+    private LocalDateTime receivedDate;
+
+    @Column(name = "size_bytes", nullable = false)
+    private int size;
+
+    @Column(name = "has_attachments", nullable = false)
+    private boolean hasAttachments;
+
+    // Rows in message_attachments, from the message's BODYSTRUCTURE; -1 if never scanned
+    @Column(name = "attachment_count", nullable = false)
+    private int attachmentCount;
+
+    @Column(name = "seen", nullable = false)
+    private boolean seen;
+
+    @Column(name = "flagged", nullable = false)
+    private boolean flagged;
+
+    @Column(name = "answered", nullable = false)
+    private boolean answered;
+
+    @Column(name = "draft", nullable = false)
+    private boolean draft;
+
+    // \Deleted but not expunged yet; hidden from listings until the flag is cleared
+    @Column(name = "deleted", nullable = false)
+    private boolean deleted;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public MessageHeader() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public MessageHeader(String userId, String folder, long uid) {
+        this();
+        this.userId = userId;
+        this.folder = folder;
+        this.uid = uid;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public long getUid() {
+        return uid;
+    }
+
+    public void setUid(long uid) {
+        this.uid = uid;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getInReplyTo() {
+        return inReplyTo;
+    }
+
+    public void setInReplyTo(String inReplyTo) {
+        this.inReplyTo = inReplyTo;
+    }
+
+    public String getReferences() {
+        return references;
+    }
+
+    public void setReferences(String references) {
+        this.references = references;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getFromAddress() {
+        return fromAddress;
+    }
+
+    public void setFromAddress(String fromAddress) {
+        this.fromAddress = fromAddress;
+    }
+
+    public String getToAddresses() {
+        return toAddresses;
+    }
+
+    public void setToAddresses(String toAddresses) {
+        this.toAddresses = toAddresses;
+    }
+
+    public String getCcAddresses() {
+        return ccAddresses;
+    }
+
+    public void setCcAddresses(String ccAddresses) {
+        this.ccAddresses = ccAddresses;
+    }
+
+    public LocalDateTime getSentDate() {
+        return sentDate;
+    }
+
+    public void setSentDate(LocalDateTime sentDate) {
+        this.sentDate = sentDate;
+    }
+
+    public LocalDateTime getReceivedDate() {
+        return receivedDate;
+    }
+
+    public void setReceivedDate(LocalDateTime receivedDate) {
+        this.receivedDate = receivedDate;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isHasAttachments() {
+        return hasAttachments;
+    }
+
+    public void setHasAttachments(boolean hasAttachments) {
+        this.hasAttachments = hasAttachments;
+    }
+
+    public int getAttachmentCount() {
+        return attachmentCount;
+    }
+
+    public void setAttachmentCount(int attachmentCount) {
+        this.attachmentCount = attachmentCount;
+    }
+
+    public boolean isSeen() {
+        return seen;
+    }
+
+    public void setSeen(boolean seen) {
+        this.seen = seen;
+    }
+
+    public boolean isFlagged() {
+        return flagged;
+    }
+
+    public void setFlagged(boolean flagged) {
+        this.flagged = flagged;
+    }
+
+    public boolean isAnswered() {
+        return answered;
+    }
+
+    public void setAnswered(boolean answered) {
+        this.answered = answered;
+    }
+
+    public String getThreadId() {
+        return threadId;
+    }
+
+    public void setThreadId(String threadId) {
+        this.threadId = threadId;
+    }
+
+    public boolean isDraft() {
+        return draft;
+    }
+
+    public void setDraft(boolean draft) {
+        this.draft = draft;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,84 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Full-text document of one indexed message
+ * The tsvector itself is written and queried with native SQL and not mapped here
+ */
+@Entity
+@Table(name = "message_search")
+public class SearchDocument {
+
+    @Id
+    @Column(name = "header_id")
+    private Long headerId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(nullable = false)
+    private String folder;
+
+    @Column(name = "sent_date")
+    private LocalDateTime sentDate;
+
+    @Column(name = "attachment_names", columnDefinition = "TEXT")
+    private String attachmentNames;
+
+    @Column(name = "indexed_at", nullable = false)
+    private LocalDateTime indexedAt;
+
+    public SearchDocument() {}
+
+    // Getters and Setters
+    public Long getHeaderId() {
+        return headerId;
+    }
+
+    public void setHeaderId(Long headerId) {
+        this.headerId = headerId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public LocalDateTime getSentDate() {
+        return sentDate;
+    }
+
+    public void setSentDate(LocalDateTime sentDate) {
+        this.sentDate = sentDate;
+    }
+
+    public String getAttachmentNames() {
+        return attachmentNames;
+    }
+
+    public void setAttachmentNames(String attachmentNames) {
+        this.attachmentNames = attachmentNames;
+    }
+
+    public LocalDateTime getIndexedAt() {
+        return indexedAt;
+    }
+
+    public void setIndexedAt(LocalDateTime indexedAt) {
+        this.indexedAt = indexedAt;
+    }
+}
@@ -0,0 +1,67 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+
+/**
+ * A Message-ID known to belong to a thread, whether or not the message itself is indexed
+ */
+@Entity
+@Table(name = "thread_members", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "message_id"})
+})
+public class ThreadMember {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "message_id", nullable = false, length = 998)
+    private String messageId;
+
+    @Column(name = "thread_id", nullable = false, length = 32)
+    private String threadId;
+
+    public ThreadMember() {}
+
+    public ThreadMember(String userId, String messageId, String threadId) {
+        this.userId = userId;
+        this.messageId = messageId;
+        this.threadId = threadId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getThreadId() {
+        return threadId;
+    }
+
+    public void setThreadId(String threadId) {
+        this.threadId = threadId;
+    }
+}
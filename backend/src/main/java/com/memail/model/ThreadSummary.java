@@ -0,0 +1,145 @@
+package com.memail.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregates of one thread's messages within one folder, backing the conversation list
+ */
+@Entity
+@Table(name = "thread_summaries", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"user_id", "folder", "thread_id"})
+})
+public class ThreadSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "folder", nullable = false)
+    private String folder;
+
+    @Column(name = "thread_id", nullable = false, length = 32)
+    private String threadId;
+
+    @Column(name = "subject", columnDefinition = "TEXT")
+    private String subject;
+
+    @Column(name = "subject_key", columnDefinition = "TEXT")
+    private String subjectKey;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    @Column(name = "has_attachments", nullable = false)
+    private boolean hasAttachments;
+
+    @Column(name = "participants", columnDefinition = "TEXT")
+    private String participants;
+
+    @Column(name = "last_date")
+    private LocalDateTime lastDate;
+
+    public ThreadSummary() {}
+
+    public ThreadSummary(String userId, String folder, String threadId) {
+        this.userId = userId;
+        this.folder = folder;
+        this.threadId = threadId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public void setFolder(String folder) {
+        this.folder = folder;
+    }
+
+    public String getThreadId() {
+        return threadId;
+    }
+
+    public void setThreadId(String threadId) {
+        this.threadId = threadId;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getSubjectKey() {
+        return subjectKey;
+    }
+
+    public void setSubjectKey(String subjectKey) {
+        this.subjectKey = subjectKey;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(int unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public boolean isHasAttachments() {
+        return hasAttachments;
+    }
+
+    public void setHasAttachments(boolean hasAttachments) {
+        this.hasAttachments = hasAttachments;
+    }
+
+    public String getParticipants() {
+        return participants;
+    }
+
+    public void setParticipants(String participants) {
+        this.participants = participants;
+    }
+
+    public LocalDateTime getLastDate() {
+        return lastDate;
+    }
+
+    public void setLastDate(LocalDateTime lastDate) {
+        this.lastDate = lastDate;
+    }
+}
@@ -0,0 +1,29 @@
+package com.memail.repository;
+
+import com.memail.model.FolderSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FolderSyncStateRepository extends JpaRepository<FolderSyncState, Long> {
+
+    /**
+     * Find the sync state of one folder
+     */
+    Optional<FolderSyncState> findByUserIdAndFolder(String userId, String folder);
+
+    /**
+     * Find the sync state of all indexed folders of a user
+     */
+    List<FolderSyncState> findByUserId(String userId);
+
+    /**
+     * Delete all sync state for a user
+     */
+    @Transactional
+    void deleteByUserId(String userId);
+}
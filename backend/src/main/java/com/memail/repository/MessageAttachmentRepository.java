@@ -0,0 +1,17 @@
+package com.memail.repository;
+
+import com.memail.model.MessageAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MessageAttachmentRepository extends JpaRepository<MessageAttachment, Long> {
+
+    /**
+     * Attachments of the given indexed messages, in MIME order per message
+     */
+    List<MessageAttachment> findByHeaderIdInOrderByHeaderIdAscIdAsc(Collection<Long> headerIds);
+}
@@ -0,0 +1,127 @@
+package com.memail.repository;
+
+import com.memail.model.MessageHeader;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MessageHeaderRepository extends JpaRepository<MessageHeader, Long>, MessageHeaderSearchRepository {
+
+    /**
+     * Page of a folder, newest first, without messages flagged \Deleted
+     */
+    List<MessageHeader> findByUserIdAndFolderAndDeletedFalseOrderByUidDesc(String userId, String folder, Pageable pageable);
+
+    /**
+     * Page of a folder below a UID cursor, newest first, without messages flagged \Deleted
+     */
+    List<MessageHeader> findByUserIdAndFolderAndUidLessThanAndDeletedFalseOrderByUidDesc(String userId, String folder,
+                                                                                         long uid, Pageable pageable);
+
+    /**
+     * Check whether anything listable is indexed below the given UID
+     */
+    boolean existsByUserIdAndFolderAndUidLessThanAndDeletedFalse(String userId, String folder, long uid);
+
+    /**
+     * All indexed rows of a folder, used by the sync to diff against the server
+     */
+    List<MessageHeader> findByUserIdAndFolder(String userId, String folder);
+
+    /**
+     * Find indexed rows by UID
+     */
+    List<MessageHeader> findByUserIdAndFolderAndUidIn(String userId, String folder, Collection<Long> uids);
+
+    /**
+     * Indexed rows of a folder including \Deleted ones, comparable to the server's message count
+     */
+    long countByUserIdAndFolder(String userId, String folder);
+
+    /**
+     * Messages of a folder as listed, without \Deleted ones
+     */
+    long countByUserIdAndFolderAndDeletedFalse(String userId, String folder);
+
+    /**
+     * Rows of a folder that have not been assigned to a thread yet
+     */
+    List<MessageHeader> findByUserIdAndFolderAndThreadIdIsNull(String userId, String folder, Pageable pageable);
+
+    /**
+     * Indexed messages of a folder belonging to the given threads
+     */
+    List<MessageHeader> findByUserIdAndFolderAndThreadIdIn(String userId, String folder, Collection<String> threadIds);
+
+    /**
+     * Indexed messages of a folder with the given Message-ID headers, as stored (with brackets)
+     */
+    List<MessageHeader> findByUserIdAndFolderAndMessageIdIn(String userId, String folder, Collection<String> messageIds);
+
+    /**
+     * Every indexed message of the given threads, across folders
+     */
+    List<MessageHeader> findByUserIdAndThreadIdIn(String userId, Collection<String> threadIds);
+
+    /**
+     * Threads of the given messages, so their summaries can be refreshed after a change
+     */
+    @Query("SELECT DISTINCT mh.threadId FROM MessageHeader mh WHERE mh.userId = :userId AND mh.folder = :folder " +
+           "AND mh.uid IN :uids AND mh.threadId IS NOT NULL")
+    List<String> findThreadIdsByUids(@Param("userId") String userId,
+                                     @Param("folder") String folder,
+                                     @Param("uids") Collection<Long> uids);
+
+    /**
+     * Rows of a folder without a full-text document yet, newest first
+     */
+    @Query("SELECT mh FROM MessageHeader mh WHERE mh.userId = :userId AND mh.folder = :folder " +
+           "AND NOT EXISTS (SELECT 1 FROM SearchDocument sd WHERE sd.headerId = mh.id) ORDER BY mh.uid DESC")
+    List<MessageHeader> findUnsearchable(@Param("userId") String userId,
+                                         @Param("folder") String folder,
+                                         Pageable pageable);
+
+    /**
+     * Unread message count per folder for a user
+     */
+    @Query("SELECT mh.folder, COUNT(mh) FROM MessageHeader mh WHERE mh.userId = :userId AND mh.seen = false " +
+           "AND mh.deleted = false GROUP BY mh.folder")
+    List<Object[]> countUnreadByFolder(@Param("userId") String userId);
+
+    /**
+     * Update the SEEN flag of indexed messages after a local action
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE MessageHeader mh SET mh.seen = :seen WHERE mh.userId = :userId AND mh.folder = :folder AND mh.uid IN :uids")
+    int updateSeen(@Param("userId") String userId,
+                   @Param("folder") String folder,
+                   @Param("uids") Collection<Long> uids,
+                   @Param("seen") boolean seen);
+
+    /**
+     * Delete indexed messages that left the folder
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MessageHeader mh WHERE mh.userId = :userId AND mh.folder = :folder AND mh.uid IN :uids")
+    int deleteByUids(@Param("userId") String userId,
+                     @Param("folder") String folder,
+                     @Param("uids") Collection<Long> uids);
+
+    /**
+     * Drop a folder's index, e.g. after its UIDVALIDITY changed
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MessageHeader mh WHERE mh.userId = :userId AND mh.folder = :folder")
+    int deleteByUserIdAndFolder(@Param("userId") String userId, @Param("folder") String folder);
+}
@@ -0,0 +1,19 @@
+package com.memail.repository;
+
+import com.memail.model.MessageHeader;
+import com.memail.search.IndexQuery;
+
+import java.util.List;
+
+/**
+ * Searches of the header index with a compiled query; the SQL is built per query
+ */
+public interface MessageHeaderSearchRepository {
+
+    /**
+     * One page of a folder's matches, best ranked first when ranked, then newest first
+     */
+    List<MessageHeader> search(String userId, String folder, IndexQuery query, boolean ranked, int limit, long offset);
+
+    long countSearch(String userId, String folder, IndexQuery query);
+}
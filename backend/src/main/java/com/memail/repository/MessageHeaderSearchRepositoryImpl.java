@@ -0,0 +1,58 @@
+package com.memail.repository;
+
+import com.memail.model.MessageHeader;
+import com.memail.search.IndexQuery;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+import java.util.Map;
+
+public class MessageHeaderSearchRepositoryImpl implements MessageHeaderSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<MessageHeader> search(String userId, String folder, IndexQuery query, boolean ranked, int limit, long offset) {
+        boolean rank = ranked && query.getRankQuery() != null;
+        StringBuilder sql = new StringBuilder("SELECT mh.* ").append(from(query));
+        // UID order is arrival order and follows the folder's listing index
+        sql.append(rank
+            ? " ORDER BY ts_rank_cd(ms.document, to_tsquery('simple', :rankQuery)) DESC, mh.uid DESC"
+            : " ORDER BY mh.uid DESC");
+        sql.append(" LIMIT :limit OFFSET :offset");
+
+        Query nativeQuery = entityManager.createNativeQuery(sql.toString(), MessageHeader.class);
+        bind(nativeQuery, userId, folder, query);
+        if (rank) {
+            nativeQuery.setParameter("rankQuery", query.getRankQuery());
+        }
+        nativeQuery.setParameter("limit", limit);
+        nativeQuery.setParameter("offset", offset);
+        return nativeQuery.getResultList();
+    }
+
+    @Override
+    public long countSearch(String userId, String folder, IndexQuery query) {
+        Query nativeQuery = entityManager.createNativeQuery("SELECT COUNT(*) " + from(query));
+        bind(nativeQuery, userId, folder, query);
+        return ((Number) nativeQuery.getSingleResult()).longValue();
+    }
+
+    private String from(IndexQuery query) {
+        return "FROM message_headers mh"
+            + (query.isFullText() ? " JOIN message_search ms ON ms.header_id = mh.id" : "")
+            + " WHERE mh.user_id = :userId AND mh.folder = :folder AND NOT mh.deleted AND (" + query.getWhere() + ")";
+    }
+
+    private void bind(Query nativeQuery, String userId, String folder, IndexQuery query) {
+        nativeQuery.setParameter("userId", userId);
+        nativeQuery.setParameter("folder", folder);
+        for (Map.Entry<String, Object> parameter : query.getParameters().entrySet()) {
+            nativeQuery.setParameter(parameter.getKey(), parameter.getValue());
+        }
+    }
+}
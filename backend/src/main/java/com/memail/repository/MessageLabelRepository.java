@@ -81,6 +81,13 @@ public interface MessageLabelRepository extends JpaRepository<MessageLabel, Long
                                                            @Param("labelId") Long labelId,
                                                            @Param("folder") String folder);
 
+    /**
+     * Message labels of a user carrying any of the given labels, in every folder, for label: searches
+     */
+    @Query("SELECT ml FROM MessageLabel ml WHERE ml.userId = :userId AND ml.label.id IN :labelIds")
+    List<MessageLabel> findByUserIdAndLabelIds(@Param("userId") String userId,
+                                               @Param("labelIds") List<Long> labelIds);
+
     /**
      * Delete message labels for multiple message UIDs
      */
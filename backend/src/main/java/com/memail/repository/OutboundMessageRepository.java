@@ -0,0 +1,59 @@
+package com.memail.repository;
+
+import com.memail.model.OutboundMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboundMessageRepository extends JpaRepository<OutboundMessage, Long> {
+
+    /**
+     * Messages of a node in a state that are due for a delivery attempt, oldest first
+     */
+    List<OutboundMessage> findByNodeIdAndStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+        String nodeId, OutboundMessage.Status status, LocalDateTime now, Pageable pageable);
+
+    /**
+     * Move a message between states if it is still in the expected one; returns 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboundMessage om SET om.status = :to WHERE om.id = :id AND om.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") OutboundMessage.Status from,
+                   @Param("to") OutboundMessage.Status to);
+
+    /**
+     * Move every message of a node from one state to another, e.g. to requeue sends interrupted by a restart
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OutboundMessage om SET om.status = :to WHERE om.nodeId = :nodeId AND om.status = :from")
+    int transitionAll(@Param("nodeId") String nodeId,
+                      @Param("from") OutboundMessage.Status from,
+                      @Param("to") OutboundMessage.Status to);
+
+    /**
+     * Find a user's queued or sent message
+     */
+    Optional<OutboundMessage> findByIdAndUserId(Long id, String userId);
+
+    /**
+     * Forget finished messages older than the retention
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboundMessage om WHERE om.status IN :statuses AND om.createdAt < :before")
+    int deleteFinishedBefore(@Param("statuses") Collection<OutboundMessage.Status> statuses,
+                             @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,33 @@
+package com.memail.repository;
+
+import com.memail.model.SearchDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface SearchDocumentRepository extends JpaRepository<SearchDocument, Long> {
+
+    /**
+     * Build or rebuild the document of an indexed message
+     * Subject and addresses come from the header row; body text and attachment names are extracted by the caller
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO message_search (header_id, user_id, folder, sent_date, attachment_names, document) " +
+                   "SELECT mh.id, mh.user_id, mh.folder, COALESCE(mh.sent_date, mh.received_date), :attachments, " +
+                   "setweight(to_tsvector('simple', COALESCE(mh.subject, '')), 'A') || " +
+                   "setweight(to_tsvector('simple', COALESCE(mh.from_address, '')), 'B') || " +
+                   "setweight(to_tsvector('simple', COALESCE(mh.to_addresses, '') || ' ' || COALESCE(mh.cc_addresses, '')), 'C') || " +
+                   "setweight(to_tsvector('simple', :body || ' ' || :attachments), 'D') " +
+                   "FROM message_headers mh WHERE mh.id = :headerId " +
+                   "ON CONFLICT (header_id) DO UPDATE SET document = EXCLUDED.document, " +
+                   "attachment_names = EXCLUDED.attachment_names, indexed_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int upsert(@Param("headerId") long headerId,
+               @Param("body") String body,
+               @Param("attachments") String attachments);
+}
@@ -0,0 +1,17 @@
+package com.memail.repository;
+
+import com.memail.model.ThreadMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ThreadMemberRepository extends JpaRepository<ThreadMember, Long> {
+
+    /**
+     * Find the thread memberships of the given Message-IDs
+     */
+    List<ThreadMember> findByUserIdAndMessageIdIn(String userId, Collection<String> messageIds);
+}
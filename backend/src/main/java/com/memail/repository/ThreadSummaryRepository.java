@@ -0,0 +1,47 @@
+package com.memail.repository;
+
+import com.memail.model.ThreadSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ThreadSummaryRepository extends JpaRepository<ThreadSummary, Long> {
+
+    /**
+     * Page of a folder's conversations, most recent activity first
+     */
+    List<ThreadSummary> findByUserIdAndFolderOrderByLastDateDesc(String userId, String folder, Pageable pageable);
+
+    long countByUserIdAndFolder(String userId, String folder);
+
+    /**
+     * Threads whose normalized subject matches, for subject-based threading
+     */
+    List<ThreadSummary> findByUserIdAndSubjectKeyIn(String userId, Collection<String> subjectKeys);
+
+    /**
+     * Find the per-folder summaries of one thread
+     */
+    List<ThreadSummary> findByUserIdAndThreadId(String userId, String threadId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ThreadSummary ts WHERE ts.userId = :userId AND ts.threadId IN :threadIds")
+    int deleteByThreadIds(@Param("userId") String userId, @Param("threadIds") Collection<String> threadIds);
+
+    /**
+     * Drop a folder's summaries, e.g. after its UIDVALIDITY changed
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ThreadSummary ts WHERE ts.userId = :userId AND ts.folder = :folder")
+    int deleteByUserIdAndFolder(@Param("userId") String userId, @Param("folder") String folder);
+}
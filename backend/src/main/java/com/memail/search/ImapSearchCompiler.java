@@ -0,0 +1,202 @@
+package com.memail.search;
+
+import com.memail.search.SearchNode.Field;
+import com.memail.search.SearchNode.Term;
+import jakarta.mail.*;
+import jakarta.mail.search.*;
+
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Runs a search plan against an IMAP folder
+ *
+ * Every subtree without label:/in: terms is compiled into one SearchTerm and sent as a
+ * single server-side SEARCH; only the terms IMAP cannot express are combined locally as
+ * UID sets. Only search keys the server understands are produced, so the client never
+ * falls back to downloading messages to match them.
+ */
+public class ImapSearchCompiler {
+
+    private final Folder folder;
+    private final SearchPlan plan;
+    private Set<Long> allUids;
+
+    private ImapSearchCompiler(Folder folder, SearchPlan plan) {
+        this.folder = folder;
+        this.plan = plan;
+    }
+
+    /**
+     * UIDs of the open folder's messages that match the plan
+     */
+    public static Set<Long> evaluate(Folder folder, SearchPlan plan) throws MessagingException {
+        ImapSearchCompiler compiler = new ImapSearchCompiler(folder, plan);
+        return plan.getQuery() == null ? compiler.all() : compiler.eval(plan.getQuery());
+    }
+
+    /**
+     * Whether a subtree can be sent to the server as one SEARCH
+     */
+    static boolean isNative(SearchNode node) {
+        return !node.anyTerm(term -> term.getField() == Field.LABEL || term.getField() == Field.IN);
+    }
+
+    /**
+     * IMAP search key of a subtree that satisfies isNative
+     */
+    static SearchTerm compile(SearchNode node) {
+        if (node instanceof SearchNode.And) {
+            return new AndTerm(compileAll(((SearchNode.And) node).getChildren()));
+        }
+        if (node instanceof SearchNode.Or) {
+            return new OrTerm(compileAll(((SearchNode.Or) node).getChildren()));
+        }
+        if (node instanceof SearchNode.Not) {
+            return new NotTerm(compile(((SearchNode.Not) node).getChild()));
+        }
+
+        Term term = (Term) node;
+        String value = term.getValue();
+        switch (term.getField()) {
+            case FROM:
+                return new FromStringTerm(value);
+            case TO:
+                return new OrTerm(new RecipientStringTerm(Message.RecipientType.TO, value),
+                    new RecipientStringTerm(Message.RecipientType.CC, value));
+            case SUBJECT:
+                return new SubjectTerm(value);
+            case BODY:
+                return new BodyTerm(value);
+            case BEFORE:
+                return new SentDateTerm(ComparisonTerm.LT, toDate(value));
+            case AFTER:
+                return new SentDateTerm(ComparisonTerm.GE, toDate(value));
+            case LARGER:
+                return new SizeTerm(ComparisonTerm.GT, toSize(value));
+            case SMALLER:
+                return new SizeTerm(ComparisonTerm.LT, toSize(value));
+            case HAS:
+                // IMAP has no attachment key; mixed multiparts are what the header index counts too
+                return new HeaderTerm("Content-Type", "multipart/mixed");
+            case IS:
+                return flagTerm(value);
+            case TEXT:
+            default:
+                return new OrTerm(new SearchTerm[]{new SubjectTerm(value), new FromStringTerm(value), new BodyTerm(value)});
+        }
+    }
+
+    private static SearchTerm[] compileAll(List<SearchNode> nodes) {
+        SearchTerm[] terms = new SearchTerm[nodes.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = compile(nodes.get(i));
+        }
+        return terms;
+    }
+
+    private static SearchTerm flagTerm(String value) {
+        switch (value) {
+            case "unread":
+                return new FlagTerm(new Flags(Flags.Flag.SEEN), false);
+            case "read":
+                return new FlagTerm(new Flags(Flags.Flag.SEEN), true);
+            case "answered":
+                return new FlagTerm(new Flags(Flags.Flag.ANSWERED), true);
+            case "draft":
+                return new FlagTerm(new Flags(Flags.Flag.DRAFT), true);
+            default:
+                return new FlagTerm(new Flags(Flags.Flag.FLAGGED), true);
+        }
+    }
+
+    private static Date toDate(String value) {
+        return Date.from(SearchQueryParser.parseDate(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static int toSize(String value) {
+        return (int) Math.min(Integer.MAX_VALUE, SearchQueryParser.parseSize(value));
+    }
+
+    private Set<Long> eval(SearchNode node) throws MessagingException {
+        if (isNative(node)) {
+            return search(compile(node));
+        }
+        if (node instanceof SearchNode.And) {
+            List<SearchNode> natives = new ArrayList<>();
+            Set<Long> result = null;
+            for (SearchNode child : ((SearchNode.And) node).getChildren()) {
+                if (isNative(child)) {
+                    natives.add(child);
+                } else {
+                    result = intersect(result, eval(child));
+                }
+            }
+            if (!natives.isEmpty() && (result == null || !result.isEmpty())) {
+                SearchTerm term = natives.size() == 1 ? compile(natives.get(0)) : new AndTerm(compileAll(natives));
+                result = intersect(result, search(term));
+            }
+            return result;
+        }
+        if (node instanceof SearchNode.Or) {
+            List<SearchNode> natives = new ArrayList<>();
+            Set<Long> result = new HashSet<>();
+            for (SearchNode child : ((SearchNode.Or) node).getChildren()) {
+                if (isNative(child)) {
+                    natives.add(child);
+                } else {
+                    result.addAll(eval(child));
+                }
+            }
+            if (!natives.isEmpty()) {
+                result.addAll(search(natives.size() == 1 ? compile(natives.get(0)) : new OrTerm(compileAll(natives))));
+            }
+            return result;
+        }
+        if (node instanceof SearchNode.Not) {
+            Set<Long> result = new HashSet<>(all());
+            result.removeAll(eval(((SearchNode.Not) node).getChild()));
+            return result;
+        }
+
+        Term term = (Term) node;
+        if (term.getField() == Field.LABEL) {
+            return plan.labelUids(term);
+        }
+        return SearchPlanner.matchesFolder(term.getValue(), plan.getFolder()) ? all() : Collections.emptySet();
+    }
+
+    private static Set<Long> intersect(Set<Long> current, Set<Long> next) {
+        if (current == null) {
+            return new HashSet<>(next);
+        }
+        current.retainAll(next);
+        return current;
+    }
+
+    private Set<Long> search(SearchTerm term) throws MessagingException {
+        return uids(folder.search(term));
+    }
+
+    private Set<Long> all() throws MessagingException {
+        if (allUids == null) {
+            allUids = uids(folder.getMessages());
+        }
+        return allUids;
+    }
+
+    private Set<Long> uids(Message[] messages) throws MessagingException {
+        FetchProfile profile = new FetchProfile();
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        folder.fetch(messages, profile);
+
+        Set<Long> uids = new HashSet<>(messages.length * 2);
+        UIDFolder uidFolder = (UIDFolder) folder;
+        for (Message message : messages) {
+            if (!message.isExpunged()) {
+                uids.add(uidFolder.getUID(message));
+            }
+        }
+        return uids;
+    }
+}
@@ -0,0 +1,202 @@
+package com.memail.search;
+
+import com.memail.search.SearchNode.Term;
+
+import java.util.*;
+
+/**
+ * A search compiled to SQL over message_headers (alias mh) and message_search (alias ms)
+ *
+ * Text terms become tsquery matches against the weighted document, operators become
+ * column predicates, and label terms become UID sets resolved from the label tables.
+ */
+public class IndexQuery {
+
+    private final String where;
+    private final Map<String, Object> parameters;
+    private final boolean fullText;
+    private final String rankQuery;
+
+    private IndexQuery(String where, Map<String, Object> parameters, boolean fullText, String rankQuery) {
+        this.where = where;
+        this.parameters = parameters;
+        this.fullText = fullText;
+        this.rankQuery = rankQuery;
+    }
+
+    /**
+     * Boolean SQL expression; parameters are named :p0, :p1, ...
+     */
+    public String getWhere() {
+        return where;
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Whether the expression reads the full-text document and needs the message_search join
+     */
+    public boolean isFullText() {
+        return fullText;
+    }
+
+    /**
+     * tsquery of the positive text terms for ranking, or null when nothing can be ranked
+     */
+    public String getRankQuery() {
+        return rankQuery;
+    }
+
+    /**
+     * Compile a query for one folder; a null query matches every message
+     */
+    static IndexQuery compile(SearchNode query, String folder, Map<Term, Set<Long>> labelUids) {
+        if (query == null) {
+            return new IndexQuery("TRUE", Collections.emptyMap(), false, null);
+        }
+        Compiler compiler = new Compiler(folder, labelUids);
+        String where = compiler.compile(query, false);
+        String rank = compiler.rankTerms.isEmpty() ? null : String.join(" | ", compiler.rankTerms);
+        return new IndexQuery(where, compiler.parameters, compiler.fullText, rank);
+    }
+
+    private static final class Compiler {
+        private final String folder;
+        private final Map<Term, Set<Long>> labelUids;
+        private final Map<String, Object> parameters = new LinkedHashMap<>();
+        private final List<String> rankTerms = new ArrayList<>();
+        private boolean fullText;
+
+        Compiler(String folder, Map<Term, Set<Long>> labelUids) {
+            this.folder = folder;
+            this.labelUids = labelUids;
+        }
+
+        String compile(SearchNode node, boolean negated) {
+            if (node instanceof SearchNode.And) {
+                return join(((SearchNode.And) node).getChildren(), " AND ", negated);
+            }
+            if (node instanceof SearchNode.Or) {
+                return join(((SearchNode.Or) node).getChildren(), " OR ", negated);
+            }
+            if (node instanceof SearchNode.Not) {
+                return "NOT (" + compile(((SearchNode.Not) node).getChild(), !negated) + ")";
+            }
+            return term((Term) node, negated);
+        }
+
+        private String join(List<SearchNode> children, String operator, boolean negated) {
+            StringJoiner joiner = new StringJoiner(operator, "(", ")");
+            for (SearchNode child : children) {
+                joiner.add(compile(child, negated));
+            }
+            return joiner.toString();
+        }
+
+        private String term(Term term, boolean negated) {
+            switch (term.getField()) {
+                case TEXT:
+                case FROM:
+                case TO:
+                case SUBJECT:
+                case BODY: {
+                    String tsQuery = toTsQuery(term);
+                    if (tsQuery.isEmpty()) {
+                        return "TRUE";
+                    }
+                    fullText = true;
+                    if (!negated) {
+                        rankTerms.add("(" + tsQuery + ")");
+                    }
+                    return "ms.document @@ to_tsquery('simple', " + bind(tsQuery) + ")";
+                }
+                case BEFORE:
+                    return "COALESCE(mh.sent_date, mh.received_date) < "
+                        + bind(SearchQueryParser.parseDate(term.getValue()).atStartOfDay());
+                case AFTER:
+                    return "COALESCE(mh.sent_date, mh.received_date) >= "
+                        + bind(SearchQueryParser.parseDate(term.getValue()).atStartOfDay());
+                case LARGER:
+                    return "mh.size_bytes > " + bind((int) Math.min(Integer.MAX_VALUE, SearchQueryParser.parseSize(term.getValue())));
+                case SMALLER:
+                    return "mh.size_bytes < " + bind((int) Math.min(Integer.MAX_VALUE, SearchQueryParser.parseSize(term.getValue())));
+                case HAS:
+                    return "mh.has_attachments";
+                case IS:
+                    return isColumn(term.getValue());
+                case LABEL: {
+                    Set<Long> uids = labelUids.getOrDefault(term, Collections.emptySet());
+                    return uids.isEmpty() ? "FALSE" : "mh.uid IN (" + bind(new ArrayList<>(uids)) + ")";
+                }
+                case IN:
+                    return SearchPlanner.matchesFolder(term.getValue(), folder) ? "TRUE" : "FALSE";
+                default:
+                    return "TRUE";
+            }
+        }
+
+        private String isColumn(String value) {
+            switch (value) {
+                case "unread":
+                    return "NOT mh.seen";
+                case "read":
+                    return "mh.seen";
+                case "starred":
+                case "flagged":
+                    return "mh.flagged";
+                case "answered":
+                    return "mh.answered";
+                case "draft":
+                    return "mh.draft";
+                default:
+                    return "TRUE";
+            }
+        }
+
+        private String bind(Object value) {
+            String name = "p" + parameters.size();
+            parameters.put(name, value);
+            return ":" + name;
+        }
+    }
+
+    /**
+     * tsquery of a text term
+     * from:/to:/subject:/body: restrict the words to their document weight (A subject,
+     * B from, C to/cc, D body and attachment names); words of a phrase must be adjacent
+     */
+    static String toTsQuery(Term term) {
+        String weight;
+        switch (term.getField()) {
+            case SUBJECT:
+                weight = "A";
+                break;
+            case FROM:
+                weight = "B";
+                break;
+            case TO:
+                weight = "C";
+                break;
+            case BODY:
+                weight = "D";
+                break;
+            default:
+                weight = null;
+                break;
+        }
+
+        List<String> lexemes = new ArrayList<>();
+        for (String word : term.getValue().trim().split("\\s+")) {
+            if (!word.isEmpty()) {
+                lexemes.add("'" + word.replace("\\", "\\\\").replace("'", "''") + "'"
+                    + (weight != null ? ":" + weight : ""));
+            }
+        }
+        if (lexemes.size() <= 1) {
+            return lexemes.isEmpty() ? "" : lexemes.get(0);
+        }
+        return "(" + String.join(" <-> ", lexemes) + ")";
+    }
+}
@@ -0,0 +1,129 @@
+package com.memail.search;
+
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed search query: terms combined with AND, OR and NOT
+ */
+public abstract class SearchNode {
+
+    public enum Field {
+        TEXT, FROM, TO, SUBJECT, BODY, BEFORE, AFTER, LARGER, SMALLER, HAS, IS, LABEL, IN
+    }
+
+    /**
+     * Whether any term of this subtree satisfies the predicate
+     */
+    public abstract boolean anyTerm(Predicate<Term> predicate);
+
+    public static final class And extends SearchNode {
+        private final List<SearchNode> children;
+
+        public And(List<SearchNode> children) {
+            this.children = children;
+        }
+
+        public List<SearchNode> getChildren() {
+            return children;
+        }
+
+        @Override
+        public boolean anyTerm(Predicate<Term> predicate) {
+            return children.stream().anyMatch(child -> child.anyTerm(predicate));
+        }
+
+        @Override
+        public String toString() {
+            return children.stream().map(SearchNode::toString).collect(Collectors.joining(" ", "AND(", ")"));
+        }
+    }
+
+    public static final class Or extends SearchNode {
+        private final List<SearchNode> children;
+
+        public Or(List<SearchNode> children) {
+            this.children = children;
+        }
+
+        public List<SearchNode> getChildren() {
+            return children;
+        }
+
+        @Override
+        public boolean anyTerm(Predicate<Term> predicate) {
+            return children.stream().anyMatch(child -> child.anyTerm(predicate));
+        }
+
+        @Override
+        public String toString() {
+            return children.stream().map(SearchNode::toString).collect(Collectors.joining(" ", "OR(", ")"));
+        }
+    }
+
+    public static final class Not extends SearchNode {
+        private final SearchNode child;
+
+        public Not(SearchNode child) {
+            this.child = child;
+        }
+
+        public SearchNode getChild() {
+            return child;
+        }
+
+        @Override
+        public boolean anyTerm(Predicate<Term> predicate) {
+            return child.anyTerm(predicate);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT(" + child + ")";
+        }
+    }
+
+    public static final class Term extends SearchNode {
+        private final Field field;
+        private final String value;
+        private final boolean phrase;
+
+        public Term(Field field, String value, boolean phrase) {
+            this.field = field;
+            this.value = value;
+            this.phrase = phrase;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isPhrase() {
+            return phrase;
+        }
+
+        /**
+         * Whether the term matches words of the message text rather than header fields or flags
+         */
+        public boolean isText() {
+            return field == Field.TEXT || field == Field.FROM || field == Field.TO
+                || field == Field.SUBJECT || field == Field.BODY;
+        }
+
+        @Override
+        public boolean anyTerm(Predicate<Term> predicate) {
+            return predicate.test(this);
+        }
+
+        @Override
+        public String toString() {
+            String quoted = phrase ? "\"" + value + "\"" : value;
+            return field == Field.TEXT ? quoted : field.name().toLowerCase() + ":" + quoted;
+        }
+    }
+}
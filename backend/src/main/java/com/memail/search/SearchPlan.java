@@ -0,0 +1,66 @@
+package com.memail.search;
+
+import com.memail.search.SearchNode.Term;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How one search of one folder is executed
+ */
+public class SearchPlan {
+
+    public enum Engine {
+        /** Header index and full-text documents in Postgres */
+        INDEX,
+        /** IMAP SEARCH on the server, for folders the index cannot answer yet */
+        IMAP
+    }
+
+    private final Engine engine;
+    private final String folder;
+    private final SearchNode query;
+    private final Map<Term, Set<Long>> labelUids;
+    private final IndexQuery indexQuery;
+
+    SearchPlan(Engine engine, String folder, SearchNode query, Map<Term, Set<Long>> labelUids, IndexQuery indexQuery) {
+        this.engine = engine;
+        this.folder = folder;
+        this.query = query;
+        this.labelUids = labelUids;
+        this.indexQuery = indexQuery;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Folder to search, after in: was applied
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * Remaining query, or null to match every message
+     */
+    public SearchNode getQuery() {
+        return query;
+    }
+
+    /**
+     * UIDs in this folder carrying the label of a label: term, read from the label tables
+     */
+    public Set<Long> labelUids(Term term) {
+        return labelUids.getOrDefault(term, Collections.emptySet());
+    }
+
+    /**
+     * Compiled SQL for the INDEX engine, null for IMAP
+     */
+    public IndexQuery getIndexQuery() {
+        return indexQuery;
+    }
+}
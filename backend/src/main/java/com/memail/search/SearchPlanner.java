@@ -0,0 +1,210 @@
+package com.memail.search;
+
+import com.memail.model.Label;
+import com.memail.model.MessageHeader;
+import com.memail.model.MessageLabel;
+import com.memail.repository.LabelRepository;
+import com.memail.repository.MessageHeaderRepository;
+import com.memail.repository.MessageLabelRepository;
+import com.memail.search.SearchNode.Field;
+import com.memail.search.SearchNode.Term;
+import com.memail.service.HeaderIndexService;
+import com.memail.service.SearchIndexService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Decides which engine answers each part of a search
+ *
+ * label: terms are always resolved from the label tables to UIDs of the folder, through
+ * the header index for labels stored by thread id or Message-ID. A folder with a header index
+ * answers everything else in one SQL query (flags, dates, sizes and attachments from
+ * message_headers, words from the full-text documents); text terms need the folder's
+ * documents to be complete. Otherwise the query goes to IMAP SEARCH, one command per
+ * label-free subtree. A top-level in: picks the folder to search; in:anywhere (or the
+ * folder ALL) searches every folder, see MailService.searchEverywhere.
+ */
+@Component
+public class SearchPlanner {
+
+    // Folder names that mean every folder
+    private static final Set<String> EVERYWHERE = Set.of("ALL", "ANYWHERE");
+
+    // Prefix of the ids HeaderIndexService gives indexed messages without a Message-ID: msg-FOLDER-UID
+    private static final String INDEXED_ID_PREFIX = "msg-";
+
+    @Autowired
+    private HeaderIndexService headerIndexService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private LabelRepository labelRepository;
+
+    @Autowired
+    private MessageLabelRepository messageLabelRepository;
+
+    @Autowired
+    private MessageHeaderRepository messageHeaderRepository;
+
+    /**
+     * Plan a parsed query against a folder; a top-level in: overrides the folder
+     */
+    public SearchPlan plan(String userEmail, String folderName, SearchNode query) {
+        String folder = folderName(folderName);
+
+        // Top-level in: terms select the folder instead of filtering inside it
+        String selected = selectedFolder(query);
+        if (selected != null && !EVERYWHERE.contains(selected)) {
+            folder = selected;
+        }
+        query = withoutFolders(query);
+
+        Map<Term, Set<Long>> labelUids = resolveLabels(userEmail, folder, query);
+
+        boolean needsDocuments = query != null && query.anyTerm(Term::isText);
+        if (headerIndexService.isIndexed(userEmail, folder)
+                && (!needsDocuments || searchIndexService.isComplete(userEmail, folder))) {
+            return new SearchPlan(SearchPlan.Engine.INDEX, folder, query, labelUids,
+                IndexQuery.compile(query, folder, labelUids));
+        }
+        return new SearchPlan(SearchPlan.Engine.IMAP, folder, query, labelUids, null);
+    }
+
+    /**
+     * Whether a search covers every folder rather than the requested one
+     */
+    public static boolean isEverywhere(String folderName, SearchNode query) {
+        String selected = selectedFolder(query);
+        return EVERYWHERE.contains(selected != null ? selected : folderName(folderName));
+    }
+
+    /**
+     * Logical folder name as stored in the index
+     */
+    static String folderName(String name) {
+        return name == null || name.isBlank() ? "INBOX" : name.trim().toUpperCase();
+    }
+
+    /**
+     * Whether an in: value names the folder being searched
+     */
+    static boolean matchesFolder(String value, String folder) {
+        String name = folderName(value);
+        return EVERYWHERE.contains(name) || name.equals(folder);
+    }
+
+    /**
+     * Folder of the last top-level in: term, or null
+     */
+    private static String selectedFolder(SearchNode query) {
+        String selected = null;
+        if (isFolderTerm(query)) {
+            selected = folderName(((Term) query).getValue());
+        } else if (query instanceof SearchNode.And) {
+            for (SearchNode child : ((SearchNode.And) query).getChildren()) {
+                if (isFolderTerm(child)) {
+                    selected = folderName(((Term) child).getValue());
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static SearchNode withoutFolders(SearchNode query) {
+        if (isFolderTerm(query)) {
+            return null;
+        }
+        if (!(query instanceof SearchNode.And)) {
+            return query;
+        }
+        List<SearchNode> rest = new ArrayList<>();
+        for (SearchNode child : ((SearchNode.And) query).getChildren()) {
+            if (!isFolderTerm(child)) {
+                rest.add(child);
+            }
+        }
+        return rest.isEmpty() ? null : rest.size() == 1 ? rest.get(0) : new SearchNode.And(rest);
+    }
+
+    private static boolean isFolderTerm(SearchNode node) {
+        return node instanceof Term && ((Term) node).getField() == Field.IN;
+    }
+
+    private Map<Term, Set<Long>> resolveLabels(String userEmail, String folder, SearchNode query) {
+        if (query == null || !query.anyTerm(term -> term.getField() == Field.LABEL)) {
+            return Collections.emptyMap();
+        }
+        List<Label> labels = labelRepository.findByUserIdOrderByNameAsc(userEmail);
+        Map<Term, Set<Long>> resolved = new IdentityHashMap<>();
+        query.anyTerm(term -> {
+            if (term.getField() == Field.LABEL) {
+                resolved.put(term, labelUids(userEmail, folder, labels, term.getValue()));
+            }
+            return false;
+        });
+        return resolved;
+    }
+
+    private Set<Long> labelUids(String userEmail, String folder, List<Label> labels, String name) {
+        List<Long> labelIds = new ArrayList<>();
+        for (Label label : labels) {
+            if (label.getName().equalsIgnoreCase(name)) {
+                labelIds.add(label.getId());
+            }
+        }
+        if (labelIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        // The UI labels conversations by thread id and messages by Message-ID, which hold in
+        // any folder; labels stored as IMAP UIDs only match in the folder they were set in
+        Set<Long> uids = new HashSet<>();
+        Set<String> threadIds = new HashSet<>();
+        Set<String> messageIds = new HashSet<>();
+        for (MessageLabel messageLabel : messageLabelRepository.findByUserIdAndLabelIds(userEmail, labelIds)) {
+            String key = messageLabel.getMessageUid().trim();
+            if (key.isEmpty()) {
+                continue;
+            }
+            if (key.chars().allMatch(Character::isDigit)) {
+                if (folderName(messageLabel.getFolder()).equals(folder)) {
+                    try {
+                        uids.add(Long.parseLong(key));
+                    } catch (NumberFormatException e) {
+                        // Too long for a UID; cannot match a message of the folder
+                    }
+                }
+            } else if (key.startsWith(INDEXED_ID_PREFIX + folder + "-")) {
+                // Stand-in id of an indexed message without a Message-ID header
+                try {
+                    uids.add(Long.parseLong(key.substring(INDEXED_ID_PREFIX.length() + folder.length() + 1)));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            } else if (key.contains("@")) {
+                // Stored with or without the angle brackets of the header
+                String bare = key.replaceAll("^<|>$", "");
+                messageIds.add(bare);
+                messageIds.add("<" + bare + ">");
+            } else {
+                threadIds.add(key);
+            }
+        }
+
+        if (!threadIds.isEmpty()) {
+            for (MessageHeader header : messageHeaderRepository.findByUserIdAndFolderAndThreadIdIn(userEmail, folder, threadIds)) {
+                uids.add(header.getUid());
+            }
+        }
+        if (!messageIds.isEmpty()) {
+            for (MessageHeader header : messageHeaderRepository.findByUserIdAndFolderAndMessageIdIn(userEmail, folder, messageIds)) {
+                uids.add(header.getUid());
+            }
+        }
+        return uids;
+    }
+}
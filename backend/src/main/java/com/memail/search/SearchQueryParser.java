@@ -0,0 +1,296 @@
+package com.memail.search;
+
+import com.memail.search.SearchNode.Field;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Parser for the search box query language
+ *
+ * <pre>
+ * query   := and
+ * and     := or+                     -- adjacent terms are ANDed, "AND" is optional
+ * or      := unary ( "OR" unary )*   -- OR binds tighter than AND, as in Gmail
+ * unary   := ( "-" | "NOT" ) unary | "(" and ")" | term
+ * term    := [ field ":" ] ( word | "\"" phrase "\"" )
+ * </pre>
+ *
+ * Fields: from, to, subject, body, before/after (yyyy/mm/dd or yyyy-mm-dd), larger/smaller
+ * (bytes, K, M), has:attachment, is:unread|read|starred|flagged|answered|draft, label, in.
+ * Unknown fields and invalid operator values are searched as plain text.
+ */
+public class SearchQueryParser {
+
+    private static final Map<String, Field> FIELDS = Map.ofEntries(
+        Map.entry("from", Field.FROM),
+        Map.entry("to", Field.TO),
+        Map.entry("subject", Field.SUBJECT),
+        Map.entry("body", Field.BODY),
+        Map.entry("before", Field.BEFORE),
+        Map.entry("after", Field.AFTER),
+        Map.entry("larger", Field.LARGER),
+        Map.entry("smaller", Field.SMALLER),
+        Map.entry("has", Field.HAS),
+        Map.entry("is", Field.IS),
+        Map.entry("label", Field.LABEL),
+        Map.entry("in", Field.IN)
+    );
+
+    public static final Set<String> IS_VALUES = Set.of("unread", "read", "starred", "flagged", "answered", "draft");
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+        DateTimeFormatter.ofPattern("yyyy/M/d"),
+        DateTimeFormatter.ofPattern("yyyy-M-d")
+    };
+
+    private enum TokenType { WORD, PHRASE, LPAREN, RPAREN, NEGATE }
+
+    private static final class Token {
+        final TokenType type;
+        final String field;
+        final String text;
+
+        Token(TokenType type, String field, String text) {
+            this.type = type;
+            this.field = field;
+            this.text = text;
+        }
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.WORD && field == null && keyword.equals(text);
+        }
+    }
+
+    private final List<Token> tokens;
+    private int position;
+
+    private SearchQueryParser(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parse a query; returns null for a blank query, which matches everything
+     */
+    public static SearchNode parse(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        SearchQueryParser parser = new SearchQueryParser(tokenize(query));
+        List<SearchNode> parts = new ArrayList<>();
+        while (parser.position < parser.tokens.size()) {
+            SearchNode node = parser.parseAnd();
+            if (node != null) {
+                parts.add(node);
+            }
+            if (parser.position < parser.tokens.size()) {
+                // Stray closing parenthesis
+                parser.position++;
+            }
+        }
+        return combine(parts, true);
+    }
+
+    private SearchNode parseAnd() {
+        List<SearchNode> terms = new ArrayList<>();
+        while (position < tokens.size()) {
+            Token token = tokens.get(position);
+            if (token.type == TokenType.RPAREN) {
+                break;
+            }
+            if (token.isKeyword("AND") || token.isKeyword("OR")) {
+                // Dangling operator
+                position++;
+                continue;
+            }
+            SearchNode node = parseOr();
+            if (node != null) {
+                terms.add(node);
+            }
+        }
+        return combine(terms, true);
+    }
+
+    private SearchNode parseOr() {
+        List<SearchNode> alternatives = new ArrayList<>();
+        SearchNode first = parseUnary();
+        if (first != null) {
+            alternatives.add(first);
+        }
+        while (position + 1 < tokens.size() && tokens.get(position).isKeyword("OR")
+                && tokens.get(position + 1).type != TokenType.RPAREN) {
+            position++;
+            SearchNode next = parseUnary();
+            if (next != null) {
+                alternatives.add(next);
+            }
+        }
+        return combine(alternatives, false);
+    }
+
+    private SearchNode parseUnary() {
+        Token token = tokens.get(position++);
+        switch (token.type) {
+            case NEGATE:
+                return position < tokens.size() ? negate(parseUnary()) : null;
+            case LPAREN: {
+                SearchNode inner = parseAnd();
+                if (position < tokens.size() && tokens.get(position).type == TokenType.RPAREN) {
+                    position++;
+                }
+                return inner;
+            }
+            case WORD:
+                if (token.isKeyword("NOT")) {
+                    return position < tokens.size() ? negate(parseUnary()) : null;
+                }
+                return term(token);
+            case PHRASE:
+                return term(token);
+            default:
+                // A closing parenthesis where a term was expected
+                return null;
+        }
+    }
+
+    private static SearchNode negate(SearchNode node) {
+        return node != null ? new SearchNode.Not(node) : null;
+    }
+
+    private static SearchNode term(Token token) {
+        boolean phrase = token.type == TokenType.PHRASE;
+        if (token.field == null) {
+            return token.text.isEmpty() ? null : new SearchNode.Term(Field.TEXT, token.text, phrase);
+        }
+
+        Field field = FIELDS.get(token.field.toLowerCase());
+        String value = token.text;
+        boolean valid = field != null && !value.isEmpty();
+        if (valid) {
+            switch (field) {
+                case BEFORE:
+                case AFTER:
+                    valid = parseDate(value) != null;
+                    break;
+                case LARGER:
+                case SMALLER:
+                    valid = parseSize(value) >= 0;
+                    break;
+                case HAS:
+                    valid = "attachment".equalsIgnoreCase(value);
+                    break;
+                case IS:
+                    valid = IS_VALUES.contains(value.toLowerCase());
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!valid) {
+            String text = token.field + ":" + (phrase ? "\"" + value + "\"" : value);
+            return new SearchNode.Term(Field.TEXT, text, false);
+        }
+        boolean caseInsensitive = field == Field.HAS || field == Field.IS || field == Field.IN;
+        return new SearchNode.Term(field, caseInsensitive ? value.toLowerCase() : value, phrase);
+    }
+
+    private static SearchNode combine(List<SearchNode> nodes, boolean and) {
+        if (nodes.isEmpty()) {
+            return null;
+        }
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        return and ? new SearchNode.And(nodes) : new SearchNode.Or(nodes);
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, null, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, null, ")"));
+                i++;
+            } else if (c == '-' && i + 1 < length && !Character.isWhitespace(query.charAt(i + 1))) {
+                tokens.add(new Token(TokenType.NEGATE, null, "-"));
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? length : end;
+                tokens.add(new Token(TokenType.PHRASE, null, query.substring(i + 1, end).trim()));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < length && !Character.isWhitespace(query.charAt(i))
+                        && query.charAt(i) != '(' && query.charAt(i) != ')' && query.charAt(i) != ':') {
+                    i++;
+                }
+                if (i < length && query.charAt(i) == ':' && i > start) {
+                    String field = query.substring(start, i);
+                    i++;
+                    if (i < length && query.charAt(i) == '"') {
+                        int end = query.indexOf('"', i + 1);
+                        end = end < 0 ? length : end;
+                        tokens.add(new Token(TokenType.PHRASE, field, query.substring(i + 1, end).trim()));
+                        i = end + 1;
+                    } else {
+                        int valueStart = i;
+                        while (i < length && !Character.isWhitespace(query.charAt(i)) && query.charAt(i) != ')') {
+                            i++;
+                        }
+                        tokens.add(new Token(TokenType.WORD, field, query.substring(valueStart, i)));
+                    }
+                } else {
+                    // A lone ':' or a word ending in ':' is searched as text
+                    while (i < length && !Character.isWhitespace(query.charAt(i))
+                            && query.charAt(i) != '(' && query.charAt(i) != ')') {
+                        i++;
+                    }
+                    tokens.add(new Token(TokenType.WORD, null, query.substring(start, i)));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Date of a before:/after: value, or null if it is not a date
+     */
+    public static LocalDate parseDate(String value) {
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(value, format);
+            } catch (DateTimeParseException e) {
+                // Try the next format
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bytes of a larger:/smaller: value such as 500, 20K or 5M; -1 if it is not a size
+     */
+    public static long parseSize(String value) {
+        String number = value.toUpperCase();
+        long unit = 1;
+        if (number.endsWith("K") || number.endsWith("M")) {
+            unit = number.endsWith("K") ? 1024 : 1024 * 1024;
+            number = number.substring(0, number.length() - 1);
+        }
+        try {
+            long size = Long.parseLong(number);
+            return size >= 0 ? size * unit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.memail.search;
+
+import com.memail.dto.EmailHeaderDTO;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Merges the hits of several folders into one page, newest first
+ *
+ * Each folder's hits are sorted by date and a heap over the list heads yields the global
+ * order, reading only as far as the requested page. A message found in several folders
+ * (STARRED and IMPORTANT hold copies) is kept once, at its newest position.
+ */
+public class SearchResultMerger {
+
+    private static final Comparator<EmailHeaderDTO> NEWEST_FIRST = Comparator.comparing(
+        EmailHeaderDTO::getDate, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed();
+
+    private static final class Cursor {
+        final List<EmailHeaderDTO> hits;
+        int position;
+
+        Cursor(List<EmailHeaderDTO> hits) {
+            this.hits = hits;
+        }
+
+        EmailHeaderDTO head() {
+            return hits.get(position);
+        }
+    }
+
+    /**
+     * Distinct hits from offset to offset + limit of the merged order
+     */
+    public static List<EmailHeaderDTO> merge(Collection<List<EmailHeaderDTO>> folders, int offset, int limit) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, folders.size()),
+            (a, b) -> NEWEST_FIRST.compare(a.head(), b.head()));
+        for (List<EmailHeaderDTO> hits : folders) {
+            if (!hits.isEmpty()) {
+                List<EmailHeaderDTO> sorted = new ArrayList<>(hits);
+                sorted.sort(NEWEST_FIRST);
+                heads.add(new Cursor(sorted));
+            }
+        }
+
+        List<EmailHeaderDTO> page = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        int skipped = 0;
+        while (!heads.isEmpty() && page.size() < limit) {
+            Cursor cursor = heads.poll();
+            EmailHeaderDTO hit = cursor.head();
+            if (++cursor.position < cursor.hits.size()) {
+                heads.add(cursor);
+            }
+
+            if (hit.getMessageId() != null && !seen.add(hit.getMessageId())) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                page.add(hit);
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,341 @@
+package com.memail.service;
+
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapConnectionManager;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import com.memail.imap.ImapPartInputStream;
+import jakarta.mail.*;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimePart;
+import jakarta.mail.internet.MimeUtility;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Streams single attachment parts from IMAP
+ *
+ * A part is located through the message's BODYSTRUCTURE and read with partial FETCH of
+ * BODY[section] in fixed-size chunks through a transfer-decoding stream, so memory per
+ * download is one chunk regardless of the attachment size. Parts that are stored
+ * unencoded, or in base64 with regular line lengths, can be read from any decoded offset,
+ * which is what HTTP range requests need; other encodings are only streamed whole.
+ */
+@Service
+public class AttachmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    private static final Pattern PART_ID = Pattern.compile("\\d{1,4}(\\.\\d{1,4}){0,9}");
+
+    // Bytes probed at the start and end of a base64 part to learn its line layout
+    private static final int PROBE_BYTES = 1024;
+
+    @Autowired
+    private ImapConnectionManager imapConnectionManager;
+
+    @Autowired
+    private ImapFolderResolver imapFolderResolver;
+
+    // Bytes per partial FETCH, which is also the memory held per download
+    @Value("${memail.attachments.chunk-size:65536}")
+    private int chunkSize;
+
+    /**
+     * Receives an open attachment while its connection is leased
+     */
+    @FunctionalInterface
+    public interface DownloadHandler {
+        void handle(Attachment attachment) throws IOException;
+    }
+
+    /**
+     * One attachment part, readable from a decoded offset
+     */
+    public static class Attachment {
+        private final String fileName;
+        private final String contentType;
+        private final long size;
+        private final Opener opener;
+
+        Attachment(String fileName, String contentType, long size, Opener opener) {
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.size = size;
+            this.opener = opener;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Decoded size in bytes, or -1 if it is only known after decoding
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Whether open() accepts offsets other than 0
+         */
+        public boolean isSeekable() {
+            return size >= 0;
+        }
+
+        /**
+         * Decoded bytes from the given offset to the end of the part
+         */
+        public InputStream open(long offset) throws IOException {
+            if (offset != 0 && !isSeekable()) {
+                throw new IllegalArgumentException("Attachment does not support ranges");
+            }
+            return opener.open(offset);
+        }
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        InputStream open(long offset) throws IOException;
+    }
+
+    /**
+     * Locate a part by IMAP section id and hand it to the handler
+     * Throws NoSuchElementException if the message or part does not exist
+     */
+    public void download(String userEmail, String folderName, long uid, String partId,
+                         DownloadHandler handler) throws IOException {
+        if (partId == null || !PART_ID.matcher(partId).matches()) {
+            throw new NoSuchElementException("Invalid part id: " + partId);
+        }
+
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(folderName.toUpperCase(), Folder.READ_ONLY, imapFolderResolver);
+            if (folder == null) {
+                throw new NoSuchElementException("Folder '" + folderName + "' not found");
+            }
+            try {
+                IMAPFolder imapFolder = (IMAPFolder) folder;
+                Message message = imapFolder.getMessageByUID(uid);
+                if (message == null || message.isExpunged()) {
+                    throw new NoSuchElementException("Message " + uid + " not found in " + folderName);
+                }
+                Part part = findPart(message, partId);
+                if (part == null || part.isMimeType("multipart/*")) {
+                    throw new NoSuchElementException("Part " + partId + " not found");
+                }
+                handler.handle(open(imapFolder, message, part, partId));
+            } finally {
+                folderCache.release(folder);
+            }
+        } catch (MessagingException e) {
+            throw new IOException("Failed to read attachment: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Follow a section id through the structure; 1 is the body of a single-part message
+     */
+    private Part findPart(Message message, String partId) throws MessagingException, IOException {
+        Part part = message;
+        for (String index : partId.split("\\.")) {
+            int position = Integer.parseInt(index);
+            if (part.isMimeType("multipart/*")) {
+                Multipart multipart = (Multipart) part.getContent();
+                if (position < 1 || position > multipart.getCount()) {
+                    return null;
+                }
+                part = multipart.getBodyPart(position - 1);
+            } else if (part != message || position != 1) {
+                return null;
+            }
+        }
+        return part;
+    }
+
+    private Attachment open(IMAPFolder folder, Message message, Part part, String section) throws MessagingException, IOException {
+        String fileName = part.getFileName() != null ? part.getFileName() : "attachment-" + section;
+        String contentType = baseType(part.getContentType());
+        String encoding = part instanceof MimePart ? ((MimePart) part).getEncoding() : null;
+        encoding = encoding != null ? encoding.trim().toLowerCase() : "7bit";
+
+        if (part == message) {
+            // The size of a single-part message covers its headers too; read to the end instead
+            String transferEncoding = encoding;
+            return new Attachment(fileName, contentType, -1,
+                offset -> decode(raw(folder, message, section, 0, Long.MAX_VALUE), transferEncoding));
+        }
+
+        long encodedSize = Math.max(0, part.getSize());
+        switch (encoding) {
+            case "7bit":
+            case "8bit":
+            case "binary":
+                // Stored as is: decoded offsets are encoded offsets
+                return new Attachment(fileName, contentType, encodedSize,
+                    offset -> raw(folder, message, section, offset, encodedSize));
+            case "base64": {
+                Base64Layout layout = Base64Layout.probe(
+                    raw(folder, message, section, 0, Math.min(encodedSize, PROBE_BYTES)),
+                    raw(folder, message, section, Math.max(0, encodedSize - PROBE_BYTES), encodedSize),
+                    encodedSize);
+                if (layout != null) {
+                    return new Attachment(fileName, contentType, layout.decodedSize,
+                        offset -> layout.open(offset, start -> raw(folder, message, section, start, encodedSize)));
+                }
+                logger.debug("Irregular base64 layout in part {}, ranges disabled", section);
+                return new Attachment(fileName, contentType, -1,
+                    offset -> decode(raw(folder, message, section, 0, encodedSize), "base64"));
+            }
+            default: {
+                String transferEncoding = encoding;
+                return new Attachment(fileName, contentType, -1,
+                    offset -> decode(raw(folder, message, section, 0, encodedSize), transferEncoding));
+            }
+        }
+    }
+
+    private InputStream raw(IMAPFolder folder, Message message, String section, long start, long end) {
+        return new ImapPartInputStream(folder, message, section, start, end, chunkSize);
+    }
+
+    private static InputStream decode(InputStream raw, String encoding) throws IOException {
+        try {
+            return MimeUtility.decode(raw, encoding);
+        } catch (MessagingException e) {
+            throw new IOException("Unsupported transfer encoding " + encoding, e);
+        }
+    }
+
+    private static String baseType(String contentType) {
+        try {
+            return new ContentType(contentType).getBaseType().toLowerCase();
+        } catch (Exception e) {
+            return "application/octet-stream";
+        }
+    }
+
+    /**
+     * Line layout of a base64 part whose lines all have the same length, as every common
+     * encoder writes them; maps decoded offsets to 4-character groups of the encoded text
+     */
+    static final class Base64Layout {
+
+        @FunctionalInterface
+        interface RawOpener {
+            InputStream open(long start) throws IOException;
+        }
+
+        final int lineLength;
+        final long decodedSize;
+
+        private Base64Layout(int lineLength, long decodedSize) {
+            this.lineLength = lineLength;
+            this.decodedSize = decodedSize;
+        }
+
+        /**
+         * Learn the layout from the first and last bytes of the part; null if it is irregular
+         */
+        static Base64Layout probe(InputStream head, InputStream tail, long encodedSize) throws IOException {
+            byte[] first = head.readAllBytes();
+            byte[] last = tail.readAllBytes();
+            if (encodedSize == 0) {
+                return new Base64Layout(4, 0);
+            }
+
+            int lineLength = indexOfLineBreak(first);
+            if (lineLength < 0) {
+                // Nothing but one line in the probe: the part must be a single line
+                if (first.length < encodedSize) {
+                    return null;
+                }
+                lineLength = trimmedLength(first);
+            }
+            if (lineLength == 0 || lineLength % 4 != 0) {
+                return null;
+            }
+
+            // Characters of data, without line breaks and a trailing CRLF
+            int trailing = endsWithLineBreak(last) ? 2 : 0;
+            long body = encodedSize - trailing;
+            int stride = lineLength + 2;
+            long fullLines = body / stride;
+            long lastLine = body % stride;
+            if (lastLine == 0 && fullLines > 0) {
+                fullLines--;
+                lastLine = lineLength;
+            }
+            if (lastLine > lineLength || lastLine % 4 != 0) {
+                return null;
+            }
+            // The last line break must be where uniform lines put it
+            if (fullLines > 0) {
+                long breakOffset = fullLines * stride - 2;
+                long tailStart = encodedSize - last.length;
+                int index = (int) (breakOffset - tailStart);
+                if (index >= 0 && (index + 1 >= last.length || last[index] != '\r' || last[index + 1] != '\n')) {
+                    return null;
+                }
+            }
+
+            long dataChars = fullLines * lineLength + lastLine;
+            int padding = 0;
+            for (int i = last.length - 1 - trailing; i >= 0 && last[i] == '=' && padding < 2; i--) {
+                padding++;
+            }
+            return new Base64Layout(lineLength, dataChars / 4 * 3 - padding);
+        }
+
+        /**
+         * Decoded bytes from an offset: start at the enclosing 4-character group, drop the rest
+         */
+        InputStream open(long offset, RawOpener raw) throws IOException {
+            long bytesPerLine = lineLength / 4 * 3;
+            long line = offset / bytesPerLine;
+            long inLine = offset % bytesPerLine;
+            long encodedStart = line * (lineLength + 2) + inLine / 3 * 4;
+            InputStream decoded = decode(raw.open(encodedStart), "base64");
+            long skip = inLine % 3;
+            while (skip > 0) {
+                if (decoded.read() < 0) {
+                    break;
+                }
+                skip--;
+            }
+            return decoded;
+        }
+
+        private static int indexOfLineBreak(byte[] bytes) {
+            for (int i = 0; i + 1 < bytes.length; i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean endsWithLineBreak(byte[] bytes) {
+            return bytes.length >= 2 && bytes[bytes.length - 2] == '\r' && bytes[bytes.length - 1] == '\n';
+        }
+
+        private static int trimmedLength(byte[] bytes) {
+            return new String(bytes, StandardCharsets.US_ASCII).trim().length();
+        }
+    }
+}
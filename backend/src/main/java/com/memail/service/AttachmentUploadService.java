@@ -0,0 +1,181 @@
+package com.memail.service;
+
+import com.memail.dto.FileAttachmentDTO;
+import jakarta.activation.DataSource;
+import jakarta.activation.FileDataSource;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spool for outgoing attachments
+ *
+ * Multipart uploads are moved to a file in the spool directory and referenced by an
+ * upload id. Messages built from an id get a file-backed DataSource, so SMTP and IMAP
+ * APPEND stream the attachment from disk and heap use per send does not grow with the
+ * attachment size. Uploads are kept on the node that received them until they are
+ * released after a send or expire.
+ */
+@Service
+public class AttachmentUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentUploadService.class);
+
+    @Value("${memail.uploads.dir:${java.io.tmpdir}/memail-uploads}")
+    private String uploadDir;
+
+    // Uploads not used by then are deleted
+    @Value("${memail.uploads.ttl:2h}")
+    private Duration ttl;
+
+    private Path spool;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+    private static final class Upload {
+        final String owner;
+        final Path path;
+        final String fileName;
+        final String contentType;
+        final long size;
+        final Instant createdAt = Instant.now();
+
+        Upload(String owner, Path path, String fileName, String contentType, long size) {
+            this.owner = owner;
+            this.path = path;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.size = size;
+        }
+    }
+
+    /**
+     * File-backed source with the uploaded name and type rather than ones guessed from the spool file
+     */
+    private static final class UploadDataSource extends FileDataSource {
+        private final Upload upload;
+
+        UploadDataSource(Upload upload) {
+            super(upload.path.toFile());
+            this.upload = upload;
+        }
+
+        @Override
+        public String getContentType() {
+            return upload.contentType;
+        }
+
+        @Override
+        public String getName() {
+            return upload.fileName;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            spool = Files.createDirectories(Path.of(uploadDir));
+            // Files from a previous run have no handles left
+            try (var files = Files.list(spool)) {
+                files.forEach(this::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create upload directory " + uploadDir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Move an upload into the spool; returns its handle, which carries no content
+     */
+    public FileAttachmentDTO store(String userEmail, MultipartFile file) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path path = spool.resolve(id);
+        // Moves the container's temp file where it can, without reading it into memory
+        file.transferTo(path);
+
+        String fileName = file.getOriginalFilename() != null && !file.getOriginalFilename().isBlank()
+            ? file.getOriginalFilename() : "attachment";
+        String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
+        Upload upload = new Upload(userEmail, path, fileName, contentType, Files.size(path));
+        uploads.put(id, upload);
+        return toHandle(id, upload);
+    }
+
+    /**
+     * Handle of an upload owned by the user
+     * Throws NoSuchElementException if it does not exist, has expired or belongs to someone else
+     */
+    public FileAttachmentDTO get(String userEmail, String uploadId) {
+        return toHandle(uploadId, find(userEmail, uploadId));
+    }
+
+    /**
+     * Source reading the upload from disk each time the message is written
+     */
+    public DataSource dataSource(String userEmail, String uploadId) {
+        return new UploadDataSource(find(userEmail, uploadId));
+    }
+
+    /**
+     * Delete an upload; unknown ids are ignored
+     */
+    public void release(String userEmail, String uploadId) {
+        Upload upload = uploadId != null ? uploads.get(uploadId) : null;
+        if (upload != null && upload.owner.equals(userEmail) && uploads.remove(uploadId, upload)) {
+            deleteQuietly(upload.path);
+        }
+    }
+
+    /**
+     * Delete uploads older than the TTL
+     */
+    @Scheduled(fixedDelayString = "${memail.uploads.purge-interval:300000}")
+    public void purgeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        uploads.forEach((id, upload) -> {
+            if (upload.createdAt.isBefore(cutoff) && uploads.remove(id, upload)) {
+                deleteQuietly(upload.path);
+                logger.debug("Expired upload {} of {}", id, upload.owner);
+            }
+        });
+    }
+
+    private Upload find(String userEmail, String uploadId) {
+        Upload upload = uploadId != null ? uploads.get(uploadId) : null;
+        if (upload == null || !upload.owner.equals(userEmail)) {
+            throw new NoSuchElementException("Attachment upload " + uploadId + " not found");
+        }
+        return upload;
+    }
+
+    private static FileAttachmentDTO toHandle(String id, Upload upload) {
+        FileAttachmentDTO handle = new FileAttachmentDTO();
+        handle.setUploadId(id);
+        handle.setFileName(upload.fileName);
+        handle.setContentType(upload.contentType);
+        handle.setSize(upload.size);
+        return handle;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Unable to delete upload {}: {}", path, e.getMessage());
+        }
+    }
+}
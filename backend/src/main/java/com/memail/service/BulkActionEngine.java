@@ -0,0 +1,310 @@
+package com.memail.service;
+
+import com.memail.dto.EmailActionRequest.EmailAction;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.*;
+import jakarta.mail.search.HeaderTerm;
+import jakarta.mail.search.OrTerm;
+import jakarta.mail.search.SearchTerm;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies a mailbox action to sets of messages addressed by UID
+ *
+ * Each folder costs one UID FETCH to resolve the UID set and then one command for the
+ * whole set: STORE for flag changes, MOVE for moves (COPY, STORE \Deleted and EXPUNGE
+ * when the server lacks the MOVE extension), COPY for star/important. Removing the
+ * star/important copies finds them with a single SEARCH on Message-ID in that folder.
+ */
+@Component
+public class BulkActionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkActionEngine.class);
+
+    // Message-IDs per SEARCH when looking up copies in STARRED/IMPORTANT
+    private static final int SEARCH_BATCH_SIZE = 100;
+
+    /**
+     * Outcome of one bulk action
+     */
+    public static class ActionResult {
+        private final Map<String, List<Long>> applied;
+        private final List<String> failedFolders;
+        private final long durationMillis;
+
+        ActionResult(Map<String, List<Long>> applied, List<String> failedFolders, long durationMillis) {
+            this.applied = applied;
+            this.failedFolders = failedFolders;
+            this.durationMillis = durationMillis;
+        }
+
+        /**
+         * UIDs the action was applied to, per folder
+         */
+        public Map<String, List<Long>> getApplied() {
+            return applied;
+        }
+
+        public List<String> getFailedFolders() {
+            return failedFolders;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public int getMessageCount() {
+            return applied.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    @Autowired
+    private ImapFolderResolver imapFolderResolver;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Apply an action to the given UIDs, folder by folder, on one connection
+     * A folder that fails is logged and reported in the result; the others still run
+     */
+    public ActionResult apply(ImapConnection connection, EmailAction action, Map<String, List<Long>> uidsByFolder) {
+        long start = System.nanoTime();
+        Map<String, List<Long>> applied = new LinkedHashMap<>();
+        List<String> failed = new ArrayList<>();
+
+        for (Map.Entry<String, List<Long>> entry : uidsByFolder.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            try {
+                List<Long> uids = applyToFolder(connection, action, entry.getKey(), entry.getValue());
+                if (!uids.isEmpty()) {
+                    applied.put(entry.getKey(), uids);
+                }
+            } catch (MessagingException e) {
+                logger.warn("Failed to apply {} to {} messages in {}: {}",
+                    action, entry.getValue().size(), entry.getKey(), e.getMessage());
+                failed.add(entry.getKey());
+            }
+        }
+
+        long durationNanos = System.nanoTime() - start;
+        ActionResult result = new ActionResult(applied, failed, TimeUnit.NANOSECONDS.toMillis(durationNanos));
+        record(action, result, durationNanos);
+        logger.info("{} applied to {} messages in {} folders in {} ms",
+            action, result.getMessageCount(), applied.size(), result.getDurationMillis());
+        return result;
+    }
+
+    private List<Long> applyToFolder(ImapConnection connection, EmailAction action, String folderName,
+                                     List<Long> uids) throws MessagingException {
+        ImapFolderCache folderCache = connection.getFolderCache();
+        Folder folder = folderCache.open(folderName, Folder.READ_WRITE, imapFolderResolver);
+        if (folder == null) {
+            return Collections.emptyList();
+        }
+
+        try {
+            IMAPFolder imapFolder = (IMAPFolder) folder;
+            long[] requested = uids.stream().mapToLong(Long::longValue).toArray();
+
+            // UIDs that are gone already come back as null
+            List<Message> present = new ArrayList<>(requested.length);
+            List<Long> presentUids = new ArrayList<>(requested.length);
+            Message[] byUid = imapFolder.getMessagesByUID(requested);
+            for (int i = 0; i < byUid.length; i++) {
+                if (byUid[i] != null && !byUid[i].isExpunged()) {
+                    present.add(byUid[i]);
+                    presentUids.add(requested[i]);
+                }
+            }
+            if (present.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Message[] messages = present.toArray(new Message[0]);
+
+            switch (action) {
+                case MARK_AS_READ:
+                    folder.setFlags(messages, new Flags(Flags.Flag.SEEN), true);
+                    break;
+                case MARK_AS_UNREAD:
+                    folder.setFlags(messages, new Flags(Flags.Flag.SEEN), false);
+                    break;
+                case ARCHIVE:
+                    // For now, just mark as archived (could move to Archive folder in future)
+                    folder.setFlags(messages, new Flags(Flags.Flag.USER), true);
+                    break;
+                case DELETE:
+                case MOVE_TO_TRASH:
+                    if (!moveTo(connection, imapFolder, messages, "TRASH", true)) {
+                        return Collections.emptyList();
+                    }
+                    break;
+                case MOVE_TO_SPAM:
+                    if (!moveTo(connection, imapFolder, messages, "SPAM", false)) {
+                        return Collections.emptyList();
+                    }
+                    break;
+                case MOVE_TO_INBOX:
+                    if (!moveTo(connection, imapFolder, messages, "INBOX", false)) {
+                        return Collections.emptyList();
+                    }
+                    break;
+                case STAR:
+                    copyTo(connection, imapFolder, messages, "STARRED");
+                    folder.setFlags(messages, new Flags(Flags.Flag.FLAGGED), true);
+                    break;
+                case UNSTAR:
+                    if (!removeCopies(connection, imapFolder, messages, "STARRED")) {
+                        folder.setFlags(messages, new Flags(Flags.Flag.FLAGGED), false);
+                    }
+                    break;
+                case MARK_IMPORTANT:
+                    copyTo(connection, imapFolder, messages, "IMPORTANT");
+                    break;
+                case UNMARK_IMPORTANT:
+                    removeCopies(connection, imapFolder, messages, "IMPORTANT");
+                    break;
+                default:
+                    return Collections.emptyList();
+            }
+            return presentUids;
+        } finally {
+            folderCache.release(folder);
+        }
+    }
+
+    /**
+     * Move a message set with one MOVE, or COPY + STORE \Deleted + EXPUNGE without the extension
+     * Returns false when the messages stayed where they were
+     */
+    private boolean moveTo(ImapConnection connection, IMAPFolder source, Message[] messages, String targetName,
+                           boolean deleteWithoutTarget) throws MessagingException {
+        Folder target = connection.getFolderCache().resolve(targetName, imapFolderResolver);
+        if (target == null) {
+            if (deleteWithoutTarget) {
+                logger.warn("No {} folder found, deleting {} messages in place", targetName, messages.length);
+                expunge(connection, source, messages);
+                return true;
+            }
+            logger.warn("Target folder {} not found", targetName);
+            return false;
+        }
+        if (isSameFolder(source, target)) {
+            return false;
+        }
+
+        if (((IMAPStore) connection.getStore()).hasCapability("MOVE")) {
+            source.moveMessages(messages, target);
+        } else {
+            source.copyMessages(messages, target);
+            expunge(connection, source, messages);
+        }
+        return true;
+    }
+
+    private void copyTo(ImapConnection connection, IMAPFolder source, Message[] messages,
+                        String targetName) throws MessagingException {
+        Folder target = connection.getFolderCache().resolve(targetName, imapFolderResolver);
+        if (target == null) {
+            logger.warn("Target folder {} not found", targetName);
+            return;
+        }
+        if (!isSameFolder(source, target)) {
+            source.copyMessages(messages, target);
+        }
+    }
+
+    /**
+     * Remove the copies of the given messages from a label-like folder (STARRED, IMPORTANT)
+     * Returns true when the messages were themselves the copies and are gone now
+     */
+    private boolean removeCopies(ImapConnection connection, IMAPFolder source, Message[] messages,
+                              String copyFolderName) throws MessagingException {
+        ImapFolderCache folderCache = connection.getFolderCache();
+        Folder copyFolder = folderCache.resolve(copyFolderName, imapFolderResolver);
+        if (copyFolder == null || !copyFolder.exists()) {
+            return false;
+        }
+        if (isSameFolder(source, copyFolder)) {
+            expunge(connection, source, messages);
+            return true;
+        }
+
+        // One FETCH for the Message-IDs of the whole set
+        FetchProfile profile = new FetchProfile();
+        profile.add("Message-ID");
+        source.fetch(messages, profile);
+        List<SearchTerm> terms = new ArrayList<>();
+        for (Message message : messages) {
+            String[] ids = message.getHeader("Message-ID");
+            if (ids != null && ids.length > 0) {
+                terms.add(new HeaderTerm("Message-ID", ids[0].trim()));
+            }
+        }
+        if (terms.isEmpty()) {
+            return false;
+        }
+
+        IMAPFolder copies = (IMAPFolder) folderCache.open(copyFolderName, Folder.READ_WRITE, imapFolderResolver);
+        try {
+            List<Message> found = new ArrayList<>();
+            for (int from = 0; from < terms.size(); from += SEARCH_BATCH_SIZE) {
+                List<SearchTerm> batch = terms.subList(from, Math.min(terms.size(), from + SEARCH_BATCH_SIZE));
+                SearchTerm term = batch.size() == 1 ? batch.get(0) : new OrTerm(batch.toArray(new SearchTerm[0]));
+                found.addAll(Arrays.asList(copies.search(term)));
+            }
+            if (!found.isEmpty()) {
+                expunge(connection, copies, found.toArray(new Message[0]));
+            }
+        } finally {
+            folderCache.release(copies);
+        }
+        return false;
+    }
+
+    /**
+     * Flag a set DELETED and expunge it; UID EXPUNGE limits this to the set when the
+     * server has UIDPLUS, otherwise the whole folder is expunged as before
+     */
+    private void expunge(ImapConnection connection, IMAPFolder folder, Message[] messages) throws MessagingException {
+        folder.setFlags(messages, new Flags(Flags.Flag.DELETED), true);
+        if (((IMAPStore) connection.getStore()).hasCapability("UIDPLUS")) {
+            folder.expunge(messages);
+        } else {
+            folder.expunge();
+        }
+    }
+
+    private boolean isSameFolder(Folder a, Folder b) {
+        return a.getFullName().equals(b.getFullName());
+    }
+
+    private void record(EmailAction action, ActionResult result, long durationNanos) {
+        String tag = action.name().toLowerCase();
+        Timer.builder("memail.actions.duration")
+            .tag("action", tag)
+            .description("Time to apply a bulk mailbox action")
+            .register(meterRegistry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("memail.actions.messages")
+            .tag("action", tag)
+            .description("Messages touched by bulk mailbox actions")
+            .register(meterRegistry)
+            .increment(result.getMessageCount());
+    }
+}
@@ -1,21 +1,43 @@
 package com.memail.service;
 
-import com.memail.config.WebSocketConfig;
+import com.memail.cluster.ClusterPresence;
 import com.memail.dto.EmailHeaderDTO;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapConnectionManager;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Polling fallback for new-mail detection
+ *
+ * Covers owned active users without a live IDLE connection. Each user has their own
+ * interval: it drops to the minimum when new mail arrives and backs off geometrically
+ * while the mailbox stays quiet. First polls are spread over the interval by a hash of
+ * the address so users do not all fire in the same tick, and the worker pool is sized
+ * from the expected poll rate and the measured poll latency.
+ */
 @Service
-@EnableAsync
 public class EmailMonitorService {
 
+    private static final Logger logger = LoggerFactory.getLogger(EmailMonitorService.class);
+
     @Autowired
     private MailService mailService;
 
@@ -23,85 +45,185 @@ public class EmailMonitorService {
     private NotificationService notificationService;
 
     @Autowired
-    private WebSocketConfig webSocketConfig;
+    private ImapConnectionManager imapConnectionManager;
+
+    @Autowired
+    private ImapFolderResolver imapFolderResolver;
+
+    @Autowired
+    private HeaderIndexService headerIndexService;
+
+    @Autowired
+    private ClusterPresence clusterPresence;
+
+    @Autowired
+    private ImapIdleService imapIdleService;
+
+    @Value("${memail.poll.min-interval:5s}")
+    private Duration minInterval;
 
-    // Track last known message counts per user
-    private final Map<String, Integer> lastMessageCounts = new ConcurrentHashMap<>();
+    @Value("${memail.poll.max-interval:2m}")
+    private Duration maxInterval;
 
-    @Scheduled(fixedDelay = 10000) // Check every 10 seconds for more responsive updates
+    @Value("${memail.poll.backoff-multiplier:1.5}")
+    private double backoffMultiplier;
+
+    @Value("${memail.poll.max-threads:16}")
+    private int maxThreads;
+
+    private ThreadPoolExecutor pollExecutor;
+
+    // Poll schedule and last known INBOX count per user
+    private final Map<String, PollState> pollStates = new ConcurrentHashMap<>();
+
+    // Moving average of one poll's duration, used to size the pool
+    private volatile double averagePollMillis = 200;
+
+    @PostConstruct
+    public void init() {
+        pollExecutor = new ThreadPoolExecutor(1, maxThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "mail-poll");
+                thread.setDaemon(true);
+                return thread;
+            });
+        pollExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
+    }
+
+    /**
+     * Dispatch the polls that are due; runs every tick and never blocks on IMAP itself
+     */
+    @Scheduled(fixedDelayString = "${memail.poll.tick:1000}")
     public void monitorNewEmails() {
         try {
-            // Get all actively connected users from WebSocket configuration
-            Set<String> activeUsers = webSocketConfig.getActiveUsers();
-
-            if (activeUsers.isEmpty()) {
-                // No active users, no need to monitor
-                return;
+            Set<String> users = new HashSet<>();
+            for (String userEmail : clusterPresence.ownedActiveUsers()) {
+                // Users with a live IDLE connection get new mail pushed; poll only the rest
+                if (!imapIdleService.isWatching(userEmail)) {
+                    users.add(userEmail);
+                }
             }
+            pollStates.keySet().retainAll(users);
 
-            for (String userEmail : activeUsers) {
-                checkForNewEmails(userEmail);
+            long now = System.currentTimeMillis();
+            double pollsPerSecond = 0;
+            for (String userEmail : users) {
+                PollState state = pollStates.computeIfAbsent(userEmail, user -> newPollState(user, now));
+                pollsPerSecond += 1000.0 / state.intervalMillis;
+
+                if (state.nextPollAt <= now && state.inFlight.compareAndSet(false, true)) {
+                    pollExecutor.execute(() -> poll(userEmail, state));
+                }
             }
+            resizePool(pollsPerSecond);
         } catch (Exception e) {
-            System.err.println("Error monitoring emails: " + e.getMessage());
+            logger.warn("Error monitoring emails: {}", e.getMessage());
         }
     }
 
-    @Async
-    public void checkForNewEmails(String userEmail) {
+    private PollState newPollState(String userEmail, long now) {
+        PollState state = new PollState();
+        state.intervalMillis = minInterval.toMillis();
+        // Spread first polls across the interval instead of firing them all at once
+        state.nextPollAt = now + Math.floorMod(userEmail.hashCode(), state.intervalMillis);
+        return state;
+    }
+
+    private void poll(String userEmail, PollState state) {
+        long start = System.currentTimeMillis();
         try {
-            Store store = mailService.getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                return;
-            }
+            boolean newMail = checkForNewEmails(userEmail, state);
+            state.intervalMillis = newMail ? minInterval.toMillis() : backedOff(state.intervalMillis);
+        } catch (Exception e) {
+            logger.warn("Error checking for new emails for {}: {}", userEmail, e.getMessage());
+            state.intervalMillis = backedOff(state.intervalMillis);
+        } finally {
+            long end = System.currentTimeMillis();
+            averagePollMillis = averagePollMillis * 0.9 + (end - start) * 0.1;
+            state.nextPollAt = end + state.intervalMillis;
+            state.inFlight.set(false);
+        }
+    }
+
+    private long backedOff(long intervalMillis) {
+        return Math.min(maxInterval.toMillis(), (long) (intervalMillis * backoffMultiplier));
+    }
+
+    /**
+     * Size the pool to the concurrency the schedule needs: poll rate times poll latency
+     */
+    private void resizePool(double pollsPerSecond) {
+        int needed = (int) Math.ceil(pollsPerSecond * averagePollMillis / 1000.0) + 1;
+        int target = Math.max(1, Math.min(maxThreads, needed));
+        if (pollExecutor.getCorePoolSize() != target) {
+            pollExecutor.setCorePoolSize(target);
+        }
+    }
+
+    private boolean checkForNewEmails(String userEmail, PollState state) throws MessagingException {
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
 
-            Folder inbox = store.getFolder("INBOX");
-            if (inbox != null && inbox.exists()) {
-                inbox.open(Folder.READ_ONLY);
+            // INBOX stays selected on the pooled connection; the count refresh is a NOOP, not a SELECT
+            Folder inbox = folderCache.open("INBOX", Folder.READ_ONLY, imapFolderResolver);
+            if (inbox == null) {
+                return false;
+            }
 
+            try {
                 int currentMessageCount = inbox.getMessageCount();
-                Integer lastCount = lastMessageCounts.get(userEmail);
-
-                if (lastCount == null) {
-                    // First time checking, just store the count
-                    lastMessageCounts.put(userEmail, currentMessageCount);
-                } else if (currentMessageCount > lastCount) {
-                    // New messages detected
-                    int newMessageCount = currentMessageCount - lastCount;
-                    System.out.println("Detected " + newMessageCount + " new messages for " + userEmail);
-
-                    // Get the new messages (last N messages)
-                    Message[] messages = inbox.getMessages(lastCount + 1, currentMessageCount);
-
-                    for (Message message : messages) {
-                        try {
-                            EmailHeaderDTO header = mailService.convertToEmailHeaderDTO(message);
-                            if (header != null) {
-                                notificationService.sendNewEmailNotification(
-                                    userEmail,
-                                    header.getMessageId(),
-                                    header.getFrom(),
-                                    header.getSubject(),
-                                    "INBOX",
-                                    header.getPreview()
-                                );
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error processing new message: " + e.getMessage());
+                int lastCount = state.lastMessageCount;
+                state.lastMessageCount = currentMessageCount;
+
+                if (lastCount < 0 || currentMessageCount <= lastCount) {
+                    // First check only records the count
+                    return false;
+                }
+
+                // New messages detected
+                int newMessageCount = currentMessageCount - lastCount;
+                logger.debug("Detected {} new messages for {}", newMessageCount, userEmail);
+
+                Message[] messages = inbox.getMessages(lastCount + 1, currentMessageCount);
+                for (Message message : messages) {
+                    try {
+                        EmailHeaderDTO header = mailService.convertToEmailHeaderDTO(message);
+                        if (header != null) {
+                            notificationService.sendNewEmailNotification(
+                                userEmail,
+                                header.getMessageId(),
+                                header.getFrom(),
+                                header.getSubject(),
+                                "INBOX",
+                                header.getPreview()
+                            );
                         }
+                    } catch (Exception e) {
+                        logger.warn("Error processing new message: {}", e.getMessage());
                     }
-
-                    lastMessageCounts.put(userEmail, currentMessageCount);
                 }
 
-                inbox.close(false);
+                headerIndexService.requestSync(userEmail, "INBOX");
+                return true;
+            } finally {
+                folderCache.release(inbox);
             }
-        } catch (Exception e) {
-            System.err.println("Error checking for new emails for " + userEmail + ": " + e.getMessage());
         }
     }
 
     public void resetMessageCount(String userEmail) {
-        lastMessageCounts.remove(userEmail);
+        pollStates.remove(userEmail);
+    }
+
+    private static class PollState {
+        private volatile long nextPollAt;
+        private volatile long intervalMillis;
+        private volatile int lastMessageCount = -1;
+        private final AtomicBoolean inFlight = new AtomicBoolean();
     }
-}
\ No newline at end of file
+}
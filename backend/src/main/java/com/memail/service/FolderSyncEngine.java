@@ -0,0 +1,614 @@
+package com.memail.service;
+
+import com.memail.dto.AttachmentDTO;
+import com.memail.imap.AttachmentScanner;
+import com.memail.imap.ImapAppender;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import com.memail.model.FolderSyncState;
+import com.memail.model.MessageAttachment;
+import com.memail.model.MessageHeader;
+import com.memail.repository.FolderSyncStateRepository;
+import com.memail.repository.MessageAttachmentRepository;
+import com.memail.repository.MessageHeaderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.*;
+import jakarta.mail.event.MailEvent;
+import jakarta.mail.event.MessageChangedEvent;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.MessageVanishedEvent;
+import org.eclipse.angus.mail.imap.ResyncData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental synchronization of one folder into the header index
+ *
+ * Picks the cheapest mode the server and connection allow:
+ * QRESYNC re-selects the folder with the last UIDVALIDITY/HIGHESTMODSEQ and gets flag
+ * changes plus VANISHED UIDs in the SELECT response; CONDSTORE asks for FETCH
+ * CHANGEDSINCE on an already selected folder and only diffs UIDs when the message count
+ * says something was expunged; without either extension all known UIDs are diffed.
+ * New messages are always fetched by UID range above the last indexed UID.
+ */
+@Component
+public class FolderSyncEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FolderSyncEngine.class);
+
+    // Messages per FETCH when indexing new messages
+    private static final int FETCH_BATCH_SIZE = 500;
+
+    public enum SyncMode {
+        FULL, QRESYNC, CONDSTORE, UID_DIFF
+    }
+
+    /**
+     * Outcome of one folder sync
+     */
+    public static class SyncResult {
+        private final SyncMode mode;
+        private final int added;
+        private final int changed;
+        private final int vanished;
+        private final long durationMillis;
+
+        SyncResult(SyncMode mode, int added, int changed, int vanished, long durationMillis) {
+            this.mode = mode;
+            this.added = added;
+            this.changed = changed;
+            this.vanished = vanished;
+            this.durationMillis = durationMillis;
+        }
+
+        public SyncMode getMode() {
+            return mode;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getChanged() {
+            return changed;
+        }
+
+        public int getVanished() {
+            return vanished;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public boolean hasChanges() {
+            return added > 0 || changed > 0 || vanished > 0;
+        }
+    }
+
+    @Autowired
+    private ImapFolderResolver imapFolderResolver;
+
+    @Autowired
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @Autowired
+    private FolderSyncStateRepository folderSyncStateRepository;
+
+    @Autowired
+    private MessageAttachmentRepository messageAttachmentRepository;
+
+    @Autowired
+    private ThreadIndexService threadIndexService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Bring the index of one folder up to date on the given connection
+     * Returns null when the folder does not exist on the server
+     */
+    public SyncResult sync(ImapConnection connection, String userEmail, String folder) throws MessagingException {
+        long start = System.nanoTime();
+        ImapFolderCache folderCache = connection.getFolderCache();
+        IMAPStore store = (IMAPStore) connection.getStore();
+
+        boolean qresync = store.hasCapability("QRESYNC");
+        boolean condstore = qresync || store.hasCapability("CONDSTORE");
+
+        FolderSyncState state = folderSyncStateRepository.findByUserIdAndFolder(userEmail, folder).orElse(null);
+        boolean resumable = state != null && state.getHighestModSeq() > 0;
+
+        // QRESYNC needs a fresh SELECT; a hot folder that is already open uses CHANGEDSINCE instead
+        List<MailEvent> resyncEvents = null;
+        if (qresync && resumable) {
+            try {
+                resyncEvents = folderCache.openForResync(folder, Folder.READ_ONLY, imapFolderResolver,
+                    new ResyncData(state.getUidValidity(), state.getHighestModSeq()));
+            } catch (MessagingException e) {
+                logger.warn("QRESYNC select of {} failed for {}, falling back: {}", folder, userEmail, e.getMessage());
+            }
+        }
+
+        Folder folderHandle = folderCache.resolve(folder, imapFolderResolver);
+        if (folderHandle == null) {
+            return null;
+        }
+        boolean wasOpen = resyncEvents == null && folderHandle.isOpen();
+        if (resyncEvents == null) {
+            folderCache.open(folder, Folder.READ_ONLY, imapFolderResolver);
+        }
+        IMAPFolder imapFolder = (IMAPFolder) folderHandle;
+
+        try {
+            long uidValidity = imapFolder.getUIDValidity();
+
+            SyncMode mode;
+            if (state == null || state.getUidValidity() != uidValidity) {
+                if (state != null) {
+                    logger.info("UIDVALIDITY of {} changed for {}, rebuilding index", folder, userEmail);
+                    messageHeaderRepository.deleteByUserIdAndFolder(userEmail, folder);
+                    threadIndexService.removeFolder(userEmail, folder);
+                } else {
+                    state = new FolderSyncState(userEmail, folder, uidValidity);
+                }
+                state.setUidValidity(uidValidity);
+                state.setLastUid(0);
+                state.setHighestModSeq(0);
+                state.setInitialSyncComplete(false);
+                mode = SyncMode.FULL;
+                resyncEvents = null;
+            } else if (resyncEvents != null) {
+                mode = SyncMode.QRESYNC;
+            } else if (condstore && resumable) {
+                mode = SyncMode.CONDSTORE;
+            } else {
+                mode = SyncMode.UID_DIFF;
+            }
+
+            // Read the mod-sequence before looking for changes, so anything that changes
+            // while this sync runs is picked up again by the next one
+            long highestModSeq = condstore ? currentHighestModSeq(imapFolder, wasOpen) : 0;
+
+            int[] changes;
+            switch (mode) {
+                case QRESYNC:
+                    changes = applyResyncEvents(userEmail, folder, imapFolder, state.getLastUid(), resyncEvents);
+                    break;
+                case CONDSTORE:
+                    changes = applyChangedSince(userEmail, folder, imapFolder, state.getLastUid(), state.getHighestModSeq());
+                    break;
+                case UID_DIFF:
+                    changes = state.getLastUid() > 0
+                        ? diffKnownMessages(userEmail, folder, imapFolder, state.getLastUid(), true)
+                        : new int[]{0, 0};
+                    break;
+                default:
+                    changes = new int[]{0, 0};
+                    break;
+            }
+
+            int added = indexNewMessages(userEmail, folder, imapFolder, state);
+            threadIndexService.threadPending(userEmail, folder);
+            indexSearchDocuments(userEmail, folder, imapFolder);
+
+            // CHANGEDSINCE does not report expunges; a count mismatch means some happened.
+            // \Deleted messages are indexed too, so the counts agree until an expunge
+            int messageCount = imapFolder.getMessageCount();
+            if (mode == SyncMode.CONDSTORE
+                    && messageHeaderRepository.countByUserIdAndFolder(userEmail, folder) != messageCount) {
+                changes[1] += diffKnownMessages(userEmail, folder, imapFolder, state.getLastUid(), false)[1];
+            }
+
+            state.setHighestModSeq(highestModSeq);
+            state.setMessageCount(messageCount);
+            state.setLastSyncedAt(LocalDateTime.now());
+            // Every message up to the newest UID is indexed now; a first sync that stopped
+            // between batches resumes from lastUid and only gets here once it caught up
+            state.setInitialSyncComplete(true);
+            folderSyncStateRepository.save(state);
+
+            long durationNanos = System.nanoTime() - start;
+            SyncResult result = new SyncResult(mode, added, changes[0], changes[1],
+                TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            record(result, durationNanos);
+
+            if (result.hasChanges()) {
+                logger.debug("Synced {} for {} via {} in {}ms: {} new, {} changed, {} vanished",
+                    folder, userEmail, mode, result.getDurationMillis(), added, changes[0], changes[1]);
+            }
+            return result;
+        } finally {
+            folderCache.release(imapFolder);
+        }
+    }
+
+    private long currentHighestModSeq(IMAPFolder imapFolder, boolean wasOpen) throws MessagingException {
+        // The cached value is only current right after SELECT; a folder kept open since
+        // an earlier lease needs a STATUS round-trip
+        long modSeq = wasOpen ? imapFolder.getStatusItem("HIGHESTMODSEQ") : imapFolder.getHighestModSeq();
+        return Math.max(0, modSeq);
+    }
+
+    /**
+     * Apply the flag changes and VANISHED UIDs reported in a QRESYNC SELECT
+     * Returns {changed, vanished}
+     */
+    private int[] applyResyncEvents(String userEmail, String folder, IMAPFolder imapFolder,
+                                    long lastUid, List<MailEvent> events) throws MessagingException {
+        Set<Long> vanished = new HashSet<>();
+        Map<Long, Message> changed = new HashMap<>();
+        for (MailEvent event : events) {
+            if (event instanceof MessageVanishedEvent) {
+                for (long uid : ((MessageVanishedEvent) event).getUIDs()) {
+                    vanished.add(uid);
+                }
+            } else if (event instanceof MessageChangedEvent) {
+                Message message = ((MessageChangedEvent) event).getMessage();
+                long uid = imapFolder.getUID(message);
+                if (uid > 0 && uid <= lastUid) {
+                    changed.put(uid, message);
+                }
+            }
+        }
+        return applyChanges(userEmail, folder, changed, vanished);
+    }
+
+    /**
+     * FETCH CHANGEDSINCE for already indexed UIDs on a selected folder
+     * Returns {changed, vanished}
+     */
+    private int[] applyChangedSince(String userEmail, String folder, IMAPFolder imapFolder,
+                                    long lastUid, long modSeq) throws MessagingException {
+        if (lastUid < 1) {
+            return new int[]{0, 0};
+        }
+        Map<Long, Message> changed = new HashMap<>();
+        for (Message message : imapFolder.getMessagesByUIDChangedSince(1, lastUid, modSeq)) {
+            changed.put(imapFolder.getUID(message), message);
+        }
+        return applyChanges(userEmail, folder, changed, Collections.emptySet());
+    }
+
+    private int[] applyChanges(String userEmail, String folder, Map<Long, Message> changed,
+                               Set<Long> vanished) throws MessagingException {
+        Set<Long> removed = new HashSet<>(vanished);
+        List<MessageHeader> updated = new ArrayList<>();
+
+        if (!changed.isEmpty()) {
+            for (MessageHeader header : messageHeaderRepository.findByUserIdAndFolderAndUidIn(userEmail, folder, changed.keySet())) {
+                Message message = changed.get(header.getUid());
+                if (message.isExpunged()) {
+                    removed.add(header.getUid());
+                } else if (applyFlags(header, message.getFlags())) {
+                    updated.add(header);
+                }
+            }
+        }
+
+        saveChanges(userEmail, folder, updated, removed);
+        return new int[]{updated.size(), removed.size()};
+    }
+
+    /**
+     * Write flag changes and removals, then refresh the conversations they belong to
+     */
+    private void saveChanges(String userEmail, String folder, List<MessageHeader> updated, Collection<Long> removed) {
+        Set<String> threads = new HashSet<>();
+        if (!updated.isEmpty()) {
+            messageHeaderRepository.saveAll(updated);
+            for (MessageHeader header : updated) {
+                if (header.getThreadId() != null) {
+                    threads.add(header.getThreadId());
+                }
+            }
+        }
+        if (!removed.isEmpty()) {
+            threads.addAll(threadIndexService.threadsOf(userEmail, folder, removed));
+            messageHeaderRepository.deleteByUids(userEmail, folder, removed);
+        }
+        threadIndexService.refreshThreads(userEmail, threads);
+    }
+
+    /**
+     * Diff indexed UIDs against the server, optionally comparing flags as well
+     * Used when the server has no CONDSTORE, or to find expunges CHANGEDSINCE cannot report
+     * Returns {changed, vanished}
+     */
+    private int[] diffKnownMessages(String userEmail, String folder, IMAPFolder imapFolder,
+                                    long lastUid, boolean compareFlags) throws MessagingException {
+        if (lastUid < 1) {
+            return new int[]{0, 0};
+        }
+        Message[] known = imapFolder.getMessagesByUID(1, lastUid);
+        FetchProfile profile = new FetchProfile();
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        if (compareFlags) {
+            profile.add(FetchProfile.Item.FLAGS);
+        }
+        imapFolder.fetch(known, profile);
+
+        Map<Long, Message> serverMessages = new HashMap<>();
+        for (Message message : known) {
+            if (!message.isExpunged()) {
+                serverMessages.put(imapFolder.getUID(message), message);
+            }
+        }
+
+        List<MessageHeader> updated = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        for (MessageHeader header : messageHeaderRepository.findByUserIdAndFolder(userEmail, folder)) {
+            Message message = serverMessages.get(header.getUid());
+            if (message == null) {
+                removed.add(header.getUid());
+            } else if (compareFlags && applyFlags(header, message.getFlags())) {
+                updated.add(header);
+            }
+        }
+
+        saveChanges(userEmail, folder, updated, removed);
+        return new int[]{updated.size(), removed.size()};
+    }
+
+    /**
+     * Index every message above the last indexed UID, in FETCH batches
+     */
+    private int indexNewMessages(String userEmail, String folder, IMAPFolder imapFolder,
+                                 FolderSyncState state) throws MessagingException {
+        // UID n:* always returns the newest message, even when its UID is below n
+        Message[] candidates = imapFolder.getMessagesByUID(state.getLastUid() + 1, UIDFolder.LASTUID);
+        if (candidates.length == 0) {
+            return 0;
+        }
+
+        FetchProfile headerProfile = headerFetchProfile();
+        int added = 0;
+        for (int from = 0; from < candidates.length; from += FETCH_BATCH_SIZE) {
+            Message[] batch = Arrays.copyOfRange(candidates, from, Math.min(from + FETCH_BATCH_SIZE, candidates.length));
+            imapFolder.fetch(batch, headerProfile);
+
+            List<MessageHeader> rows = new ArrayList<>(batch.length);
+            Map<MessageHeader, List<AttachmentDTO>> attachments = new IdentityHashMap<>();
+            long highestUid = state.getLastUid();
+            // Our own APPENDs are indexed as they happen and may already be here
+            Set<Long> indexed = indexedUids(userEmail, folder, imapFolder, batch);
+            for (Message message : batch) {
+                long uid = imapFolder.getUID(message);
+                if (uid > state.getLastUid() && indexed.contains(uid)) {
+                    highestUid = Math.max(highestUid, uid);
+                    continue;
+                }
+                // \Deleted messages are indexed with the flag, so an undelete brings them back
+                if (uid <= state.getLastUid() || message.isExpunged()) {
+                    continue;
+                }
+                MessageHeader row = toHeader(userEmail, folder, uid, message);
+                rows.add(row);
+                attachments.put(row, AttachmentScanner.scan(message));
+                row.setAttachmentCount(attachments.get(row).size());
+                row.setHasAttachments(row.getAttachmentCount() > 0);
+                highestUid = Math.max(highestUid, uid);
+            }
+
+            messageHeaderRepository.saveAll(rows);
+            saveAttachments(attachments);
+            added += rows.size();
+            // Advance after every batch so an interrupted initial sync resumes where it stopped
+            state.setLastUid(highestUid);
+            folderSyncStateRepository.save(state);
+        }
+        return added;
+    }
+
+    private Set<Long> indexedUids(String userEmail, String folder, IMAPFolder imapFolder,
+                                  Message[] batch) throws MessagingException {
+        List<Long> uids = new ArrayList<>(batch.length);
+        for (Message message : batch) {
+            uids.add(imapFolder.getUID(message));
+        }
+        return messageHeaderRepository.findByUserIdAndFolderAndUidIn(userEmail, folder, uids).stream()
+            .map(MessageHeader::getUid)
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * Index messages this application just appended, from the local copy and the UIDs in
+     * the APPENDUID response, without fetching anything from the folder
+     * Returns false when the index cannot take them (unknown UIDs, folder not indexed yet or
+     * UIDVALIDITY changed); the caller should then sync the folder instead
+     */
+    public boolean indexAppended(String userEmail, String folder, List<ImapAppender.Appended> appended)
+            throws MessagingException {
+        FolderSyncState state = folderSyncStateRepository.findByUserIdAndFolder(userEmail, folder).orElse(null);
+        if (state == null || appended.isEmpty()) {
+            return false;
+        }
+        List<Long> uids = new ArrayList<>(appended.size());
+        for (ImapAppender.Appended message : appended) {
+            if (message.getUid() < 1 || message.getUidValidity() != state.getUidValidity()) {
+                return false;
+            }
+            uids.add(message.getUid());
+        }
+
+        Set<Long> existing = messageHeaderRepository.findByUserIdAndFolderAndUidIn(userEmail, folder, uids).stream()
+            .map(MessageHeader::getUid)
+            .collect(Collectors.toSet());
+        List<MessageHeader> rows = new ArrayList<>(appended.size());
+        Map<MessageHeader, List<AttachmentDTO>> attachments = new IdentityHashMap<>();
+        for (ImapAppender.Appended message : appended) {
+            if (existing.contains(message.getUid())) {
+                continue;
+            }
+            MessageHeader row = toHeader(userEmail, folder, message.getUid(), message.getMessage());
+            row.setReceivedDate(toLocalDateTime(message.getInternalDate()));
+            row.setSize(message.getSize());
+            rows.add(row);
+            attachments.put(row, AttachmentScanner.scan(message.getMessage()));
+            row.setAttachmentCount(attachments.get(row).size());
+            row.setHasAttachments(row.getAttachmentCount() > 0);
+        }
+        messageHeaderRepository.saveAll(rows);
+        saveAttachments(attachments);
+
+        // Only move past UIDs that leave no gap, so messages appended by others are still fetched
+        Collections.sort(uids);
+        long lastUid = state.getLastUid();
+        for (long uid : uids) {
+            if (uid == lastUid + 1) {
+                lastUid = uid;
+            }
+        }
+        if (lastUid != state.getLastUid()) {
+            state.setLastUid(lastUid);
+            state.setMessageCount(state.getMessageCount() + rows.size());
+            folderSyncStateRepository.save(state);
+        }
+        threadIndexService.threadPending(userEmail, folder);
+        return true;
+    }
+
+    /**
+     * Store the attachment lists of newly saved rows
+     */
+    private void saveAttachments(Map<MessageHeader, List<AttachmentDTO>> attachments) {
+        List<MessageAttachment> rows = new ArrayList<>();
+        for (Map.Entry<MessageHeader, List<AttachmentDTO>> entry : attachments.entrySet()) {
+            for (AttachmentDTO attachment : entry.getValue()) {
+                rows.add(new MessageAttachment(entry.getKey().getId(), attachment.getPartId(),
+                    attachment.getFileName(), attachment.getContentType(), attachment.getSize()));
+            }
+        }
+        if (!rows.isEmpty()) {
+            messageAttachmentRepository.saveAll(rows);
+        }
+    }
+
+    /**
+     * Extend the full-text index; a failure here must not fail the header sync
+     */
+    private void indexSearchDocuments(String userEmail, String folder, IMAPFolder imapFolder) {
+        try {
+            searchIndexService.indexPending(userEmail, folder, imapFolder);
+        } catch (MessagingException | RuntimeException e) {
+            logger.warn("Full-text indexing of {} for {} failed: {}", folder, userEmail, e.getMessage());
+        }
+    }
+
+    private void record(SyncResult result, long durationNanos) {
+        String mode = result.getMode().name().toLowerCase();
+        Timer.builder("memail.sync.duration")
+            .tag("mode", mode)
+            .description("Header index sync time per folder")
+            .register(meterRegistry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        changeCounter(mode, "added").increment(result.getAdded());
+        changeCounter(mode, "changed").increment(result.getChanged());
+        changeCounter(mode, "vanished").increment(result.getVanished());
+    }
+
+    private Counter changeCounter(String mode, String kind) {
+        return Counter.builder("memail.sync.messages")
+            .tag("mode", mode)
+            .tag("kind", kind)
+            .description("Messages added, changed or removed by header index syncs")
+            .register(meterRegistry);
+    }
+
+    private FetchProfile headerFetchProfile() {
+        FetchProfile fetchProfile = new FetchProfile();
+        fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+        fetchProfile.add(FetchProfile.Item.ENVELOPE);
+        fetchProfile.add(FetchProfile.Item.FLAGS);
+        // BODYSTRUCTURE, for attachment metadata without downloading any part
+        fetchProfile.add(FetchProfile.Item.CONTENT_INFO);
+        fetchProfile.add(FetchProfile.Item.SIZE);
+        fetchProfile.add("Message-ID");
+        fetchProfile.add("In-Reply-To");
+        fetchProfile.add("References");
+        return fetchProfile;
+    }
+
+    private MessageHeader toHeader(String userEmail, String folder, long uid, Message message) throws MessagingException {
+        MessageHeader header = new MessageHeader(userEmail, folder, uid);
+        header.setMessageId(firstHeader(message, "Message-ID"));
+        header.setInReplyTo(firstHeader(message, "In-Reply-To"));
+        header.setReferences(firstHeader(message, "References"));
+        header.setSubject(message.getSubject());
+        header.setFromAddress(formatAddresses(message.getFrom()));
+        header.setToAddresses(formatAddresses(message.getRecipients(Message.RecipientType.TO)));
+        header.setCcAddresses(formatAddresses(message.getRecipients(Message.RecipientType.CC)));
+        header.setSentDate(toLocalDateTime(message.getSentDate()));
+        header.setReceivedDate(toLocalDateTime(message.getReceivedDate()));
+        header.setSize(Math.max(0, message.getSize()));
+        applyFlags(header, message.getFlags());
+        return header;
+    }
+
+    /**
+     * Copy IMAP flags onto an index row, returning true if anything changed
+     */
+    private boolean applyFlags(MessageHeader header, Flags flags) {
+        boolean seen = flags.contains(Flags.Flag.SEEN);
+        boolean flagged = flags.contains(Flags.Flag.FLAGGED);
+        boolean answered = flags.contains(Flags.Flag.ANSWERED);
+        boolean draft = flags.contains(Flags.Flag.DRAFT);
+        boolean deleted = flags.contains(Flags.Flag.DELETED);
+        if (header.isSeen() == seen && header.isFlagged() == flagged
+                && header.isAnswered() == answered && header.isDraft() == draft && header.isDeleted() == deleted) {
+            return false;
+        }
+        header.setSeen(seen);
+        header.setFlagged(flagged);
+        header.setAnswered(answered);
+        header.setDraft(draft);
+        header.setDeleted(deleted);
+        return true;
+    }
+
+    private String firstHeader(Message message, String name) throws MessagingException {
+        String[] values = message.getHeader(name);
+        return values != null && values.length > 0 ? values[0] : null;
+    }
+
+    /**
+     * Same "Name <address>" format the IMAP list path produces
+     */
+    private String formatAddresses(Address[] addresses) {
+        if (addresses == null || addresses.length == 0) {
+            return null;
+        }
+        return Arrays.stream(addresses)
+            .map(address -> {
+                if (address instanceof InternetAddress) {
+                    InternetAddress internetAddress = (InternetAddress) address;
+                    String personal = internetAddress.getPersonal();
+                    return personal != null && !personal.isEmpty()
+                        ? personal + " <" + internetAddress.getAddress() + ">"
+                        : internetAddress.getAddress();
+                }
+                return address.toString();
+            })
+            .collect(Collectors.joining(", "));
+    }
+
+    private LocalDateTime toLocalDateTime(Date date) {
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+}
@@ -0,0 +1,372 @@
+package com.memail.service;
+
+import com.memail.cache.MailCache;
+import com.memail.cluster.ClusterPresence;
+import com.memail.dto.AttachmentDTO;
+import com.memail.dto.ConversationListResponse;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.dto.EmailListResponse;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapConnectionManager;
+import com.memail.imap.UidCursor;
+import com.memail.model.FolderSyncState;
+import com.memail.model.MessageAttachment;
+import com.memail.model.MessageHeader;
+import com.memail.repository.FolderSyncStateRepository;
+import com.memail.repository.MessageAttachmentRepository;
+import com.memail.repository.MessageHeaderRepository;
+import com.memail.search.SearchPlan;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Local header index per user and folder, synced from IMAP
+ *
+ * Holds UID, flags, envelope, threading headers, size and attachment list for every
+ * message, so list, conversation and unread-count queries are answered from Postgres.
+ * A folder is indexed on first use and then kept current by FolderSyncEngine for
+ * users with an open WebSocket session; local actions update the index directly.
+ */
+@Service
+public class HeaderIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeaderIndexService.class);
+
+    @Autowired
+    private ImapConnectionManager imapConnectionManager;
+
+    @Autowired
+    private FolderSyncEngine folderSyncEngine;
+
+    @Autowired
+    private ThreadIndexService threadIndexService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @Autowired
+    private FolderSyncStateRepository folderSyncStateRepository;
+
+    @Autowired
+    private MessageAttachmentRepository messageAttachmentRepository;
+
+    @Autowired
+    private ClusterPresence clusterPresence;
+
+    @Autowired
+    private MailCache mailCache;
+
+    @Value("${memail.index.folders:INBOX,SENT,DRAFTS,TRASH,STARRED,IMPORTANT,SPAM}")
+    private List<String> indexedFolders;
+
+    // Reads older than this trigger a background refresh, covering users without a WebSocket session
+    @Value("${memail.index.max-staleness:30s}")
+    private Duration maxStaleness;
+
+    @Value("${memail.index.sync-threads:4}")
+    private int syncThreads;
+
+    private ExecutorService syncExecutor;
+
+    // Folders with a sync queued or running, so bursts of requests do not pile up syncs
+    private final Set<String> pendingSyncs = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        syncExecutor = Executors.newFixedThreadPool(syncThreads, runnable -> {
+            Thread thread = new Thread(runnable, "header-index-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdownNow();
+    }
+
+    /**
+     * Periodically sync the indexed folders of users with an open session that this node owns
+     */
+    @Scheduled(fixedDelayString = "${memail.index.sync-interval:30000}")
+    public void syncActiveUsers() {
+        for (String userEmail : clusterPresence.ownedActiveUsers()) {
+            for (String folderName : indexedFolders) {
+                requestSync(userEmail, folderName);
+            }
+        }
+    }
+
+    /**
+     * Queue a background sync of one folder; a sync already queued for it is reused
+     */
+    public void requestSync(String userEmail, String folderName) {
+        String folder = normalize(folderName);
+        String key = userEmail + "|" + folder;
+        if (!pendingSyncs.add(key)) {
+            return;
+        }
+        syncExecutor.execute(() -> {
+            try {
+                syncFolder(userEmail, folder);
+            } catch (Exception e) {
+                logger.warn("Header index sync of {} for {} failed: {}", folder, userEmail, e.getMessage());
+            } finally {
+                pendingSyncs.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Bring the index of one folder up to date with the server
+     */
+    public FolderSyncEngine.SyncResult syncFolder(String userEmail, String folderName) throws MessagingException {
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            String folder = normalize(folderName);
+            FolderSyncEngine.SyncResult result = folderSyncEngine.sync(connection, userEmail, folder);
+            if (result != null && result.hasChanges()) {
+                mailCache.folderChanged(userEmail, folder);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Whether a folder's first sync indexed all of it
+     * A first sync that is still running or was interrupted leaves only part of the folder
+     * indexed, so the folder is served from IMAP until it completes
+     */
+    public boolean isIndexed(String userEmail, String folderName) {
+        return folderSyncStateRepository.findByUserIdAndFolder(userEmail, normalize(folderName))
+            .map(FolderSyncState::isInitialSyncComplete)
+            .orElse(false);
+    }
+
+    /**
+     * UIDVALIDITY the folder was indexed under, or -1 if it is not indexed
+     */
+    public long getUidValidity(String userEmail, String folderName) {
+        return folderSyncStateRepository.findByUserIdAndFolder(userEmail, normalize(folderName))
+            .map(FolderSyncState::getUidValidity)
+            .orElse(-1L);
+    }
+
+    /**
+     * One page of a folder from the index, newest first
+     * Same contract as MailService.getEmails: cursor wins over page when both are given.
+     * Pages are cached until the folder's index changes.
+     */
+    public EmailListResponse listHeaders(String userEmail, String folderName, UidCursor after, int page, int size) {
+        String folder = normalize(folderName);
+        FolderSyncState state = folderSyncStateRepository.findByUserIdAndFolder(userEmail, folder)
+            .orElseThrow(() -> new IllegalStateException("Folder " + folder + " is not indexed"));
+
+        refreshIfStale(state);
+
+        if (after != null && !after.matches(state.getUidValidity())) {
+            after = null;
+            page = 0;
+        }
+
+        UidCursor cursor = after;
+        int pageNumber = page;
+        String pageKey = cursor != null ? "after:" + cursor.getLastUid() + ":" + size : "page:" + page + ":" + size;
+        return mailCache.folderPage(MailCache.HEADERS, userEmail, folder, version(state), pageKey,
+            EmailListResponse.class, () -> readHeaders(state, cursor, pageNumber, size));
+    }
+
+    private EmailListResponse readHeaders(FolderSyncState state, UidCursor after, int page, int size) {
+        String userEmail = state.getUserId();
+        String folder = state.getFolder();
+        List<MessageHeader> rows;
+        if (after != null) {
+            rows = messageHeaderRepository.findByUserIdAndFolderAndUidLessThanAndDeletedFalseOrderByUidDesc(
+                userEmail, folder, after.getLastUid(), PageRequest.of(0, size));
+        } else {
+            rows = messageHeaderRepository.findByUserIdAndFolderAndDeletedFalseOrderByUidDesc(
+                userEmail, folder, PageRequest.of(page, size));
+        }
+
+        List<EmailHeaderDTO> emails = rows.stream().map(this::toDto).collect(Collectors.toList());
+        int totalCount = (int) messageHeaderRepository.countByUserIdAndFolderAndDeletedFalse(userEmail, folder);
+
+        EmailListResponse response = new EmailListResponse(emails, totalCount, page, size);
+        if (!rows.isEmpty()) {
+            long oldestUid = rows.get(rows.size() - 1).getUid();
+            response.setNextCursor(new UidCursor(state.getUidValidity(), oldestUid).encode());
+            response.setHasMore(messageHeaderRepository.existsByUserIdAndFolderAndUidLessThanAndDeletedFalse(
+                userEmail, folder, oldestUid));
+        } else {
+            response.setHasMore(false);
+        }
+        return response;
+    }
+
+    /**
+     * One page of a folder's conversations from the thread index
+     */
+    public ConversationListResponse listConversations(String userEmail, String folderName, int page, int size) {
+        String folder = normalize(folderName);
+        FolderSyncState state = folderSyncStateRepository.findByUserIdAndFolder(userEmail, folder).orElse(null);
+        if (state == null || !state.isInitialSyncComplete()) {
+            return threadIndexService.listConversations(userEmail, folder, page, size);
+        }
+        refreshIfStale(state);
+        return mailCache.folderPage(MailCache.CONVERSATIONS, userEmail, folder, version(state), page + ":" + size,
+            ConversationListResponse.class, () -> threadIndexService.listConversations(userEmail, folder, page, size));
+    }
+
+    /**
+     * One page of search hits of an INDEX plan
+     */
+    public EmailListResponse search(String userEmail, SearchPlan plan, SearchIndexService.Sort sort, int page, int size) {
+        folderSyncStateRepository.findByUserIdAndFolder(userEmail, plan.getFolder()).ifPresent(this::refreshIfStale);
+        SearchIndexService.SearchPage hits = searchIndexService.search(userEmail, plan, sort, page, size);
+        List<EmailHeaderDTO> emails = hits.getHeaders().stream().map(this::toDto).collect(Collectors.toList());
+        EmailListResponse response = new EmailListResponse(emails, (int) hits.getTotal(), page, size);
+        response.setHasMore((long) (page + 1) * size < hits.getTotal());
+        return response;
+    }
+
+    /**
+     * Cached attachment lists of indexed messages by UID; messages not indexed or not scanned are absent
+     */
+    public Map<Long, List<AttachmentDTO>> getAttachments(String userEmail, String folderName, Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Long> uidsById = new HashMap<>();
+        Map<Long, List<AttachmentDTO>> attachments = new HashMap<>();
+        for (MessageHeader header : messageHeaderRepository.findByUserIdAndFolderAndUidIn(userEmail, normalize(folderName), uids)) {
+            if (header.getAttachmentCount() >= 0) {
+                uidsById.put(header.getId(), header.getUid());
+                attachments.put(header.getUid(), new ArrayList<>(header.getAttachmentCount()));
+            }
+        }
+        if (!uidsById.isEmpty()) {
+            for (MessageAttachment row : messageAttachmentRepository.findByHeaderIdInOrderByHeaderIdAscIdAsc(uidsById.keySet())) {
+                attachments.get(uidsById.get(row.getHeaderId())).add(
+                    new AttachmentDTO(row.getPartId(), row.getFileName(), row.getContentType(), row.getSize()));
+            }
+        }
+        return attachments;
+    }
+
+    /**
+     * UIDs among the given ones that the index has as unread
+     */
+    public Set<Long> getUnreadUids(String userEmail, String folderName, Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return messageHeaderRepository.findByUserIdAndFolderAndUidIn(userEmail, normalize(folderName), uids).stream()
+            .filter(header -> !header.isSeen())
+            .map(MessageHeader::getUid)
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * Unread counts of the user's indexed folders
+     */
+    public Map<String, Long> getUnreadCounts(String userEmail) {
+        return mailCache.unreadCounts(userEmail, () -> countUnread(userEmail));
+    }
+
+    private Map<String, Long> countUnread(String userEmail) {
+        Map<String, Long> counts = new HashMap<>();
+        for (FolderSyncState state : folderSyncStateRepository.findByUserId(userEmail)) {
+            refreshIfStale(state);
+            // Partly indexed folders are counted by IMAP STATUS instead
+            if (state.isInitialSyncComplete()) {
+                counts.put(state.getFolder(), 0L);
+            }
+        }
+        for (Object[] row : messageHeaderRepository.countUnreadByFolder(userEmail)) {
+            counts.computeIfPresent((String) row[0], (folder, count) -> (Long) row[1]);
+        }
+        return counts;
+    }
+
+    /**
+     * Reflect a SEEN change made through the API without waiting for the next sync
+     */
+    public void markSeen(String userEmail, String folderName, Collection<Long> uids, boolean seen) {
+        if (!uids.isEmpty()) {
+            String folder = normalize(folderName);
+            messageHeaderRepository.updateSeen(userEmail, folder, uids, seen);
+            threadIndexService.refreshThreads(userEmail, threadIndexService.threadsOf(userEmail, folder, uids));
+            mailCache.folderChanged(userEmail, folder);
+        }
+    }
+
+    /**
+     * Drop messages that were moved or deleted through the API
+     */
+    public void removeMessages(String userEmail, String folderName, Collection<Long> uids) {
+        if (!uids.isEmpty()) {
+            String folder = normalize(folderName);
+            Set<String> threads = threadIndexService.threadsOf(userEmail, folder, uids);
+            messageHeaderRepository.deleteByUids(userEmail, folder, uids);
+            threadIndexService.refreshThreads(userEmail, threads);
+            mailCache.messagesRemoved(userEmail, folder, getUidValidity(userEmail, folder), uids);
+        }
+    }
+
+    /**
+     * Version of a folder's cached pages; moves with new mail and expunges, and with flag
+     * changes on CONDSTORE servers. Syncs and local actions evict the pages as well.
+     */
+    private static String version(FolderSyncState state) {
+        return state.getUidValidity() + "." + state.getHighestModSeq() + "." + state.getLastUid()
+            + "." + state.getMessageCount();
+    }
+
+    private void refreshIfStale(FolderSyncState state) {
+        LocalDateTime lastSynced = state.getLastSyncedAt();
+        if (lastSynced == null || lastSynced.plus(maxStaleness).isBefore(LocalDateTime.now())) {
+            requestSync(state.getUserId(), state.getFolder());
+        }
+    }
+
+    private EmailHeaderDTO toDto(MessageHeader header) {
+        EmailHeaderDTO dto = new EmailHeaderDTO();
+        dto.setUid(header.getUid());
+        dto.setMessageId(header.getMessageId() != null
+            ? header.getMessageId()
+            : "msg-" + header.getFolder() + "-" + header.getUid());
+        dto.setSubject(header.getSubject() != null ? header.getSubject() : "(No Subject)");
+        dto.setFrom(header.getFromAddress() != null ? header.getFromAddress() : "Unknown Sender");
+        LocalDateTime date = header.getSentDate() != null ? header.getSentDate() : header.getReceivedDate();
+        dto.setDate(date != null ? date : header.getUpdatedAt());
+        dto.setUnread(!header.isSeen());
+        dto.setHasAttachments(header.isHasAttachments());
+        dto.setAttachmentCount(Math.max(0, header.getAttachmentCount()));
+        dto.setPreview("");
+        dto.setInReplyTo(header.getInReplyTo());
+        dto.setReferences(header.getReferences());
+        return dto;
+    }
+
+    private String normalize(String folderName) {
+        return folderName.toUpperCase();
+    }
+}
@@ -0,0 +1,302 @@
+package com.memail.service;
+
+import com.memail.cluster.ClusterPresence;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.imap.ImapConnectionManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.*;
+import jakarta.mail.event.ConnectionEvent;
+import jakarta.mail.event.ConnectionListener;
+import jakarta.mail.event.MessageChangedEvent;
+import jakarta.mail.event.MessageCountAdapter;
+import jakarta.mail.event.MessageCountEvent;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.IdleManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Push delivery of INBOX changes via IMAP IDLE
+ *
+ * Every user with an open WebSocket session gets one dedicated INBOX connection in IDLE,
+ * held by the node that owns the user in the cluster.
+ * All of them are multiplexed by a single Angus IdleManager selector, and listener
+ * callbacks run on a small shared pool, so the thread count does not grow with users.
+ * New messages are pushed through NotificationService as soon as James reports EXISTS;
+ * expunges and flag changes refresh the header index. Users whose server does not
+ * advertise IDLE are left to EmailMonitorService polling.
+ */
+@Service
+public class ImapIdleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImapIdleService.class);
+
+    @Autowired
+    private ImapConnectionManager imapConnectionManager;
+
+    @Autowired
+    private ClusterPresence clusterPresence;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private HeaderIndexService headerIndexService;
+
+    @Autowired
+    private MailService mailService;
+
+    @Autowired
+    private OptimizedMailService optimizedMailService;
+
+    @Value("${mail.imap.idle.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.imap.idle.threads:4}")
+    private int threads;
+
+    // Servers drop IDLE after 30 minutes of silence (RFC 2177), so re-issue it before that
+    @Value("${mail.imap.idle.refresh-interval:20m}")
+    private Duration refreshInterval;
+
+    private ExecutorService idleExecutor;
+    private IdleManager idleManager;
+
+    private final Map<String, IdleWatch> watches = new ConcurrentHashMap<>();
+
+    // Users whose server has no IDLE capability; they stay on polling
+    private final Set<String> unsupportedUsers = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            logger.info("IMAP IDLE disabled, new mail is detected by polling");
+            return;
+        }
+        idleExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "imap-idle");
+            thread.setDaemon(true);
+            return thread;
+        });
+        idleManager = new IdleManager(Session.getInstance(new Properties()), idleExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (idleManager == null) {
+            return;
+        }
+        idleManager.stop();
+        for (String userEmail : new ArrayList<>(watches.keySet())) {
+            stopWatching(userEmail);
+        }
+        idleExecutor.shutdownNow();
+    }
+
+    /**
+     * Whether new mail for the user is already pushed by IDLE, so polling can skip them
+     */
+    public boolean isWatching(String userEmail) {
+        IdleWatch watch = watches.get(userEmail);
+        return watch != null && !watch.broken;
+    }
+
+    /**
+     * Match IDLE connections to the owned users that currently have a WebSocket session
+     * Starts missing watches, stops ones for departed users, and restarts or refreshes
+     * connections that dropped or have idled for too long
+     */
+    @Scheduled(fixedDelayString = "${mail.imap.idle.reconcile-interval:15000}")
+    public void reconcile() {
+        if (idleManager == null) {
+            return;
+        }
+        Set<String> activeUsers = clusterPresence.ownedActiveUsers();
+
+        for (String userEmail : new ArrayList<>(watches.keySet())) {
+            if (!activeUsers.contains(userEmail)) {
+                stopWatching(userEmail);
+            }
+        }
+
+        for (String userEmail : activeUsers) {
+            IdleWatch watch = watches.get(userEmail);
+            if (watch != null && watch.broken) {
+                // Dropped by the server or the network; reconnect from scratch
+                stopWatching(userEmail);
+            } else if (watch != null) {
+                if (System.currentTimeMillis() - watch.lastIdleAt > refreshInterval.toMillis()) {
+                    idleExecutor.execute(() -> refresh(watch));
+                }
+                continue;
+            }
+            if (!unsupportedUsers.contains(userEmail)) {
+                startWatching(userEmail);
+            }
+        }
+    }
+
+    private void startWatching(String userEmail) {
+        Store store = null;
+        try {
+            Properties overrides = new Properties();
+            // IdleManager requires socket channels; listener events share the IDLE pool
+            overrides.setProperty("mail.imap.usesocketchannels", "true");
+            overrides.put("mail.event.executor", idleExecutor);
+            store = imapConnectionManager.connectDedicated(userEmail, overrides);
+
+            if (!((IMAPStore) store).hasCapability("IDLE")) {
+                logger.info("IMAP server has no IDLE for {}, falling back to polling", userEmail);
+                unsupportedUsers.add(userEmail);
+                store.close();
+                return;
+            }
+
+            IMAPFolder inbox = (IMAPFolder) store.getFolder("INBOX");
+            inbox.open(Folder.READ_ONLY);
+
+            IdleWatch watch = new IdleWatch(userEmail, store, inbox);
+            store.addConnectionListener(watch);
+            inbox.addConnectionListener(watch);
+            inbox.addMessageCountListener(watch);
+            inbox.addMessageChangedListener(watch::messageChanged);
+
+            watches.put(userEmail, watch);
+            idleManager.watch(inbox);
+            logger.debug("Watching INBOX of {} with IDLE", userEmail);
+        } catch (Exception e) {
+            logger.warn("Failed to start IDLE for {}: {}", userEmail, e.getMessage());
+            watches.remove(userEmail);
+            closeQuietly(store);
+        }
+    }
+
+    private void stopWatching(String userEmail) {
+        IdleWatch watch = watches.remove(userEmail);
+        if (watch != null) {
+            watch.broken = true;
+            closeQuietly(watch.store);
+        }
+    }
+
+    private void refresh(IdleWatch watch) {
+        try {
+            // Any folder command ends the current IDLE; a NOOP-backed count then re-arms it
+            watch.inbox.getMessageCount();
+            rewatch(watch);
+        } catch (MessagingException e) {
+            watch.broken = true;
+        }
+    }
+
+    private void rewatch(IdleWatch watch) {
+        if (watch.broken) {
+            return;
+        }
+        try {
+            idleManager.watch(watch.inbox);
+            watch.lastIdleAt = System.currentTimeMillis();
+        } catch (MessagingException e) {
+            logger.debug("Failed to re-enter IDLE for {}: {}", watch.userEmail, e.getMessage());
+            watch.broken = true;
+        }
+    }
+
+    private void notifyNewMessages(IdleWatch watch, Message[] messages) {
+        try {
+            optimizedMailService.applyOptimizedFetchProfile(watch.inbox, messages);
+            for (Message message : messages) {
+                EmailHeaderDTO header = mailService.convertToEmailHeaderDTO(message);
+                if (header != null) {
+                    notificationService.sendNewEmailNotification(
+                        watch.userEmail,
+                        header.getMessageId(),
+                        header.getFrom(),
+                        header.getSubject(),
+                        "INBOX",
+                        header.getPreview()
+                    );
+                }
+            }
+        } catch (MessagingException e) {
+            logger.warn("Failed to read new messages for {}: {}", watch.userEmail, e.getMessage());
+        }
+    }
+
+    private void closeQuietly(Store store) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.close();
+        } catch (MessagingException e) {
+            // Connection is being discarded anyway
+        }
+    }
+
+    /**
+     * One user's IDLE connection and its listeners
+     * Every callback re-arms IDLE, as IdleManager stops watching a folder after each event
+     */
+    private class IdleWatch extends MessageCountAdapter implements ConnectionListener {
+
+        private final String userEmail;
+        private final Store store;
+        private final IMAPFolder inbox;
+        private volatile boolean broken;
+        private volatile long lastIdleAt = System.currentTimeMillis();
+
+        IdleWatch(String userEmail, Store store, IMAPFolder inbox) {
+            this.userEmail = userEmail;
+            this.store = store;
+            this.inbox = inbox;
+        }
+
+        @Override
+        public void messagesAdded(MessageCountEvent event) {
+            notifyNewMessages(this, event.getMessages());
+            headerIndexService.requestSync(userEmail, "INBOX");
+            rewatch(this);
+        }
+
+        @Override
+        public void messagesRemoved(MessageCountEvent event) {
+            headerIndexService.requestSync(userEmail, "INBOX");
+            notificationService.sendMailboxChangedNotification(userEmail, "INBOX");
+            rewatch(this);
+        }
+
+        void messageChanged(MessageChangedEvent event) {
+            headerIndexService.requestSync(userEmail, "INBOX");
+            notificationService.sendMailboxChangedNotification(userEmail, "INBOX");
+            rewatch(this);
+        }
+
+        @Override
+        public void opened(ConnectionEvent event) {
+        }
+
+        @Override
+        public void disconnected(ConnectionEvent event) {
+            broken = true;
+        }
+
+        @Override
+        public void closed(ConnectionEvent event) {
+            broken = true;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.memail.model.MessageLabel;
 import com.memail.repository.LabelRepository;
 import com.memail.repository.MessageLabelRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +25,9 @@ public class LabelService {
 
     /**
      * Get all labels for a user
+     * Cached per user and refreshed ahead of expiry; label changes evict the entry
      */
+    @Cacheable(value = "labels", key = "#userId", sync = true)
     public List<Label> getUserLabels(String userId) {
         return labelRepository.findByUserIdOrderByNameAsc(userId);
     }
@@ -31,6 +35,7 @@ public class LabelService {
     /**
      * Create a new label for a user
      */
+    @CacheEvict(value = "labels", key = "#userId")
     public Label createLabel(String userId, String name, String color) {
         if (labelRepository.existsByUserIdAndName(userId, name)) {
             throw new IllegalArgumentException("Label with name '" + name + "' already exists");
@@ -43,6 +48,7 @@ public class LabelService {
     /**
      * Update an existing label
      */
+    @CacheEvict(value = "labels", key = "#userId")
     public Label updateLabel(String userId, Long labelId, String name, String color) {
         Optional<Label> labelOpt = labelRepository.findByUserIdAndId(userId, labelId);
         if (labelOpt.isEmpty()) {
@@ -64,6 +70,7 @@ public class LabelService {
     /**
      * Delete a label and all its message associations
      */
+    @CacheEvict(value = "labels", key = "#userId")
     public void deleteLabel(String userId, Long labelId) {
         Optional<Label> labelOpt = labelRepository.findByUserIdAndId(userId, labelId);
         if (labelOpt.isEmpty()) {
@@ -210,6 +217,7 @@ public class LabelService {
     /**
      * Delete all data for a user (for user deletion)
      */
+    @CacheEvict(value = "labels", key = "#userId")
     public void deleteAllUserData(String userId) {
         messageLabelRepository.deleteByUserId(userId);
         labelRepository.deleteByUserId(userId);
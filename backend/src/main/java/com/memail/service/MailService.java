@@ -1,5 +1,6 @@
 package com.memail.service;
 
+import com.memail.dto.AttachmentDTO;
 import com.memail.dto.EmailHeaderDTO;
 import com.memail.dto.EmailListResponse;
 import com.memail.dto.SendEmailRequestDTO;
@@ -10,15 +11,36 @@ import com.memail.dto.EmailDetailDTO;
 import com.memail.dto.EmailActionRequest;
 import com.ashulabs.memail.dto.DraftEmailDTO;
 import com.ashulabs.memail.dto.ReplyRequestDTO;
-import com.memail.model.UserCredentials;
-import com.memail.repository.UserCredentialsRepository;
-import com.memail.util.EncryptionUtil;
+import com.memail.cache.MailCache;
+import com.memail.imap.AttachmentScanner;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapConnectionManager;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import com.memail.imap.ImapSorter;
+import com.memail.imap.ImapThreader;
+import com.memail.imap.MessageBodyReader;
+import com.memail.imap.UidCursor;
+import com.memail.model.OutboundMessage;
+import com.memail.search.ImapSearchCompiler;
+import com.memail.search.SearchPlan;
+import com.memail.search.SearchNode;
+import com.memail.search.SearchPlanner;
+import com.memail.search.SearchQueryParser;
+import com.memail.search.SearchResultMerger;
+import com.memail.threading.JwzThreader;
 import jakarta.mail.*;
+import org.eclipse.angus.mail.imap.IMAPFolder;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.search.*;
 import jakarta.activation.DataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -28,18 +50,26 @@ import jakarta.mail.util.ByteArrayDataSource;
 import jakarta.mail.internet.MimeMultipart;
 import jakarta.mail.internet.MimeBodyPart;
 import jakarta.activation.DataHandler;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.Date;
-import java.util.Optional;
 import java.security.MessageDigest;
 import java.nio.charset.StandardCharsets;
 
 @Service
 public class MailService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MailService.class);
+
     @Autowired
     private JavaMailSender javaMailSender;
 
@@ -47,25 +77,55 @@ public class MailService {
     private LabelService labelService;
 
     @Autowired
-    private UserCredentialsRepository userCredentialsRepository;
+    private OptimizedMailService optimizedMailService;
 
     @Autowired
-    private EncryptionUtil encryptionUtil;
+    private ImapConnectionManager imapConnectionManager;
 
     @Autowired
-    private OptimizedMailService optimizedMailService;
+    private ImapFolderResolver imapFolderResolver;
+
+    @Autowired
+    private HeaderIndexService headerIndexService;
+
+    @Autowired
+    private ThreadIndexService threadIndexService;
+
+    @Autowired
+    private BulkActionEngine bulkActionEngine;
+
+    @Autowired
+    private SearchPlanner searchPlanner;
+
+    @Autowired
+    private MessageBodyReader messageBodyReader;
+
+    @Autowired
+    private AttachmentUploadService attachmentUploadService;
+
+    @Autowired
+    private OutboundMailService outboundMailService;
+
+    @Autowired
+    private MailboxAppendService mailboxAppendService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    @Value("${mail.imap.host}")
-    private String imapHost;
+    @Autowired
+    private MailCache mailCache;
 
-    @Value("${mail.imap.port}")
-    private int imapPort;
+    @Autowired
+    @Qualifier("mailFetchExecutor")
+    private ExecutorService mailFetchExecutor;
 
-    @Value("${mail.imap.ssl.enable}")
-    private boolean imapSslEnable;
+    // Folders covered by in:anywhere searches
+    @Value("${memail.search.all-folders:INBOX,SENT,DRAFTS,TRASH,STARRED,IMPORTANT,SPAM}")
+    private List<String> searchAllFolders;
 
-    @Value("${mail.imap.starttls.enable}")
-    private boolean imapStartTlsEnable;
+    // Cross-folder searches answer with the folders that responded by then
+    @Value("${memail.search.fanout-timeout:5s}")
+    private Duration searchFanoutTimeout;
 
     @Value("${james.webadmin.host}")
     private String jamesWebAdminHost;
@@ -76,8 +136,7 @@ public class MailService {
     // SMTP configuration is now handled by Spring Boot's JavaMailSender
     // No need for separate SMTP configuration here
 
-    private final Map<String, Store> userStores = new HashMap<>();
-    // Remove userCredentials map as we no longer store user passwords
+    // IMAP stores are leased per request from ImapConnectionManager's per-user pools
 
     /**
      * Authenticate user against IMAP server
@@ -86,15 +145,10 @@ public class MailService {
     public boolean authenticateUser(String email, String password) {
         System.out.println("=== ATTEMPTING IMAP AUTHENTICATION ===");
         System.out.println("Email: " + email);
-        System.out.println("IMAP Host: " + imapHost + ":" + imapPort);
-        System.out.println("SSL Enabled: " + imapSslEnable);
-        System.out.println("STARTTLS Enabled: " + imapStartTlsEnable);
 
         try {
-            Store store = connectToImapServer(email, password);
-            if (store != null && store.isConnected()) {
-                // Store the connection for later use (reading emails)
-                userStores.put(email, store);
+            // The authenticated store is kept warm in the user's connection pool
+            if (imapConnectionManager.authenticate(email, password)) {
                 // SECURITY: We do NOT store the password anymore
                 System.out.println("=== AUTHENTICATION SUCCESSFUL ===");
                 return true;
@@ -118,51 +172,86 @@ public class MailService {
     }
 
     /**
-     * Get emails from specified folder with pagination
+     * Get emails from specified folder, newest first
+     * With a cursor the page continues below the last UID already returned, so new
+     * arrivals and expunges between requests do not shift the window. Without a cursor
+     * the page offset is used (page 0 is the newest page).
+     * Served from the header index once the folder is indexed, from IMAP until then.
      */
-    public EmailListResponse getEmails(String email, String folderName, int page, int size) {
-        try {
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
+    public EmailListResponse getEmails(String email, String folderName, String cursor, int page, int size) {
+        UidCursor after = (cursor != null && !cursor.isBlank()) ? UidCursor.decode(cursor) : null;
+
+        if (headerIndexService.isIndexed(email, folderName)) {
+            return headerIndexService.listHeaders(email, folderName, after, page, size);
+        }
+        headerIndexService.requestSync(email, folderName);
 
-            Folder folder = getFolderByName(store, folderName);
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(folderName, Folder.READ_ONLY, this::getFolderByName);
             if (folder == null) {
                 throw new RuntimeException("Folder '" + folderName + "' not found");
             }
 
-            folder.open(Folder.READ_ONLY);
-
-            int messageCount = folder.getMessageCount();
-            if (messageCount == 0) {
-                return new EmailListResponse(Collections.emptyList(), 0, page, size);
-            }
-
-            // Calculate message range for pagination (newest first)
-            int startIndex = Math.max(1, messageCount - (page + 1) * size + 1);
-            int endIndex = Math.max(1, messageCount - page * size);
+            try {
+                UIDFolder uidFolder = (UIDFolder) folder;
+                long uidValidity = uidFolder.getUIDValidity();
 
-            Message[] messages = folder.getMessages(startIndex, endIndex);
+                int messageCount = folder.getMessageCount();
+                if (messageCount == 0) {
+                    return new EmailListResponse(Collections.emptyList(), 0, page, size);
+                }
 
-            // PERFORMANCE OPTIMIZATION: Use FetchProfile to batch-fetch all headers in ONE network roundtrip
-            // This is CRITICAL - without this, each message would trigger a separate server request
-            long fetchStart = System.currentTimeMillis();
-            optimizedMailService.applyOptimizedFetchProfile(folder, messages);
-            long fetchTime = System.currentTimeMillis() - fetchStart;
-            System.out.println("⚡ FetchProfile completed in " + fetchTime + "ms for " + messages.length + " messages");
+                if (after != null && !after.matches(uidValidity)) {
+                    // UIDs were reassigned (mailbox recreated), the cursor points into a different UID space
+                    logger.debug("Stale cursor for {} (UIDVALIDITY {} -> {}), restarting from newest",
+                        folderName, after.getUidValidity(), uidValidity);
+                    after = null;
+                    page = 0;
+                }
 
-            // Convert to DTOs and reverse order (newest first)
-            List<EmailHeaderDTO> emailHeaders = Arrays.stream(messages)
-                .map(this::convertToEmailHeaderDTO)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+                Message[] messages;
+                if (after != null) {
+                    messages = getMessagesBelowUid(folder, uidFolder, after.getLastUid(), size);
+                } else {
+                    // Calculate message range for pagination (newest first)
+                    int startIndex = Math.max(1, messageCount - (page + 1) * size + 1);
+                    int endIndex = messageCount - page * size;
+                    messages = endIndex >= 1 ? folder.getMessages(startIndex, endIndex) : new Message[0];
+                }
 
-            Collections.reverse(emailHeaders);
+                // PERFORMANCE OPTIMIZATION: Use FetchProfile to batch-fetch all headers in ONE network roundtrip
+                // This is CRITICAL - without this, each message would trigger a separate server request
+                long fetchStart = System.currentTimeMillis();
+                optimizedMailService.applyOptimizedFetchProfile(folder, messages);
+                long fetchTime = System.currentTimeMillis() - fetchStart;
+                System.out.println("⚡ FetchProfile completed in " + fetchTime + "ms for " + messages.length + " messages");
+
+                // Convert to DTOs and reverse order (newest first)
+                List<EmailHeaderDTO> emailHeaders = new ArrayList<>();
+                for (Message message : messages) {
+                    EmailHeaderDTO header = convertToEmailHeaderDTO(message);
+                    if (header != null) {
+                        // UID was part of the batch fetch, no extra round-trip
+                        header.setUid(uidFolder.getUID(message));
+                        emailHeaders.add(header);
+                    }
+                }
 
-            folder.close(false);
+                Collections.reverse(emailHeaders);
 
-            return new EmailListResponse(emailHeaders, messageCount, page, size);
+                EmailListResponse response = new EmailListResponse(emailHeaders, messageCount, page, size);
+                if (messages.length > 0) {
+                    // messages[0] is the oldest message on this page
+                    response.setNextCursor(new UidCursor(uidValidity, uidFolder.getUID(messages[0])).encode());
+                    response.setHasMore(messages[0].getMessageNumber() > 1);
+                } else {
+                    response.setHasMore(false);
+                }
+                return response;
+            } finally {
+                folderCache.release(folder);
+            }
 
         } catch (MessagingException e) {
             throw new RuntimeException("Failed to fetch emails: " + e.getMessage(), e);
@@ -170,119 +259,33 @@ public class MailService {
     }
 
     /**
-     * Get user's IMAP store connection with auto-reconnect support
-     * If the store is missing or disconnected, attempts to reconnect using stored credentials
-     * This enables persistent sessions across server restarts
+     * Up to size messages directly below the given UID, oldest first
+     * The anchor lookup is a single UID FETCH; its sequence number gives the window below it
      */
-    public Store getUserStore(String email) {
-        Store store = userStores.get(email);
-
-        // Check if store exists and is connected
-        if (store != null && store.isConnected()) {
-            return store;
+    private Message[] getMessagesBelowUid(Folder folder, UIDFolder uidFolder, long lastUid, int size)
+            throws MessagingException {
+        Message anchor = uidFolder.getMessageByUID(lastUid);
+        if (anchor != null && !anchor.isExpunged()) {
+            int endIndex = anchor.getMessageNumber() - 1;
+            if (endIndex < 1) {
+                return new Message[0];
+            }
+            return folder.getMessages(Math.max(1, endIndex - size + 1), endIndex);
         }
 
-        // Store is missing or disconnected - attempt auto-reconnect
-        System.out.println("=== AUTO-RECONNECT: IMAP store not found or disconnected for user: " + email + " ===");
-
-        try {
-            // Retrieve encrypted credentials from database
-            Optional<UserCredentials> credentialsOpt = userCredentialsRepository.findByEmail(email);
-
-            if (credentialsOpt.isEmpty()) {
-                System.err.println("No stored credentials found for user: " + email);
-                return null;
-            }
-
-            UserCredentials credentials = credentialsOpt.get();
-
-            // Decrypt password
-            String password = encryptionUtil.decrypt(credentials.getEncryptedPassword());
-
-            // Reconnect to IMAP server
-            System.out.println("Attempting to reconnect to IMAP server for user: " + email);
-            Store reconnectedStore = connectToImapServer(email, password);
-
-            if (reconnectedStore != null && reconnectedStore.isConnected()) {
-                // Store the reconnected store
-                userStores.put(email, reconnectedStore);
-
-                // Update last connection time
-                credentials.setLastConnectionAt(LocalDateTime.now());
-                userCredentialsRepository.save(credentials);
-
-                System.out.println("=== AUTO-RECONNECT SUCCESSFUL for user: " + email + " ===");
-                return reconnectedStore;
-            }
-
-        } catch (Exception e) {
-            System.err.println("Auto-reconnect failed for user " + email + ": " + e.getMessage());
-            e.printStackTrace();
+        // Anchor was expunged since the last page - UID FETCH the range below it instead
+        if (lastUid <= 1) {
+            return new Message[0];
         }
-
-        return null;
+        Message[] below = uidFolder.getMessagesByUID(1, lastUid - 1);
+        return Arrays.copyOfRange(below, Math.max(0, below.length - size), below.length);
     }
 
     /**
      * Get folder by name with fallback to alternative names
      */
     private Folder getFolderByName(Store store, String folderName) throws MessagingException {
-        // First try the exact folder name
-        Folder folder = store.getFolder(folderName);
-        if (folder.exists()) {
-            return folder;
-        }
-
-        // If not found, try alternative names based on common IMAP folder conventions
-        String[] alternatives = getAlternativeFolderNames(folderName);
-        for (String alternative : alternatives) {
-            folder = store.getFolder(alternative);
-            if (folder.exists()) {
-                System.out.println("Found folder '" + folderName + "' as '" + alternative + "'");
-                return folder;
-            }
-        }
-
-        // Try to create standard folders if they don't exist
-        if (isStandardFolder(folderName)) {
-            try {
-                System.out.println("Creating missing standard folder: " + folderName);
-                Folder newFolder = store.getFolder(folderName);
-                if (newFolder.create(Folder.HOLDS_MESSAGES)) {
-                    System.out.println("Successfully created folder: " + folderName);
-                    return newFolder;
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to create folder '" + folderName + "': " + e.getMessage());
-            }
-        }
-
-        // List available folders for debugging
-        System.err.println("Folder '" + folderName + "' not found. Available folders:");
-        try {
-            Folder[] folders = store.getDefaultFolder().list("*");
-            for (Folder f : folders) {
-                System.err.println("  - " + f.getName() + " (full name: " + f.getFullName() + ")");
-            }
-        } catch (Exception e) {
-            System.err.println("Could not list folders: " + e.getMessage());
-        }
-
-        return null; // Folder not found
-    }
-
-    /**
-     * Check if a folder is a standard IMAP folder that should be auto-created
-     */
-    private boolean isStandardFolder(String folderName) {
-        return folderName != null && (
-            folderName.equalsIgnoreCase("DRAFTS") ||
-            folderName.equalsIgnoreCase("SENT") ||
-            folderName.equalsIgnoreCase("TRASH") ||
-            folderName.equalsIgnoreCase("STARRED") ||
-            folderName.equalsIgnoreCase("IMPORTANT") ||
-            folderName.equalsIgnoreCase("SPAM")
-        );
+        return imapFolderResolver.find(store, folderName);
     }
 
     /**
@@ -290,12 +293,8 @@ public class MailService {
      * Creates: DRAFTS, SENT, TRASH, STARRED, IMPORTANT, SPAM
      */
     public void initializeDefaultFolders(String email) {
-        try {
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                System.err.println("Cannot initialize folders - user not connected: " + email);
-                return;
-            }
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            Store store = connection.getStore();
 
             String[] defaultFolders = {"DRAFTS", "SENT", "TRASH", "STARRED", "IMPORTANT", "SPAM"};
 
@@ -318,97 +317,12 @@ public class MailService {
         }
     }
 
-    /**
-     * Get alternative folder names for common IMAP folder types
-     */
-    private String[] getAlternativeFolderNames(String folderName) {
-        switch (folderName.toUpperCase()) {
-            case "SENT":
-                return new String[]{"Sent", "Sent Items", "Sent Messages", "SENT"};
-            case "DRAFTS":
-                return new String[]{"Drafts", "Draft", "DRAFTS"};
-            case "TRASH":
-                return new String[]{"Trash", "Deleted", "Deleted Items", "TRASH"};
-            case "INBOX":
-                return new String[]{"INBOX", "Inbox"};
-            case "STARRED":
-                return new String[]{"Starred", "STARRED", "Star"};
-            case "IMPORTANT":
-                return new String[]{"Important", "IMPORTANT"};
-            case "SPAM":
-                return new String[]{"Spam", "SPAM", "Junk", "Junk Email"};
-            default:
-                return new String[]{folderName};
-        }
-    }
-
-    /**
-     * Connect to IMAP server
-     */
-    private Store connectToImapServer(String email, String password) throws MessagingException {
-        Properties props = new Properties();
-        props.setProperty("mail.store.protocol", "imap");
-        props.setProperty("mail.imap.host", imapHost);
-        props.setProperty("mail.imap.port", String.valueOf(imapPort));
-        props.setProperty("mail.imap.ssl.enable", String.valueOf(imapSslEnable));
-        props.setProperty("mail.imap.starttls.enable", String.valueOf(imapStartTlsEnable));
-
-        // Additional properties for Apache James Docker compatibility
-        props.setProperty("mail.imap.connectionpoolsize", "10");
-        props.setProperty("mail.imap.connectionpooltimeout", "300000");
-        props.setProperty("mail.imap.timeout", "30000");
-        props.setProperty("mail.imap.connectiontimeout", "30000");
-
-        // Enhanced SSL/TLS configuration for Docker James
-        if (imapStartTlsEnable || imapSslEnable) {
-            // Trust all certificates for development (James Docker uses self-signed)
-            props.setProperty("mail.imap.ssl.trust", "*");
-            props.setProperty("mail.imap.starttls.required", "false");
-            props.setProperty("mail.imap.ssl.checkserveridentity", "false");
-            props.setProperty("mail.imap.ssl.protocols", "TLSv1.2 TLSv1.3");
-        }
-
-        // Allow plain authentication for development
-        props.setProperty("mail.imap.auth.plain.disable", "false");
-        props.setProperty("mail.imap.auth.login.disable", "false");
-
-        // Enable debug mode for troubleshooting
-        props.setProperty("mail.debug", "true");
-
-        System.out.println("=== IMAP CONNECTION PROPERTIES ===");
-        props.forEach((key, value) -> System.out.println(key + " = " + value));
-
-        System.out.println("Creating IMAP session and connecting...");
-
-        Session session = Session.getInstance(props);
-        session.setDebug(true); // Enable JavaMail debug output
-
-        Store store = session.getStore("imap");
-
-        System.out.println("Attempting to connect to IMAP server...");
-        store.connect(imapHost, imapPort, email, password);
-
-        System.out.println("Successfully connected to IMAP server for user: " + email);
-        return store;
-    }
-
-    /**
-     * Convert Message to EmailHeaderDTO
-     */
     /**
      * Close IMAP connection for user
      */
     public void closeConnection(String email) {
-        Store store = userStores.get(email);
-        if (store != null && store.isConnected()) {
-            try {
-                store.close();
-                userStores.remove(email);
-                System.out.println("Closed IMAP connection for user: " + email);
-            } catch (MessagingException e) {
-                System.err.println("Error closing IMAP connection for user " + email + ": " + e.getMessage());
-            }
-        }
+        imapConnectionManager.invalidate(email);
+        logger.debug("Closed IMAP connections for user {}", email);
     }
 
     /**
@@ -460,8 +374,10 @@ public class MailService {
             // Check if message is unread
             dto.setUnread(!message.isSet(Flags.Flag.SEEN));
 
-            // Check for attachments
-            dto.setHasAttachments(hasAttachments(message));
+            // Check for attachments in the BODYSTRUCTURE
+            int attachmentCount = AttachmentScanner.scan(message).size();
+            dto.setHasAttachments(attachmentCount > 0);
+            dto.setAttachmentCount(attachmentCount);
 
             // Extract preview text
             dto.setPreview(extractPreview(message));
@@ -482,23 +398,6 @@ public class MailService {
         }
     }
 
-    /**
-     * Check if message has attachments - OPTIMIZED VERSION
-     * Uses Content-Type header only, does NOT load message content
-     */
-    private boolean hasAttachments(Message message) {
-        try {
-            String[] contentType = message.getHeader("Content-Type");
-            if (contentType != null && contentType.length > 0) {
-                String type = contentType[0].toLowerCase();
-                return type.contains("multipart/mixed") || type.contains("multipart/related");
-            }
-        } catch (Exception e) {
-            // Ignore errors
-        }
-        return false;
-    }
-
     /**
      * Extract preview text from message - LAZY LOADED
      * Returns empty string for list view, only loads on detail view
@@ -550,84 +449,6 @@ public class MailService {
         return result.toString();
     }
 
-    /**
-     * Extract text content from message
-     */
-    private String getTextContent(Message message) throws MessagingException {
-        try {
-            System.out.println("Getting text content for message: " + message.getSubject());
-            System.out.println("Message mime type: " + message.getContentType());
-
-            if (message.isMimeType("text/plain")) {
-                String content = (String) message.getContent();
-                System.out.println("Plain text content length: " + (content != null ? content.length() : 0));
-                return content;
-            } else if (message.isMimeType("text/html")) {
-                String html = (String) message.getContent();
-                System.out.println("HTML content length: " + (html != null ? html.length() : 0));
-                // Enhanced HTML to text conversion
-                String textFromHtml = htmlToText(html);
-                System.out.println("Converted text length: " + (textFromHtml != null ? textFromHtml.length() : 0));
-                return textFromHtml;
-            } else if (message.isMimeType("multipart/*")) {
-                Multipart multipart = (Multipart) message.getContent();
-                String textFromMultipart = getTextFromMultipart(multipart);
-                System.out.println("Multipart text content length: " + (textFromMultipart != null ? textFromMultipart.length() : 0));
-                return textFromMultipart;
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR extracting text content: " + e.getMessage());
-            e.printStackTrace();
-        }
-        System.out.println("Returning empty string for message content");
-        return "";
-    }
-
-    /**
-     * Extract text from multipart message
-     */
-    private String getTextFromMultipart(Multipart multipart) throws MessagingException {
-        StringBuilder result = new StringBuilder();
-        try {
-            System.out.println("Processing multipart with " + multipart.getCount() + " parts");
-
-            for (int i = 0; i < multipart.getCount(); i++) {
-                BodyPart bodyPart = multipart.getBodyPart(i);
-                String contentType = bodyPart.getContentType();
-                System.out.println("Part " + i + " content type: " + contentType);
-
-                if (bodyPart.isMimeType("text/plain")) {
-                    String content = bodyPart.getContent().toString();
-                    System.out.println("Found text/plain part with length: " + content.length());
-                    result.append(content);
-                    break; // Prefer plain text over HTML
-                } else if (bodyPart.isMimeType("text/html") && result.length() == 0) {
-                    String html = bodyPart.getContent().toString();
-                    System.out.println("Found text/html part with length: " + html.length());
-                    result.append(htmlToText(html));
-                } else if (bodyPart.isMimeType("multipart/*")) {
-                    // Handle nested multipart
-                    System.out.println("Found nested multipart, recursing...");
-                    Multipart nestedMultipart = (Multipart) bodyPart.getContent();
-                    String nestedText = getTextFromMultipart(nestedMultipart);
-                    if (nestedText != null && !nestedText.trim().isEmpty()) {
-                        result.append(nestedText);
-                        if (result.length() > 0) break; // Stop if we found content
-                    }
-                } else {
-                    System.out.println("Skipping part with content type: " + contentType);
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR in getTextFromMultipart: " + e.getMessage());
-            e.printStackTrace();
-        }
-
-        String finalResult = result.toString();
-        System.out.println("getTextFromMultipart returning content length: " + finalResult.length());
-        return finalResult;
-    }
-
     /**
      * Enhanced HTML to text conversion
      */
@@ -666,20 +487,15 @@ public class MailService {
     }
 
     /**
-     * Send email using Spring's JavaMailSender (secure centralized SMTP)
-     * The application uses its own configured credentials to send emails on behalf of users
+     * Queue an email for sending through the application's centralized SMTP credentials
+     * Delivery, retries and the copy in SENT are handled by OutboundMailService
      *
      * @param userEmail The authenticated user's email (from JWT/SecurityContext) - used as "From" address
      * @param sendRequest The email content and recipients
-     * @throws MessagingException if email sending fails
+     * @return The queued message, whose status can be followed until it is sent
+     * @throws MessagingException if the message cannot be built or queued
      */
-    public void sendEmail(String userEmail, SendEmailRequestDTO sendRequest) throws MessagingException {
-        System.out.println("=== ATTEMPTING SECURE EMAIL SEND ===");
-        System.out.println("On behalf of user: " + userEmail);
-        System.out.println("To: " + sendRequest.getTo());
-        System.out.println("Subject: " + sendRequest.getSubject());
-        System.out.println("Using application's centralized SMTP credentials");
-
+    public OutboundMessage sendEmail(String userEmail, SendEmailRequestDTO sendRequest) throws MessagingException {
         try {
             // Create MimeMessage using Spring's JavaMailSender
             MimeMessage message = javaMailSender.createMimeMessage();
@@ -709,74 +525,58 @@ public class MailService {
             // Add attachments if any
             if (sendRequest.getAttachments() != null && !sendRequest.getAttachments().isEmpty()) {
                 for (FileAttachmentDTO attachment : sendRequest.getAttachments()) {
-                    DataSource source = new ByteArrayDataSource(
-                        attachment.getContent(),
-                        attachment.getContentType()
-                    );
-                    helper.addAttachment(attachment.getFileName(), source);
+                    helper.addAttachment(attachment.getFileName(), attachmentSource(userEmail, attachment));
                 }
             }
 
-            // Send the email using Spring's JavaMailSender
-            // This automatically uses the credentials configured in application.properties
-            javaMailSender.send(message);
+            // Journal and queue the message; workers send it with the credentials
+            // configured in application.properties and save it to SENT
+            OutboundMessage queued = outboundMailService.enqueue(userEmail, message);
 
-            System.out.println("=== EMAIL SENT SUCCESSFULLY (SECURE) ===");
+            logger.debug("Queued outbound message {} for {}", queued.getId(), userEmail);
 
-            // Save to sent folder (best effort, don't fail if this fails)
-            try {
-                saveSentEmailSecure(userEmail, message);
-            } catch (Exception e) {
-                System.err.println("Warning: Could not save to sent folder: " + e.getMessage());
-            }
+            // The journal holds its own copy of the attachments
+            releaseUploads(userEmail, sendRequest.getAttachments());
+            return queued;
 
         } catch (MessagingException e) {
-            System.err.println("=== SECURE SMTP SEND FAILED ===");
-            System.err.println("Error: " + e.getClass().getSimpleName());
-            System.err.println("Message: " + e.getMessage());
-            if (e.getCause() != null) {
-                System.err.println("Cause: " + e.getCause().getMessage());
-            }
-            e.printStackTrace();
+            logger.warn("Failed to queue email for {}: {}", userEmail, e.getMessage());
             throw e;
         } catch (Exception e) {
-            System.err.println("=== UNEXPECTED ERROR DURING SECURE SEND ===");
-            System.err.println("Error: " + e.getClass().getSimpleName());
-            System.err.println("Message: " + e.getMessage());
-            e.printStackTrace();
-            throw new MessagingException("Unexpected error during secure email send", e);
+            logger.warn("Unexpected error while queueing email for {}", userEmail, e);
+            throw new MessagingException("Unexpected error while queueing email", e);
         }
     }
 
     /**
-     * Save sent email to SENT folder using secure approach
+     * Source of an outgoing attachment: the spooled file of an upload handle, else the inline bytes
      */
-    private void saveSentEmailSecure(String userEmail, MimeMessage sentMessage) throws MessagingException {
-        Store store = getUserStore(userEmail);
-        if (store == null || !store.isConnected()) {
-            System.err.println("Cannot save sent email: User not connected to IMAP");
-            return;
+    private DataSource attachmentSource(String userEmail, FileAttachmentDTO attachment) {
+        if (attachment.getUploadId() != null) {
+            return attachmentUploadService.dataSource(userEmail, attachment.getUploadId());
         }
+        return new ByteArrayDataSource(attachment.getContent(), attachment.getContentType());
+    }
 
-        try {
-            // Open the SENT folder using the same logic as getEmails
-            Folder sentFolder = getFolderByName(store, "SENT");
-
-            if (sentFolder != null && sentFolder.exists()) {
-                sentFolder.open(Folder.READ_WRITE);
-
-                // Create a copy of the message for the sent folder
-                MimeMessage sentCopy = new MimeMessage(sentMessage);
-                sentCopy.setFlag(Flags.Flag.SEEN, true); // Mark as read in sent folder
-
-                // Append to sent folder
-                sentFolder.appendMessages(new Message[]{sentCopy});
-                sentFolder.close(false);
-
-                System.out.println("Successfully saved email to SENT folder");
-            } else {
-                System.err.println("SENT folder not found for user: " + userEmail);
+    /**
+     * Delete the spooled uploads of a message that has been sent
+     */
+    private void releaseUploads(String userEmail, List<FileAttachmentDTO> attachments) {
+        if (attachments != null) {
+            for (FileAttachmentDTO attachment : attachments) {
+                attachmentUploadService.release(userEmail, attachment.getUploadId());
             }
+        }
+    }
+
+    /**
+     * Save sent email to SENT folder using secure approach
+     */
+    private void saveSentEmailSecure(String userEmail, MimeMessage sentMessage) throws MessagingException {
+        try {
+            // Mark as read in sent folder; the index picks the UID up from APPENDUID
+            mailboxAppendService.append(userEmail, "SENT", List.of(sentMessage), new Flags(Flags.Flag.SEEN));
+            System.out.println("Successfully saved email to SENT folder");
         } catch (Exception e) {
             System.err.println("Error saving to SENT folder: " + e.getMessage());
             // Don't throw exception - this is best effort
@@ -785,152 +585,400 @@ public class MailService {
 
     /**
      * Get conversations from specified folder with pagination
+     * Folders that are not indexed yet are threaded by the server where it supports
+     * THREAD=REFERENCES, otherwise by grouping their newest 500 messages locally
      */
     public ConversationListResponse getConversations(String email, String folderName, int page, int size) {
+        if (headerIndexService.isIndexed(email, folderName)) {
+            return headerIndexService.listConversations(email, folderName, page, size);
+        }
+
+        // Not indexed yet: answer from IMAP while the first sync runs
+        headerIndexService.requestSync(email, folderName);
+        long start = System.nanoTime();
         try {
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
+            ConversationListResponse threaded = conversationsFromServerThreads(email, folderName, page, size);
+            if (threaded != null) {
+                recordConversationSource(folderName, "server", start);
+                return threaded;
             }
+        } catch (MessagingException e) {
+            logger.warn("THREAD of {} failed for {}, grouping locally: {}", folderName, email, e.getMessage());
+        }
+
+        start = System.nanoTime();
+        ConversationListResponse grouped = conversationsFromRecentHeaders(email, folderName, page, size);
+        recordConversationSource(folderName, "local", start);
+        return grouped;
+    }
 
-            Folder folder = getFolderByName(store, folderName);
+    /**
+     * One page of conversations threaded by the server, newest activity first, or null
+     * when the server cannot thread; envelopes are fetched for that page's messages only
+     */
+    private ConversationListResponse conversationsFromServerThreads(String email, String folderName, int page, int size)
+            throws MessagingException {
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(folderName, Folder.READ_ONLY, this::getFolderByName);
             if (folder == null) {
                 throw new RuntimeException("Folder '" + folderName + "' not found");
             }
 
-            folder.open(Folder.READ_ONLY);
+            try {
+                if (!ImapThreader.supportsReferences(folder)) {
+                    return null;
+                }
+                List<List<Long>> threads = ImapThreader.threadByReferences((IMAPFolder) folder);
 
-            int messageCount = folder.getMessageCount();
-            if (messageCount == 0) {
-                return new ConversationListResponse(Collections.emptyList(), 0, page, size);
-            }
+                // UIDs grow with arrival, so the highest UID marks a thread's latest message
+                threads.sort(Comparator.comparingLong((List<Long> thread) -> Collections.max(thread)).reversed());
 
-            // Fetch a larger batch for conversation grouping (up to 500 messages)
-            int batchSize = Math.min(500, messageCount);
-            int startIndex = Math.max(1, messageCount - batchSize + 1);
-            int endIndex = messageCount;
+                int totalConversations = threads.size();
+                int startIndex = page * size;
+                if (startIndex >= totalConversations) {
+                    return new ConversationListResponse(Collections.emptyList(), totalConversations, page, size);
+                }
+                List<List<Long>> pageThreads = threads.subList(startIndex, Math.min(startIndex + size, totalConversations));
+
+                UIDFolder uidFolder = (UIDFolder) folder;
+                long[] uids = pageThreads.stream().flatMap(List::stream).mapToLong(Long::longValue).toArray();
+                Message[] messages = Arrays.stream(uidFolder.getMessagesByUID(uids))
+                    .filter(message -> message != null && !message.isExpunged())
+                    .toArray(Message[]::new);
+                optimizedMailService.applyOptimizedFetchProfile(folder, messages);
+
+                Map<Long, EmailHeaderDTO> headersByUid = new HashMap<>();
+                for (Message message : messages) {
+                    EmailHeaderDTO header = convertToEmailHeaderDTOWithThreading(message);
+                    if (header != null) {
+                        headersByUid.put(uidFolder.getUID(message), header);
+                    }
+                }
 
-            Message[] messages = folder.getMessages(startIndex, endIndex);
+                List<ConversationDTO> conversations = new ArrayList<>();
+                for (List<Long> thread : pageThreads) {
+                    List<EmailHeaderDTO> threadMessages = thread.stream()
+                        .map(headersByUid::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                    if (!threadMessages.isEmpty()) {
+                        // Keyed by the root, which gets the same id from the local grouping
+                        String threadId = generateThreadId(threadMessages.get(0));
+                        threadMessages.forEach(header -> header.setThreadId(threadId));
+                        conversations.add(toConversation(threadId, threadMessages));
+                    }
+                }
+                return new ConversationListResponse(conversations, totalConversations, page, size);
+            } finally {
+                folderCache.release(folder);
+            }
+        }
+    }
 
-            // Convert to DTOs with threading information
-            List<EmailHeaderDTO> emailHeaders = Arrays.stream(messages)
-                .map(this::convertToEmailHeaderDTOWithThreading)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+    /**
+     * One page of conversations grouped locally from the newest 500 messages
+     */
+    private ConversationListResponse conversationsFromRecentHeaders(String email, String folderName, int page, int size) {
+        List<EmailHeaderDTO> emailHeaders = fetchRecentHeadersFromImap(email, folderName, 500);
 
-            // Group into conversations
-            List<ConversationDTO> conversations = groupIntoConversations(emailHeaders);
+        if (emailHeaders.isEmpty()) {
+            return new ConversationListResponse(Collections.emptyList(), 0, page, size);
+        }
 
-            // Sort by last message date (newest first)
-            conversations.sort((a, b) -> b.getLastMessageDate().compareTo(a.getLastMessageDate()));
+        // Group into conversations
+        List<ConversationDTO> conversations = groupIntoConversations(emailHeaders);
 
-            // Apply pagination to conversations
-            int totalConversations = conversations.size();
-            int conversationStartIndex = page * size;
-            int conversationEndIndex = Math.min(conversationStartIndex + size, totalConversations);
+        // Sort by last message date (newest first)
+        conversations.sort((a, b) -> b.getLastMessageDate().compareTo(a.getLastMessageDate()));
 
-            List<ConversationDTO> paginatedConversations = conversations.subList(conversationStartIndex, conversationEndIndex);
+        // Apply pagination to conversations
+        int totalConversations = conversations.size();
+        int conversationStartIndex = page * size;
+        int conversationEndIndex = Math.min(conversationStartIndex + size, totalConversations);
 
-            folder.close(false);
+        List<ConversationDTO> paginatedConversations = conversationStartIndex < totalConversations
+            ? conversations.subList(conversationStartIndex, conversationEndIndex)
+            : Collections.emptyList();
 
-            return new ConversationListResponse(paginatedConversations, totalConversations, page, size);
+        return new ConversationListResponse(paginatedConversations, totalConversations, page, size);
+    }
 
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to fetch conversations: " + e.getMessage(), e);
-        }
+    private void recordConversationSource(String folderName, String source, long startNanos) {
+        Timer.builder("memail.conversations.imap")
+            .description("Conversation lists of folders not indexed yet, by who did the threading")
+            .tag("folder", folderName.toUpperCase())
+            .tag("source", source)
+            .register(meterRegistry)
+            .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
     }
 
     /**
-     * Get full conversation thread by thread ID
+     * Newest headers of a folder straight from IMAP, used until the folder is indexed
      */
-    public ConversationDTO getConversationThread(String email, String threadId) {
-        try {
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
+    private List<EmailHeaderDTO> fetchRecentHeadersFromImap(String email, String folderName, int limit) {
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(folderName, Folder.READ_ONLY, this::getFolderByName);
+            if (folder == null) {
+                throw new RuntimeException("Folder '" + folderName + "' not found");
             }
 
-            // Search in all folders for the conversation but filter more strictly
-            List<EmailDetailDTO> allMessages = new ArrayList<>();
-            Set<String> processedMessageIds = new HashSet<>();
-
-            for (String folderName : Arrays.asList("INBOX", "SENT", "DRAFTS", "TRASH", "STARRED", "IMPORTANT", "SPAM")) {
-                Folder folder = getFolderByName(store, folderName);
-                if (folder != null && folder.exists()) {
-                    folder.open(Folder.READ_ONLY);
-
-                    Message[] messages = folder.getMessages();
-                    for (Message message : messages) {
-                        EmailHeaderDTO header = convertToEmailHeaderDTOWithThreading(message);
-                        if (header != null && threadId.equals(header.getThreadId())) {
-                            // Avoid duplicate messages by checking Message-ID
-                            String messageId = header.getMessageId();
-                            if (messageId != null && !processedMessageIds.contains(messageId)) {
-                                EmailDetailDTO detail = convertToEmailDetailDTO(message);
-                                if (detail != null) {
-                                    allMessages.add(detail);
-                                    processedMessageIds.add(messageId);
-                                    System.out.println("Added message to conversation: " + messageId + " from folder: " + folderName);
-                                }
-                            } else {
-                                System.out.println("Skipping duplicate message: " + messageId);
-                            }
-                        }
-                    }
-
-                    folder.close(false);
+            try {
+                int messageCount = folder.getMessageCount();
+                if (messageCount == 0) {
+                    return Collections.emptyList();
                 }
-            }
 
-            if (allMessages.isEmpty()) {
-                throw new RuntimeException("Conversation not found: " + threadId);
-            }
+                int startIndex = Math.max(1, messageCount - limit + 1);
+                Message[] messages = folder.getMessages(startIndex, messageCount);
+                optimizedMailService.applyOptimizedFetchProfile(folder, messages);
 
-            // Sort messages by date
-            allMessages.sort((a, b) -> a.getDate().compareTo(b.getDate()));
+                // Convert to DTOs with threading information
+                return Arrays.stream(messages)
+                    .map(this::convertToEmailHeaderDTOWithThreading)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            } finally {
+                folderCache.release(folder);
+            }
 
-            // Create conversation DTO
-            ConversationDTO conversation = new ConversationDTO();
-            conversation.setThreadId(threadId);
-            conversation.setSubject(allMessages.get(0).getSubject());
-            conversation.setMessageCount(allMessages.size());
-            conversation.setLastMessageDate(allMessages.get(allMessages.size() - 1).getDate());
+        } catch (MessagingException e) {
+            throw new RuntimeException("Failed to fetch conversations: " + e.getMessage(), e);
+        }
+    }
 
-            // Extract participants
-            Set<String> participantSet = new HashSet<>();
-            boolean hasUnread = false;
-            boolean hasAttachments = false;
+    /**
+     * Unread message count per folder
+     * Indexed folders are counted in Postgres; the rest fall back to IMAP STATUS
+     */
+    public Map<String, Long> getUnreadCounts(String email) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        Map<String, Long> indexed = headerIndexService.getUnreadCounts(email);
+
+        List<String> missing = new ArrayList<>();
+        for (String folderName : Arrays.asList("INBOX", "SENT", "DRAFTS", "TRASH", "STARRED", "IMPORTANT", "SPAM")) {
+            if (indexed.containsKey(folderName)) {
+                counts.put(folderName, indexed.get(folderName));
+            } else {
+                missing.add(folderName);
+                headerIndexService.requestSync(email, folderName);
+            }
+        }
 
-            for (EmailDetailDTO msg : allMessages) {
-                participantSet.add(extractEmailAddress(msg.getFrom()));
-                if (msg.getTo() != null) {
-                    Arrays.stream(msg.getTo().split("[,;]"))
-                        .map(String::trim)
-                        .forEach(addr -> participantSet.add(extractEmailAddress(addr)));
+        if (!missing.isEmpty()) {
+            try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+                ImapFolderCache folderCache = connection.getFolderCache();
+                for (String folderName : missing) {
+                    Folder folder = folderCache.resolve(folderName, this::getFolderByName);
+                    // STATUS on a closed folder, no SELECT
+                    counts.put(folderName, folder != null ? (long) Math.max(0, folder.getUnreadMessageCount()) : 0L);
                 }
-                if (msg.isUnread()) hasUnread = true;
-                if (msg.isHasAttachments()) hasAttachments = true;
+            } catch (MessagingException e) {
+                throw new RuntimeException("Failed to fetch unread counts: " + e.getMessage(), e);
             }
-
-            conversation.setParticipants(new ArrayList<>(participantSet));
-            conversation.setHasUnread(hasUnread);
-            conversation.setHasAttachments(hasAttachments);
-            conversation.setPreview(allMessages.get(allMessages.size() - 1).getPreview());
-
-            // Set full message details (including body content)
-            conversation.setMessages(allMessages);
-
-            System.out.println("✅ Conversation thread loaded with " + allMessages.size() + " messages including body content");
-
-            return conversation;
-
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to fetch conversation: " + e.getMessage(), e);
         }
+        return counts;
     }
 
     /**
-     * Perform actions on emails (mark as read, delete, etc.)
+     * Get full conversation thread by thread ID
+     * Indexed threads fetch only their member messages by UID, one task per folder in
+     * parallel; thread ids from the IMAP fallback list still need a scan of every folder
+     */
+    public ConversationDTO getConversationThread(String email, String threadId) {
+        Map<String, List<Long>> locations = threadIndexService.locate(email, threadId);
+        List<EmailDetailDTO> allMessages = locations.isEmpty()
+            ? scanFoldersForThread(email, threadId)
+            : fetchThreadMessages(email, locations);
+
+        if (allMessages.isEmpty()) {
+            throw new RuntimeException("Conversation not found: " + threadId);
+        }
+
+        // Sort messages by date
+        allMessages.sort((a, b) -> a.getDate().compareTo(b.getDate()));
+
+        // Create conversation DTO
+        ConversationDTO conversation = new ConversationDTO();
+        conversation.setThreadId(threadId);
+        conversation.setSubject(allMessages.get(0).getSubject());
+        conversation.setMessageCount(allMessages.size());
+        conversation.setLastMessageDate(allMessages.get(allMessages.size() - 1).getDate());
+
+        // Extract participants
+        Set<String> participantSet = new HashSet<>();
+        boolean hasUnread = false;
+        boolean hasAttachments = false;
+
+        for (EmailDetailDTO msg : allMessages) {
+            participantSet.add(extractEmailAddress(msg.getFrom()));
+            if (msg.getTo() != null) {
+                Arrays.stream(msg.getTo().split("[,;]"))
+                    .map(String::trim)
+                    .forEach(addr -> participantSet.add(extractEmailAddress(addr)));
+            }
+            if (msg.isUnread()) hasUnread = true;
+            if (msg.isHasAttachments()) hasAttachments = true;
+        }
+
+        conversation.setParticipants(new ArrayList<>(participantSet));
+        conversation.setHasUnread(hasUnread);
+        conversation.setHasAttachments(hasAttachments);
+        conversation.setPreview(allMessages.get(allMessages.size() - 1).getPreview());
+
+        // Set full message details (including body content)
+        conversation.setMessages(allMessages);
+
+        return conversation;
+    }
+
+    /**
+     * Fetch the messages of an indexed thread from the folders the index places them in
+     * Each folder is read on its own pooled connection with one FETCH for all its messages
+     */
+    private List<EmailDetailDTO> fetchThreadMessages(String email, Map<String, List<Long>> locations) {
+        Map<String, Future<List<EmailDetailDTO>>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> location : locations.entrySet()) {
+            tasks.put(location.getKey(), mailFetchExecutor.submit(
+                () -> fetchByUid(email, location.getKey(), location.getValue())));
+        }
+
+        // The same message can be indexed in several folders (STARRED, IMPORTANT)
+        List<EmailDetailDTO> allMessages = new ArrayList<>();
+        Set<String> processedMessageIds = new HashSet<>();
+        for (Map.Entry<String, Future<List<EmailDetailDTO>>> task : tasks.entrySet()) {
+            try {
+                for (EmailDetailDTO detail : task.getValue().get()) {
+                    if (detail.getMessageId() == null || processedMessageIds.add(detail.getMessageId())) {
+                        allMessages.add(detail);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while fetching conversation", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                throw new RuntimeException("Failed to fetch conversation from " + task.getKey() + ": " + cause.getMessage(), cause);
+            }
+        }
+        return allMessages;
+    }
+
+    /**
+     * Details of messages of an indexed folder, from the cache where possible
+     * Cached details keep their content; the unread flag is taken from the index and set
+     * on a copy, as the cached instances are shared between requests
+     */
+    private List<EmailDetailDTO> fetchByUid(String email, String folderName, List<Long> uids) throws MessagingException {
+        long uidValidity = headerIndexService.getUidValidity(email, folderName);
+        Map<Long, EmailDetailDTO> cached = uidValidity > 0
+            ? mailCache.getDetails(email, folderName, uidValidity, uids)
+            : Collections.emptyMap();
+
+        List<EmailDetailDTO> details = new ArrayList<>(uids.size());
+        if (!cached.isEmpty()) {
+            Set<Long> unread = headerIndexService.getUnreadUids(email, folderName, cached.keySet());
+            for (EmailDetailDTO cachedDetail : cached.values()) {
+                EmailDetailDTO detail = new EmailDetailDTO(cachedDetail);
+                detail.setUnread(unread.contains(detail.getUid()));
+                details.add(detail);
+            }
+        }
+        List<Long> missing = uids.stream().filter(uid -> !cached.containsKey(uid)).collect(Collectors.toList());
+        if (missing.isEmpty()) {
+            return details;
+        }
+
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(folderName, Folder.READ_ONLY, this::getFolderByName);
+            if (folder == null) {
+                return details;
+            }
+            try {
+                Message[] messages = ((UIDFolder) folder).getMessagesByUID(missing.stream().mapToLong(Long::longValue).toArray());
+                List<Message> present = Arrays.stream(messages)
+                    .filter(message -> message != null && !message.isExpunged())
+                    .collect(Collectors.toList());
+
+                // Envelopes and BODYSTRUCTURE in one round trip; only text sections are read later
+                Message[] batch = present.toArray(new Message[0]);
+                optimizedMailService.applyOptimizedFetchProfile(folder, batch);
+
+                // Attachment lists come from the header index, or from the fetched structure if not indexed
+                Map<Long, List<AttachmentDTO>> attachments = headerIndexService.getAttachments(email, folderName, missing);
+                List<EmailDetailDTO> fetched = new ArrayList<>(batch.length);
+                for (Message message : batch) {
+                    EmailDetailDTO detail = convertToEmailDetailDTO(message);
+                    if (detail != null) {
+                        long uid = ((UIDFolder) folder).getUID(message);
+                        detail.setUid(uid);
+                        detail.setFolder(folderName);
+                        List<AttachmentDTO> indexed = attachments.get(uid);
+                        detail.setAttachments(indexed != null ? indexed : AttachmentScanner.scan(message));
+                        fetched.add(detail);
+                    }
+                }
+
+                // Only cache under the UIDVALIDITY the server still reports
+                if (uidValidity > 0 && ((UIDFolder) folder).getUIDValidity() == uidValidity) {
+                    mailCache.putDetails(email, folderName, uidValidity,
+                        fetched.stream().map(EmailDetailDTO::new).collect(Collectors.toList()));
+                }
+                details.addAll(fetched);
+                return details;
+            } finally {
+                folderCache.release(folder);
+            }
+        }
+    }
+
+    /**
+     * Find a thread by comparing legacy thread ids of every message in every folder
+     */
+    private List<EmailDetailDTO> scanFoldersForThread(String email, String threadId) {
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            // Search in all folders for the conversation but filter more strictly
+            List<EmailDetailDTO> allMessages = new ArrayList<>();
+            Set<String> processedMessageIds = new HashSet<>();
+            Predicate<EmailHeaderDTO> inThread = threadMatcher(email, Collections.singletonList(threadId));
+
+            ImapFolderCache folderCache = connection.getFolderCache();
+            for (String folderName : Arrays.asList("INBOX", "SENT", "DRAFTS", "TRASH", "STARRED", "IMPORTANT", "SPAM")) {
+                Folder folder = folderCache.open(folderName, Folder.READ_ONLY, this::getFolderByName);
+                if (folder == null) {
+                    continue;
+                }
+                try {
+                    for (Message message : folder.getMessages()) {
+                        EmailHeaderDTO header = convertToEmailHeaderDTOWithThreading(message);
+                        if (header != null && inThread.test(header)) {
+                            // Avoid duplicate messages by checking Message-ID
+                            String messageId = header.getMessageId();
+                            if (messageId != null && !processedMessageIds.contains(messageId)) {
+                                EmailDetailDTO detail = convertToEmailDetailDTO(message);
+                                if (detail != null) {
+                                    detail.setAttachments(AttachmentScanner.scan(message));
+                                    allMessages.add(detail);
+                                    processedMessageIds.add(messageId);
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    folderCache.release(folder);
+                }
+            }
+            return allMessages;
+
+        } catch (MessagingException e) {
+            throw new RuntimeException("Failed to fetch conversation: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Perform actions on emails (mark as read, delete, etc.)
      */
     public void performEmailActions(String email, EmailActionRequest request) {
         try {
@@ -955,52 +1003,152 @@ public class MailService {
                 return;
             }
 
-            // Handle traditional IMAP actions (read/unread, delete, archive)
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
+            // Handle traditional IMAP actions: resolve the threads to UID sets, one command per folder
+            try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+                Map<String, List<Long>> targets = resolveActionTargets(connection, email, request);
+                BulkActionEngine.ActionResult result = bulkActionEngine.apply(connection, request.getAction(), targets);
 
-            // Use specific folder from request, or search all folders if not specified
-            List<String> foldersToSearch;
-            if (request.getFolder() != null && !request.getFolder().trim().isEmpty()) {
-                foldersToSearch = Arrays.asList(request.getFolder());
-            } else {
-                foldersToSearch = Arrays.asList("INBOX", "SENT", "DRAFTS", "TRASH", "STARRED", "IMPORTANT", "SPAM");
+                for (Map.Entry<String, List<Long>> applied : result.getApplied().entrySet()) {
+                    updateHeaderIndex(email, applied.getKey(), request.getAction(), applied.getValue());
+                }
+                if (!result.getFailedFolders().isEmpty()) {
+                    throw new RuntimeException("Failed to perform email actions in " + result.getFailedFolders());
+                }
             }
 
-            int processedCount = 0;
-            for (String folderName : foldersToSearch) {
-                Folder folder = getFolderByName(store, folderName);
-                if (folder != null && folder.exists()) {
-                    folder.open(Folder.READ_WRITE);
+        } catch (MessagingException e) {
+            throw new RuntimeException("Failed to perform email actions: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * UIDs per folder of the messages in the requested threads
+     * Indexed threads resolve through the thread index; ids handed out by the IMAP
+     * fallback list are matched by scanning the folders once
+     */
+    private Map<String, List<Long>> resolveActionTargets(ImapConnection connection, String email,
+                                                         EmailActionRequest request) throws MessagingException {
+        // Use specific folder from request, or search all folders if not specified
+        List<String> scope;
+        if (request.getFolder() != null && !request.getFolder().trim().isEmpty()) {
+            scope = Arrays.asList(request.getFolder());
+        } else {
+            scope = Arrays.asList("INBOX", "SENT", "DRAFTS", "TRASH", "STARRED", "IMPORTANT", "SPAM");
+        }
+
+        Map<String, Set<Long>> targets = new LinkedHashMap<>();
+        Set<String> legacyIds = new HashSet<>();
+        for (String threadId : request.getMessageIds()) {
+            Map<String, List<Long>> locations = threadIndexService.locate(email, threadId);
+            if (locations.isEmpty()) {
+                legacyIds.add(threadId);
+                continue;
+            }
+            for (String folderName : scope) {
+                for (Map.Entry<String, List<Long>> location : locations.entrySet()) {
+                    if (location.getKey().equalsIgnoreCase(folderName)) {
+                        targets.computeIfAbsent(folderName, key -> new LinkedHashSet<>()).addAll(location.getValue());
+                    }
+                }
+            }
+        }
 
-                    Message[] messages = folder.getMessages();
-                    for (Message message : messages) {
+        if (!legacyIds.isEmpty()) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            for (String folderName : scope) {
+                Folder folder = folderCache.open(folderName, Folder.READ_WRITE, this::getFolderByName);
+                if (folder == null) {
+                    continue;
+                }
+                try {
+                    for (Message message : folder.getMessages()) {
                         // Convert to DTO to get threadId (frontend sends threadIds, not Message-IDs)
                         EmailHeaderDTO headerDTO = convertToEmailHeaderDTOWithThreading(message);
-                        if (headerDTO != null && request.getMessageIds().contains(headerDTO.getThreadId())) {
-                            performAction(message, request.getAction());
-                            processedCount++;
-                            System.out.println("Performed action " + request.getAction() + " on thread: " + headerDTO.getThreadId() + " in folder: " + folderName);
+                        if (headerDTO != null && legacyIds.contains(headerDTO.getThreadId())) {
+                            targets.computeIfAbsent(folderName, key -> new LinkedHashSet<>())
+                                .add(((UIDFolder) folder).getUID(message));
                         }
                     }
-
-                    // Important: Expunge changes to actually delete messages
-                    folder.close(true);
-                    System.out.println("Processed " + processedCount + " messages in folder: " + folderName);
+                } finally {
+                    folderCache.release(folder);
                 }
             }
+        }
 
-            System.out.println("✅ Total messages processed: " + processedCount + " out of " + request.getMessageIds().size() + " requested");
+        Map<String, List<Long>> uidsByFolder = new LinkedHashMap<>();
+        targets.forEach((folderName, uids) -> uidsByFolder.put(folderName, new ArrayList<>(uids)));
+        return uidsByFolder;
+    }
 
-        } catch (MessagingException e) {
-            throw new RuntimeException("Failed to perform email actions: " + e.getMessage(), e);
+    /**
+     * Apply the effect of an action to the header index so the next list reflects it
+     * Changes that land in other folders are picked up by a sync of those folders
+     */
+    private void updateHeaderIndex(String email, String folderName, EmailActionRequest.EmailAction action, List<Long> uids) {
+        if (uids.isEmpty()) {
+            return;
+        }
+        switch (action) {
+            case MARK_AS_READ:
+                headerIndexService.markSeen(email, folderName, uids, true);
+                break;
+            case MARK_AS_UNREAD:
+                headerIndexService.markSeen(email, folderName, uids, false);
+                break;
+            case DELETE:
+                headerIndexService.removeMessages(email, folderName, uids);
+                headerIndexService.requestSync(email, "TRASH");
+                break;
+            case MOVE_TO_TRASH:
+                headerIndexService.removeMessages(email, folderName, uids);
+                headerIndexService.requestSync(email, "TRASH");
+                break;
+            case MOVE_TO_SPAM:
+                headerIndexService.removeMessages(email, folderName, uids);
+                headerIndexService.requestSync(email, "SPAM");
+                break;
+            case MOVE_TO_INBOX:
+                headerIndexService.removeMessages(email, folderName, uids);
+                headerIndexService.requestSync(email, "INBOX");
+                break;
+            case STAR:
+            case UNSTAR:
+                headerIndexService.requestSync(email, folderName);
+                headerIndexService.requestSync(email, "STARRED");
+                break;
+            case MARK_IMPORTANT:
+            case UNMARK_IMPORTANT:
+                headerIndexService.requestSync(email, "IMPORTANT");
+                break;
+            default:
+                headerIndexService.requestSync(email, folderName);
+                break;
         }
     }
 
+    /**
+     * Which messages belong to the given thread ids from a conversation list
+     * Thread index ids resolve through the Message-IDs of their indexed messages; ids
+     * handed out by the IMAP fallback list are matched by the legacy hash
+     */
+    private Predicate<EmailHeaderDTO> threadMatcher(String email, Collection<String> threadIds) {
+        Set<String> messageIds = new HashSet<>();
+        Set<String> legacyIds = new HashSet<>();
+        for (String threadId : threadIds) {
+            Set<String> indexed = threadIndexService.messageIdsOf(email, threadId);
+            if (indexed.isEmpty()) {
+                legacyIds.add(threadId);
+            } else {
+                messageIds.addAll(indexed);
+            }
+        }
+        return header -> legacyIds.contains(header.getThreadId())
+            || messageIds.contains(JwzThreader.normalizeMessageId(header.getMessageId()));
+    }
+
     /**
      * Group emails into conversations based on subject and threading headers
+     * Only used for folders that are not indexed yet; indexed folders use the thread index
      */
     private List<ConversationDTO> groupIntoConversations(List<EmailHeaderDTO> emails) {
         Map<String, List<EmailHeaderDTO>> threadMap = new HashMap<>();
@@ -1013,36 +1161,41 @@ public class MailService {
 
         List<ConversationDTO> conversations = new ArrayList<>();
         for (Map.Entry<String, List<EmailHeaderDTO>> entry : threadMap.entrySet()) {
-            List<EmailHeaderDTO> threadMessages = entry.getValue();
-            threadMessages.sort((a, b) -> a.getDate().compareTo(b.getDate()));
-
-            ConversationDTO conversation = new ConversationDTO();
-            conversation.setThreadId(entry.getKey());
-            conversation.setSubject(threadMessages.get(0).getSubject());
-            conversation.setMessageCount(threadMessages.size());
-            conversation.setLastMessageDate(threadMessages.get(threadMessages.size() - 1).getDate());
-            // Don't include full messages in conversation list - only for individual thread requests
-
-            // Extract participants
-            Set<String> participantSet = new HashSet<>();
-            boolean hasUnread = false;
-            boolean hasAttachments = false;
-
-            for (EmailHeaderDTO msg : threadMessages) {
-                participantSet.add(extractEmailAddress(msg.getFrom()));
-                if (msg.isUnread()) hasUnread = true;
-                if (msg.isHasAttachments()) hasAttachments = true;
-            }
+            conversations.add(toConversation(entry.getKey(), entry.getValue()));
+        }
 
-            conversation.setParticipants(new ArrayList<>(participantSet));
-            conversation.setHasUnread(hasUnread);
-            conversation.setHasAttachments(hasAttachments);
-            conversation.setPreview(threadMessages.get(threadMessages.size() - 1).getPreview());
+        return conversations;
+    }
 
-            conversations.add(conversation);
+    /**
+     * Conversation list entry for the messages of one thread
+     */
+    private ConversationDTO toConversation(String threadId, List<EmailHeaderDTO> threadMessages) {
+        threadMessages.sort((a, b) -> a.getDate().compareTo(b.getDate()));
+
+        ConversationDTO conversation = new ConversationDTO();
+        conversation.setThreadId(threadId);
+        conversation.setSubject(threadMessages.get(0).getSubject());
+        conversation.setMessageCount(threadMessages.size());
+        conversation.setLastMessageDate(threadMessages.get(threadMessages.size() - 1).getDate());
+        // Don't include full messages in conversation list - only for individual thread requests
+
+        // Extract participants
+        Set<String> participantSet = new HashSet<>();
+        boolean hasUnread = false;
+        boolean hasAttachments = false;
+
+        for (EmailHeaderDTO msg : threadMessages) {
+            participantSet.add(extractEmailAddress(msg.getFrom()));
+            if (msg.isUnread()) hasUnread = true;
+            if (msg.isHasAttachments()) hasAttachments = true;
         }
 
-        return conversations;
+        conversation.setParticipants(new ArrayList<>(participantSet));
+        conversation.setHasUnread(hasUnread);
+        conversation.setHasAttachments(hasAttachments);
+        conversation.setPreview(threadMessages.get(threadMessages.size() - 1).getPreview());
+        return conversation;
     }
 
     /**
@@ -1157,7 +1310,7 @@ public class MailService {
             }
             return dto;
         } catch (MessagingException e) {
-            System.err.println("Error converting message to DTO with threading: " + e.getMessage());
+            logger.warn("Error converting message to DTO with threading: {}", e.getMessage());
             return null;
         }
     }
@@ -1206,267 +1359,27 @@ public class MailService {
                     .toArray(String[]::new)));
             }
 
-            // Get full content
-            String textContent = getTextContent(message);
+            // Text and HTML bodies in one pass; attachments are not downloaded
+            MessageBodyReader.Body body = messageBodyReader.read(message);
+            String textContent = body.getText() != null ? body.getText()
+                : body.getHtml() != null ? htmlToText(body.getHtml()) : "";
             dto.setTextContent(textContent);
-            System.out.println("Set textContent for " + dto.getMessageId() + " length: " + (textContent != null ? textContent.length() : 0));
-
-            // For HTML content, try to get it if available
-            if (message.isMimeType("text/html")) {
-                String htmlContent = (String) message.getContent();
-                dto.setHtmlContent(htmlContent);
-                System.out.println("Set HTML content directly, length: " + (htmlContent != null ? htmlContent.length() : 0));
-            } else if (message.isMimeType("multipart/*")) {
-                String htmlFromMultipart = getHtmlFromMultipart((Multipart) message.getContent());
-                dto.setHtmlContent(htmlFromMultipart);
-                System.out.println("Set HTML content from multipart, length: " + (htmlFromMultipart != null ? htmlFromMultipart.length() : 0));
-            }
+            dto.setHtmlContent(body.getHtml());
+            dto.setContentTruncated(body.isTruncated());
 
             // If no HTML content, use text content
             if (dto.getHtmlContent() == null || dto.getHtmlContent().trim().isEmpty()) {
-                String fallbackHtml = "<pre>" + (textContent != null ? textContent : "") + "</pre>";
-                dto.setHtmlContent(fallbackHtml);
-                System.out.println("Using fallback HTML content, length: " + fallbackHtml.length());
+                dto.setHtmlContent("<pre>" + textContent + "</pre>");
             }
 
-            System.out.println("Final DTO content - Text length: " + (dto.getTextContent() != null ? dto.getTextContent().length() : 0) +
-                             ", HTML length: " + (dto.getHtmlContent() != null ? dto.getHtmlContent().length() : 0));
-
             return dto;
 
         } catch (Exception e) {
-            System.err.println("Error converting message to detailed DTO: " + e.getMessage());
+            logger.warn("Error converting message to detailed DTO: {}", e.getMessage());
             return null;
         }
     }
 
-    /**
-     * Get HTML content from multipart message
-     */
-    private String getHtmlFromMultipart(Multipart multipart) {
-        try {
-            System.out.println("Processing multipart for HTML with " + multipart.getCount() + " parts");
-
-            for (int i = 0; i < multipart.getCount(); i++) {
-                BodyPart bodyPart = multipart.getBodyPart(i);
-                String contentType = bodyPart.getContentType();
-                System.out.println("HTML search - Part " + i + " content type: " + contentType);
-
-                if (bodyPart.isMimeType("text/html")) {
-                    String content = bodyPart.getContent().toString();
-                    System.out.println("Found HTML part with length: " + content.length());
-                    return content;
-                } else if (bodyPart.isMimeType("multipart/*")) {
-                    // Handle nested multipart
-                    System.out.println("Found nested multipart for HTML, recursing...");
-                    Multipart nestedMultipart = (Multipart) bodyPart.getContent();
-                    String nestedHtml = getHtmlFromMultipart(nestedMultipart);
-                    if (nestedHtml != null && !nestedHtml.trim().isEmpty()) {
-                        return nestedHtml;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR in getHtmlFromMultipart: " + e.getMessage());
-            e.printStackTrace();
-        }
-        return "";
-    }
-
-    /**
-     * Get message ID from message
-     */
-    private String getMessageId(Message message) {
-        try {
-            String[] messageIds = message.getHeader("Message-ID");
-            if (messageIds != null && messageIds.length > 0) {
-                return messageIds[0];
-            } else {
-                return "msg-" + message.getMessageNumber() + "-" + System.currentTimeMillis();
-            }
-        } catch (MessagingException e) {
-            return "msg-" + System.currentTimeMillis();
-        }
-    }
-
-    /**
-     * Perform specific action on message
-     */
-    private void performAction(Message message, EmailActionRequest.EmailAction action) {
-        try {
-            switch (action) {
-                case MARK_AS_READ:
-                    message.setFlag(Flags.Flag.SEEN, true);
-                    break;
-                case MARK_AS_UNREAD:
-                    message.setFlag(Flags.Flag.SEEN, false);
-                    break;
-                case DELETE:
-                    moveMessageToTrash(message);
-                    break;
-                case ARCHIVE:
-                    // For now, just mark as archived (could move to Archive folder in future)
-                    message.setFlag(Flags.Flag.USER, true);
-                    break;
-                case STAR:
-                    copyMessageToFolder(message, "STARRED");
-                    message.setFlag(Flags.Flag.FLAGGED, true); // Also set IMAP FLAGGED flag
-                    break;
-                case UNSTAR:
-                    removeMessageFromFolder(message, "STARRED");
-                    message.setFlag(Flags.Flag.FLAGGED, false);
-                    break;
-                case MARK_IMPORTANT:
-                    copyMessageToFolder(message, "IMPORTANT");
-                    break;
-                case UNMARK_IMPORTANT:
-                    removeMessageFromFolder(message, "IMPORTANT");
-                    break;
-                case MOVE_TO_SPAM:
-                    moveMessageToFolder(message, "SPAM");
-                    break;
-                default:
-                    break;
-            }
-        } catch (MessagingException e) {
-            System.err.println("Error performing action on message: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Copy message to a specific folder (for starring, marking important, etc.)
-     */
-    private void copyMessageToFolder(Message message, String targetFolderName) throws MessagingException {
-        try {
-            Store store = message.getFolder().getStore();
-            Folder targetFolder = getFolderByName(store, targetFolderName);
-
-            if (targetFolder == null) {
-                System.err.println("Target folder " + targetFolderName + " not found");
-                return;
-            }
-
-            // Open target folder for writing
-            if (!targetFolder.isOpen()) {
-                targetFolder.open(Folder.READ_WRITE);
-            }
-
-            // Copy message to target folder
-            Message[] messagesToCopy = {message};
-            message.getFolder().copyMessages(messagesToCopy, targetFolder);
-
-            System.out.println("Message copied to " + targetFolderName + " folder successfully");
-
-        } catch (MessagingException e) {
-            System.err.println("Error copying message to " + targetFolderName + ": " + e.getMessage());
-            throw e;
-        }
-    }
-
-    /**
-     * Move message to a specific folder (for spam, etc.)
-     */
-    private void moveMessageToFolder(Message message, String targetFolderName) throws MessagingException {
-        try {
-            Store store = message.getFolder().getStore();
-            Folder targetFolder = getFolderByName(store, targetFolderName);
-
-            if (targetFolder == null) {
-                System.err.println("Target folder " + targetFolderName + " not found");
-                return;
-            }
-
-            // Open target folder for writing
-            if (!targetFolder.isOpen()) {
-                targetFolder.open(Folder.READ_WRITE);
-            }
-
-            // Copy message to target folder
-            Message[] messagesToCopy = {message};
-            message.getFolder().copyMessages(messagesToCopy, targetFolder);
-
-            // Mark original message as deleted (this will remove it from source folder when expunged)
-            message.setFlag(Flags.Flag.DELETED, true);
-
-            System.out.println("Message moved to " + targetFolderName + " folder successfully");
-
-        } catch (MessagingException e) {
-            System.err.println("Error moving message to " + targetFolderName + ": " + e.getMessage());
-            throw e;
-        }
-    }
-
-    /**
-     * Remove message from a specific folder (for unstarring, unmarking important, etc.)
-     */
-    private void removeMessageFromFolder(Message message, String sourceFolderName) throws MessagingException {
-        try {
-            Store store = message.getFolder().getStore();
-            Folder sourceFolder = getFolderByName(store, sourceFolderName);
-
-            if (sourceFolder == null || !sourceFolder.exists()) {
-                System.err.println("Source folder " + sourceFolderName + " not found");
-                return;
-            }
-
-            // Get message ID to find in target folder
-            String messageId = getMessageId(message);
-
-            sourceFolder.open(Folder.READ_WRITE);
-            Message[] messages = sourceFolder.getMessages();
-
-            // Find and delete the message in the source folder
-            for (Message msg : messages) {
-                if (getMessageId(msg).equals(messageId)) {
-                    msg.setFlag(Flags.Flag.DELETED, true);
-                    System.out.println("Message removed from " + sourceFolderName + " folder");
-                    break;
-                }
-            }
-
-            sourceFolder.close(true); // Expunge
-
-        } catch (MessagingException e) {
-            System.err.println("Error removing message from " + sourceFolderName + ": " + e.getMessage());
-        }
-    }
-
-    /**
-     * Move message to trash folder instead of just marking as deleted
-     */
-    private void moveMessageToTrash(Message message) throws MessagingException {
-        try {
-            Store store = message.getFolder().getStore();
-            Folder trashFolder = getFolderByName(store, "TRASH");
-
-            if (trashFolder == null) {
-                // If no trash folder exists, fall back to marking as deleted
-                System.err.println("No TRASH folder found, marking message as deleted");
-                message.setFlag(Flags.Flag.DELETED, true);
-                return;
-            }
-
-            // Open trash folder for writing
-            if (!trashFolder.isOpen()) {
-                trashFolder.open(Folder.READ_WRITE);
-            }
-
-            // Copy message to trash folder
-            Message[] messagesToCopy = {message};
-            message.getFolder().copyMessages(messagesToCopy, trashFolder);
-
-            // Mark original message as deleted (this will remove it from source folder when expunged)
-            message.setFlag(Flags.Flag.DELETED, true);
-
-            System.out.println("Message moved to TRASH folder successfully");
-
-        } catch (MessagingException e) {
-            System.err.println("Error moving message to trash: " + e.getMessage());
-            // Fall back to just marking as deleted
-            message.setFlag(Flags.Flag.DELETED, true);
-        }
-    }
-
     /**
      * Save email as draft in DRAFTS folder
      */
@@ -1476,23 +1389,7 @@ public class MailService {
         System.out.println("To: " + draftRequest.getTo());
         System.out.println("Subject: " + draftRequest.getSubject());
 
-        Store store = getUserStore(userEmail);
-        if (store == null || !store.isConnected()) {
-            throw new RuntimeException("User not authenticated or connection lost");
-        }
-
-        try {
-            // Get DRAFTS folder (it will be auto-created if it doesn't exist)
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
-            if (draftsFolder == null) {
-                throw new RuntimeException("Unable to access DRAFTS folder");
-            }
-
-            // Open the DRAFTS folder for writing
-            if (!draftsFolder.isOpen()) {
-                draftsFolder.open(Folder.READ_WRITE);
-            }
-
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
             // Create the draft message
             Properties props = new Properties();
             Session session = Session.getDefaultInstance(props);
@@ -1528,8 +1425,7 @@ public class MailService {
                 // Add attachments
                 for (FileAttachmentDTO attachment : draftRequest.getAttachments()) {
                     MimeBodyPart attachmentPart = new MimeBodyPart();
-                    DataSource source = new ByteArrayDataSource(attachment.getContent(), attachment.getContentType());
-                    attachmentPart.setDataHandler(new DataHandler(source));
+                    attachmentPart.setDataHandler(new DataHandler(attachmentSource(userEmail, attachment)));
                     attachmentPart.setFileName(attachment.getFileName());
                     multipart.addBodyPart(attachmentPart);
                 }
@@ -1543,18 +1439,13 @@ public class MailService {
             // Set date
             draftMessage.setSentDate(new Date());
 
-            // Mark as draft
-            draftMessage.setFlag(Flags.Flag.DRAFT, true);
-
-            // Save to DRAFTS folder
-            draftsFolder.appendMessages(new Message[]{draftMessage});
+            // Save to DRAFTS folder, marked as draft; APPEND does not need the folder selected
+            mailboxAppendService.append(connection, userEmail, "DRAFTS", List.of(draftMessage),
+                new Flags(Flags.Flag.DRAFT));
 
             // Get the message ID of the saved draft
             String messageId = draftMessage.getMessageID();
 
-            // Close the folder
-            draftsFolder.close(false);
-
             System.out.println("=== DRAFT SAVED SUCCESSFULLY ===");
             System.out.println("Draft Message-ID: " + messageId);
 
@@ -1567,62 +1458,132 @@ public class MailService {
     }
 
     /**
-     * Search emails using IMAP SearchTerm
+     * Search emails, newest first
      * Supports queries like: from:user@example.com subject:report
      */
     public EmailListResponse searchEmails(String email, String query, String folderName, int page, int size) {
-        try {
-            Store store = getUserStore(email);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder folder = getFolderByName(store, folderName != null ? folderName : "INBOX");
-            if (folder == null) {
-                throw new RuntimeException("Folder '" + (folderName != null ? folderName : "INBOX") + "' not found");
-            }
-
-            folder.open(Folder.READ_ONLY);
-
-            // Parse the search query and build SearchTerm
-            SearchTerm searchTerm = parseSearchQuery(query);
-
-            Message[] messages = folder.search(searchTerm);
+        return searchEmails(email, query, folderName, SearchIndexService.Sort.DATE, page, size);
+    }
 
-            // Sort messages by date (newest first)
-            Arrays.sort(messages, (m1, m2) -> {
-                try {
-                    Date d1 = m1.getSentDate();
-                    Date d2 = m2.getSentDate();
-                    if (d1 == null && d2 == null) return 0;
-                    if (d1 == null) return 1;
-                    if (d2 == null) return -1;
-                    return d2.compareTo(d1);
-                } catch (MessagingException e) {
-                    return 0;
-                }
-            });
+    /**
+     * Search emails with the query language of SearchQueryParser
+     * The planner answers the query from the index where it can and with IMAP SEARCH otherwise;
+     * in:anywhere or the folder ALL searches every folder
+     */
+    public EmailListResponse searchEmails(String email, String query, String folderName,
+                                          SearchIndexService.Sort sort, int page, int size) {
+        SearchNode parsed = SearchQueryParser.parse(query);
+        if (SearchPlanner.isEverywhere(folderName, parsed)) {
+            return searchEverywhere(email, parsed, page, size);
+        }
+        return searchFolder(email, folderName, parsed, sort, page, size);
+    }
 
-            int totalResults = messages.length;
+    private EmailListResponse searchFolder(String email, String folderName, SearchNode query,
+                                           SearchIndexService.Sort sort, int page, int size) {
+        SearchPlan plan = searchPlanner.plan(email, folderName, query);
+        if (plan.getEngine() == SearchPlan.Engine.INDEX) {
+            return headerIndexService.search(email, plan, sort, page, size);
+        }
+        return searchImap(email, plan, page, size);
+    }
 
-            // Apply pagination
-            int startIndex = page * size;
-            int endIndex = Math.min(startIndex + size, totalResults);
+    /**
+     * Search every folder at once, newest first
+     * Folders are searched in parallel, each for its newest (page + 1) * size hits from the
+     * index or on its own pooled connection, and merged by date. Folders that have not
+     * answered within the fan-out timeout are left out and listed as incomplete.
+     */
+    private EmailListResponse searchEverywhere(String email, SearchNode query, int page, int size) {
+        int window = (page + 1) * size;
+        Map<String, Future<EmailListResponse>> tasks = new LinkedHashMap<>();
+        for (String folder : searchAllFolders) {
+            tasks.put(folder, mailFetchExecutor.submit(
+                () -> searchFolder(email, folder, query, SearchIndexService.Sort.DATE, 0, window)));
+        }
 
-            List<EmailHeaderDTO> emailHeaders = new ArrayList<>();
+        long deadline = System.nanoTime() + searchFanoutTimeout.toNanos();
+        List<List<EmailHeaderDTO>> hits = new ArrayList<>();
+        List<String> incompleteFolders = new ArrayList<>();
+        long totalCount = 0;
+        boolean truncated = false;
+        for (Map.Entry<String, Future<EmailListResponse>> task : tasks.entrySet()) {
+            try {
+                EmailListResponse result = task.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                result.getEmails().forEach(hit -> hit.setFolder(task.getKey()));
+                hits.add(result.getEmails());
+                totalCount += result.getTotalCount();
+                truncated |= result.isHasMore();
+            } catch (TimeoutException e) {
+                task.getValue().cancel(true);
+                incompleteFolders.add(task.getKey());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.warn("Search of {} failed for {}: {}", task.getKey(), email, cause.getMessage());
+                incompleteFolders.add(task.getKey());
+            } catch (InterruptedException e) {
+                tasks.values().forEach(pending -> pending.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while searching folders", e);
+            }
+        }
+        if (!incompleteFolders.isEmpty()) {
+            logger.debug("Search for {} answered without {}", email, incompleteFolders);
+        }
 
-            if (startIndex < totalResults) {
-                Message[] pageMessages = Arrays.copyOfRange(messages, startIndex, endIndex);
+        // One extra hit tells whether another page exists after duplicates are dropped
+        List<EmailHeaderDTO> merged = SearchResultMerger.merge(hits, page * size, size + 1);
+        boolean hasMore = merged.size() > size || truncated;
+        List<EmailHeaderDTO> emails = merged.size() > size ? merged.subList(0, size) : merged;
+
+        // Copies in STARRED and IMPORTANT are counted once per folder
+        EmailListResponse response = new EmailListResponse(new ArrayList<>(emails),
+            (int) Math.min(Integer.MAX_VALUE, totalCount), page, size);
+        response.setHasMore(hasMore);
+        response.setIncompleteFolders(incompleteFolders);
+        return response;
+    }
 
-                emailHeaders = Arrays.stream(pageMessages)
-                    .map(this::convertToEmailHeaderDTO)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+    /**
+     * Search one folder with IMAP SEARCH, newest first
+     * Hits are ordered by date with IMAP SORT where the server has it, otherwise from one
+     * batched envelope fetch; only the requested page is turned into list entries
+     */
+    private EmailListResponse searchImap(String email, SearchPlan plan, int page, int size) {
+        try (ImapConnection connection = imapConnectionManager.borrow(email)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder folder = folderCache.open(plan.getFolder(), Folder.READ_ONLY, this::getFolderByName);
+            if (folder == null) {
+                throw new RuntimeException("Folder '" + plan.getFolder() + "' not found");
             }
 
-            folder.close(false);
+            try {
+                List<Long> uids = sortNewestFirst(folder, ImapSearchCompiler.evaluate(folder, plan));
+                int totalResults = uids.size();
+
+                // Apply pagination
+                int startIndex = page * size;
+                int endIndex = Math.min(startIndex + size, totalResults);
+
+                List<EmailHeaderDTO> emailHeaders = new ArrayList<>();
+                if (startIndex < totalResults) {
+                    long[] pageUids = uids.subList(startIndex, endIndex).stream().mapToLong(Long::longValue).toArray();
+                    Message[] pageMessages = Arrays.stream(((UIDFolder) folder).getMessagesByUID(pageUids))
+                        .filter(message -> message != null && !message.isExpunged())
+                        .toArray(Message[]::new);
+                    // Already fetched when the hits were sorted locally
+                    optimizedMailService.applyOptimizedFetchProfile(folder, pageMessages);
+
+                    emailHeaders = Arrays.stream(pageMessages)
+                        .map(this::convertToEmailHeaderDTO)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                }
 
-            return new EmailListResponse(emailHeaders, totalResults, page, size);
+                return new EmailListResponse(emailHeaders, totalResults, page, size);
+            } finally {
+                folderCache.release(folder);
+            }
 
         } catch (MessagingException e) {
             throw new RuntimeException("Failed to search emails: " + e.getMessage(), e);
@@ -1630,151 +1591,102 @@ public class MailService {
     }
 
     /**
-     * Parse search query string into IMAP SearchTerm
-     * Supports: from:email, to:email, subject:text, body:text
+     * Search hits ordered newest first by date
      */
-    private SearchTerm parseSearchQuery(String query) {
-        if (query == null || query.trim().isEmpty()) {
-            // Return a search term that matches all messages
-            return new BodyTerm("");
+    private List<Long> sortNewestFirst(Folder folder, Set<Long> uids) throws MessagingException {
+        if (uids.size() <= 1) {
+            return new ArrayList<>(uids);
         }
-
-        List<SearchTerm> terms = new ArrayList<>();
-
-        // Split query by spaces, but preserve quoted strings
-        String[] parts = query.split("\\s+");
-
-        for (String part : parts) {
-            if (part.contains(":")) {
-                String[] keyValue = part.split(":", 2);
-                if (keyValue.length == 2) {
-                    String key = keyValue[0].toLowerCase();
-                    String value = keyValue[1];
-
-                    // Remove quotes if present
-                    if (value.startsWith("\"") && value.endsWith("\"") && value.length() > 1) {
-                        value = value.substring(1, value.length() - 1);
-                    }
-
-                    SearchTerm term = null;
-                    switch (key) {
-                        case "from":
-                            term = new FromStringTerm(value);
-                            break;
-                        case "to":
-                            term = new RecipientStringTerm(Message.RecipientType.TO, value);
-                            break;
-                        case "subject":
-                            term = new SubjectTerm(value);
-                            break;
-                        case "body":
-                            term = new BodyTerm(value);
-                            break;
-                    }
-
-                    if (term != null) {
-                        terms.add(term);
-                    }
-                }
-            } else {
-                // If no prefix, search in subject and body
-                terms.add(new OrTerm(
-                    new SubjectTerm(part),
-                    new BodyTerm(part)
-                ));
-            }
+        if (ImapSorter.supportsSort(folder)) {
+            return ImapSorter.sortByDate((IMAPFolder) folder, uids);
         }
 
-        if (terms.isEmpty()) {
-            return new BodyTerm("");
-        } else if (terms.size() == 1) {
-            return terms.get(0);
-        } else {
-            // Combine all terms with AND
-            SearchTerm result = terms.get(0);
-            for (int i = 1; i < terms.size(); i++) {
-                result = new AndTerm(result, terms.get(i));
-            }
-            return result;
+        // Without SORT, fetch every hit's envelope in one round trip rather than one per comparison
+        UIDFolder uidFolder = (UIDFolder) folder;
+        Message[] hits = Arrays.stream(uidFolder.getMessagesByUID(uids.stream().mapToLong(Long::longValue).toArray()))
+            .filter(message -> message != null && !message.isExpunged())
+            .toArray(Message[]::new);
+        optimizedMailService.applyOptimizedFetchProfile(folder, hits);
+
+        List<Long> sorted = new ArrayList<>(hits.length);
+        for (Message message : ImapSorter.sortByDate(hits, uidFolder)) {
+            sorted.add(uidFolder.getUID(message));
         }
+        return sorted;
     }
 
     /**
      * Get draft email details for editing
      */
     public DraftEmailDTO getDraft(String userEmail, String messageId) {
-        try {
-            Store store = getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder draftsFolder = folderCache.open("DRAFTS", Folder.READ_ONLY, this::getFolderByName);
             if (draftsFolder == null) {
                 throw new RuntimeException("DRAFTS folder not found and could not be created");
             }
-            draftsFolder.open(Folder.READ_ONLY);
-
-            // Search for the draft by message ID
-            SearchTerm term = new MessageIDTerm(messageId);
-            Message[] messages = draftsFolder.search(term);
-
-            if (messages.length == 0) {
-                throw new RuntimeException("Draft not found with ID: " + messageId);
-            }
 
-            Message message = messages[0];
-            DraftEmailDTO draft = new DraftEmailDTO();
+            try {
+                // Search for the draft by message ID
+                SearchTerm term = new MessageIDTerm(messageId);
+                Message[] messages = draftsFolder.search(term);
 
-            // Set basic properties
-            draft.setMessageId(messageId);
-            draft.setSubject(message.getSubject());
+                if (messages.length == 0) {
+                    throw new RuntimeException("Draft not found with ID: " + messageId);
+                }
 
-            // Extract recipients
-            if (message.getRecipients(Message.RecipientType.TO) != null) {
-                List<String> toList = Arrays.stream(message.getRecipients(Message.RecipientType.TO))
-                    .map(address -> address.toString())
-                    .collect(Collectors.toList());
-                draft.setTo(toList);
-            }
+                Message message = messages[0];
+                DraftEmailDTO draft = new DraftEmailDTO();
 
-            if (message.getRecipients(Message.RecipientType.CC) != null) {
-                List<String> ccList = Arrays.stream(message.getRecipients(Message.RecipientType.CC))
-                    .map(address -> address.toString())
-                    .collect(Collectors.toList());
-                draft.setCc(ccList);
-            }
+                // Set basic properties
+                draft.setMessageId(messageId);
+                draft.setSubject(message.getSubject());
 
-            if (message.getRecipients(Message.RecipientType.BCC) != null) {
-                List<String> bccList = Arrays.stream(message.getRecipients(Message.RecipientType.BCC))
-                    .map(address -> address.toString())
-                    .collect(Collectors.toList());
-                draft.setBcc(bccList);
-            }
+                // Extract recipients
+                if (message.getRecipients(Message.RecipientType.TO) != null) {
+                    List<String> toList = Arrays.stream(message.getRecipients(Message.RecipientType.TO))
+                        .map(address -> address.toString())
+                        .collect(Collectors.toList());
+                    draft.setTo(toList);
+                }
 
-            // Extract full content (not preview) for editing
-            String content = extractFullContent(message);
-            if (message.isMimeType("text/html") || content.contains("<")) {
-                draft.setHtmlContent(content);
-            } else {
-                draft.setTextContent(content);
-            }
+                if (message.getRecipients(Message.RecipientType.CC) != null) {
+                    List<String> ccList = Arrays.stream(message.getRecipients(Message.RecipientType.CC))
+                        .map(address -> address.toString())
+                        .collect(Collectors.toList());
+                    draft.setCc(ccList);
+                }
 
-            // Set timestamps
-            if (message.getSentDate() != null) {
-                draft.setCreated(LocalDateTime.ofInstant(message.getSentDate().toInstant(), ZoneId.systemDefault()));
-            }
-            if (message.getReceivedDate() != null) {
-                draft.setLastModified(LocalDateTime.ofInstant(message.getReceivedDate().toInstant(), ZoneId.systemDefault()));
-            }
+                if (message.getRecipients(Message.RecipientType.BCC) != null) {
+                    List<String> bccList = Arrays.stream(message.getRecipients(Message.RecipientType.BCC))
+                        .map(address -> address.toString())
+                        .collect(Collectors.toList());
+                    draft.setBcc(bccList);
+                }
 
-            // Set empty attachments for now (can be enhanced later)
-            draft.setAttachments(new ArrayList<>());
+                // Extract full content (not preview) for editing
+                String content = extractFullContent(message);
+                if (message.isMimeType("text/html") || content.contains("<")) {
+                    draft.setHtmlContent(content);
+                } else {
+                    draft.setTextContent(content);
+                }
 
-            draftsFolder.close(false);
+                // Set timestamps
+                if (message.getSentDate() != null) {
+                    draft.setCreated(LocalDateTime.ofInstant(message.getSentDate().toInstant(), ZoneId.systemDefault()));
+                }
+                if (message.getReceivedDate() != null) {
+                    draft.setLastModified(LocalDateTime.ofInstant(message.getReceivedDate().toInstant(), ZoneId.systemDefault()));
+                }
 
-            return draft;
+                // Set empty attachments for now (can be enhanced later)
+                draft.setAttachments(new ArrayList<>());
 
+                return draft;
+            } finally {
+                folderCache.release(draftsFolder);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to get draft: " + e.getMessage(), e);
         }
@@ -1784,99 +1696,99 @@ public class MailService {
      * Update existing draft
      */
     public void updateDraft(String userEmail, String messageId, DraftEmailDTO draftData) {
-        try {
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
             System.out.println("=== UPDATING DRAFT ===");
             System.out.println("User: " + userEmail);
             System.out.println("Draft ID to update: " + messageId);
 
-            Store store = getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder draftsFolder = folderCache.open("DRAFTS", Folder.READ_WRITE, this::getFolderByName);
             if (draftsFolder == null) {
                 throw new RuntimeException("DRAFTS folder not found and could not be created");
             }
-            draftsFolder.open(Folder.READ_WRITE);
 
-            // STEP 1: Find and delete the old draft
-            SearchTerm term = new MessageIDTerm(messageId);
-            Message[] existingDrafts = draftsFolder.search(term);
+            boolean saved = false;
+            try {
+                // STEP 1: Find and delete the old draft
+                SearchTerm term = new MessageIDTerm(messageId);
+                Message[] existingDrafts = draftsFolder.search(term);
+
+                if (existingDrafts.length > 0) {
+                    System.out.println("Found existing draft, marking for deletion");
+                    for (Message oldDraft : existingDrafts) {
+                        oldDraft.setFlag(Flags.Flag.DELETED, true);
+                    }
+                } else {
+                    System.out.println("WARNING: Draft with ID " + messageId + " not found, creating new one");
+                }
 
-            if (existingDrafts.length > 0) {
-                System.out.println("Found existing draft, marking for deletion");
-                for (Message oldDraft : existingDrafts) {
-                    oldDraft.setFlag(Flags.Flag.DELETED, true);
+                // STEP 2: Create new draft message with updated content
+                Properties props = new Properties();
+                Session session = Session.getDefaultInstance(props);
+                MimeMessage message = new MimeMessage(session);
+
+                // Set recipients
+                if (draftData.getTo() != null && !draftData.getTo().isEmpty()) {
+                    InternetAddress[] toAddresses = draftData.getTo().stream()
+                        .map(email -> {
+                            try {
+                                return new InternetAddress(email);
+                            } catch (Exception e) {
+                                throw new RuntimeException("Invalid email address: " + email);
+                            }
+                        })
+                        .toArray(InternetAddress[]::new);
+                    message.setRecipients(Message.RecipientType.TO, toAddresses);
                 }
-            } else {
-                System.out.println("WARNING: Draft with ID " + messageId + " not found, creating new one");
-            }
 
-            // STEP 2: Create new draft message with updated content
-            Properties props = new Properties();
-            Session session = Session.getDefaultInstance(props);
-            MimeMessage message = new MimeMessage(session);
+                if (draftData.getCc() != null && !draftData.getCc().isEmpty()) {
+                    InternetAddress[] ccAddresses = draftData.getCc().stream()
+                        .map(email -> {
+                            try {
+                                return new InternetAddress(email);
+                            } catch (Exception e) {
+                                throw new RuntimeException("Invalid email address: " + email);
+                            }
+                        })
+                        .toArray(InternetAddress[]::new);
+                    message.setRecipients(Message.RecipientType.CC, ccAddresses);
+                }
 
-            // Set recipients
-            if (draftData.getTo() != null && !draftData.getTo().isEmpty()) {
-                InternetAddress[] toAddresses = draftData.getTo().stream()
-                    .map(email -> {
-                        try {
-                            return new InternetAddress(email);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Invalid email address: " + email);
-                        }
-                    })
-                    .toArray(InternetAddress[]::new);
-                message.setRecipients(Message.RecipientType.TO, toAddresses);
-            }
+                if (draftData.getBcc() != null && !draftData.getBcc().isEmpty()) {
+                    InternetAddress[] bccAddresses = draftData.getBcc().stream()
+                        .map(email -> {
+                            try {
+                                return new InternetAddress(email);
+                            } catch (Exception e) {
+                                throw new RuntimeException("Invalid email address: " + email);
+                            }
+                        })
+                        .toArray(InternetAddress[]::new);
+                    message.setRecipients(Message.RecipientType.BCC, bccAddresses);
+                }
 
-            if (draftData.getCc() != null && !draftData.getCc().isEmpty()) {
-                InternetAddress[] ccAddresses = draftData.getCc().stream()
-                    .map(email -> {
-                        try {
-                            return new InternetAddress(email);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Invalid email address: " + email);
-                        }
-                    })
-                    .toArray(InternetAddress[]::new);
-                message.setRecipients(Message.RecipientType.CC, ccAddresses);
-            }
+                // Set subject and content
+                message.setSubject(draftData.getSubject());
+                message.setFrom(new InternetAddress(userEmail));
 
-            if (draftData.getBcc() != null && !draftData.getBcc().isEmpty()) {
-                InternetAddress[] bccAddresses = draftData.getBcc().stream()
-                    .map(email -> {
-                        try {
-                            return new InternetAddress(email);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Invalid email address: " + email);
-                        }
-                    })
-                    .toArray(InternetAddress[]::new);
-                message.setRecipients(Message.RecipientType.BCC, bccAddresses);
-            }
+                String content = draftData.getHtmlContent() != null ? draftData.getHtmlContent() : draftData.getTextContent();
+                if (draftData.getHtmlContent() != null) {
+                    message.setContent(content, "text/html; charset=utf-8");
+                } else {
+                    message.setText(content);
+                }
 
-            // Set subject and content
-            message.setSubject(draftData.getSubject());
-            message.setFrom(new InternetAddress(userEmail));
+                message.setSentDate(new Date());
 
-            String content = draftData.getHtmlContent() != null ? draftData.getHtmlContent() : draftData.getTextContent();
-            if (draftData.getHtmlContent() != null) {
-                message.setContent(content, "text/html; charset=utf-8");
-            } else {
-                message.setText(content);
+                // STEP 3: Save new draft to folder on the same connection
+                mailboxAppendService.append(connection, userEmail, "DRAFTS", List.of(message),
+                    new Flags(Flags.Flag.DRAFT));
+                saved = true;
+            } finally {
+                // STEP 4: Expunge to permanently remove old draft(s), only once the new one is stored
+                folderCache.release(draftsFolder, saved);
             }
-
-            message.setSentDate(new Date());
-            message.setFlag(Flags.Flag.DRAFT, true);
-
-            // STEP 3: Save new draft to folder
-            draftsFolder.appendMessages(new Message[]{message});
-
-            // STEP 4: Expunge to permanently remove old draft(s)
-            draftsFolder.close(true); // true = expunge deleted messages
+            headerIndexService.requestSync(userEmail, "DRAFTS");
 
             System.out.println("=== DRAFT UPDATED SUCCESSFULLY ===");
 
@@ -1889,18 +1801,7 @@ public class MailService {
      * Save reply as draft
      */
     public void saveReplyDraft(String userEmail, ReplyRequestDTO request) {
-        try {
-            Store store = getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
-            if (draftsFolder == null) {
-                throw new RuntimeException("DRAFTS folder not found and could not be created");
-            }
-            draftsFolder.open(Folder.READ_WRITE);
-
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
             MimeMessage message = javaMailSender.createMimeMessage();
 
             // Set recipients
@@ -1956,10 +1857,8 @@ public class MailService {
             }
 
             // Save to drafts folder
-            draftsFolder.appendMessages(new Message[]{message});
-
-            draftsFolder.close(false);
-            store.close();
+            mailboxAppendService.append(connection, userEmail, "DRAFTS", List.of(message),
+                new Flags(Flags.Flag.DRAFT));
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to save reply draft: " + e.getMessage(), e);
@@ -1970,33 +1869,31 @@ public class MailService {
      * Delete draft by message ID
      */
     public void deleteDraft(String userEmail, String messageId) {
-        try {
-            Store store = getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder draftsFolder = folderCache.open("DRAFTS", Folder.READ_WRITE, this::getFolderByName);
             if (draftsFolder == null) {
                 throw new RuntimeException("DRAFTS folder not found and could not be created");
             }
-            draftsFolder.open(Folder.READ_WRITE);
-
-            // Search for the draft by message ID
-            SearchTerm term = new MessageIDTerm(messageId);
-            Message[] messages = draftsFolder.search(term);
 
-            if (messages.length == 0) {
-                System.out.println("Draft not found with ID: " + messageId);
-                draftsFolder.close(false);
-                return; // Don't throw error if draft not found
-            }
+            boolean deleted = false;
+            try {
+                // Search for the draft by message ID
+                SearchTerm term = new MessageIDTerm(messageId);
+                Message[] messages = draftsFolder.search(term);
 
-            // Delete the message
-            messages[0].setFlag(Flags.Flag.DELETED, true);
-            draftsFolder.expunge(); // Permanently remove deleted messages
+                if (messages.length == 0) {
+                    System.out.println("Draft not found with ID: " + messageId);
+                    return; // Don't throw error if draft not found
+                }
 
-            draftsFolder.close(false);
+                // Delete the message
+                messages[0].setFlag(Flags.Flag.DELETED, true);
+                deleted = true;
+            } finally {
+                folderCache.release(draftsFolder, deleted); // Permanently remove deleted messages
+            }
+            headerIndexService.requestSync(userEmail, "DRAFTS");
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete draft: " + e.getMessage(), e);
@@ -2007,53 +1904,51 @@ public class MailService {
      * Bulk delete drafts - more efficient than deleting one by one
      */
     public void bulkDeleteDrafts(String userEmail, List<String> messageIds) {
-        try {
-            Store store = getUserStore(userEmail);
-            if (store == null || !store.isConnected()) {
-                throw new RuntimeException("User not authenticated or connection lost");
-            }
-
-            Folder draftsFolder = getFolderByName(store, "DRAFTS");
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            ImapFolderCache folderCache = connection.getFolderCache();
+            Folder draftsFolder = folderCache.open("DRAFTS", Folder.READ_WRITE, this::getFolderByName);
             if (draftsFolder == null) {
                 throw new RuntimeException("DRAFTS folder not found and could not be created");
             }
-            draftsFolder.open(Folder.READ_WRITE);
 
             int deletedCount = 0;
-            // Get all messages in drafts folder
-            Message[] allMessages = draftsFolder.getMessages();
-
-            System.out.println("=== BULK DELETE DRAFTS ===");
-            System.out.println("Total messages in DRAFTS folder: " + allMessages.length);
-            System.out.println("Message IDs to delete: " + messageIds);
-
-            // Mark matching messages for deletion
-            for (Message message : allMessages) {
-                try {
-                    String[] msgIdHeaders = message.getHeader("Message-ID");
-                    if (msgIdHeaders == null || msgIdHeaders.length == 0) {
-                        System.out.println("Message has no Message-ID header, skipping");
-                        continue;
-                    }
+            try {
+                // Get all messages in drafts folder
+                Message[] allMessages = draftsFolder.getMessages();
+
+                System.out.println("=== BULK DELETE DRAFTS ===");
+                System.out.println("Total messages in DRAFTS folder: " + allMessages.length);
+                System.out.println("Message IDs to delete: " + messageIds);
+
+                // Mark matching messages for deletion
+                for (Message message : allMessages) {
+                    try {
+                        String[] msgIdHeaders = message.getHeader("Message-ID");
+                        if (msgIdHeaders == null || msgIdHeaders.length == 0) {
+                            System.out.println("Message has no Message-ID header, skipping");
+                            continue;
+                        }
 
-                    String msgId = msgIdHeaders[0];
-                    String cleanMsgId = msgId.replaceAll("[<>]", "").trim();
+                        String msgId = msgIdHeaders[0];
+                        String cleanMsgId = msgId.replaceAll("[<>]", "").trim();
 
-                    System.out.println("Checking message ID: " + cleanMsgId);
+                        System.out.println("Checking message ID: " + cleanMsgId);
 
-                    // Check both original and cleaned versions
-                    if (messageIds.contains(msgId) || messageIds.contains(cleanMsgId)) {
-                        message.setFlag(Flags.Flag.DELETED, true);
-                        deletedCount++;
-                        System.out.println("Marked for deletion: " + cleanMsgId);
+                        // Check both original and cleaned versions
+                        if (messageIds.contains(msgId) || messageIds.contains(cleanMsgId)) {
+                            message.setFlag(Flags.Flag.DELETED, true);
+                            deletedCount++;
+                            System.out.println("Marked for deletion: " + cleanMsgId);
+                        }
+                    } catch (Exception e) {
+                        System.err.println("Error processing message: " + e.getMessage());
                     }
-                } catch (Exception e) {
-                    System.err.println("Error processing message: " + e.getMessage());
                 }
+            } finally {
+                // Expunge to permanently delete marked messages
+                folderCache.release(draftsFolder, true);
             }
-
-            // Close folder with expunge to permanently delete marked messages
-            draftsFolder.close(true); // true = expunge deleted messages
+            headerIndexService.requestSync(userEmail, "DRAFTS");
 
             System.out.println("Bulk deleted " + deletedCount + " drafts");
 
@@ -2097,8 +1992,7 @@ public class MailService {
             // Add attachments if present
             if (request.getAttachments() != null) {
                 for (FileAttachmentDTO attachment : request.getAttachments()) {
-                    DataSource dataSource = new ByteArrayDataSource(attachment.getContent(), attachment.getContentType());
-                    helper.addAttachment(attachment.getFileName(), dataSource);
+                    helper.addAttachment(attachment.getFileName(), attachmentSource(userEmail, attachment));
                 }
             }
 
@@ -2107,6 +2001,7 @@ public class MailService {
 
             // Save to sent folder
             saveSentEmailSecure(userEmail, message);
+            releaseUploads(userEmail, request.getAttachments());
 
         } catch (Exception e) {
             throw new RuntimeException("Failed to send reply: " + e.getMessage(), e);
@@ -0,0 +1,97 @@
+package com.memail.service;
+
+import com.memail.cache.MailCache;
+import com.memail.imap.ImapAppender;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapConnectionManager;
+import com.memail.imap.ImapFolderResolver;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Saves messages into a user's folders (SENT, DRAFTS) and indexes them in the same step
+ *
+ * Appends go through the folder handle cached on the pooled connection, without
+ * selecting the folder, and a batch uses one MULTIAPPEND command where supported. The
+ * UIDs from UIDPLUS let the header index take the new rows directly; without them the
+ * folder is synced in the background as before.
+ */
+@Service
+public class MailboxAppendService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailboxAppendService.class);
+
+    @Autowired
+    private ImapConnectionManager imapConnectionManager;
+
+    @Autowired
+    private ImapFolderResolver imapFolderResolver;
+
+    @Autowired
+    private FolderSyncEngine folderSyncEngine;
+
+    @Autowired
+    private HeaderIndexService headerIndexService;
+
+    @Autowired
+    private MailCache mailCache;
+
+    /**
+     * Append messages to a folder on a connection leased for the purpose
+     */
+    public List<ImapAppender.Appended> append(String userEmail, String folderName,
+                                              List<? extends Message> messages, Flags flags) throws MessagingException {
+        try (ImapConnection connection = imapConnectionManager.borrow(userEmail)) {
+            return append(connection, userEmail, folderName, messages, flags);
+        }
+    }
+
+    /**
+     * Append messages to a folder on a connection the caller already holds
+     * Throws MessagingException if the folder cannot be found or the server refuses the APPEND
+     */
+    public List<ImapAppender.Appended> append(ImapConnection connection, String userEmail, String folderName,
+                                              List<? extends Message> messages, Flags flags) throws MessagingException {
+        String folder = folderName.toUpperCase();
+        Folder handle = connection.getFolderCache().resolve(folder, imapFolderResolver);
+        if (handle == null) {
+            throw new MessagingException("Folder '" + folderName + "' not found");
+        }
+
+        List<ImapAppender.Appended> appended;
+        try {
+            for (Message message : messages) {
+                // The index rows are built from the local copy, so it carries the stored flags
+                message.setFlags(flags, true);
+            }
+            appended = ImapAppender.append((IMAPFolder) handle, messages, flags);
+        } catch (MessagingException | RuntimeException e) {
+            connection.getFolderCache().evict(folder);
+            throw e;
+        }
+
+        boolean indexed = false;
+        try {
+            indexed = headerIndexService.isIndexed(userEmail, folder)
+                && folderSyncEngine.indexAppended(userEmail, folder, appended);
+        } catch (Exception e) {
+            logger.warn("Could not index {} appended messages in {} for {}: {}",
+                appended.size(), folder, userEmail, e.getMessage());
+        }
+        if (indexed) {
+            mailCache.folderChanged(userEmail, folder);
+        } else {
+            headerIndexService.requestSync(userEmail, folder);
+        }
+        return appended;
+    }
+}
@@ -1,5 +1,6 @@
 package com.memail.service;
 
+import com.memail.cluster.ClusterNotificationRelay;
 import com.memail.dto.EmailNotificationDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -11,7 +12,16 @@ public class NotificationService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private ClusterNotificationRelay clusterNotificationRelay;
+
     public void sendEmailNotification(String userEmail, EmailNotificationDTO notification) {
+        // The user's session may be on another node when this one owns their mailbox
+        if (clusterNotificationRelay.shouldRelay(userEmail)) {
+            clusterNotificationRelay.publish(userEmail, notification);
+            return;
+        }
+
         // Send notification to specific user
         messagingTemplate.convertAndSendToUser(
             userEmail,
@@ -41,4 +51,11 @@ public class NotificationService {
         );
         sendEmailNotification(userEmail, notification);
     }
+
+    public void sendMailboxChangedNotification(String userEmail, String folder) {
+        EmailNotificationDTO notification = new EmailNotificationDTO(
+            "MAILBOX_CHANGED", null, null, null, folder, null
+        );
+        sendEmailNotification(userEmail, notification);
+    }
 }
\ No newline at end of file
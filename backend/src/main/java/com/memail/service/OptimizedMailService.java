@@ -1,6 +1,7 @@
 package com.memail.service;
 
 import com.memail.dto.*;
+import com.memail.imap.AttachmentScanner;
 import jakarta.mail.*;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
@@ -50,8 +51,10 @@ public class OptimizedMailService {
             // Get flags (already fetched)
             dto.setUnread(!message.isSet(Flags.Flag.SEEN));
 
-            // Check for attachments using Content-Type header ONLY (no content loading)
-            dto.setHasAttachments(hasAttachmentsOptimized(message));
+            // Attachments from the fetched BODYSTRUCTURE (no content loading)
+            int attachmentCount = AttachmentScanner.scan(message).size();
+            dto.setHasAttachments(attachmentCount > 0);
+            dto.setAttachmentCount(attachmentCount);
 
             // Set empty preview initially - will be loaded lazily if needed
             dto.setPreview("");
@@ -72,24 +75,6 @@ public class OptimizedMailService {
         }
     }
 
-    /**
-     * Optimized attachment check - uses Content-Type header ONLY
-     * Does NOT load message content
-     */
-    private boolean hasAttachmentsOptimized(Message message) {
-        try {
-            String[] contentType = message.getHeader("Content-Type");
-            if (contentType != null && contentType.length > 0) {
-                String type = contentType[0].toLowerCase();
-                // Check if it's multipart/mixed which usually indicates attachments
-                return type.contains("multipart/mixed") || type.contains("multipart/related");
-            }
-        } catch (Exception e) {
-            // Ignore errors
-        }
-        return false;
-    }
-
     /**
      * Apply FetchProfile to batch fetch message headers efficiently
      * This is CRITICAL for performance - fetches all data in one roundtrip
@@ -103,7 +88,10 @@ public class OptimizedMailService {
         // Fetch flags (Read/Unread, etc.)
         fetchProfile.add(FetchProfile.Item.FLAGS);
 
-        // Fetch Content-Type header for attachment detection
+        // Fetch UIDs so list entries and cursors are keyed by UID
+        fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+
+        // Fetch BODYSTRUCTURE for attachment metadata and lazy part reads
         fetchProfile.add(FetchProfile.Item.CONTENT_INFO);
 
         // Fetch Message-ID and threading headers
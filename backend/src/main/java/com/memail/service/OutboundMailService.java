@@ -0,0 +1,405 @@
+package com.memail.service;
+
+import com.memail.cluster.ClusterMembership;
+import com.memail.dto.EmailNotificationDTO;
+import com.memail.model.OutboundMessage;
+import com.memail.model.OutboundMessage.Status;
+import com.memail.repository.OutboundMessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.Flags;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.SharedFileInputStream;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Durable queue for outgoing mail
+ *
+ * A send is accepted once its MIME message is journaled to disk and a row is in
+ * outbound_messages; the request returns without waiting for SMTP or IMAP. Workers on the
+ * accepting node deliver due messages in batches over one SMTP connection, retry transient
+ * failures with exponential backoff, append delivered messages to SENT and report the
+ * outcome over the user's WebSocket. Sends interrupted by a restart are queued again.
+ */
+@Service
+public class OutboundMailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundMailService.class);
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    @Autowired
+    private JavaMailSender javaMailSender;
+
+    @Autowired
+    private OutboundMessageRepository outboundMessageRepository;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private MailboxAppendService mailboxAppendService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Value("${memail.outbound.dir:${java.io.tmpdir}/memail-outbound}")
+    private String journalDir;
+
+    @Value("${memail.outbound.threads:4}")
+    private int threads;
+
+    // Messages sent over one SMTP connection
+    @Value("${memail.outbound.batch-size:10}")
+    private int batchSize;
+
+    @Value("${memail.outbound.max-attempts:6}")
+    private int maxAttempts;
+
+    // Delay before the first retry, doubled for each further attempt
+    @Value("${memail.outbound.retry-backoff:30s}")
+    private Duration retryBackoff;
+
+    @Value("${memail.outbound.max-backoff:30m}")
+    private Duration maxBackoff;
+
+    // How long delivered and failed messages stay visible in the queue
+    @Value("${memail.outbound.retention:7d}")
+    private Duration retention;
+
+    private Path journal;
+
+    private ThreadPoolExecutor workers;
+
+    // Batches handed to workers and not finished yet
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        try {
+            journal = Files.createDirectories(Path.of(journalDir));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create outbound journal " + journalDir + ": " + e.getMessage(), e);
+        }
+        workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "mail-send");
+                thread.setDaemon(true);
+                return thread;
+            });
+        workers.allowCoreThreadTimeOut(true);
+
+        int requeued = outboundMessageRepository.transitionAll(clusterMembership.getNodeId(), Status.SENDING, Status.QUEUED);
+        if (requeued > 0) {
+            logger.info("Requeued {} sends interrupted by the last shutdown", requeued);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Journal a message and queue it for delivery; returns the queued row
+     */
+    public OutboundMessage enqueue(String userEmail, MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        // Fixes the Message-ID and transfer encodings before the message is written out
+        message.saveChanges();
+
+        String fileName = UUID.randomUUID() + ".eml";
+        Path target = journal.resolve(fileName);
+        Path partial = journal.resolve(fileName + ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                message.writeTo(out);
+            }
+            // Workers only ever see complete files
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new MessagingException("Unable to journal outgoing message: " + e.getMessage(), e);
+        }
+
+        OutboundMessage queued = new OutboundMessage();
+        queued.setUserId(userEmail);
+        queued.setNodeId(clusterMembership.getNodeId());
+        queued.setJournalFile(fileName);
+        queued.setMessageId(message.getMessageID());
+        queued.setSubject(message.getSubject());
+        Address[] recipients = message.getAllRecipients();
+        queued.setRecipients(recipients != null ? InternetAddress.toString(recipients) : null);
+        try {
+            queued = outboundMessageRepository.save(queued);
+        } catch (RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+
+        dispatch();
+        return queued;
+    }
+
+    /**
+     * Delivery state of one of the user's messages
+     */
+    public Optional<OutboundMessage> getStatus(String userEmail, Long id) {
+        return outboundMessageRepository.findByIdAndUserId(id, userEmail);
+    }
+
+    /**
+     * Hand due messages to idle workers; also runs right after each enqueue
+     */
+    @Scheduled(fixedDelayString = "${memail.outbound.poll-interval:2000}")
+    public synchronized void dispatch() {
+        try {
+            int idle = threads - batchesInFlight.get();
+            if (idle <= 0) {
+                return;
+            }
+            List<OutboundMessage> due = outboundMessageRepository
+                .findByNodeIdAndStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                    clusterMembership.getNodeId(), Status.QUEUED, LocalDateTime.now(),
+                    PageRequest.of(0, idle * batchSize));
+
+            List<OutboundMessage> batch = new ArrayList<>(batchSize);
+            for (OutboundMessage message : due) {
+                if (outboundMessageRepository.transition(message.getId(), Status.QUEUED, Status.SENDING) == 0) {
+                    continue;
+                }
+                message.setStatus(Status.SENDING);
+                batch.add(message);
+                if (batch.size() == batchSize) {
+                    submit(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(batch);
+            }
+        } catch (Exception e) {
+            logger.warn("Error dispatching outbound mail: {}", e.getMessage());
+        }
+    }
+
+    private void submit(List<OutboundMessage> batch) {
+        batchesInFlight.incrementAndGet();
+        workers.execute(() -> {
+            try {
+                deliver(batch);
+            } finally {
+                batchesInFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Send a batch over one SMTP connection, then settle each message on its own
+     */
+    private void deliver(List<OutboundMessage> batch) {
+        Map<OutboundMessage, MimeMessage> loaded = new LinkedHashMap<>();
+        List<SharedFileInputStream> streams = new ArrayList<>();
+        try {
+            for (OutboundMessage queued : batch) {
+                try {
+                    // Parts stay in the file; only headers and part boundaries are held in memory
+                    SharedFileInputStream in = new SharedFileInputStream(journal.resolve(queued.getJournalFile()).toFile());
+                    streams.add(in);
+                    loaded.put(queued, javaMailSender.createMimeMessage(in));
+                } catch (IOException | MailException e) {
+                    fail(queued, e, true);
+                }
+            }
+            if (loaded.isEmpty()) {
+                return;
+            }
+
+            Map<Object, Exception> failures = Collections.emptyMap();
+            try {
+                javaMailSender.send(loaded.values().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                if (failures.isEmpty()) {
+                    // Connection or authentication failure before any message went out
+                    failures = new IdentityHashMap<>();
+                    for (MimeMessage message : loaded.values()) {
+                        failures.put(message, e);
+                    }
+                }
+            } catch (MailException e) {
+                failures = new IdentityHashMap<>();
+                for (MimeMessage message : loaded.values()) {
+                    failures.put(message, e);
+                }
+            }
+
+            Map<String, List<MimeMessage>> sentByUser = new LinkedHashMap<>();
+            for (Map.Entry<OutboundMessage, MimeMessage> entry : loaded.entrySet()) {
+                Exception failure = failures.get(entry.getValue());
+                if (failure != null) {
+                    fail(entry.getKey(), failure, isPermanent(failure));
+                } else {
+                    sentByUser.computeIfAbsent(entry.getKey().getUserId(), user -> new ArrayList<>()).add(entry.getValue());
+                }
+            }
+            sentByUser.forEach(this::appendToSent);
+
+            for (Map.Entry<OutboundMessage, MimeMessage> entry : loaded.entrySet()) {
+                if (!failures.containsKey(entry.getValue())) {
+                    complete(entry.getKey());
+                }
+            }
+        } finally {
+            for (SharedFileInputStream in : streams) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy delivered messages to the user's SENT folder in one MULTIAPPEND batch; best effort
+     */
+    private void appendToSent(String userEmail, List<MimeMessage> messages) {
+        try {
+            mailboxAppendService.append(userEmail, "SENT", messages, new Flags(Flags.Flag.SEEN));
+        } catch (Exception e) {
+            logger.warn("Could not save {} sent messages to SENT for {}: {}", messages.size(), userEmail, e.getMessage());
+        }
+    }
+
+    private void complete(OutboundMessage queued) {
+        queued.setStatus(Status.SENT);
+        queued.setAttempts(queued.getAttempts() + 1);
+        queued.setSentAt(LocalDateTime.now());
+        queued.setLastError(null);
+        outboundMessageRepository.save(queued);
+        deleteQuietly(journal.resolve(queued.getJournalFile()));
+        notify(queued, "EMAIL_SENT", null);
+    }
+
+    private void fail(OutboundMessage queued, Exception failure, boolean permanent) {
+        int attempts = queued.getAttempts() + 1;
+        queued.setAttempts(attempts);
+        queued.setLastError(truncate(rootMessage(failure)));
+
+        if (permanent || attempts >= maxAttempts) {
+            queued.setStatus(Status.FAILED);
+            outboundMessageRepository.save(queued);
+            deleteQuietly(journal.resolve(queued.getJournalFile()));
+            logger.warn("Giving up on outbound message {} of {} after {} attempts: {}",
+                queued.getId(), queued.getUserId(), attempts, queued.getLastError());
+            notify(queued, "EMAIL_SEND_FAILED", queued.getLastError());
+            return;
+        }
+
+        long delay = Math.min(maxBackoff.toMillis(), retryBackoff.toMillis() << Math.min(attempts - 1, 20));
+        queued.setStatus(Status.QUEUED);
+        queued.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(delay)));
+        outboundMessageRepository.save(queued);
+        logger.info("Outbound message {} of {} deferred for {} ms: {}",
+            queued.getId(), queued.getUserId(), delay, queued.getLastError());
+    }
+
+    /**
+     * Whether retrying cannot help: malformed messages, bad addresses and 5xx replies
+     * MessagingException chains through getCause(), so nested SMTP failures are found too
+     */
+    static boolean isPermanent(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MailParseException || cause instanceof MailPreparationException
+                    || cause instanceof AddressException) {
+                return true;
+            }
+            if (cause instanceof SMTPAddressFailedException) {
+                return ((SMTPAddressFailedException) cause).getReturnCode() >= 500;
+            }
+            if (cause instanceof SMTPSendFailedException) {
+                return ((SMTPSendFailedException) cause).getReturnCode() >= 500;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop finished rows past the retention; journals of unfinished ones are kept
+     */
+    @Scheduled(fixedDelayString = "${memail.outbound.cleanup-interval:3600000}")
+    public void purgeFinished() {
+        try {
+            int removed = outboundMessageRepository.deleteFinishedBefore(
+                List.of(Status.SENT, Status.FAILED), LocalDateTime.now().minus(retention));
+            if (removed > 0) {
+                logger.debug("Removed {} finished outbound messages", removed);
+            }
+        } catch (Exception e) {
+            logger.warn("Error purging outbound messages: {}", e.getMessage());
+        }
+    }
+
+    private void notify(OutboundMessage queued, String type, String detail) {
+        try {
+            EmailNotificationDTO notification = new EmailNotificationDTO(
+                type, queued.getMessageId(), null, queued.getSubject(), "SENT", detail);
+            notificationService.sendEmailNotification(queued.getUserId(), notification);
+        } catch (Exception e) {
+            logger.debug("Could not notify {} about outbound message {}: {}", queued.getUserId(), queued.getId(), e.getMessage());
+        }
+    }
+
+    private static String rootMessage(Throwable failure) {
+        Throwable root = failure;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private static String truncate(String text) {
+        return text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Unable to delete outbound journal file {}: {}", path, e.getMessage());
+        }
+    }
+}
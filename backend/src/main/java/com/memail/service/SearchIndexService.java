@@ -0,0 +1,250 @@
+package com.memail.service;
+
+import com.memail.model.MessageHeader;
+import com.memail.repository.MessageHeaderRepository;
+import com.memail.repository.SearchDocumentRepository;
+import com.memail.search.IndexQuery;
+import com.memail.search.SearchPlan;
+import jakarta.mail.*;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text search over the header index
+ *
+ * Every indexed message gets a Postgres tsvector document built from its subject,
+ * addresses, body text and attachment names. Documents are added by the folder sync
+ * right after new headers are indexed, newest first and a bounded number per sync, so
+ * a large mailbox is backfilled over a few syncs. Hits of a SearchPlanner plan are paged
+ * in SQL, ordered by date or by rank. Text searches only use a folder's documents once
+ * every row has one; until then they go to IMAP SEARCH.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final Pattern HTML_SKIP = Pattern.compile("(?is)<(script|style)[^>]*>.*?</\\1>");
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern HTML_ENTITY = Pattern.compile("&(nbsp|amp|lt|gt|quot|#39);");
+
+    public enum Sort {
+        DATE, RELEVANCE;
+
+        public static Sort parse(String value) {
+            return "relevance".equalsIgnoreCase(value) ? RELEVANCE : DATE;
+        }
+    }
+
+    /**
+     * One page of hits and the total number of matches
+     */
+    public static class SearchPage {
+        private final List<MessageHeader> headers;
+        private final long total;
+
+        SearchPage(List<MessageHeader> headers, long total) {
+            this.headers = headers;
+            this.total = total;
+        }
+
+        public List<MessageHeader> getHeaders() {
+            return headers;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    @Autowired
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @Autowired
+    private SearchDocumentRepository searchDocumentRepository;
+
+    // Messages per FETCH when extracting body text
+    @Value("${memail.search.batch-size:100}")
+    private int batchSize;
+
+    // Documents built per folder sync; the rest follows on the next syncs
+    @Value("${memail.search.max-per-sync:1000}")
+    private int maxPerSync;
+
+    // Larger messages are not downloaded whole; only their text parts are fetched
+    @Value("${memail.search.max-message-bytes:2097152}")
+    private int maxMessageBytes;
+
+    // Upper bound of whole-message bytes held in memory per FETCH
+    @Value("${memail.search.max-batch-bytes:16777216}")
+    private long maxBatchBytes;
+
+    // Body text beyond this is not indexed, keeping documents under the tsvector size limit
+    @Value("${memail.search.max-body-chars:100000}")
+    private int maxBodyChars;
+
+    /**
+     * Build documents for rows of the folder that have none, on the sync's open folder
+     * Returns the number of documents written
+     */
+    public int indexPending(String userEmail, String folder, IMAPFolder imapFolder) throws MessagingException {
+        int indexed = 0;
+        while (indexed < maxPerSync) {
+            List<MessageHeader> pending = messageHeaderRepository.findUnsearchable(userEmail, folder,
+                PageRequest.of(0, Math.min(batchSize, maxPerSync - indexed)));
+            if (pending.isEmpty()) {
+                break;
+            }
+            indexBatch(imapFolder, pending);
+            indexed += pending.size();
+        }
+        if (indexed > 0) {
+            logger.debug("Indexed {} documents of {} for {}", indexed, folder, userEmail);
+        }
+        return indexed;
+    }
+
+    /**
+     * Whether every indexed row of the folder has a document
+     */
+    public boolean isComplete(String userEmail, String folder) {
+        return messageHeaderRepository.findUnsearchable(userEmail, folder, PageRequest.of(0, 1)).isEmpty();
+    }
+
+    /**
+     * One page of hits of an INDEX plan
+     */
+    public SearchPage search(String userEmail, SearchPlan plan, Sort sort, int page, int size) {
+        IndexQuery query = plan.getIndexQuery();
+        List<MessageHeader> headers = messageHeaderRepository.search(userEmail, plan.getFolder(), query,
+            sort == Sort.RELEVANCE, size, (long) page * size);
+        long total = messageHeaderRepository.countSearch(userEmail, plan.getFolder(), query);
+        return new SearchPage(headers, total);
+    }
+
+    private void indexBatch(IMAPFolder imapFolder, List<MessageHeader> pending) throws MessagingException {
+        long[] uids = pending.stream().mapToLong(MessageHeader::getUid).toArray();
+        Message[] messages = imapFolder.getMessagesByUID(uids);
+
+        // Sizes and structure first, so whole-message fetches can be bounded by bytes
+        List<Message> present = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (message != null && !message.isExpunged()) {
+                present.add(message);
+            }
+        }
+        FetchProfile structure = new FetchProfile();
+        structure.add(FetchProfile.Item.SIZE);
+        structure.add(FetchProfile.Item.CONTENT_INFO);
+        imapFolder.fetch(present.toArray(new Message[0]), structure);
+
+        FetchProfile whole = new FetchProfile();
+        whole.add(IMAPFolder.FetchProfileItem.MESSAGE);
+        List<Message> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (Message message : present) {
+            int bytes = Math.max(0, message.getSize());
+            if (bytes > maxMessageBytes) {
+                continue;
+            }
+            if (!chunk.isEmpty() && chunkBytes + bytes > maxBatchBytes) {
+                imapFolder.fetch(chunk.toArray(new Message[0]), whole);
+                chunk.clear();
+                chunkBytes = 0;
+            }
+            chunk.add(message);
+            chunkBytes += bytes;
+        }
+        if (!chunk.isEmpty()) {
+            imapFolder.fetch(chunk.toArray(new Message[0]), whole);
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            MessageHeader header = pending.get(i);
+            StringBuilder body = new StringBuilder();
+            List<String> attachments = new ArrayList<>();
+            if (messages[i] != null && !messages[i].isExpunged()) {
+                collectText(messages[i], body, attachments, 0);
+            }
+            // Rows whose message vanished still get a header-only document so the folder completes
+            write(header, body.toString(), String.join("\n", attachments));
+        }
+    }
+
+    private void write(MessageHeader header, String body, String attachments) {
+        try {
+            searchDocumentRepository.upsert(header.getId(), body, attachments);
+        } catch (RuntimeException e) {
+            // E.g. a body that exceeds the tsvector limit; index the headers alone
+            logger.debug("Indexing body of {} failed, indexing headers only: {}", header.getId(), e.getMessage());
+            searchDocumentRepository.upsert(header.getId(), "", attachments);
+        }
+    }
+
+    /**
+     * Readable text and attachment names of a part, preferring text/plain in alternatives
+     */
+    private void collectText(Part part, StringBuilder text, List<String> attachments, int depth) {
+        if (depth > 10 || text.length() >= maxBodyChars) {
+            return;
+        }
+        try {
+            String fileName = part.getFileName();
+            if (fileName != null || Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
+                if (fileName != null) {
+                    attachments.add(fileName);
+                }
+                return;
+            }
+
+            if (part.isMimeType("text/plain")) {
+                append(text, String.valueOf(part.getContent()));
+            } else if (part.isMimeType("text/html")) {
+                append(text, htmlToText(String.valueOf(part.getContent())));
+            } else if (part.isMimeType("multipart/alternative")) {
+                Multipart alternatives = (Multipart) part.getContent();
+                Part chosen = null;
+                for (int i = 0; i < alternatives.getCount(); i++) {
+                    Part candidate = alternatives.getBodyPart(i);
+                    if (chosen == null || candidate.isMimeType("text/plain")) {
+                        chosen = candidate;
+                    }
+                }
+                if (chosen != null) {
+                    collectText(chosen, text, attachments, depth + 1);
+                }
+            } else if (part.isMimeType("multipart/*")) {
+                Multipart multipart = (Multipart) part.getContent();
+                for (int i = 0; i < multipart.getCount(); i++) {
+                    collectText(multipart.getBodyPart(i), text, attachments, depth + 1);
+                }
+            } else if (part.isMimeType("message/rfc822")) {
+                collectText((Part) part.getContent(), text, attachments, depth + 1);
+            }
+        } catch (MessagingException | IOException | ClassCastException e) {
+            logger.debug("Skipping unreadable part: {}", e.getMessage());
+        }
+    }
+
+    private void append(StringBuilder text, String content) {
+        int room = maxBodyChars - text.length();
+        if (room <= 0) {
+            return;
+        }
+        text.append(content, 0, Math.min(room, content.length())).append(' ');
+    }
+
+    static String htmlToText(String html) {
+        String stripped = HTML_TAG.matcher(HTML_SKIP.matcher(html).replaceAll(" ")).replaceAll(" ");
+        return HTML_ENTITY.matcher(stripped).replaceAll(" ");
+    }
+}
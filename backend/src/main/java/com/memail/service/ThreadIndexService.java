@@ -0,0 +1,364 @@
+package com.memail.service;
+
+import com.memail.dto.ConversationDTO;
+import com.memail.dto.ConversationListResponse;
+import com.memail.model.MessageHeader;
+import com.memail.model.ThreadMember;
+import com.memail.model.ThreadSummary;
+import com.memail.repository.MessageHeaderRepository;
+import com.memail.repository.ThreadMemberRepository;
+import com.memail.repository.ThreadSummaryRepository;
+import com.memail.threading.JwzThreader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent conversation index on top of the header index
+ *
+ * New rows are threaded incrementally: the existing threads they touch (by Message-ID,
+ * reference or, for rows without references, by subject) are loaded and JWZ is re-run
+ * over just that neighbourhood, so merges caused by late parents are picked up while
+ * unrelated threads are never read. Per-folder aggregates are kept in thread_summaries
+ * and recomputed for every thread whose messages change.
+ */
+@Service
+public class ThreadIndexService {
+
+    // Unthreaded rows handled per round
+    private static final int THREAD_BATCH_SIZE = 1000;
+
+    // Cap on threads pulled in by subject alone, so common subjects stay cheap
+    private static final int MAX_SUBJECT_NEIGHBOURS = 50;
+
+    @Autowired
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @Autowired
+    private ThreadMemberRepository threadMemberRepository;
+
+    @Autowired
+    private ThreadSummaryRepository threadSummaryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Threading of one user is serialized; concurrent folder syncs would race on thread_members
+    private final Map<String, Object> userLocks = new ConcurrentHashMap<>();
+
+    private final JwzThreader<List<MessageHeader>> threader = new JwzThreader<>(
+        rows -> threadKey(rows.get(0)),
+        rows -> references(rows.get(0)),
+        rows -> rows.get(0).getSubject()
+    );
+
+    /**
+     * Assign every unthreaded row of a folder to a thread
+     * Also backfills rows indexed before the thread index existed
+     */
+    public int threadPending(String userEmail, String folder) {
+        int threaded = 0;
+        while (true) {
+            // One transaction per batch, committed before the user's lock is released
+            Integer count = withUserLock(userEmail, () -> {
+                List<MessageHeader> pending = messageHeaderRepository.findByUserIdAndFolderAndThreadIdIsNull(
+                    userEmail, folder, PageRequest.of(0, THREAD_BATCH_SIZE));
+                if (!pending.isEmpty()) {
+                    threadMessages(userEmail, pending);
+                }
+                return pending.size();
+            });
+            threaded += count;
+            if (count < THREAD_BATCH_SIZE) {
+                return threaded;
+            }
+        }
+    }
+
+    private <T> T withUserLock(String userEmail, Supplier<T> work) {
+        synchronized (userLocks.computeIfAbsent(userEmail, key -> new Object())) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+    }
+
+    private void threadMessages(String userEmail, List<MessageHeader> pending) {
+        Set<String> keys = new HashSet<>();
+        Set<String> subjectKeys = new HashSet<>();
+        for (MessageHeader row : pending) {
+            keys.add(threadKey(row));
+            List<String> refs = references(row);
+            keys.addAll(refs);
+            String subjectKey = JwzThreader.normalizeSubject(row.getSubject());
+            if (refs.isEmpty() && !subjectKey.isEmpty()) {
+                subjectKeys.add(subjectKey);
+            }
+        }
+
+        // Existing threads the new rows may join
+        Set<String> neighbours = new HashSet<>();
+        Map<String, String> knownMembers = new HashMap<>();
+        for (ThreadMember member : threadMemberRepository.findByUserIdAndMessageIdIn(userEmail, keys)) {
+            neighbours.add(member.getThreadId());
+            knownMembers.put(member.getMessageId(), member.getThreadId());
+        }
+        if (!subjectKeys.isEmpty()) {
+            threadSummaryRepository.findByUserIdAndSubjectKeyIn(userEmail, subjectKeys).stream()
+                .sorted(Comparator.comparing(ThreadSummary::getLastDate, Comparator.nullsLast(Comparator.reverseOrder())))
+                .map(ThreadSummary::getThreadId)
+                .distinct()
+                .limit(MAX_SUBJECT_NEIGHBOURS)
+                .forEach(neighbours::add);
+        }
+
+        List<MessageHeader> rows = new ArrayList<>(pending);
+        if (!neighbours.isEmpty()) {
+            rows.addAll(messageHeaderRepository.findByUserIdAndThreadIdIn(userEmail, neighbours));
+        }
+
+        // The same message can sit in several folders; thread it once
+        Map<String, List<MessageHeader>> byKey = new LinkedHashMap<>();
+        for (MessageHeader row : rows) {
+            byKey.computeIfAbsent(threadKey(row), key -> new ArrayList<>()).add(row);
+        }
+
+        List<List<List<MessageHeader>>> threads = threader.thread(byKey.values());
+        // Largest first, so a thread that splits keeps its id on the bigger part
+        threads.sort(Comparator.comparingInt((List<List<MessageHeader>> thread) -> thread.size()).reversed());
+
+        Set<String> affected = new HashSet<>(neighbours);
+        Set<String> usedIds = new HashSet<>();
+        Map<String, String> memberships = new HashMap<>();
+        List<MessageHeader> changed = new ArrayList<>();
+
+        for (List<List<MessageHeader>> thread : threads) {
+            String threadId = chooseThreadId(thread, knownMembers, usedIds);
+            usedIds.add(threadId);
+            affected.add(threadId);
+
+            for (List<MessageHeader> sameMessage : thread) {
+                for (MessageHeader row : sameMessage) {
+                    if (!threadId.equals(row.getThreadId())) {
+                        row.setThreadId(threadId);
+                        changed.add(row);
+                    }
+                }
+                MessageHeader first = sameMessage.get(0);
+                String messageId = JwzThreader.normalizeMessageId(first.getMessageId());
+                if (messageId != null) {
+                    memberships.put(messageId, threadId);
+                }
+                for (String ref : references(first)) {
+                    memberships.putIfAbsent(ref, threadId);
+                }
+            }
+        }
+
+        messageHeaderRepository.saveAll(changed);
+        saveMemberships(userEmail, memberships);
+        refreshSummaries(userEmail, affected);
+    }
+
+    /**
+     * Reuse the id most of the thread already carries; a new id only for new threads
+     */
+    private String chooseThreadId(List<List<MessageHeader>> thread, Map<String, String> knownMembers, Set<String> usedIds) {
+        Map<String, Integer> votes = new HashMap<>();
+        for (List<MessageHeader> sameMessage : thread) {
+            for (MessageHeader row : sameMessage) {
+                if (row.getThreadId() != null) {
+                    votes.merge(row.getThreadId(), 1, Integer::sum);
+                }
+            }
+            String member = knownMembers.get(threadKey(sameMessage.get(0)));
+            if (member != null) {
+                votes.merge(member, 1, Integer::sum);
+            }
+        }
+        return votes.entrySet().stream()
+            .filter(entry -> !usedIds.contains(entry.getKey()))
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .map(Map.Entry::getKey)
+            .findFirst()
+            .orElseGet(() -> UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    private void saveMemberships(String userEmail, Map<String, String> memberships) {
+        List<ThreadMember> toSave = new ArrayList<>();
+        Map<String, String> remaining = new HashMap<>(memberships);
+        for (ThreadMember member : threadMemberRepository.findByUserIdAndMessageIdIn(userEmail, memberships.keySet())) {
+            String threadId = remaining.remove(member.getMessageId());
+            if (threadId != null && !threadId.equals(member.getThreadId())) {
+                member.setThreadId(threadId);
+                toSave.add(member);
+            }
+        }
+        for (Map.Entry<String, String> entry : remaining.entrySet()) {
+            toSave.add(new ThreadMember(userEmail, entry.getKey(), entry.getValue()));
+        }
+        threadMemberRepository.saveAll(toSave);
+    }
+
+    /**
+     * Threads of the given messages; read before deleting rows so their summaries can be refreshed
+     */
+    public Set<String> threadsOf(String userEmail, String folder, Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(messageHeaderRepository.findThreadIdsByUids(userEmail, folder, uids));
+    }
+
+    /**
+     * Recompute the aggregates of threads whose messages were added, changed or removed
+     */
+    public void refreshThreads(String userEmail, Collection<String> threadIds) {
+        if (!threadIds.isEmpty()) {
+            withUserLock(userEmail, () -> {
+                refreshSummaries(userEmail, threadIds);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Forget a folder's summaries when its index is rebuilt
+     */
+    public void removeFolder(String userEmail, String folder) {
+        threadSummaryRepository.deleteByUserIdAndFolder(userEmail, folder);
+    }
+
+    /**
+     * One page of a folder's conversations from the summaries, most recent activity first
+     */
+    public ConversationListResponse listConversations(String userEmail, String folder, int page, int size) {
+        List<ConversationDTO> conversations = threadSummaryRepository
+            .findByUserIdAndFolderOrderByLastDateDesc(userEmail, folder, PageRequest.of(page, size))
+            .stream()
+            .map(this::toConversation)
+            .collect(Collectors.toList());
+        int totalCount = (int) threadSummaryRepository.countByUserIdAndFolder(userEmail, folder);
+        return new ConversationListResponse(conversations, totalCount, page, size);
+    }
+
+    /**
+     * Where the messages of a thread live: UIDs per folder, empty if the thread is unknown
+     * Messages flagged \Deleted are left out
+     */
+    public Map<String, List<Long>> locate(String userEmail, String threadId) {
+        Map<String, List<Long>> locations = new LinkedHashMap<>();
+        for (MessageHeader row : messageHeaderRepository.findByUserIdAndThreadIdIn(userEmail, List.of(threadId))) {
+            if (row.isDeleted()) {
+                continue;
+            }
+            locations.computeIfAbsent(row.getFolder(), key -> new ArrayList<>()).add(row.getUid());
+        }
+        return locations;
+    }
+
+    /**
+     * Message-IDs of the indexed messages of a thread, empty if the thread is unknown
+     */
+    public Set<String> messageIdsOf(String userEmail, String threadId) {
+        return messageHeaderRepository.findByUserIdAndThreadIdIn(userEmail, List.of(threadId)).stream()
+            .map(row -> JwzThreader.normalizeMessageId(row.getMessageId()))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+    }
+
+    private void refreshSummaries(String userEmail, Collection<String> threadIds) {
+        Map<String, Map<String, List<MessageHeader>>> byThreadAndFolder = new HashMap<>();
+        for (MessageHeader row : messageHeaderRepository.findByUserIdAndThreadIdIn(userEmail, threadIds)) {
+            // \Deleted messages stay threaded but do not count; a thread of only those has no summary
+            if (row.isDeleted()) {
+                continue;
+            }
+            byThreadAndFolder
+                .computeIfAbsent(row.getThreadId(), key -> new HashMap<>())
+                .computeIfAbsent(row.getFolder(), key -> new ArrayList<>())
+                .add(row);
+        }
+
+        threadSummaryRepository.deleteByThreadIds(userEmail, threadIds);
+
+        List<ThreadSummary> summaries = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<MessageHeader>>> thread : byThreadAndFolder.entrySet()) {
+            for (Map.Entry<String, List<MessageHeader>> folder : thread.getValue().entrySet()) {
+                summaries.add(summarize(userEmail, thread.getKey(), folder.getKey(), folder.getValue()));
+            }
+        }
+        threadSummaryRepository.saveAll(summaries);
+    }
+
+    private ThreadSummary summarize(String userEmail, String threadId, String folder, List<MessageHeader> rows) {
+        rows.sort(Comparator.comparing(ThreadIndexService::dateOf));
+
+        ThreadSummary summary = new ThreadSummary(userEmail, folder, threadId);
+        String subject = rows.get(0).getSubject();
+        summary.setSubject(subject != null ? subject : "(No Subject)");
+        summary.setSubjectKey(JwzThreader.normalizeSubject(subject));
+        summary.setMessageCount(rows.size());
+        summary.setUnreadCount((int) rows.stream().filter(row -> !row.isSeen()).count());
+        summary.setHasAttachments(rows.stream().anyMatch(MessageHeader::isHasAttachments));
+        summary.setLastDate(dateOf(rows.get(rows.size() - 1)));
+        summary.setParticipants(rows.stream()
+            .map(row -> extractEmailAddress(row.getFromAddress()))
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.joining(",")));
+        return summary;
+    }
+
+    private ConversationDTO toConversation(ThreadSummary summary) {
+        List<String> participants = summary.getParticipants() == null || summary.getParticipants().isEmpty()
+            ? new ArrayList<>()
+            : new ArrayList<>(Arrays.asList(summary.getParticipants().split(",")));
+        return new ConversationDTO(
+            summary.getThreadId(),
+            summary.getSubject(),
+            participants,
+            summary.getMessageCount(),
+            summary.getLastDate(),
+            summary.getUnreadCount() > 0,
+            summary.isHasAttachments(),
+            ""
+        );
+    }
+
+    /**
+     * Threading key of a row: its Message-ID, or a per-row key (never persisted) when it has none
+     */
+    private static String threadKey(MessageHeader row) {
+        String messageId = JwzThreader.normalizeMessageId(row.getMessageId());
+        return messageId != null ? messageId : "uid:" + row.getFolder() + "/" + row.getUid();
+    }
+
+    private static List<String> references(MessageHeader row) {
+        return JwzThreader.parseReferences(row.getReferences(), row.getInReplyTo());
+    }
+
+    private static LocalDateTime dateOf(MessageHeader row) {
+        if (row.getSentDate() != null) {
+            return row.getSentDate();
+        }
+        return row.getReceivedDate() != null ? row.getReceivedDate() : row.getUpdatedAt();
+    }
+
+    private static String extractEmailAddress(String addressString) {
+        if (addressString == null || addressString.isEmpty()) {
+            return null;
+        }
+        int start = addressString.indexOf('<');
+        int end = addressString.indexOf('>', start + 1);
+        if (start >= 0 && end > start) {
+            return addressString.substring(start + 1, end).trim();
+        }
+        return addressString.trim();
+    }
+}
@@ -0,0 +1,345 @@
+package com.memail.smtp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JavaMailSender that sends over pooled, already authenticated SMTP connections
+ *
+ * Opening a connection costs the greeting, EHLO, STARTTLS, a second EHLO and AUTH before the
+ * first MAIL FROM. Connections are kept after a send and handed to the next one, checked
+ * with NOOP when they have been idle, and retired after a number of messages or when the
+ * server drops them. All messages of one send(...) call go over the same connection.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledJavaMailSender.class);
+
+    /**
+     * Pool limits and health checks
+     */
+    public static class Settings {
+        int maxTotal = 8;
+        int maxIdle = 4;
+        Duration maxWait = Duration.ofSeconds(10);
+        Duration minEvictableIdle = Duration.ofSeconds(60);
+        Duration evictionInterval = Duration.ofSeconds(30);
+        Duration validationInterval = Duration.ofSeconds(10);
+        int maxSendsPerConnection = 100;
+
+        public Settings maxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        public Settings maxIdle(int maxIdle) {
+            this.maxIdle = maxIdle;
+            return this;
+        }
+
+        public Settings maxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        public Settings minEvictableIdle(Duration minEvictableIdle) {
+            this.minEvictableIdle = minEvictableIdle;
+            return this;
+        }
+
+        public Settings evictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+            return this;
+        }
+
+        public Settings validationInterval(Duration validationInterval) {
+            this.validationInterval = validationInterval;
+            return this;
+        }
+
+        public Settings maxSendsPerConnection(int maxSendsPerConnection) {
+            this.maxSendsPerConnection = maxSendsPerConnection;
+            return this;
+        }
+    }
+
+    /**
+     * A connected transport and what it has sent
+     */
+    static final class SmtpConnection {
+        final Transport transport;
+        int sends;
+        boolean broken;
+
+        SmtpConnection(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final Settings settings;
+    private final MeterRegistry meterRegistry;
+
+    private GenericObjectPool<SmtpConnection> pool;
+
+    private Timer handshakeTimer;
+    private DistributionSummary sendsPerConnection;
+    private Counter sentCounter;
+    private Counter failedCounter;
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    private volatile boolean pipeliningLogged;
+
+    public PooledJavaMailSender(Settings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Create the pool; call once host, credentials and properties are set
+     */
+    public void start() {
+        GenericObjectPoolConfig<SmtpConnection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(settings.maxTotal);
+        config.setMaxIdle(settings.maxIdle);
+        config.setMinIdle(0);
+        config.setMaxWait(settings.maxWait);
+        config.setBlockWhenExhausted(true);
+        config.setTestOnBorrow(true);
+        config.setTestWhileIdle(true);
+        config.setMinEvictableIdleDuration(settings.minEvictableIdle);
+        config.setTimeBetweenEvictionRuns(settings.evictionInterval);
+        config.setNumTestsPerEvictionRun(Integer.MAX_VALUE);
+        config.setJmxEnabled(false);
+        pool = new GenericObjectPool<>(new SmtpConnectionFactory(), config);
+
+        handshakeTimer = Timer.builder("memail.smtp.pool.handshake")
+            .description("Time to connect, STARTTLS and authenticate a new SMTP connection")
+            .register(meterRegistry);
+        sendsPerConnection = DistributionSummary.builder("memail.smtp.connection.sends")
+            .description("Messages sent over one SMTP connection before it was closed")
+            .register(meterRegistry);
+        sentCounter = Counter.builder("memail.smtp.messages")
+            .tag("result", "sent")
+            .description("Messages accepted by the SMTP server")
+            .register(meterRegistry);
+        failedCounter = Counter.builder("memail.smtp.messages")
+            .tag("result", "failed")
+            .description("Messages the SMTP server did not accept")
+            .register(meterRegistry);
+        hitCounter = Counter.builder("memail.smtp.pool.borrows")
+            .tag("result", "hit")
+            .description("Sends that reused a pooled SMTP connection")
+            .register(meterRegistry);
+        missCounter = Counter.builder("memail.smtp.pool.borrows")
+            .tag("result", "miss")
+            .description("Sends that had to open a new SMTP connection")
+            .register(meterRegistry);
+        Gauge.builder("memail.smtp.pool.active", pool, GenericObjectPool::getNumActive)
+            .description("SMTP connections currently sending")
+            .register(meterRegistry);
+        Gauge.builder("memail.smtp.pool.idle", pool, GenericObjectPool::getNumIdle)
+            .description("Authenticated SMTP connections idle in the pool")
+            .register(meterRegistry);
+
+        logger.info("SMTP connection pool initialized: maxTotal={}, maxIdle={}, maxSendsPerConnection={}",
+            settings.maxTotal, settings.maxIdle, settings.maxSendsPerConnection);
+    }
+
+    public void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Same contract as JavaMailSenderImpl: failures are collected per message and thrown
+     * together, keyed by the original message
+     */
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        SmtpConnection connection = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                if (connection == null) {
+                    try {
+                        connection = lease();
+                    } catch (AuthenticationFailedException ex) {
+                        throw new MailAuthenticationException(ex);
+                    } catch (Exception ex) {
+                        // Every message not sent yet failed with the connection
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(original(mimeMessages, originalMessages, j), ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // Preserve explicitly specified message id...
+                        mimeMessage.setHeader("Message-ID", messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    connection.transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+                    connection.sends++;
+                    sentCounter.increment();
+                } catch (Exception ex) {
+                    failedCounter.increment();
+                    failedMessages.put(original(mimeMessages, originalMessages, i), ex);
+                    if (isConnectionFailure(ex, connection)) {
+                        // Later messages get a fresh connection
+                        connection.broken = true;
+                        release(connection);
+                        connection = null;
+                    }
+                }
+
+                if (connection != null && connection.sends >= settings.maxSendsPerConnection) {
+                    connection.broken = true;
+                    release(connection);
+                    connection = null;
+                }
+            }
+        } finally {
+            if (connection != null) {
+                release(connection);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    private SmtpConnection lease() throws Exception {
+        try {
+            return pool.borrowObject();
+        } catch (Exception e) {
+            // The factory's exception comes through unwrapped, but check for a wrapped one
+            if (e.getCause() instanceof AuthenticationFailedException) {
+                throw (AuthenticationFailedException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void release(SmtpConnection connection) {
+        try {
+            if (connection.broken) {
+                pool.invalidateObject(connection);
+            } else {
+                pool.returnObject(connection);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to return SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the connection itself failed, as opposed to the server refusing one message
+     */
+    private static boolean isConnectionFailure(Exception ex, SmtpConnection connection) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        // Refusals leave the session usable (the transport sends RSET); a dropped one does not
+        return !connection.transport.isConnected();
+    }
+
+    private static Object original(MimeMessage[] mimeMessages, Object[] originalMessages, int index) {
+        return originalMessages != null ? originalMessages[index] : mimeMessages[index];
+    }
+
+    private class SmtpConnectionFactory extends BasePooledObjectFactory<SmtpConnection> {
+
+        @Override
+        public SmtpConnection create() throws Exception {
+            long start = System.nanoTime();
+            Transport transport = connectTransport();
+            handshakeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!pipeliningLogged && transport instanceof SMTPTransport) {
+                pipeliningLogged = true;
+                logger.info("SMTP server {} PIPELINING", ((SMTPTransport) transport).supportsExtension("PIPELINING")
+                    ? "advertises" : "does not advertise");
+            }
+            return new SmtpConnection(transport);
+        }
+
+        @Override
+        public PooledObject<SmtpConnection> wrap(SmtpConnection connection) {
+            return new DefaultPooledObject<>(connection);
+        }
+
+        @Override
+        public void activateObject(PooledObject<SmtpConnection> p) {
+            // borrowedCount is incremented before activation, so 1 means a new connection
+            if (p.getBorrowedCount() > 1) {
+                hitCounter.increment();
+            } else {
+                missCounter.increment();
+            }
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<SmtpConnection> p) {
+            SmtpConnection connection = p.getObject();
+            if (connection.broken) {
+                return false;
+            }
+            // Transport.isConnected() issues a NOOP, so skip it for recently used connections
+            long idleMillis = System.currentTimeMillis() - p.getLastReturnTime();
+            if (p.getBorrowedCount() > 0 && idleMillis < settings.validationInterval.toMillis()) {
+                return true;
+            }
+            return connection.transport.isConnected();
+        }
+
+        @Override
+        public void destroyObject(PooledObject<SmtpConnection> p) {
+            SmtpConnection connection = p.getObject();
+            sendsPerConnection.record(connection.sends);
+            try {
+                connection.transport.close();
+            } catch (MessagingException e) {
+                logger.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.memail.threading;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Jamie Zawinski's message threading algorithm (https://www.jwz.org/doc/threading.html)
+ *
+ * Builds the reply tree from Message-ID, References and In-Reply-To, creating empty
+ * containers for referenced messages that are not present, prunes the empty ones and
+ * finally gathers root threads by normalized subject. Subject gathering only joins roots
+ * when at least one of them is a reply or empty, so unrelated mails that merely share a
+ * subject line stay separate.
+ *
+ * @param <T> message type; callers supply the accessors for id, references and subject
+ */
+public class JwzThreader<T> {
+
+    private static final Pattern MESSAGE_ID = Pattern.compile("<([^<>\\s]+)>");
+    private static final Pattern REPLY_PREFIX = Pattern.compile("^\\s*((re|fwd?|aw|sv)(\\[\\d+])?\\s*:\\s*)+",
+        Pattern.CASE_INSENSITIVE);
+
+    private final Function<T, String> messageId;
+    private final Function<T, List<String>> references;
+    private final Function<T, String> subject;
+
+    /**
+     * @param messageId  normalized Message-ID of a message, or null if it has none
+     * @param references normalized References of a message, oldest first, In-Reply-To last
+     * @param subject    raw subject line
+     */
+    public JwzThreader(Function<T, String> messageId, Function<T, List<String>> references, Function<T, String> subject) {
+        this.messageId = messageId;
+        this.references = references;
+        this.subject = subject;
+    }
+
+    private static final class Container<T> {
+        private T message;
+        private Container<T> parent;
+        private final List<Container<T>> children = new ArrayList<>();
+
+        boolean isEmpty() {
+            return message == null;
+        }
+
+        boolean isAncestorOf(Container<T> other) {
+            for (Container<T> c = other; c != null; c = c.parent) {
+                if (c == this) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void addChild(Container<T> child) {
+            if (child.parent != null) {
+                child.parent.children.remove(child);
+            }
+            child.parent = this;
+            children.add(child);
+        }
+
+        void detach() {
+            if (parent != null) {
+                parent.children.remove(this);
+                parent = null;
+            }
+        }
+
+        void collect(List<T> into) {
+            if (message != null) {
+                into.add(message);
+            }
+            for (Container<T> child : children) {
+                child.collect(into);
+            }
+        }
+    }
+
+    /**
+     * Thread the given messages
+     * Returns one list per thread, each in tree order starting at the root
+     */
+    public List<List<T>> thread(Collection<T> messages) {
+        Map<String, Container<T>> idTable = new HashMap<>();
+        int anonymous = 0;
+
+        // 1. Build containers and link them by References
+        for (T message : messages) {
+            String id = messageId.apply(message);
+            Container<T> container = id != null ? idTable.get(id) : null;
+            if (container != null && container.isEmpty()) {
+                container.message = message;
+            } else {
+                // Missing or duplicate Message-ID: give the message a container of its own
+                container = new Container<>();
+                container.message = message;
+                idTable.put(id != null && !idTable.containsKey(id) ? id : "\0" + anonymous++, container);
+            }
+
+            Container<T> previous = null;
+            for (String ref : references.apply(message)) {
+                Container<T> refContainer = idTable.computeIfAbsent(ref, key -> new Container<>());
+                if (previous != null && refContainer.parent == null
+                        && previous != refContainer && !refContainer.isAncestorOf(previous)) {
+                    previous.addChild(refContainer);
+                }
+                previous = refContainer;
+            }
+
+            // The last reference is the parent, replacing whatever an earlier message implied
+            if (previous != null && previous != container && !container.isAncestorOf(previous)) {
+                previous.addChild(container);
+            } else {
+                container.detach();
+            }
+        }
+
+        // 2. Root set
+        List<Container<T>> roots = new ArrayList<>();
+        for (Container<T> container : idTable.values()) {
+            if (container.parent == null) {
+                roots.add(container);
+            }
+        }
+
+        // 3/4. Prune empty containers
+        List<Container<T>> pruned = new ArrayList<>();
+        for (Container<T> root : roots) {
+            pruneChildren(root);
+            if (root.isEmpty()) {
+                if (root.children.isEmpty()) {
+                    continue;
+                }
+                if (root.children.size() == 1) {
+                    Container<T> only = root.children.get(0);
+                    only.detach();
+                    pruned.add(only);
+                    continue;
+                }
+            }
+            pruned.add(root);
+        }
+
+        // 5. Gather roots by subject
+        List<Container<T>> gathered = gatherBySubject(pruned);
+
+        List<List<T>> threads = new ArrayList<>(gathered.size());
+        for (Container<T> root : gathered) {
+            List<T> thread = new ArrayList<>();
+            root.collect(thread);
+            if (!thread.isEmpty()) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private void pruneChildren(Container<T> container) {
+        for (Container<T> child : new ArrayList<>(container.children)) {
+            pruneChildren(child);
+            if (child.isEmpty()) {
+                int index = container.children.indexOf(child);
+                container.children.remove(index);
+                // Promote the grandchildren into the empty container's place
+                for (Container<T> grandchild : child.children) {
+                    grandchild.parent = container;
+                }
+                container.children.addAll(index, child.children);
+                child.children.clear();
+                child.parent = null;
+            }
+        }
+    }
+
+    private List<Container<T>> gatherBySubject(List<Container<T>> roots) {
+        Map<String, Container<T>> subjectTable = new HashMap<>();
+        for (Container<T> root : roots) {
+            String key = normalizeSubject(rootSubject(root));
+            if (key.isEmpty()) {
+                continue;
+            }
+            Container<T> existing = subjectTable.get(key);
+            if (existing == null
+                    || (root.isEmpty() && !existing.isEmpty())
+                    || (!existing.isEmpty() && isReply(subject.apply(existing.message))
+                        && !root.isEmpty() && !isReply(subject.apply(root.message)))) {
+                subjectTable.put(key, root);
+            }
+        }
+
+        List<Container<T>> result = new ArrayList<>();
+        Set<Container<T>> merged = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Container<T> root : roots) {
+            String key = normalizeSubject(rootSubject(root));
+            Container<T> that = key.isEmpty() ? null : subjectTable.get(key);
+            if (that == null || that == root) {
+                continue;
+            }
+            boolean thisReply = root.isEmpty() || isReply(subject.apply(root.message));
+            boolean thatReply = that.isEmpty() || isReply(subject.apply(that.message));
+
+            if (that.isEmpty() && root.isEmpty()) {
+                for (Container<T> child : new ArrayList<>(root.children)) {
+                    that.addChild(child);
+                }
+            } else if (that.isEmpty()) {
+                that.addChild(root);
+            } else if (thisReply && !root.isEmpty()) {
+                that.addChild(root);
+            } else if (thatReply) {
+                // "that" is the reply; make this root its parent instead
+                root.addChild(that);
+                subjectTable.put(key, root);
+                merged.add(that);
+                continue;
+            } else {
+                // Two originals with the same subject are different conversations
+                continue;
+            }
+            merged.add(root);
+        }
+
+        for (Container<T> root : roots) {
+            if (!merged.contains(root)) {
+                result.add(root);
+            }
+        }
+        return result;
+    }
+
+    private String rootSubject(Container<T> root) {
+        if (!root.isEmpty()) {
+            return subject.apply(root.message);
+        }
+        for (Container<T> child : root.children) {
+            if (!child.isEmpty()) {
+                return subject.apply(child.message);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Subject with reply and forward prefixes removed, lower-cased, for grouping
+     */
+    public static String normalizeSubject(String subject) {
+        if (subject == null) {
+            return "";
+        }
+        return REPLY_PREFIX.matcher(subject).replaceFirst("").trim().toLowerCase();
+    }
+
+    /**
+     * Whether a subject carries a reply or forward prefix
+     */
+    public static boolean isReply(String subject) {
+        return subject != null && REPLY_PREFIX.matcher(subject).lookingAt();
+    }
+
+    /**
+     * The bare id inside the angle brackets of a Message-ID header
+     */
+    public static String normalizeMessageId(String header) {
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = MESSAGE_ID.matcher(header);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        String trimmed = header.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * Parent chain of a message: References oldest first, then In-Reply-To if not already last
+     */
+    public static List<String> parseReferences(String references, String inReplyTo) {
+        List<String> ids = new ArrayList<>();
+        if (references != null) {
+            Matcher matcher = MESSAGE_ID.matcher(references);
+            while (matcher.find()) {
+                String id = matcher.group(1);
+                ids.remove(id);
+                ids.add(id);
+            }
+        }
+        String parent = normalizeMessageId(inReplyTo);
+        if (parent != null && (ids.isEmpty() || !ids.get(ids.size() - 1).equals(parent))) {
+            ids.remove(parent);
+            ids.add(parent);
+        }
+        return ids;
+    }
+}
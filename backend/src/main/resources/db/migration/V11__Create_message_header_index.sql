@@ -0,0 +1,53 @@
+-- Local index of IMAP message headers, kept in sync from James
+-- List, conversation and unread-count queries are served from here; IMAP is only used for bodies
+
+CREATE TABLE message_headers (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    folder VARCHAR(255) NOT NULL,       -- Logical folder name (INBOX, SENT, etc.)
+    uid BIGINT NOT NULL,                -- IMAP UID, valid for the folder's current UIDVALIDITY
+    message_id VARCHAR(998),
+    in_reply_to VARCHAR(998),
+    references_header TEXT,
+    subject TEXT,
+    from_address TEXT,
+    to_addresses TEXT,
+    cc_addresses TEXT,
+    sent_date TIMESTAMP,
+    received_date TIMESTAMP,
+    size_bytes INTEGER NOT NULL DEFAULT 0,
+    has_attachments BOOLEAN NOT NULL DEFAULT FALSE,
+    seen BOOLEAN NOT NULL DEFAULT FALSE,
+    flagged BOOLEAN NOT NULL DEFAULT FALSE,
+    answered BOOLEAN NOT NULL DEFAULT FALSE,
+    draft BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uk_message_headers_uid UNIQUE (user_id, folder, uid)
+);
+
+-- Newest-first listing and UID cursor pagination
+CREATE INDEX idx_message_headers_listing ON message_headers(user_id, folder, uid DESC);
+
+-- Unread counts only touch unread rows
+CREATE INDEX idx_message_headers_unread ON message_headers(user_id, folder) WHERE seen = FALSE;
+
+-- Thread lookups by Message-ID
+CREATE INDEX idx_message_headers_message_id ON message_headers(user_id, message_id);
+
+-- Per-folder sync position
+CREATE TABLE folder_sync_state (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    folder VARCHAR(255) NOT NULL,
+    uid_validity BIGINT NOT NULL,
+    last_uid BIGINT NOT NULL DEFAULT 0,
+    message_count INTEGER NOT NULL DEFAULT 0,
+    last_synced_at TIMESTAMP,
+
+    CONSTRAINT uk_folder_sync_state UNIQUE (user_id, folder)
+);
+
+COMMENT ON TABLE message_headers IS 'Header index per user and folder, synced from IMAP';
+COMMENT ON TABLE folder_sync_state IS 'UIDVALIDITY and highest indexed UID per user and folder';
+COMMENT ON COLUMN folder_sync_state.last_uid IS 'Highest UID already present in message_headers';
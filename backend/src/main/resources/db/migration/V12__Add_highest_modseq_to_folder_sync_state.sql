@@ -0,0 +1,7 @@
+-- CONDSTORE/QRESYNC resync position per folder
+-- 0 means the folder was synced without CONDSTORE and the next sync diffs UIDs instead
+
+ALTER TABLE folder_sync_state
+ADD COLUMN highest_mod_seq BIGINT NOT NULL DEFAULT 0;
+
+COMMENT ON COLUMN folder_sync_state.highest_mod_seq IS 'HIGHESTMODSEQ the index is consistent with';
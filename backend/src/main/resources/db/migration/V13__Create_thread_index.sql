@@ -0,0 +1,49 @@
+-- Persistent conversation index built with the JWZ threading algorithm
+-- Conversation lists are served from thread_summaries instead of regrouping recent headers per request
+
+ALTER TABLE message_headers ADD COLUMN thread_id VARCHAR(32);
+
+-- All messages of a thread, across folders
+CREATE INDEX idx_message_headers_thread ON message_headers(user_id, thread_id);
+
+-- Rows still waiting to be threaded
+CREATE INDEX idx_message_headers_unthreaded ON message_headers(user_id, folder) WHERE thread_id IS NULL;
+
+-- Every Message-ID seen in a thread, including referenced messages that are not indexed,
+-- so late arrivals and out-of-order replies find their thread
+CREATE TABLE thread_members (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    message_id VARCHAR(998) NOT NULL,
+    thread_id VARCHAR(32) NOT NULL,
+
+    CONSTRAINT uk_thread_members UNIQUE (user_id, message_id)
+);
+
+CREATE INDEX idx_thread_members_thread ON thread_members(user_id, thread_id);
+
+-- Aggregates of a thread's messages within one folder
+CREATE TABLE thread_summaries (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    folder VARCHAR(255) NOT NULL,
+    thread_id VARCHAR(32) NOT NULL,
+    subject TEXT,
+    subject_key TEXT,                   -- Subject without reply prefixes, for subject fallback
+    message_count INTEGER NOT NULL DEFAULT 0,
+    unread_count INTEGER NOT NULL DEFAULT 0,
+    has_attachments BOOLEAN NOT NULL DEFAULT FALSE,
+    participants TEXT,                  -- Distinct sender addresses, comma separated
+    last_date TIMESTAMP,
+
+    CONSTRAINT uk_thread_summaries UNIQUE (user_id, folder, thread_id)
+);
+
+-- Newest-first conversation listing
+CREATE INDEX idx_thread_summaries_listing ON thread_summaries(user_id, folder, last_date DESC);
+
+CREATE INDEX idx_thread_summaries_subject ON thread_summaries(user_id, subject_key);
+CREATE INDEX idx_thread_summaries_thread ON thread_summaries(user_id, thread_id);
+
+COMMENT ON TABLE thread_members IS 'Message-ID to thread mapping per user, including referenced but missing messages';
+COMMENT ON TABLE thread_summaries IS 'Per-folder conversation aggregates maintained by ThreadIndexService';
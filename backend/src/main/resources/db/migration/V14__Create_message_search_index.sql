@@ -0,0 +1,21 @@
+-- Full-text index over indexed messages: subject, addresses, body text and attachment names
+-- searchEmails queries this with a GIN index instead of running IMAP SEARCH over message bodies
+
+CREATE TABLE message_search (
+    header_id BIGINT PRIMARY KEY REFERENCES message_headers(id) ON DELETE CASCADE,
+    user_id VARCHAR(255) NOT NULL,
+    folder VARCHAR(255) NOT NULL,
+    sent_date TIMESTAMP,
+    attachment_names TEXT,              -- File names of attachments, newline separated
+    -- Weights: A subject, B from, C to/cc, D body text and attachment names
+    document TSVECTOR NOT NULL,
+    indexed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Term lookups
+CREATE INDEX idx_message_search_document ON message_search USING GIN (document);
+
+-- Per-folder scoping and newest-first ordering of hits
+CREATE INDEX idx_message_search_listing ON message_search(user_id, folder, sent_date DESC);
+
+COMMENT ON TABLE message_search IS 'Full-text documents of indexed messages, rows follow message_headers by cascade';
@@ -0,0 +1,21 @@
+-- Attachment metadata from BODYSTRUCTURE, cached with the header index
+-- Drives the list badge and the detail view's attachment list without downloading parts
+
+ALTER TABLE message_headers ADD COLUMN attachment_count INTEGER NOT NULL DEFAULT 0;
+
+-- Rows indexed before this migration were never scanned; -1 keeps their has_attachments
+-- guess and makes the detail view read the structure from IMAP instead
+UPDATE message_headers SET attachment_count = -1;
+
+CREATE TABLE message_attachments (
+    id BIGSERIAL PRIMARY KEY,
+    header_id BIGINT NOT NULL REFERENCES message_headers(id) ON DELETE CASCADE,
+    part_id VARCHAR(64) NOT NULL,       -- IMAP section number, e.g. 2 or 1.3
+    file_name TEXT,
+    content_type VARCHAR(255),
+    size_bytes BIGINT NOT NULL DEFAULT 0  -- Decoded size, estimated from the encoded part size
+);
+
+CREATE INDEX idx_message_attachments_header ON message_attachments(header_id);
+
+COMMENT ON TABLE message_attachments IS 'Attachments of indexed messages, rows follow message_headers by cascade';
@@ -0,0 +1,26 @@
+-- Outbound mail queue: sends are accepted into this table and delivered by background workers
+-- The MIME message itself is journaled to a file on the node that accepted it
+
+CREATE TABLE outbound_messages (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    node_id VARCHAR(255) NOT NULL,      -- Node holding the journal file and delivering the message
+    journal_file TEXT NOT NULL,         -- Name of the MIME file in memail.outbound.dir
+    message_id VARCHAR(998),
+    subject TEXT,
+    recipients TEXT,
+    status VARCHAR(16) NOT NULL,        -- QUEUED, SENDING, SENT, FAILED
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP
+);
+
+-- Workers pick up their node's due messages
+CREATE INDEX idx_outbound_messages_due ON outbound_messages(node_id, status, next_attempt_at);
+
+-- Status lookups and cleanup per user
+CREATE INDEX idx_outbound_messages_user ON outbound_messages(user_id, created_at DESC);
+
+COMMENT ON TABLE outbound_messages IS 'Queued outgoing mail with delivery status and retry schedule';
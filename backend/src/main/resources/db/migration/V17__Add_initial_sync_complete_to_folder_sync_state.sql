@@ -0,0 +1,11 @@
+-- Whether the first sync of a folder indexed every message
+-- The first sync saves its progress after each batch, so a row can exist for a folder
+-- that is only partly indexed; until this is set the folder is served from IMAP
+
+ALTER TABLE folder_sync_state
+ADD COLUMN initial_sync_complete BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Folders that finished a sync before this column existed
+UPDATE folder_sync_state SET initial_sync_complete = TRUE WHERE last_synced_at IS NOT NULL;
+
+COMMENT ON COLUMN folder_sync_state.initial_sync_complete IS 'Set once a sync indexed the folder up to its newest UID';
@@ -0,0 +1,11 @@
+-- Messages flagged \Deleted but not yet expunged stay in the index with this flag set
+-- Listing, counts, search and threads leave them out; clearing the flag brings them back
+
+ALTER TABLE message_headers
+ADD COLUMN deleted BOOLEAN NOT NULL DEFAULT FALSE;
+
+-- Syncs used to skip \Deleted messages while moving last_uid past them; rescanning from
+-- UID 1 picks them up, rows that are already indexed are left alone
+UPDATE folder_sync_state SET last_uid = 0, highest_mod_seq = 0;
+
+COMMENT ON COLUMN message_headers.deleted IS 'IMAP \Deleted flag; the message is hidden until undeleted or expunged';
@@ -0,0 +1,91 @@
+package com.memail.cache;
+
+import com.memail.dto.AttachmentDTO;
+import com.memail.dto.EmailDetailDTO;
+import com.memail.dto.EmailHeaderDTO;
+import com.memail.dto.EmailListResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MailCacheCodec Test Suite")
+class MailCacheCodecTest {
+
+    private GenericJackson2JsonRedisSerializer json;
+    private MailCacheCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        json = new GenericJackson2JsonRedisSerializer();
+        codec = new MailCacheCodec(json, 1024);
+    }
+
+    private static EmailHeaderDTO header(long uid) {
+        EmailHeaderDTO header = new EmailHeaderDTO("<" + uid + "@example.com>", "Alice <alice@example.com>",
+            "Quarterly report", LocalDateTime.of(2024, 3, 1, 9, 30, 15, 500), uid % 2 == 0);
+        header.setUid(uid);
+        header.setFolder("INBOX");
+        header.setPreview("Please find the numbers attached");
+        return header;
+    }
+
+    @Test
+    @DisplayName("serialize - Should read back a folder's pages with their headers")
+    void testSerialize_FolderPagesRoundTrip() {
+        EmailListResponse page = new EmailListResponse(List.of(header(42), header(41)), 2, 0, 50);
+        page.setNextCursor("41");
+        MailCache.FolderPages pages = new MailCache.FolderPages("7.100.42.2", Map.of("page:0:50", page));
+
+        byte[] bytes = codec.serialize(pages);
+        MailCache.FolderPages read = (MailCache.FolderPages) codec.deserialize(bytes);
+
+        assertEquals(MailCacheCodec.MAGIC, bytes[0]);
+        assertEquals("7.100.42.2", read.getVersion());
+        EmailListResponse readPage = (EmailListResponse) read.getPages().get("page:0:50");
+        assertEquals(2, readPage.getTotalCount());
+        assertEquals("41", readPage.getNextCursor());
+        EmailHeaderDTO first = readPage.getEmails().get(0);
+        assertEquals(42, first.getUid());
+        assertTrue(first.isUnread());
+        assertEquals(LocalDateTime.of(2024, 3, 1, 9, 30, 15, 500), first.getDate());
+        assertEquals("Alice <alice@example.com>", first.getFrom());
+        assertNull(first.getThreadId());
+    }
+
+    @Test
+    @DisplayName("serialize - Should compress a large body and read it back whole")
+    void testSerialize_CompressesLargeDetail() {
+        EmailDetailDTO detail = new EmailDetailDTO();
+        detail.setUid(7);
+        detail.setHtmlContent("<p>Hello there, this is the body.</p>".repeat(500));
+        detail.setAttachments(List.of(new AttachmentDTO("2", "report.pdf", "application/pdf", 52_000)));
+
+        byte[] bytes = codec.serialize(detail);
+        EmailDetailDTO read = (EmailDetailDTO) codec.deserialize(bytes);
+
+        assertTrue(bytes.length < detail.getHtmlContent().length() / 10);
+        assertEquals(detail.getHtmlContent(), read.getHtmlContent());
+        assertEquals("report.pdf", read.getAttachments().get(0).getFileName());
+        assertEquals(52_000, read.getAttachments().get(0).getSize());
+    }
+
+    @Test
+    @DisplayName("deserialize - Should read JSON entries written before the codec, and treat other schema versions as misses")
+    void testDeserialize_JsonAndOtherVersions() {
+        List<String> labels = new ArrayList<>(List.of("Work"));
+        assertEquals(labels, codec.deserialize(json.serialize(labels)));
+        assertEquals(labels, codec.deserialize(codec.serialize(labels)));
+
+        byte[] bytes = codec.serialize(header(1));
+        bytes[1] = (byte) (MailCacheCodec.SCHEMA_VERSION + 1);
+        assertNull(codec.deserialize(bytes));
+    }
+}
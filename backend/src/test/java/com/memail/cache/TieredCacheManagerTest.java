@@ -0,0 +1,76 @@
+package com.memail.cache;
+
+import com.memail.dto.EmailDetailDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TieredCacheManager Test Suite")
+class TieredCacheManagerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MailCacheProperties properties;
+    private TieredCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        properties = new Binder(new MapConfigurationPropertySource(Map.of(
+            "memail.cache.local.maximum-size", "100",
+            "memail.cache.caches.emailDetails.local.maximum-weight", "10KB",
+            "memail.cache.caches.emailDetails.remote.ttl", "30m",
+            "memail.cache.caches.labels.local.refresh-after-write", "1m"
+        ))).bind("memail.cache", MailCacheProperties.class).get();
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new TieredCacheManager(List.of("emailDetails", "labels"), properties, null, meterRegistry);
+        cacheManager.initializeCaches();
+    }
+
+    @SuppressWarnings("unchecked")
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> local(String name) {
+        return (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cacheManager.getCache(name).getNativeCache();
+    }
+
+    @Test
+    @DisplayName("localPolicy - Should apply a cache's own settings over the defaults")
+    void testLocalPolicy_PerCache() {
+        assertNull(properties.localPolicy("emailDetails").getMaximumSize());
+        assertEquals(Duration.ofMinutes(30), properties.remotePolicy("emailDetails").getTtl());
+        assertEquals(Duration.ofMinutes(5), properties.remotePolicy("labels").getTtl());
+        assertEquals(Duration.ofMinutes(1), properties.localPolicy("labels").getRefreshAfterWrite());
+
+        assertTrue(local("emailDetails").policy().eviction().get().isWeighted());
+        assertEquals(100, local("labels").policy().eviction().get().getMaximum());
+    }
+
+    @Test
+    @DisplayName("put - Should weigh details by their bodies and count removals by cause")
+    void testPut_WeighsDetails() throws InterruptedException {
+        EmailDetailDTO detail = new EmailDetailDTO();
+        detail.setHtmlContent("x".repeat(4000));
+        cacheManager.getCache("emailDetails").put("user|INBOX|7|1", detail);
+        local("emailDetails").cleanUp();
+
+        long weight = local("emailDetails").policy().eviction().get().weightedSize().getAsLong();
+        assertTrue(weight > 4000 && weight < 5000, "weight " + weight);
+        assertTrue(meterRegistry.get("memail.cache.local.weight").gauge().value() > 4000);
+
+        cacheManager.getCache("emailDetails").evict("user|INBOX|7|1");
+        // Removal listeners run asynchronously
+        Counter explicit = meterRegistry.get("memail.cache.removals")
+            .tag("cache", "emailDetails").tag("cause", "explicit").counter();
+        for (int i = 0; i < 100 && explicit.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, explicit.count());
+    }
+}
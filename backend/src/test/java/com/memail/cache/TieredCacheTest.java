@@ -0,0 +1,85 @@
+package com.memail.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TieredCache Test Suite")
+class TieredCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConcurrentMapCache remote;
+    private TieredCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        remote = new ConcurrentMapCache("emailDetails", false);
+        cache = new TieredCache("emailDetails", Caffeine.newBuilder().maximumSize(100).build(), remote, meterRegistry);
+    }
+
+    private double gets(String tier, String result) {
+        return meterRegistry.get("memail.cache.gets")
+            .tag("cache", "emailDetails").tag("tier", tier).tag("result", result)
+            .counter().count();
+    }
+
+    @Test
+    @DisplayName("get - Should copy a shared hit into the local tier and answer from there next time")
+    void testGet_PromotesRemoteHit() {
+        remote.put("user|INBOX|7|42", "detail");
+
+        assertEquals("detail", cache.get("user|INBOX|7|42", String.class));
+        assertEquals("detail", cache.get("user|INBOX|7|42", String.class));
+
+        assertEquals(1, gets("remote", "hit"));
+        assertEquals(1, gets("local", "hit"));
+        assertEquals(1, gets("local", "miss"));
+        assertEquals(1.0, meterRegistry.get("memail.cache.hit.ratio").gauge().value(), 0.001);
+    }
+
+    @Test
+    @DisplayName("evictLocal - Should drop only this node's copy, evict both tiers")
+    void testEvict_Tiers() {
+        cache.put("user|INBOX", "pages");
+
+        cache.evictLocal("user|INBOX");
+        assertNotNull(remote.get("user|INBOX"));
+        assertEquals("pages", cache.get("user|INBOX", () -> "reloaded"));
+
+        cache.evict("user|INBOX");
+        assertNull(remote.get("user|INBOX"));
+        assertEquals("reloaded", cache.get("user|INBOX", () -> "reloaded"));
+        assertEquals("reloaded", remote.get("user|INBOX").get());
+    }
+
+    @Test
+    @DisplayName("get - Should serve an entry past its refresh interval and reload it in the background")
+    void testGet_RefreshAhead() throws InterruptedException {
+        AtomicLong nanos = new AtomicLong();
+        TieredCache refreshing = new TieredCache("folderCounts",
+            Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(2)).ticker(nanos::get).build(),
+            remote, Duration.ofSeconds(30), meterRegistry);
+
+        assertEquals("first", refreshing.get("user", () -> "first"));
+        assertEquals("first", refreshing.get("user", () -> "second"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+        assertEquals("first", refreshing.get("user", () -> "second"));
+        for (int i = 0; i < 100 && !"second".equals(refreshing.get("user", String.class)); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals("second", refreshing.get("user", String.class));
+        assertEquals("second", remote.get("user").get());
+        assertEquals(1, meterRegistry.get("memail.cache.refreshes").counter().count());
+    }
+}
@@ -0,0 +1,74 @@
+package com.memail.cluster;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConsistentHashRing Test Suite")
+class ConsistentHashRingTest {
+
+    private static List<String> users(int count) {
+        List<String> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add("user" + i + "@example.com");
+        }
+        return users;
+    }
+
+    @Test
+    @DisplayName("nodeFor() - Should map a key to the same node on every ring built from the same nodes")
+    void testNodeFor_Deterministic() {
+        ConsistentHashRing first = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 64);
+        ConsistentHashRing second = new ConsistentHashRing(List.of("node-c", "node-a", "node-b"), 64);
+
+        for (String user : users(100)) {
+            assertEquals(first.nodeFor(user), second.nodeFor(user));
+        }
+    }
+
+    @Test
+    @DisplayName("nodeFor() - Should spread users over all nodes")
+    void testNodeFor_Distribution() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String user : users(3000)) {
+            counts.merge(ring.nodeFor(user), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > 700 && count < 1300, "Unbalanced shard: " + counts);
+        }
+    }
+
+    @Test
+    @DisplayName("nodeFor() - Should only move users to the added node when the cluster grows")
+    void testNodeFor_MinimalMovement() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-b", "node-c", "node-d"), 128);
+
+        int moved = 0;
+        for (String user : users(3000)) {
+            String oldNode = before.nodeFor(user);
+            String newNode = after.nodeFor(user);
+            if (!oldNode.equals(newNode)) {
+                assertEquals("node-d", newNode);
+                moved++;
+            }
+        }
+        assertTrue(moved < 1200, "Too many users moved: " + moved);
+    }
+
+    @Test
+    @DisplayName("nodeFor() - Should return null for an empty ring")
+    void testNodeFor_EmptyRing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), 16);
+
+        assertTrue(ring.isEmpty());
+        assertNull(ring.nodeFor("test@example.com"));
+    }
+}
@@ -3,8 +3,11 @@ package com.memail.controller;
 import com.memail.dto.*;
 import com.ashulabs.memail.dto.DraftEmailDTO;
 import com.ashulabs.memail.dto.ReplyRequestDTO;
+import com.memail.model.OutboundMessage;
+import com.memail.service.AttachmentUploadService;
 import com.memail.service.MailService;
 import com.memail.service.ContactService;
+import com.memail.service.SearchIndexService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -34,6 +37,9 @@ class EmailControllerTest {
     @Mock
     private ContactService contactService;
 
+    @Mock
+    private AttachmentUploadService attachmentUploadService;
+
     @Mock
     private Authentication authentication;
 
@@ -42,6 +48,13 @@ class EmailControllerTest {
 
     private static final String TEST_EMAIL = "test@example.com";
 
+    private static OutboundMessage queued(Long id) {
+        OutboundMessage message = new OutboundMessage();
+        message.setId(id);
+        message.setUserId(TEST_EMAIL);
+        return message;
+    }
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -53,32 +66,63 @@ class EmailControllerTest {
     void testGetEmails_Success() {
         // Arrange
         EmailListResponse expectedResponse = new EmailListResponse();
-        when(mailService.getEmails(TEST_EMAIL, "INBOX", 0, 50)).thenReturn(expectedResponse);
+        when(mailService.getEmails(TEST_EMAIL, "INBOX", null, 0, 50)).thenReturn(expectedResponse);
 
         // Act
-        ResponseEntity<?> response = emailController.getEmails("INBOX", 0, 50, authentication);
+        ResponseEntity<?> response = emailController.getEmails("INBOX", null, 0, 50, authentication);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(expectedResponse, response.getBody());
-        verify(mailService).getEmails(TEST_EMAIL, "INBOX", 0, 50);
+        verify(mailService).getEmails(TEST_EMAIL, "INBOX", null, 0, 50);
     }
 
     @Test
     @DisplayName("GET /emails - Should handle exceptions")
     void testGetEmails_Exception() {
         // Arrange
-        when(mailService.getEmails(anyString(), anyString(), anyInt(), anyInt()))
+        when(mailService.getEmails(anyString(), anyString(), any(), anyInt(), anyInt()))
             .thenThrow(new RuntimeException("Service error"));
 
         // Act
-        ResponseEntity<?> response = emailController.getEmails("INBOX", 0, 50, authentication);
+        ResponseEntity<?> response = emailController.getEmails("INBOX", null, 0, 50, authentication);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         assertTrue(response.getBody() instanceof Map);
     }
 
+    @Test
+    @DisplayName("GET /emails - Should reject a malformed cursor")
+    void testGetEmails_InvalidCursor() {
+        // Arrange
+        when(mailService.getEmails(TEST_EMAIL, "INBOX", "bogus", 0, 50))
+            .thenThrow(new IllegalArgumentException("Invalid cursor: bogus"));
+
+        // Act
+        ResponseEntity<?> response = emailController.getEmails("INBOX", "bogus", 0, 50, authentication);
+
+        // Assert
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("GET /emails/folders/counts - Should return unread counts")
+    @SuppressWarnings("unchecked")
+    void testGetUnreadCounts_Success() {
+        // Arrange
+        when(mailService.getUnreadCounts(TEST_EMAIL)).thenReturn(Map.of("INBOX", 3L));
+
+        // Act
+        ResponseEntity<?> response = emailController.getUnreadCounts(authentication);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<String, Object> body = (Map<String, Object>) response.getBody();
+        assertNotNull(body);
+        assertEquals(Map.of("INBOX", 3L), body.get("unread"));
+    }
+
     @Test
     @DisplayName("GET /emails/folders - Should return default folders")
     @SuppressWarnings("unchecked")
@@ -136,11 +180,11 @@ class EmailControllerTest {
     void testSearchEmails_Success() {
         // Arrange
         EmailListResponse expectedResponse = new EmailListResponse();
-        when(mailService.searchEmails(TEST_EMAIL, "test query", "INBOX", 0, 50))
+        when(mailService.searchEmails(TEST_EMAIL, "test query", "INBOX", SearchIndexService.Sort.DATE, 0, 50))
             .thenReturn(expectedResponse);
 
         // Act
-        ResponseEntity<?> response = emailController.searchEmails("test query", "INBOX", 0, 50, authentication);
+        ResponseEntity<?> response = emailController.searchEmails("test query", "INBOX", "date", 0, 50, authentication);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -148,7 +192,7 @@ class EmailControllerTest {
     }
 
     @Test
-    @DisplayName("POST /emails/send - Should send email successfully")
+    @DisplayName("POST /emails/send - Should queue email and answer 202")
     @SuppressWarnings("unchecked")
     void testSendEmail_Success() throws MessagingException {
         // Arrange
@@ -156,22 +200,24 @@ class EmailControllerTest {
         String subject = "Test Subject";
         String htmlContent = "<p>Test content</p>";
 
-        doNothing().when(mailService).sendEmail(eq(TEST_EMAIL), any(SendEmailRequestDTO.class));
+        when(mailService.sendEmail(eq(TEST_EMAIL), any(SendEmailRequestDTO.class))).thenReturn(queued(42L));
         doNothing().when(contactService).recordEmailInteractions(anyString(), anyString(), any(), any());
 
         // Act
-        ResponseEntity<?> response = emailController.sendEmail(to, null, null, subject, htmlContent, null, authentication);
+        ResponseEntity<?> response = emailController.sendEmail(to, null, null, subject, htmlContent, null, null, authentication);
 
         // Assert
-        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
         Map<String, Object> body = (Map<String, Object>) response.getBody();
-        assertEquals("Email sent successfully", body.get("message"));
+        assertEquals("Email queued for delivery", body.get("message"));
+        assertEquals(42L, body.get("id"));
+        assertEquals("QUEUED", body.get("status"));
         verify(mailService).sendEmail(eq(TEST_EMAIL), any(SendEmailRequestDTO.class));
     }
 
     @Test
     @DisplayName("POST /emails/send - Should send email with attachments")
-    void testSendEmail_WithAttachments() throws MessagingException {
+    void testSendEmail_WithAttachments() throws Exception {
         // Arrange
         MockMultipartFile file = new MockMultipartFile(
             "attachment",
@@ -180,8 +226,12 @@ class EmailControllerTest {
             "Test content".getBytes()
         );
         MultipartFile[] attachments = new MultipartFile[]{file};
+        FileAttachmentDTO handle = new FileAttachmentDTO();
+        handle.setUploadId("upload-1");
+        handle.setFileName("test.txt");
+        when(attachmentUploadService.store(TEST_EMAIL, file)).thenReturn(handle);
 
-        doNothing().when(mailService).sendEmail(eq(TEST_EMAIL), any(SendEmailRequestDTO.class));
+        when(mailService.sendEmail(eq(TEST_EMAIL), any(SendEmailRequestDTO.class))).thenReturn(queued(43L));
         doNothing().when(contactService).recordEmailInteractions(anyString(), anyString(), any(), any());
 
         // Act
@@ -192,13 +242,15 @@ class EmailControllerTest {
             "Subject",
             "Content",
             attachments,
+            null,
             authentication
         );
 
         // Assert
-        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
         verify(mailService).sendEmail(eq(TEST_EMAIL), argThat(dto ->
             dto.getAttachments() != null && dto.getAttachments().size() == 1
+                && "upload-1".equals(dto.getAttachments().get(0).getUploadId())
         ));
     }
 
@@ -217,6 +269,7 @@ class EmailControllerTest {
             "Subject",
             "Content",
             null,
+            null,
             authentication
         );
 
@@ -262,7 +315,7 @@ class EmailControllerTest {
     @SuppressWarnings("unchecked")
     void testSaveDraft_Success() throws MessagingException {
         // Arrange
-        doNothing().when(mailService).saveDraft(eq(TEST_EMAIL), any(SendEmailRequestDTO.class));
+        when(mailService.saveDraft(eq(TEST_EMAIL), any(SendEmailRequestDTO.class))).thenReturn("<draft-1@example.com>");
 
         // Act
         ResponseEntity<?> response = emailController.saveDraft(
@@ -272,6 +325,7 @@ class EmailControllerTest {
             "Draft Subject",
             "Draft Content",
             null,
+            null,
             authentication
         );
 
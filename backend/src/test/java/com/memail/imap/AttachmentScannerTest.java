@@ -0,0 +1,89 @@
+package com.memail.imap;
+
+import com.memail.dto.AttachmentDTO;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AttachmentScanner Test Suite")
+class AttachmentScannerTest {
+
+    private static MimeMessage parse(String raw) throws Exception {
+        return new MimeMessage(Session.getInstance(new Properties()),
+            new ByteArrayInputStream(raw.replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    @DisplayName("scan() - Should list named parts with section ids and skip embedded images")
+    void testScan_MixedWithEmbeddedImage() throws Exception {
+        MimeMessage message = parse(String.join("\n",
+            "Content-Type: multipart/mixed; boundary=outer",
+            "",
+            "--outer",
+            "Content-Type: multipart/related; boundary=inner",
+            "",
+            "--inner",
+            "Content-Type: text/html; charset=UTF-8",
+            "",
+            "<img src=\"cid:logo\">",
+            "--inner",
+            "Content-Type: image/png; name=logo.png",
+            "Content-ID: <logo>",
+            "Content-Disposition: inline; filename=logo.png",
+            "Content-Transfer-Encoding: base64",
+            "",
+            "iVBORw0KGgo=",
+            "--inner--",
+            "--outer",
+            "Content-Type: application/pdf; name=report.pdf",
+            "Content-Disposition: attachment; filename=report.pdf",
+            "Content-Transfer-Encoding: base64",
+            "",
+            "JVBERi0xLjQKJcOkw7zDtsOfCjIgMCBvYmoK",
+            "--outer",
+            "Content-Type: text/csv",
+            "Content-Disposition: attachment",
+            "",
+            "a,b",
+            "--outer--",
+            ""));
+
+        List<AttachmentDTO> attachments = AttachmentScanner.scan(message);
+
+        assertEquals(2, attachments.size());
+        assertEquals("2", attachments.get(0).getPartId());
+        assertEquals("report.pdf", attachments.get(0).getFileName());
+        assertEquals("application/pdf", attachments.get(0).getContentType());
+        assertTrue(attachments.get(0).getSize() > 0);
+        assertEquals("3", attachments.get(1).getPartId());
+        assertEquals("attachment", attachments.get(1).getFileName());
+    }
+
+    @Test
+    @DisplayName("scan() - Should report nothing for alternative text bodies")
+    void testScan_NoAttachments() throws Exception {
+        MimeMessage message = parse(String.join("\n",
+            "Content-Type: multipart/alternative; boundary=alt",
+            "",
+            "--alt",
+            "Content-Type: text/plain",
+            "",
+            "Hello",
+            "--alt",
+            "Content-Type: text/html",
+            "",
+            "<p>Hello</p>",
+            "--alt--",
+            ""));
+
+        assertTrue(AttachmentScanner.scan(message).isEmpty());
+    }
+}
@@ -0,0 +1,58 @@
+package com.memail.imap;
+
+import jakarta.mail.Flags;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.iap.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImapAppender Test Suite")
+class ImapAppenderTest {
+
+    private static ImapAppender.Appended appended() {
+        return new ImapAppender.Appended(new MimeMessage(Session.getInstance(new Properties())), new Date(), 100);
+    }
+
+    @Test
+    @DisplayName("assignUids - Should map an APPENDUID set onto the batch in order")
+    void testAssignUids_MultiAppend() throws Exception {
+        List<ImapAppender.Appended> batch = List.of(appended(), appended(), appended());
+
+        ImapAppender.assignUids(new Response("A12 OK [APPENDUID 38505 3955:3956,3960] APPEND completed"), batch);
+
+        assertEquals(3955, batch.get(0).getUid());
+        assertEquals(3956, batch.get(1).getUid());
+        assertEquals(3960, batch.get(2).getUid());
+        assertEquals(38505, batch.get(2).getUidValidity());
+    }
+
+    @Test
+    @DisplayName("assignUids - Should leave UIDs unknown without UIDPLUS or on a count mismatch")
+    void testAssignUids_Unusable() throws Exception {
+        List<ImapAppender.Appended> batch = List.of(appended(), appended());
+
+        ImapAppender.assignUids(new Response("A13 OK APPEND completed"), batch);
+        assertEquals(-1, batch.get(0).getUid());
+
+        ImapAppender.assignUids(new Response("A14 OK [APPENDUID 38505 3961] APPEND completed"), batch);
+        assertEquals(-1, batch.get(0).getUid());
+        assertEquals(-1, batch.get(1).getUid());
+    }
+
+    @Test
+    @DisplayName("flagList - Should render system flags and keywords, and nothing for no flags")
+    void testFlagList() {
+        Flags flags = new Flags(Flags.Flag.SEEN);
+        flags.add("$Forwarded");
+
+        assertEquals("(\\Seen $Forwarded)", ImapAppender.flagList(flags));
+        assertNull(ImapAppender.flagList(new Flags()));
+    }
+}
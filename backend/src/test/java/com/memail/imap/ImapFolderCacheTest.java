@@ -0,0 +1,85 @@
+package com.memail.imap;
+
+import jakarta.mail.Folder;
+import jakarta.mail.Store;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ImapFolderCache Test Suite")
+class ImapFolderCacheTest {
+
+    private final Map<String, Folder> folders = new HashMap<>();
+    private ImapFolderCache folderCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (String name : new String[] {"INBOX", "SENT", "DRAFTS"}) {
+            folders.put(name, folder(name));
+        }
+        folderCache = new ImapFolderCache(mock(Store.class), Set.of("INBOX", "SENT"));
+    }
+
+    private static Folder folder(String name) throws Exception {
+        Folder folder = mock(Folder.class);
+        AtomicBoolean open = new AtomicBoolean();
+        when(folder.getFullName()).thenReturn(name);
+        when(folder.getMode()).thenReturn(Folder.READ_ONLY);
+        when(folder.isOpen()).thenAnswer(invocation -> open.get());
+        doAnswer(invocation -> {
+            open.set(true);
+            return null;
+        }).when(folder).open(anyInt());
+        doAnswer(invocation -> {
+            open.set(false);
+            return null;
+        }).when(folder).close(anyBoolean());
+        return folder;
+    }
+
+    private Folder open(String name) throws Exception {
+        return folderCache.open(name, Folder.READ_ONLY, (store, folderName) -> folders.get(folderName));
+    }
+
+    @Test
+    @DisplayName("release - Should keep only the most recently released hot folder open")
+    void testRelease_KeepsOneHotFolder() throws Exception {
+        Folder inbox = open("INBOX");
+        folderCache.release(inbox);
+        assertTrue(inbox.isOpen());
+
+        Folder sent = open("SENT");
+        folderCache.release(sent);
+        assertTrue(sent.isOpen());
+        assertFalse(inbox.isOpen());
+
+        Folder drafts = open("DRAFTS");
+        folderCache.release(drafts);
+        assertFalse(drafts.isOpen());
+        assertTrue(sent.isOpen());
+    }
+
+    @Test
+    @DisplayName("release - Should not close a hot folder the current request still has open")
+    void testRelease_LeasedHotFolderKeepsSlot() throws Exception {
+        Folder inbox = open("INBOX");
+        folderCache.release(inbox);
+        assertSame(inbox, open("INBOX"));
+
+        Folder sent = open("SENT");
+        folderCache.release(sent);
+        assertFalse(sent.isOpen());
+        assertTrue(inbox.isOpen());
+        verify(inbox, times(1)).open(anyInt());
+    }
+}
@@ -0,0 +1,61 @@
+package com.memail.imap;
+
+import jakarta.mail.Message;
+import jakarta.mail.Session;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("ImapSorter Test Suite")
+class ImapSorterTest {
+
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    private static Message message(UIDFolder folder, long uid, Date sent) throws Exception {
+        MimeMessage message = new MimeMessage(SESSION);
+        if (sent != null) {
+            message.setSentDate(sent);
+        }
+        when(folder.getUID(message)).thenReturn(uid);
+        return message;
+    }
+
+    @Test
+    @DisplayName("readSort - Should read UIDs from untagged SORT responses in server order")
+    void testReadSort() throws Exception {
+        Response[] responses = {
+            new IMAPResponse("* SORT 7 3 12"),
+            new IMAPResponse("* 14 EXISTS"),
+            new IMAPResponse("A7 OK UID SORT completed")
+        };
+
+        assertEquals(List.of(7L, 3L, 12L), ImapSorter.readSort(responses));
+        assertNull(responses[0]);
+        assertNotNull(responses[1]);
+    }
+
+    @Test
+    @DisplayName("sortByDate - Should order newest first, breaking ties by UID and putting undated last")
+    void testSortByDate_Local() throws Exception {
+        UIDFolder folder = mock(UIDFolder.class);
+        Message older = message(folder, 5, new Date(1_000_000L));
+        Message newer = message(folder, 2, new Date(3_000_000L));
+        Message sameTime = message(folder, 9, new Date(3_000_000L));
+        Message undated = message(folder, 11, null);
+
+        Message[] sorted = ImapSorter.sortByDate(new Message[]{older, undated, newer, sameTime}, folder);
+
+        assertArrayEquals(new Message[]{sameTime, newer, older, undated}, sorted);
+    }
+}
@@ -0,0 +1,32 @@
+package com.memail.imap;
+
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImapThreader Test Suite")
+class ImapThreaderTest {
+
+    @Test
+    @DisplayName("parseThreads - Should turn each top-level group into one conversation in tree order")
+    void testParseThreads_Nested() throws Exception {
+        // Example from RFC 5256
+        IMAPResponse response = new IMAPResponse("* THREAD (2)(3 6 (4 23)(44 7 96))");
+        assertTrue(response.keyEquals("THREAD"));
+
+        List<List<Long>> threads = ImapThreader.parseThreads(response.getRest());
+
+        assertEquals(List.of(List.of(2L), List.of(3L, 6L, 4L, 23L, 44L, 7L, 96L)), threads);
+    }
+
+    @Test
+    @DisplayName("parseThreads - Should keep siblings of a missing root together and ignore an empty result")
+    void testParseThreads_MissingRoot() {
+        assertEquals(List.of(List.of(3L, 5L), List.of(9L)), ImapThreader.parseThreads("((3)(5))(9)"));
+        assertTrue(ImapThreader.parseThreads("").isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.memail.imap;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MessageBodyReader Test Suite")
+class MessageBodyReaderTest {
+
+    private MessageBodyReader reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = new MessageBodyReader();
+        ReflectionTestUtils.setField(reader, "maxTextChars", 1000);
+    }
+
+    /**
+     * Attachment whose content fails the test if anything reads it
+     */
+    private static MimeBodyPart untouchableAttachment() throws Exception {
+        MimeBodyPart attachment = new MimeBodyPart();
+        attachment.setDataHandler(new DataHandler(new DataSource() {
+            public InputStream getInputStream() {
+                throw new AssertionError("Attachment content was read");
+            }
+
+            public OutputStream getOutputStream() {
+                throw new UnsupportedOperationException();
+            }
+
+            public String getContentType() {
+                return "application/pdf";
+            }
+
+            public String getName() {
+                return "report.pdf";
+            }
+        }));
+        attachment.setFileName("report.pdf");
+        return attachment;
+    }
+
+    private static MimeMessage message(MimeMultipart content) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setContent(content);
+        // Headers as a parsed message has them, without saveChanges() encoding the parts
+        message.setHeader("Content-Type", content.getContentType());
+        return message;
+    }
+
+    @Test
+    @DisplayName("read() - Should return both alternatives without opening attachments")
+    void testRead_AlternativeWithAttachment() throws Exception {
+        MimeBodyPart plain = new MimeBodyPart();
+        plain.setText("Hello Alice", "UTF-8");
+        MimeBodyPart html = new MimeBodyPart();
+        html.setContent("<p>Hello Alice</p>", "text/html; charset=UTF-8");
+        html.setHeader("Content-Type", "text/html; charset=UTF-8");
+        MimeMultipart alternatives = new MimeMultipart("alternative", plain, html);
+        MimeBodyPart alternative = new MimeBodyPart();
+        alternative.setContent(alternatives);
+        alternative.setHeader("Content-Type", alternatives.getContentType());
+
+        MessageBodyReader.Body body = reader.read(message(new MimeMultipart(alternative, untouchableAttachment())));
+
+        assertEquals("Hello Alice", body.getText());
+        assertEquals("<p>Hello Alice</p>", body.getHtml());
+        assertFalse(body.isTruncated());
+    }
+
+    @Test
+    @DisplayName("read() - Should stop reading a text part at the cap")
+    void testRead_TruncatesAtCap() throws Exception {
+        MimeBodyPart plain = new MimeBodyPart();
+        plain.setText("x".repeat(5000), "UTF-8");
+
+        MessageBodyReader.Body body = reader.read(message(new MimeMultipart(plain, untouchableAttachment())));
+
+        assertEquals(1000, body.getText().length());
+        assertNull(body.getHtml());
+        assertTrue(body.isTruncated());
+    }
+}
@@ -0,0 +1,64 @@
+package com.memail.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IndexQuery Test Suite")
+class IndexQueryTest {
+
+    @Test
+    @DisplayName("toTsQuery() - Should restrict field terms to their document weight")
+    void testToTsQuery_FieldWeights() {
+        assertEquals("'alice@example.com':B",
+            IndexQuery.toTsQuery(new SearchNode.Term(SearchNode.Field.FROM, "alice@example.com", false)));
+        assertEquals("'budget'", IndexQuery.toTsQuery(new SearchNode.Term(SearchNode.Field.TEXT, "budget", false)));
+    }
+
+    @Test
+    @DisplayName("toTsQuery() - Should turn phrases into adjacent lexemes and escape quotes")
+    void testToTsQuery_PhrasesAndEscaping() {
+        assertEquals("('quarterly':A <-> 'report':A)",
+            IndexQuery.toTsQuery(new SearchNode.Term(SearchNode.Field.SUBJECT, "quarterly report", true)));
+        assertEquals("'o''brien'", IndexQuery.toTsQuery(new SearchNode.Term(SearchNode.Field.TEXT, "o'brien", false)));
+    }
+
+    @Test
+    @DisplayName("compile() - Should push operators to columns and labels to resolved UIDs")
+    void testCompile_Operators() {
+        SearchNode query = SearchQueryParser.parse("is:unread after:2024-02-01 label:work -budget");
+        Map<SearchNode.Term, Set<Long>> labels = new IdentityHashMap<>();
+        query.anyTerm(term -> {
+            if (term.getField() == SearchNode.Field.LABEL) {
+                labels.put(term, Set.of(42L));
+            }
+            return false;
+        });
+
+        IndexQuery compiled = IndexQuery.compile(query, "INBOX", labels);
+
+        assertEquals("(NOT mh.seen AND COALESCE(mh.sent_date, mh.received_date) >= :p0 AND mh.uid IN (:p1) "
+            + "AND NOT (ms.document @@ to_tsquery('simple', :p2)))", compiled.getWhere());
+        assertEquals(LocalDate.of(2024, 2, 1).atStartOfDay(), compiled.getParameters().get("p0"));
+        assertEquals(List.of(42L), compiled.getParameters().get("p1"));
+        assertTrue(compiled.isFullText());
+        // Negated words do not contribute to the rank
+        assertNull(compiled.getRankQuery());
+    }
+
+    @Test
+    @DisplayName("compile() - Should not need the full-text join without text terms")
+    void testCompile_HeaderOnly() {
+        IndexQuery compiled = IndexQuery.compile(SearchQueryParser.parse("has:attachment OR is:starred"), "INBOX", Map.of());
+
+        assertEquals("(mh.has_attachments OR mh.flagged)", compiled.getWhere());
+        assertFalse(compiled.isFullText());
+    }
+}
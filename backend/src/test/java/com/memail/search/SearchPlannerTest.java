@@ -0,0 +1,120 @@
+package com.memail.search;
+
+import com.memail.model.Label;
+import com.memail.model.MessageHeader;
+import com.memail.model.MessageLabel;
+import com.memail.repository.LabelRepository;
+import com.memail.repository.MessageHeaderRepository;
+import com.memail.repository.MessageLabelRepository;
+import com.memail.service.HeaderIndexService;
+import com.memail.service.LabelService;
+import com.memail.service.SearchIndexService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SearchPlanner Test Suite")
+class SearchPlannerTest {
+
+    private static final String USER = "user@example.com";
+    private static final String THREAD_ID = "9c2f4e1a7b3d4f5e8a6b0c1d2e3f4a5b";
+
+    @Mock
+    private HeaderIndexService headerIndexService;
+
+    @Mock
+    private SearchIndexService searchIndexService;
+
+    @Mock
+    private LabelRepository labelRepository;
+
+    @Mock
+    private MessageLabelRepository messageLabelRepository;
+
+    @Mock
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @InjectMocks
+    private SearchPlanner searchPlanner;
+
+    @InjectMocks
+    private LabelService labelService;
+
+    private final List<MessageLabel> messageLabels = new ArrayList<>();
+    private final List<MessageHeader> headers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Label work = new Label(USER, "Work", "#1a73e8");
+        work.setId(1L);
+        when(labelRepository.findByUserIdAndId(USER, 1L)).thenReturn(Optional.of(work));
+        when(labelRepository.findByUserIdOrderByNameAsc(USER)).thenReturn(List.of(work));
+        when(headerIndexService.isIndexed(USER, "INBOX")).thenReturn(true);
+
+        when(messageLabelRepository.save(any())).thenAnswer(invocation -> {
+            messageLabels.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(messageLabelRepository.findByUserIdAndLabelIds(eq(USER), any())).thenAnswer(invocation ->
+            messageLabels.stream()
+                .filter(row -> invocation.<List<Long>>getArgument(1).contains(row.getLabel().getId()))
+                .collect(Collectors.toList()));
+
+        headers.add(header(10, THREAD_ID, "<first@example.com>"));
+        headers.add(header(11, THREAD_ID, "<second@example.com>"));
+        headers.add(header(20, "0b1c2d3e4f5a6b7c8d9e0f1a2b3c4d5e", "<detail@example.com>"));
+        headers.add(header(30, "ffffffffffffffffffffffffffffffff", "<other@example.com>"));
+        when(messageHeaderRepository.findByUserIdAndFolderAndThreadIdIn(eq(USER), eq("INBOX"), any()))
+            .thenAnswer(invocation -> matching(MessageHeader::getThreadId, invocation.getArgument(2)));
+        when(messageHeaderRepository.findByUserIdAndFolderAndMessageIdIn(eq(USER), eq("INBOX"), any()))
+            .thenAnswer(invocation -> matching(MessageHeader::getMessageId, invocation.getArgument(2)));
+    }
+
+    private static MessageHeader header(long uid, String threadId, String messageId) {
+        MessageHeader header = new MessageHeader(USER, "INBOX", uid);
+        header.setThreadId(threadId);
+        header.setMessageId(messageId);
+        return header;
+    }
+
+    private List<MessageHeader> matching(Function<MessageHeader, String> key, Collection<String> values) {
+        return headers.stream().filter(header -> values.contains(key.apply(header))).collect(Collectors.toList());
+    }
+
+    private Set<Long> labelledUids(String query) {
+        SearchNode parsed = SearchQueryParser.parse(query);
+        SearchPlan plan = searchPlanner.plan(USER, "INBOX", parsed);
+        assertEquals(SearchPlan.Engine.INDEX, plan.getEngine());
+        List<SearchNode.Term> terms = new ArrayList<>();
+        parsed.anyTerm(term -> term.getField() == SearchNode.Field.LABEL && terms.add(term));
+        return plan.labelUids(terms.get(0));
+    }
+
+    @Test
+    @DisplayName("plan() - Should find messages labelled from the list by thread id and from the detail by Message-ID")
+    void testPlan_LabelsStoredByTheUi() {
+        // Mail list: the selected conversations' thread ids
+        labelService.applyLabelsToMessages(USER, List.of(THREAD_ID), "INBOX", List.of(1L));
+        assertEquals(Set.of(10L, 11L), labelledUids("label:work"));
+
+        // Mail detail: the Message-IDs of the open conversation
+        labelService.applyLabelToMessage(USER, "<detail@example.com>", "INBOX", 1L);
+        assertEquals(Set.of(10L, 11L, 20L), labelledUids("label:Work"));
+    }
+}
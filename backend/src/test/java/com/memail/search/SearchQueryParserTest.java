@@ -0,0 +1,53 @@
+package com.memail.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SearchQueryParser Test Suite")
+class SearchQueryParserTest {
+
+    private String parse(String query) {
+        SearchNode node = SearchQueryParser.parse(query);
+        return node == null ? null : node.toString();
+    }
+
+    @Test
+    @DisplayName("parse() - Should keep quoted phrases together, also after a field")
+    void testParse_Phrases() {
+        assertEquals("AND(subject:\"quarterly report\" \"next steps\")",
+            parse("subject:\"quarterly report\" \"next steps\""));
+    }
+
+    @Test
+    @DisplayName("parse() - Should bind OR tighter than the implicit AND")
+    void testParse_OrPrecedence() {
+        assertEquals("AND(from:alice OR(budget forecast))", parse("from:alice budget OR forecast"));
+        assertEquals("OR(AND(a b) c)", parse("(a b) OR c"));
+    }
+
+    @Test
+    @DisplayName("parse() - Should negate with a leading minus or NOT")
+    void testParse_Negation() {
+        assertEquals("AND(is:unread NOT(label:work) NOT(OR(a b)))", parse("is:UNREAD -label:work NOT (a OR b)"));
+    }
+
+    @Test
+    @DisplayName("parse() - Should accept operators and search invalid ones as text")
+    void testParse_Operators() {
+        assertEquals("AND(after:2024/01/31 larger:5M has:attachment in:sent)",
+            parse("after:2024/01/31 larger:5M has:attachment in:SENT"));
+        assertEquals("AND(before:yesterday has:pdf http://example.com)",
+            parse("before:yesterday has:pdf http://example.com"));
+        assertEquals(5L * 1024 * 1024, SearchQueryParser.parseSize("5M"));
+    }
+
+    @Test
+    @DisplayName("parse() - Should tolerate blank queries and unbalanced parentheses")
+    void testParse_Malformed() {
+        assertNull(parse("   "));
+        assertEquals("AND(a b)", parse("(a b"));
+        assertEquals("AND(a b)", parse("a ) b OR"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.memail.search;
+
+import com.memail.dto.EmailHeaderDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SearchResultMerger Test Suite")
+class SearchResultMergerTest {
+
+    private static EmailHeaderDTO hit(String messageId, int day) {
+        return new EmailHeaderDTO(messageId, "alice@example.com", "Subject", LocalDateTime.of(2024, 1, day, 12, 0), false);
+    }
+
+    private static List<String> ids(List<EmailHeaderDTO> hits) {
+        return hits.stream().map(EmailHeaderDTO::getMessageId).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("merge() - Should interleave folders newest first and page the result")
+    void testMerge_ByDate() {
+        List<EmailHeaderDTO> inbox = List.of(hit("<a>", 9), hit("<b>", 5), hit("<c>", 1));
+        List<EmailHeaderDTO> sent = List.of(hit("<d>", 8), hit("<e>", 6));
+
+        assertEquals(List.of("<a>", "<d>", "<e>"), ids(SearchResultMerger.merge(List.of(inbox, sent), 0, 3)));
+        assertEquals(List.of("<b>", "<c>"), ids(SearchResultMerger.merge(List.of(inbox, sent), 3, 3)));
+    }
+
+    @Test
+    @DisplayName("merge() - Should keep a message found in several folders once")
+    void testMerge_DedupesByMessageId() {
+        List<EmailHeaderDTO> inbox = List.of(hit("<a>", 9), hit("<b>", 5));
+        List<EmailHeaderDTO> starred = List.of(hit("<b>", 5), hit("<a>", 9));
+
+        assertEquals(List.of("<a>", "<b>"), ids(SearchResultMerger.merge(List.of(inbox, starred, List.of()), 0, 10)));
+        assertTrue(SearchResultMerger.merge(List.of(inbox, starred), 2, 10).isEmpty());
+    }
+}
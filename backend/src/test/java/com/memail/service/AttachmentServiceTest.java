@@ -0,0 +1,60 @@
+package com.memail.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AttachmentService Test Suite")
+class AttachmentServiceTest {
+
+    private static AttachmentService.Base64Layout probe(byte[] encoded) throws Exception {
+        int probe = Math.min(encoded.length, 1024);
+        return AttachmentService.Base64Layout.probe(
+            new ByteArrayInputStream(encoded, 0, probe),
+            new ByteArrayInputStream(encoded, encoded.length - probe, probe),
+            encoded.length);
+    }
+
+    private static InputStream slice(byte[] encoded, long start) {
+        return new ByteArrayInputStream(encoded, (int) start, encoded.length - (int) start);
+    }
+
+    @Test
+    @DisplayName("Base64Layout - Should size and seek MIME base64 without decoding from the start")
+    void testBase64Layout_Seek() throws Exception {
+        byte[] content = new byte[10_001];
+        new Random(42).nextBytes(content);
+        byte[] encoded = (Base64.getMimeEncoder().encodeToString(content) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        AttachmentService.Base64Layout layout = probe(encoded);
+
+        assertNotNull(layout);
+        assertEquals(content.length, layout.decodedSize);
+        for (long offset : new long[]{0, 1, 56, 57, 58, 4_000, 10_000}) {
+            try (InputStream in = layout.open(offset, start -> slice(encoded, start))) {
+                byte[] expected = Arrays.copyOfRange(content, (int) offset, content.length);
+                assertArrayEquals(expected, in.readAllBytes(), "offset " + offset);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Base64Layout - Should handle a single line and reject irregular lines")
+    void testBase64Layout_SingleLineAndIrregular() throws Exception {
+        byte[] single = Base64.getEncoder().encode("hello world".getBytes(StandardCharsets.US_ASCII));
+        AttachmentService.Base64Layout layout = probe(single);
+        assertNotNull(layout);
+        assertEquals(11, layout.decodedSize);
+
+        byte[] irregular = "aGVsbG8g\r\nd29ybGQgaGVs\r\nbG8=\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertNull(probe(irregular));
+    }
+}
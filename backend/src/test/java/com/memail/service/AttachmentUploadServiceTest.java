@@ -0,0 +1,75 @@
+package com.memail.service;
+
+import com.memail.dto.FileAttachmentDTO;
+import jakarta.activation.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("AttachmentUploadService Test Suite")
+class AttachmentUploadServiceTest {
+
+    private static final String TEST_EMAIL = "test@example.com";
+
+    @TempDir
+    Path spool;
+
+    private AttachmentUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        uploadService = new AttachmentUploadService();
+        ReflectionTestUtils.setField(uploadService, "uploadDir", spool.toString());
+        ReflectionTestUtils.setField(uploadService, "ttl", Duration.ofHours(2));
+        uploadService.init();
+    }
+
+    @Test
+    @DisplayName("store - Should spool the upload and read it back through a file-backed source")
+    void testStore_DataSource() throws Exception {
+        byte[] content = "quarterly report".getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile file = new MockMultipartFile("files", "report.pdf", "application/pdf", content);
+
+        FileAttachmentDTO handle = uploadService.store(TEST_EMAIL, file);
+
+        assertNotNull(handle.getUploadId());
+        assertNull(handle.getContent());
+        assertEquals("report.pdf", handle.getFileName());
+        assertEquals(content.length, handle.getSize());
+
+        DataSource source = uploadService.dataSource(TEST_EMAIL, handle.getUploadId());
+        assertEquals("application/pdf", source.getContentType());
+        assertEquals("report.pdf", source.getName());
+        try (InputStream in = source.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        assertThrows(NoSuchElementException.class,
+            () -> uploadService.dataSource("other@example.com", handle.getUploadId()));
+    }
+
+    @Test
+    @DisplayName("release - Should delete the spooled file and forget the handle")
+    void testRelease_DeletesFile() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("files", "notes.txt", "text/plain", new byte[]{1, 2, 3});
+        FileAttachmentDTO handle = uploadService.store(TEST_EMAIL, file);
+
+        uploadService.release(TEST_EMAIL, handle.getUploadId());
+
+        assertThrows(NoSuchElementException.class, () -> uploadService.get(TEST_EMAIL, handle.getUploadId()));
+        try (var files = Files.list(spool)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
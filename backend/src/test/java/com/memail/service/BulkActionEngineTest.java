@@ -0,0 +1,114 @@
+package com.memail.service;
+
+import com.memail.dto.EmailActionRequest.EmailAction;
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("BulkActionEngine Test Suite")
+class BulkActionEngineTest {
+
+    @Mock
+    private ImapFolderResolver imapFolderResolver;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private BulkActionEngine bulkActionEngine;
+
+    @Mock
+    private ImapConnection connection;
+
+    @Mock
+    private ImapFolderCache folderCache;
+
+    @Mock
+    private IMAPStore store;
+
+    @Mock
+    private IMAPFolder inbox;
+
+    @Mock
+    private IMAPFolder trash;
+
+    private Message first;
+    private Message second;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(connection.getFolderCache()).thenReturn(folderCache);
+        when(connection.getStore()).thenReturn(store);
+        when(folderCache.open(eq("INBOX"), eq(Folder.READ_WRITE), any())).thenReturn(inbox);
+        when(folderCache.resolve(eq("TRASH"), any())).thenReturn(trash);
+        when(inbox.getFullName()).thenReturn("INBOX");
+        when(trash.getFullName()).thenReturn("Trash");
+
+        first = mock(Message.class);
+        second = mock(Message.class);
+        // UID 3 is gone from the server
+        when(inbox.getMessagesByUID(new long[]{1, 2, 3})).thenReturn(new Message[]{first, second, null});
+    }
+
+    @Test
+    @DisplayName("apply() - Should move the whole UID set with one MOVE when supported")
+    void testApply_MoveExtension() throws Exception {
+        when(store.hasCapability("MOVE")).thenReturn(true);
+
+        BulkActionEngine.ActionResult result = bulkActionEngine.apply(connection, EmailAction.DELETE,
+            Map.of("INBOX", List.of(1L, 2L, 3L)));
+
+        verify(inbox).moveMessages(new Message[]{first, second}, trash);
+        verify(inbox, never()).copyMessages(any(), any());
+        assertEquals(List.of(1L, 2L), result.getApplied().get("INBOX"));
+        assertEquals(2, result.getMessageCount());
+        assertEquals(2.0, meterRegistry.get("memail.actions.messages").tag("action", "delete").counter().count());
+    }
+
+    @Test
+    @DisplayName("apply() - Should fall back to COPY, STORE \\Deleted and UID EXPUNGE without MOVE")
+    void testApply_CopyExpungeFallback() throws Exception {
+        when(store.hasCapability("MOVE")).thenReturn(false);
+        when(store.hasCapability("UIDPLUS")).thenReturn(true);
+
+        bulkActionEngine.apply(connection, EmailAction.MOVE_TO_TRASH, Map.of("INBOX", List.of(1L, 2L, 3L)));
+
+        Message[] set = {first, second};
+        verify(inbox).copyMessages(set, trash);
+        verify(inbox).setFlags(eq(set), eq(new Flags(Flags.Flag.DELETED)), eq(true));
+        verify(inbox).expunge(set);
+        verify(inbox, never()).moveMessages(any(), any());
+    }
+
+    @Test
+    @DisplayName("apply() - Should set flags on the whole set with a single STORE")
+    void testApply_FlagStore() throws Exception {
+        bulkActionEngine.apply(connection, EmailAction.MARK_AS_READ, Map.of("INBOX", List.of(1L, 2L, 3L)));
+
+        verify(inbox, times(1)).setFlags(eq(new Message[]{first, second}), eq(new Flags(Flags.Flag.SEEN)), eq(true));
+        verify(first, never()).setFlag(any(), anyBoolean());
+        verify(folderCache).release(inbox);
+    }
+}
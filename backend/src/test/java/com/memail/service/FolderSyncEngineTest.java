@@ -0,0 +1,218 @@
+package com.memail.service;
+
+import com.memail.imap.ImapConnection;
+import com.memail.imap.ImapFolderCache;
+import com.memail.imap.ImapFolderResolver;
+import com.memail.model.FolderSyncState;
+import com.memail.model.MessageHeader;
+import com.memail.repository.FolderSyncStateRepository;
+import com.memail.repository.MessageAttachmentRepository;
+import com.memail.repository.MessageHeaderRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Flags;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DisplayName("FolderSyncEngine Test Suite")
+class FolderSyncEngineTest {
+
+    private static final String USER = "user@example.com";
+    private static final long UID_VALIDITY = 7;
+    private static final int MESSAGES = 600;
+
+    @Mock
+    private ImapFolderResolver imapFolderResolver;
+
+    @Mock
+    private MessageHeaderRepository messageHeaderRepository;
+
+    @Mock
+    private FolderSyncStateRepository folderSyncStateRepository;
+
+    @Mock
+    private MessageAttachmentRepository messageAttachmentRepository;
+
+    @Mock
+    private ThreadIndexService threadIndexService;
+
+    @Mock
+    private SearchIndexService searchIndexService;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private FolderSyncEngine folderSyncEngine;
+
+    @InjectMocks
+    private HeaderIndexService headerIndexService;
+
+    @Mock
+    private ImapConnection connection;
+
+    @Mock
+    private ImapFolderCache folderCache;
+
+    @Mock
+    private IMAPStore store;
+
+    @Mock
+    private IMAPFolder inbox;
+
+    // The single state row, as the repository would hold it
+    private final AtomicReference<FolderSyncState> savedState = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final Map<Message, Long> uids = new IdentityHashMap<>();
+    private final List<Message> messages = new ArrayList<>();
+    // Indexed rows by UID, as message_headers would hold them
+    private final Map<Long, MessageHeader> rows = new TreeMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(connection.getFolderCache()).thenReturn(folderCache);
+        when(connection.getStore()).thenReturn(store);
+        when(folderCache.resolve(eq("INBOX"), any())).thenReturn(inbox);
+        when(folderCache.open(eq("INBOX"), eq(Folder.READ_ONLY), any())).thenReturn(inbox);
+        when(inbox.getUIDValidity()).thenReturn(UID_VALIDITY);
+        when(inbox.getMessageCount()).thenReturn(MESSAGES);
+
+        for (long uid = 1; uid <= MESSAGES; uid++) {
+            MimeMessage message = new MimeMessage((Session) null);
+            message.setSubject("Message " + uid);
+            message.setText("Body " + uid);
+            messages.add(message);
+            uids.put(message, uid);
+        }
+        when(inbox.getUID(any())).thenAnswer(invocation -> uids.get(invocation.<Message>getArgument(0)));
+        when(inbox.getMessagesByUID(anyLong(), anyLong())).thenAnswer(invocation -> {
+            long start = invocation.getArgument(0);
+            long end = invocation.getArgument(1);
+            return messages.stream()
+                .filter(message -> uids.get(message) >= start && (end == UIDFolder.LASTUID || uids.get(message) <= end))
+                .toArray(Message[]::new);
+        });
+
+        when(folderSyncStateRepository.findByUserIdAndFolder(USER, "INBOX"))
+            .thenAnswer(invocation -> Optional.ofNullable(copy(savedState.get())));
+        when(folderSyncStateRepository.save(any())).thenAnswer(invocation -> {
+            savedState.set(copy(invocation.getArgument(0)));
+            return invocation.getArgument(0);
+        });
+        when(messageHeaderRepository.saveAll(any())).thenAnswer(invocation -> {
+            for (MessageHeader row : invocation.<Iterable<MessageHeader>>getArgument(0)) {
+                rows.put(row.getUid(), row);
+            }
+            return null;
+        });
+        when(messageHeaderRepository.findByUserIdAndFolderAndUidIn(eq(USER), eq("INBOX"), any()))
+            .thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(2).stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+        when(messageHeaderRepository.findByUserIdAndFolder(USER, "INBOX"))
+            .thenAnswer(invocation -> new ArrayList<>(rows.values()));
+        when(messageHeaderRepository.countByUserIdAndFolder(USER, "INBOX"))
+            .thenAnswer(invocation -> (long) rows.size());
+    }
+
+    private static FolderSyncState copy(FolderSyncState state) {
+        if (state == null) {
+            return null;
+        }
+        FolderSyncState copy = new FolderSyncState(state.getUserId(), state.getFolder(), state.getUidValidity());
+        copy.setLastUid(state.getLastUid());
+        copy.setHighestModSeq(state.getHighestModSeq());
+        copy.setMessageCount(state.getMessageCount());
+        copy.setLastSyncedAt(state.getLastSyncedAt());
+        copy.setInitialSyncComplete(state.isInitialSyncComplete());
+        return copy;
+    }
+
+    @Test
+    @DisplayName("sync() - Should not report a folder indexed until an interrupted first sync catches up")
+    void testSync_InterruptedInitialSync() throws Exception {
+        // The connection drops while the second batch of 500 is fetched
+        doAnswer(invocation -> {
+            if (fetches.incrementAndGet() == 2) {
+                throw new MessagingException("Connection dropped");
+            }
+            return null;
+        }).when(inbox).fetch(any(Message[].class), any(FetchProfile.class));
+
+        assertThrows(MessagingException.class, () -> folderSyncEngine.sync(connection, USER, "INBOX"));
+
+        assertEquals(500, savedState.get().getLastUid());
+        assertFalse(savedState.get().isInitialSyncComplete());
+        assertFalse(headerIndexService.isIndexed(USER, "INBOX"));
+
+        FolderSyncEngine.SyncResult result = folderSyncEngine.sync(connection, USER, "INBOX");
+
+        assertEquals(FolderSyncEngine.SyncMode.UID_DIFF, result.getMode());
+        assertEquals(100, result.getAdded());
+        assertEquals(MESSAGES, savedState.get().getLastUid());
+        assertTrue(savedState.get().isInitialSyncComplete());
+        assertTrue(headerIndexService.isIndexed(USER, "INBOX"));
+    }
+
+    @Test
+    @DisplayName("sync() - Should index \\Deleted messages with the flag and show them again once undeleted")
+    void testSync_DeletedMessageUndeleted() throws Exception {
+        when(store.hasCapability("CONDSTORE")).thenReturn(true);
+        when(inbox.getHighestModSeq()).thenReturn(10L);
+        when(inbox.getStatusItem("HIGHESTMODSEQ")).thenReturn(11L);
+        Message trashed = messages.get(2);
+        trashed.setFlag(Flags.Flag.DELETED, true);
+
+        folderSyncEngine.sync(connection, USER, "INBOX");
+
+        assertEquals(MESSAGES, rows.size());
+        assertTrue(rows.get(3L).isDeleted());
+
+        // Undeleted on another client; CHANGEDSINCE reports the flag change
+        trashed.setFlag(Flags.Flag.DELETED, false);
+        when(inbox.isOpen()).thenReturn(true);
+        when(inbox.getMessagesByUIDChangedSince(1, MESSAGES, 10L)).thenReturn(new Message[]{trashed});
+
+        FolderSyncEngine.SyncResult result = folderSyncEngine.sync(connection, USER, "INBOX");
+
+        assertEquals(FolderSyncEngine.SyncMode.CONDSTORE, result.getMode());
+        assertEquals(1, result.getChanged());
+        assertEquals(0, result.getVanished());
+        assertFalse(rows.get(3L).isDeleted());
+        // The index still holds every message, so no UID diff is needed
+        verify(messageHeaderRepository, never()).deleteByUids(any(), any(), any());
+        verify(inbox, never()).getMessagesByUID(1, MESSAGES);
+    }
+}
@@ -0,0 +1,37 @@
+package com.memail.service;
+
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("OutboundMailService Test Suite")
+class OutboundMailServiceTest {
+
+    private static Exception rejected(int returnCode) throws Exception {
+        InternetAddress address = new InternetAddress("nobody@example.com");
+        SMTPAddressFailedException rejection = new SMTPAddressFailedException(
+            address, "RCPT TO:<nobody@example.com>", returnCode, returnCode + " mailbox unavailable");
+        SendFailedException failed = new SendFailedException("Invalid Addresses", rejection);
+        return new MailSendException("Failed messages", failed);
+    }
+
+    @Test
+    @DisplayName("isPermanent - Should give up on 5xx recipient rejections and retry 4xx ones")
+    void testIsPermanent_ReturnCodes() throws Exception {
+        assertTrue(OutboundMailService.isPermanent(rejected(550)));
+        assertFalse(OutboundMailService.isPermanent(rejected(451)));
+    }
+
+    @Test
+    @DisplayName("isPermanent - Should retry connection and authentication failures")
+    void testIsPermanent_Transient() {
+        assertFalse(OutboundMailService.isPermanent(new MailAuthenticationException("535 authentication failed")));
+        assertFalse(OutboundMailService.isPermanent(new MailSendException("Mail server connection failed")));
+    }
+}
@@ -0,0 +1,17 @@
+package com.memail.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SearchIndexService Test Suite")
+class SearchIndexServiceTest {
+
+    @Test
+    @DisplayName("htmlToText() - Should drop tags, scripts and styles")
+    void testHtmlToText() {
+        String text = SearchIndexService.htmlToText("<style>p{}</style><p>Hello&nbsp;<b>world</b></p>");
+        assertEquals("Hello world", text.trim().replaceAll("\\s+", " "));
+    }
+}
@@ -0,0 +1,116 @@
+package com.memail.smtp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.URLName;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PooledJavaMailSender Test Suite")
+class PooledJavaMailSenderTest {
+
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    private final List<FakeTransport> opened = new ArrayList<>();
+
+    private SimpleMeterRegistry meterRegistry;
+    private PooledJavaMailSender mailSender;
+
+    /**
+     * Transport that accepts every message except those addressed to a rejected recipient
+     */
+    private static class FakeTransport extends Transport {
+        final List<Message> sent = new ArrayList<>();
+        boolean connected = true;
+
+        FakeTransport() {
+            super(SESSION, new URLName("smtp://localhost"));
+        }
+
+        @Override
+        public void sendMessage(Message message, Address[] addresses) throws MessagingException {
+            if (addresses[0].toString().startsWith("rejected")) {
+                throw new MessagingException("550 mailbox unavailable");
+            }
+            sent.add(message);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void close() {
+            connected = false;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mailSender = new PooledJavaMailSender(new PooledJavaMailSender.Settings().maxSendsPerConnection(3), meterRegistry) {
+            @Override
+            protected Transport connectTransport() {
+                FakeTransport transport = new FakeTransport();
+                opened.add(transport);
+                return transport;
+            }
+        };
+        mailSender.setSession(SESSION);
+        mailSender.start();
+    }
+
+    private MimeMessage message(String to) throws MessagingException {
+        MimeMessage message = new MimeMessage(SESSION);
+        message.setFrom(new InternetAddress("sender@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        message.setSubject("Hello");
+        message.setText("Body");
+        return message;
+    }
+
+    @Test
+    @DisplayName("send - Should reuse one connection across sends until the per-connection limit")
+    void testSend_ReusesConnection() throws Exception {
+        mailSender.send(message("a@example.com"), message("b@example.com"));
+        mailSender.send(message("c@example.com"));
+        assertEquals(1, opened.size());
+        assertEquals(3, opened.get(0).sent.size());
+
+        // The limit retired the first connection
+        mailSender.send(message("d@example.com"));
+        assertEquals(2, opened.size());
+        assertEquals(1, meterRegistry.get("memail.smtp.pool.borrows").tag("result", "miss").counter().count(), 1.0);
+        mailSender.close();
+        assertEquals(2, meterRegistry.get("memail.smtp.connection.sends").summary().count());
+    }
+
+    @Test
+    @DisplayName("send - Should report refused messages and keep the connection for the rest")
+    void testSend_RefusedMessage() throws Exception {
+        MimeMessage refused = message("rejected@example.com");
+        MimeMessage accepted = message("ok@example.com");
+
+        MailSendException failure = assertThrows(MailSendException.class, () -> mailSender.send(refused, accepted));
+
+        assertEquals(1, failure.getFailedMessages().size());
+        assertTrue(failure.getFailedMessages().containsKey(refused));
+        assertEquals(1, opened.size());
+        assertEquals(List.of(accepted), opened.get(0).sent);
+    }
+}
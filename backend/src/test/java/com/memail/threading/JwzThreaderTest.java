@@ -0,0 +1,114 @@
+package com.memail.threading;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JwzThreader Test Suite")
+class JwzThreaderTest {
+
+    private static class Mail {
+        final String id;
+        final List<String> refs;
+        final String subject;
+
+        Mail(String id, String subject, String... refs) {
+            this.id = id;
+            this.subject = subject;
+            this.refs = Arrays.asList(refs);
+        }
+    }
+
+    private JwzThreader<Mail> threader;
+
+    @BeforeEach
+    void setUp() {
+        threader = new JwzThreader<>(mail -> mail.id, mail -> mail.refs, mail -> mail.subject);
+    }
+
+    private List<Set<String>> threadIds(Mail... mails) {
+        return threader.thread(Arrays.asList(mails)).stream()
+            .map(thread -> thread.stream().map(mail -> mail.id).collect(Collectors.toSet()))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("thread() - Should keep a reply to a reply in the root's thread")
+    void testThread_ReplyChain() {
+        Mail root = new Mail("a", "Plan");
+        Mail reply = new Mail("b", "Re: Plan", "a");
+        Mail replyToReply = new Mail("c", "Re: Plan", "a", "b");
+
+        List<Set<String>> threads = threadIds(replyToReply, root, reply);
+
+        assertEquals(1, threads.size());
+        assertEquals(Set.of("a", "b", "c"), threads.get(0));
+    }
+
+    @Test
+    @DisplayName("thread() - Should join siblings through a missing parent")
+    void testThread_MissingParent() {
+        Mail first = new Mail("b", "Re: Plan", "a");
+        Mail second = new Mail("c", "Re: Plan", "a");
+
+        List<Set<String>> threads = threadIds(first, second);
+
+        assertEquals(1, threads.size());
+        assertEquals(Set.of("b", "c"), threads.get(0));
+    }
+
+    @Test
+    @DisplayName("thread() - Should link a reply without references by subject")
+    void testThread_SubjectFallback() {
+        Mail root = new Mail("a", "Quarterly report");
+        Mail reply = new Mail("b", "RE: Quarterly report");
+
+        List<Set<String>> threads = threadIds(reply, root);
+
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    @DisplayName("thread() - Should keep unrelated originals with the same subject apart")
+    void testThread_SameSubjectOriginals() {
+        Mail first = new Mail("a", "Hello");
+        Mail second = new Mail("b", "Hello");
+
+        assertEquals(2, threadIds(first, second).size());
+    }
+
+    @Test
+    @DisplayName("thread() - Should not loop on cyclic references")
+    void testThread_CyclicReferences() {
+        Mail first = new Mail("a", "Loop", "b");
+        Mail second = new Mail("b", "Loop", "a");
+
+        List<Set<String>> threads = threadIds(first, second);
+
+        assertEquals(1, threads.size());
+        assertEquals(Set.of("a", "b"), threads.get(0));
+    }
+
+    @Test
+    @DisplayName("parseReferences() - Should append In-Reply-To after References without duplicates")
+    void testParseReferences() {
+        assertEquals(List.of("a", "b", "c"),
+            JwzThreader.parseReferences("<a> <b>\r\n <c>", "<c>"));
+        assertEquals(List.of("a", "b"),
+            JwzThreader.parseReferences("<a>", "Some Name <b>"));
+        assertEquals(List.of(), JwzThreader.parseReferences(null, null));
+    }
+
+    @Test
+    @DisplayName("normalizeSubject() - Should strip stacked reply and forward prefixes")
+    void testNormalizeSubject() {
+        assertEquals("plan", JwzThreader.normalizeSubject("Re: Fwd: RE[2]: Plan"));
+        assertTrue(JwzThreader.isReply("AW: Plan"));
+        assertFalse(JwzThreader.isReply("Plan: next steps"));
+    }
+}